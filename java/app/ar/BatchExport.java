@@ -44,7 +44,7 @@ public class BatchExport {
 		Aggregator<Object,Integer> aggregator = new Numbers.Count<Object>();
 			
 		Renderer render = new ParallelRenderer();
-		Glyphset<Rectangle2D, Color> glyphs = new MemMapList<Rectangle2D, Color>(
+		Glyphset<Rectangle2D, Color> glyphs = MemMapList.<Rectangle2D, Color>open(
 					new File(source), 
 					new ToRect(size, size, false, 0, 1), 
 					new Constant<Indexed,Color>(Color.red));
@@ -14,11 +14,10 @@ import ar.app.components.*;
 import ar.app.display.ARComponent;
 import ar.app.display.AggregatingDisplay;
 import ar.app.display.EnhanceHost;
-import ar.renderers.ParallelRenderer;
 import ar.renderers.RenderUtils;
 
 public class ARApp implements ARComponent.Holder, ar.util.HasViewTransform {
-	private final EnhanceHost display = new EnhanceHost(new AggregatingDisplay(new ParallelRenderer()));
+	private final EnhanceHost display = new EnhanceHost(new AggregatingDisplay());
 	private final JFrame frame = new JFrame();
 
 	private final EnhanceOptions enhanceOptions = new EnhanceOptions();
@@ -21,7 +21,6 @@ import ar.app.components.sequentialComposer.SequentialComposer;
 import ar.app.display.ARComponent;
 import ar.app.display.AggregatingDisplay;
 import ar.app.display.EnhanceHost;
-import ar.renderers.ParallelRenderer;
 import ar.renderers.RenderUtils;
 import ar.util.Util;
 
@@ -29,7 +28,7 @@ import ar.util.Util;
 //TODO: Add "subset input", useful for contours
 //TODO: Add "Specialize From Here"
 public class ARComposerApp implements ARComponent.Holder, ar.util.HasViewTransform {
-	private final EnhanceHost display = new EnhanceHost(new AggregatingDisplay(new ParallelRenderer()));
+	private final EnhanceHost display = new EnhanceHost(new AggregatingDisplay());
 	private final JFrame frame = new JFrame();
 
 	private final EnhanceOptions enhanceOptions = new EnhanceOptions();
@@ -17,6 +17,8 @@ public class RendererOptions extends JPanel {
 	public RendererOptions() {
 		this.setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
 		renderers.addItem("Parallel");
+		renderers.addItem("Parallel (Shared Canvas)");
+		renderers.addItem("Tiles");
 		renderers.addItem("Serial");
 		renderers.addActionListener(actionProvider.actionDelegate());
 		renderers.setSelectedItem("Parallel");
@@ -33,6 +35,10 @@ public class RendererOptions extends JPanel {
 			return new SerialRenderer();
 		} else if (renderers.getSelectedItem().equals("Parallel")) {
 			return new ParallelRenderer();
+		} else if (renderers.getSelectedItem().equals("Parallel (Shared Canvas)")) {
+			return new ParallelRenderer(null, true);
+		} else if (renderers.getSelectedItem().equals("Tiles")) {
+			return new TileRenderer();
 		} else {
 			throw new RuntimeException("Unknown renderer selected: " + renderers.getSelectedItem());
 		}
@@ -40,6 +40,9 @@ public final class OptionAggregator<G,A> {
 	public static final OptionAggregator<Comparable<?>, CategoricalCounts<Comparable<?>>> COC_COMP
 		= new OptionAggregator<>("Categorical Counts (CoC<Comp>)",new Categories.CountCategories<Comparable<?>>());
 		
+	public static final OptionAggregator<String, CategoricalCounts<String>> COC_HIT_MISS
+		= new OptionAggregator<>("Categorical Counts (Hit/Miss, dense)",new Categories.CountCategories<String>(null, new String[]{"Hit", "Miss"}));
+		
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public static final OptionAggregator<CategoricalCounts<?>, CategoricalCounts<?>> MERGE_CATS 
 		= new OptionAggregator<>("Merge CoC (CoC<Comp>)", new Categories.MergeCategories());
@@ -31,7 +31,7 @@ public final class OptionDataset<G,I> {
 			Shaper<G,Indexed> shaper, Valuer<Indexed,I> valuer, 
 			OptionAggregator<? super I,?> defAgg,
 			OptionTransfer<?>... defTrans) {
-		this(name, new MemMapList<>(file, shaper, valuer), defAgg, defTrans);
+		this(name, MemMapList.open(file, shaper, valuer), defAgg, defTrans);
 	}
 	
 	public OptionDataset(
@@ -59,7 +59,7 @@ public final class OptionDataset<G,I> {
 					new File("../data/MemVisScaled.hbin"), 
 					new Indexed.ToPoint(true, 0, 1),
 					new ToValue<>(2, new Binary<Integer,String>(0, "Hit", "Miss")),
-					OptionAggregator.COC_COMP,
+					OptionAggregator.COC_HIT_MISS,
 					new OptionTransfer.ColorKey(),
 					new OptionTransfer.ColorCatInterpolate());
 		} catch (Exception e) {temp = null;}
@@ -7,9 +7,11 @@ import java.awt.geom.Rectangle2D;
 import java.util.concurrent.ExecutorService;
 
 import ar.*;
+import ar.aggregates.AggregatePool;
 import ar.app.util.ActionProvider;
 import ar.app.util.MostRecentOnlyExecutor;
 import ar.app.util.ZoomPanHandler;
+import ar.renderers.ParallelRenderer;
 import ar.selectors.TouchesPixel;
 import ar.util.Util;
 
@@ -34,6 +36,11 @@ public class AggregatingDisplay extends ARComponent.Aggregating {
 		
 	protected final Renderer renderer;
 
+	/**Display with its own ParallelRenderer, which recycles per-task aggregates between renders (see AggregatePool).
+	 * Panning and zooming at the same size then reuses aggregates instead of allocating them for every frame.
+	 * **/
+	public AggregatingDisplay() {this(pooledRenderer());}
+	
 	public AggregatingDisplay(Renderer renderer) {
 		super();
 		this.renderer = renderer;
@@ -55,6 +62,13 @@ public class AggregatingDisplay extends ARComponent.Aggregating {
 		ZoomPanHandler.installOn(this);
 	}
 	
+	/**A new ParallelRenderer that recycles its per-task aggregates through its own pool.**/
+	public static ParallelRenderer pooledRenderer() {
+		ParallelRenderer r = new ParallelRenderer();
+		r.recycling(new AggregatePool());
+		return r;
+	}
+	
 	protected void finalize() {renderPool.shutdown();}
 	public void addAggregatesChangedListener(ActionListener l) {aggregatesChangedProvider.addActionListener(l);}
 
@@ -12,11 +12,20 @@ import java.util.concurrent.ExecutorService;
 
 import ar.*;
 import ar.aggregates.AggregateUtils;
+import ar.aggregates.implementations.ColorAggregates;
+import ar.aggregates.wrappers.TransferWrapper;
 import ar.app.util.MostRecentOnlyExecutor;
 import ar.renderers.ParallelRenderer;
 import ar.util.Util;
 
-/**Panel that will draw a set of aggregates on the screen with a given transfer function.**/
+/**Panel that will draw a set of aggregates on the screen with a given transfer function.
+ * 
+ * Frames are double-buffered: a new frame is drawn into the back buffer while the front buffer is painted,
+ * then the two are swapped.  The buffers are color aggregates that share their pixels with an image (see ColorAggregates).
+ * With a ParallelRenderer, color-valued transfer results are written straight into the back buffer
+ * (see ParallelRenderer.transfer with a target), so re-rendering the same aggregates reuses the same two buffers.
+ * The transfer aggregates reported by the display may therefore be overwritten two frames later.
+ * **/
 public class TransferDisplay extends ARComponent {
 	private static final long serialVersionUID = 1L;
 	
@@ -37,7 +46,13 @@ public class TransferDisplay extends ARComponent {
 	private volatile Aggregates<?> refAggregates;
 
 	private volatile Aggregates<?> postTransferAggregates;
-	private volatile BufferedImage image;
+	
+	/**Image being painted, its pixels if they belong to the display (front) and pixels available for the next frame (back).
+	 * All are guarded by the buffers lock, which is also held while painting the image.**/
+	private final Object buffers = new Object();
+	private BufferedImage image;
+	private ColorAggregates front;
+	private ColorAggregates back;
 
 	/**Transform being used to put geometry on the screen.
 	 * This is the full view transform, moving from geometry all the way to screen pixels,
@@ -137,14 +152,47 @@ public class TransferDisplay extends ARComponent {
 
 		g.setColor(Color.WHITE);
 		g.fillRect(0, 0, this.getWidth(), this.getHeight());
-		if (image != null) {
-			Graphics2D g2 = (Graphics2D) g;
-			
-			g2.drawRenderedImage(image,offsetTransform(viewTransform, renderedTransform));
+		synchronized(buffers) {
+			if (image != null) {
+				Graphics2D g2 = (Graphics2D) g;
+				
+				g2.drawRenderedImage(image,offsetTransform(viewTransform, renderedTransform));
+			}
+		}
+	}
+	
+	/**Take the buffer to draw the next frame into; it is not being painted (may be null).**/
+	private ColorAggregates backBuffer() {
+		synchronized(buffers) {
+			ColorAggregates b = back;
+			back = null;
+			return b;
+		}
+	}
+	
+	/**Make the given image the painted image, keeping the old front buffer as the back buffer.
+	 * @param owned Display buffer holding the image's pixels; null if the image belongs to transfer results
+	 * **/
+	private void swap(BufferedImage frame, ColorAggregates owned) {
+		synchronized(buffers) {
+			if (front != null && front != owned) {back = front;}
+			image = frame;
+			front = owned;
 		}
 	}
 	
 	
+	/**Color buffer for the transfer results of the given aggregates: the passed buffer if it has their bounds and background,
+	 * otherwise a new buffer (the passed buffer is discarded).**/
+	private static ColorAggregates colorBuffer(ColorAggregates buffer, Aggregates<?> aggs, Color background) {
+		if (buffer != null 
+				&& AggregateUtils.bounds(buffer).equals(AggregateUtils.bounds(aggs))
+				&& buffer.defaultValue().equals(background)) {
+			return buffer;
+		}
+		return new ColorAggregates(aggs.lowX(), aggs.lowY(), aggs.highX(), aggs.highY(), background);
+	}
+	
 	/**In some cases, some of the view transform is reflected in the rendered transform,
 	 * the display needs a modified view transform to properly position/scale post-transfer results.
 	 * This calculates that new view transform.
@@ -177,15 +225,32 @@ public class TransferDisplay extends ARComponent {
 				
 				long start = System.currentTimeMillis();
 				
-				Transfer.Specialized ts = transfer.specialize((Aggregates) refAggregates());
-				postTransferAggregates = renderer.transfer(aggs, ts);
-				
 				int width = TransferDisplay.this.getWidth();
 				int height = TransferDisplay.this.getHeight();
-				if (postTransferAggregates.defaultValue() instanceof Color ) {
-					image = AggregateUtils.asImage((Aggregates<Color>) postTransferAggregates, width, height, Util.CLEAR);
+				
+				Transfer.Specialized ts = transfer.specialize((Aggregates) refAggregates());
+				ColorAggregates target = backBuffer();
+				if (ts instanceof Transfer.ItemWise && !new Rectangle(0,0,width,height).contains(AggregateUtils.bounds(aggs))) {
+					//Only the visible part is drawn, so compute results as they are read
+					postTransferAggregates = new TransferWrapper.Memoized<>(aggs, (Transfer.ItemWise) ts);
+				} else if (renderer instanceof ParallelRenderer && ts.emptyValue() instanceof Color) {
+					target = colorBuffer(target, aggs, (Color) ts.emptyValue());
+					postTransferAggregates = ((ParallelRenderer) renderer).transfer(aggs, ts, target);
+				} else {
+					postTransferAggregates = renderer.transfer(aggs, ts);
+				}
+				
+				if (postTransferAggregates == target && target != null) {
+					swap(target.image(), target);
+				} else if (postTransferAggregates.defaultValue() instanceof Color) {
+					BufferedImage reuse = target == null ? null : target.image();
+					BufferedImage frame = AggregateUtils.asImage((Aggregates<Color>) postTransferAggregates, width, height, Util.CLEAR, reuse);
+					if (frame == null) {swap(null, null);}
+					else if (frame == reuse) {swap(frame, target);}
+					else if (postTransferAggregates instanceof ColorAggregates) {swap(frame, null);}	//Pixels belong to the results
+					else {swap(frame, new ColorAggregates(0, 0, Util.CLEAR, frame));}
 				} else {
-					image = null;
+					swap(null, null);
 				}
 				
 				long end = System.currentTimeMillis();
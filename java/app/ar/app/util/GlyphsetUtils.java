@@ -56,7 +56,7 @@ public class GlyphsetUtils {
 			}
 			
 			if (glyphs instanceof MemMapList) {
-				MemMapList<G,T> list = new MemMapList<>(source, ((MemMapList<G,T>) glyphs).shaper(), ((MemMapList<G,T>) glyphs).valuer());
+				Glyphset<G,T> list = MemMapList.open(source, ((MemMapList<G,T>) glyphs).shaper(), ((MemMapList<G,T>) glyphs).valuer());
 				System.out.printf("Setup list of %d entries.\n", list.size());
 				return list;
 			} else {
@@ -95,7 +95,7 @@ public class GlyphsetUtils {
 
 		try {
 			long start = System.currentTimeMillis();
-			Glyphset<G,V> g = new MemMapList<>(f, shaper, valuer);
+			Glyphset<G,V> g = MemMapList.open(f, shaper, valuer);
 			long end = System.currentTimeMillis();
 			if (label != null) {System.out.printf("prepared %s entries (%s ms).\n", g.size(), end-start);}
 			return g;
@@ -105,7 +105,7 @@ public class GlyphsetUtils {
 					System.err.println("## Error loading.  Attempting re-encode...");
 					File source = new File(file.replace(".hbin", ".csv"));
 					MemMapEncoder.write(source, skip, f, types.toCharArray());
-					return new MemMapList<>(f, shaper, valuer);
+					return MemMapList.open(f, shaper, valuer);
 				} else {throw e;}
 			} catch (Exception ex) {
 				System.err.println("## Failed to load data.");
@@ -25,7 +25,7 @@ public class BoundsSpeed {
 			long total=0;
 			try {
 			for (int i=0; i<iterations; i++) {
-				Glyphset<Rectangle2D, Color> glyphs = new MemMapList<>(
+				Glyphset<Rectangle2D, Color> glyphs = MemMapList.open(
 							source, 
 							new Indexed.ToRect(.1,.1, false, 0, 1), 
 							new Valuer.Constant<Indexed,Color>(Color.red));
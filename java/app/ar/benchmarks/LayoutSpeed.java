@@ -0,0 +1,56 @@
+package ar.benchmarks;
+
+import java.awt.Color;
+
+import ar.Aggregates;
+import ar.Renderer;
+import ar.Transfer;
+import ar.aggregates.AggregateUtils;
+import ar.renderers.ParallelRenderer;
+import ar.rules.General;
+import ar.rules.Numbers;
+import ar.util.Util;
+
+/**Time transfers over row-by-row aggregates against the same transfers over blocked aggregates.
+ * 
+ * The "local" transfer reads one bin per bin (in PixelParallelTransfer's quadrants, column by column);
+ * the "stencil" transfer reads and writes a square neighborhood around each bin.
+ * Aggregates (inputs and results) use the blocked layout when AggregateUtils.BLOCKED_LAYOUT is set.
+ * 
+ * Run each layout in its own JVM (-layout rows, then -layout blocked): 
+ * whichever layout runs second is measured with call sites already compiled for the first.
+ * **/
+public class LayoutSpeed {
+	public static void main(String[] args) throws Exception {
+		int iterations = Integer.parseInt(Util.argKey(args, "-iters", "10"));
+		int width = Integer.parseInt(Util.argKey(args, "-width", "4096"));
+		int height = Integer.parseInt(Util.argKey(args, "-height", "4096"));
+		int radius = Integer.parseInt(Util.argKey(args, "-radius", "2"));
+		String layout = Util.argKey(args, "-layout", "blocked");
+		
+		Renderer rend = new ParallelRenderer();
+		Transfer<Integer,Color> local = new Numbers.FixedInterpolate<>(Color.white, Color.red, 0, 1000);
+		Transfer<Integer,Integer> stencil = new General.Spread<>(new General.Spread.UnitSquare<Integer>(radius), new Numbers.Count<>());
+		
+		AggregateUtils.BLOCKED_LAYOUT = layout.equals("blocked");
+		Aggregates<Integer> counts = AggregateUtils.make(width, height, 0);
+		for (int x=0; x<width; x++) {
+			for (int y=0; y<height; y++) {counts.set(x, y, (x*31+y*17)%1000);}
+		}
+		
+		System.out.printf("%s (%s)\n", layout, counts.getClass().getSimpleName());
+		run(layout + " local", rend, counts, local, iterations);
+		run(layout + " stencil", rend, counts, stencil, iterations);
+	}
+	
+	private static <A> void run(String label, Renderer rend, Aggregates<Integer> counts, Transfer<Integer,A> t, int iterations) {
+		long total=0;
+		for (int i=0; i<iterations; i++) {
+			long start = System.currentTimeMillis();
+			rend.transfer(counts, t.specialize(counts));
+			long end = System.currentTimeMillis();
+			total += end-start;
+		}
+		System.out.printf("\t%s (avg; %d iters): %s ms\n", label, iterations, total/((double) iterations));
+	}
+}
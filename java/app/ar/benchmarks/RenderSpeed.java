@@ -55,6 +55,7 @@ public class RenderSpeed {
 
 		ParallelRenderer.THREAD_POOL_PARALLELISM = cores > 0 ? cores : ParallelRenderer.THREAD_POOL_PARALLELISM;
 		ParallelRenderer.AGGREGATE_TASK_MULTIPLIER = tasksPerThread > 0 ? tasksPerThread : ParallelRenderer.AGGREGATE_TASK_MULTIPLIER;
+		ParallelRenderer.ADAPTIVE_TASK_SIZE = tasksPerThread <= 0;	//An explicit multiplier fixes the task size
 		OptionDataset.SYNTHETIC = synPoints > 0 ? OptionDataset.syntheticPoints(synPoints) : OptionDataset.SYNTHETIC;
 
 		
@@ -82,7 +83,6 @@ public class RenderSpeed {
 		
 		AffineTransform vt = Util.zoomFit(glyphs.bounds(), width, height);
 		Selector s = TouchesPixel.make(glyphs);
-		long taskCount = glyphs.size()/render.taskSize(glyphs);
 		
 		if (header) {
 			System.out.println("source, elapse/avg agg, elapse/avg trans, iter num, width, height, renderer, cores, tasks");
@@ -94,6 +94,10 @@ public class RenderSpeed {
 				Aggregates<Integer> aggs = render.aggregate(glyphs, s, aggregator, vt, width, height);
 				long end = System.currentTimeMillis();
 				long aggTime = end-start;
+				long taskCount = glyphs.size()/Math.max(1, render.taskSize(glyphs));
+				if (render instanceof ParallelRenderer && ParallelRenderer.ADAPTIVE_TASK_SIZE) {
+					System.err.println(((ParallelRenderer) render).taskSizer());
+				}
 
 				start = System.currentTimeMillis();
 				Transfer.Specialized<Number,Color> ts = transfer.specialize(aggs);
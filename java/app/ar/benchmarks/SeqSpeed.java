@@ -0,0 +1,66 @@
+package ar.benchmarks;
+
+import java.awt.Color;
+
+import ar.Aggregates;
+import ar.Renderer;
+import ar.Transfer;
+import ar.aggregates.AggregateUtils;
+import ar.glyphsets.implicitgeometry.MathValuers;
+import ar.renderers.ParallelRenderer;
+import ar.rules.General;
+import ar.rules.Numbers;
+import ar.rules.combinators.Seq;
+import ar.util.Util;
+
+/**Time a four-stage transfer sequence against running its stages one at a time.
+ * 
+ * Each stage of the sequence should be computed once, so the sequence
+ * should take about as long as the stage-by-stage version (or less, if stages are fused).
+ * The "spread" chain includes a non-local stage, so it cannot be fused.
+ * **/
+public class SeqSpeed {
+	public static void main(String[] args) throws Exception {
+		int iterations = Integer.parseInt(Util.argKey(args, "-iters", "10"));
+		int width = Integer.parseInt(Util.argKey(args, "-width", "2048"));
+		int height = Integer.parseInt(Util.argKey(args, "-height", "2048"));
+		
+		Renderer rend = new ParallelRenderer();
+		Aggregates<Integer> counts = AggregateUtils.make(width, height, 0);
+		for (int x=0; x<width; x++) {
+			for (int y=0; y<height; y++) {counts.set(x, y, (x*31+y*17)%1000);}
+		}
+		
+		Transfer<Integer,Double> log = new General.ValuerTransfer<>(new MathValuers.Log<Integer>(10d), 0d);
+		Transfer<Double,Double> replace = new General.Replace<>(Double.NEGATIVE_INFINITY, 0d, 0d);
+		Transfer<Double,Double> spread = new General.Spread<>(new General.Spread.UnitSquare<Double>(1), new General.Last<>(0d));
+		Transfer<Double,Double> scale = new General.ValuerTransfer<>(new MathValuers.Pow<Double>(2d), 0d);
+		Transfer<Double,Color> color = new Numbers.Interpolate<>(Color.white, Color.red);
+		
+		run("local", rend, counts, iterations, log, replace, scale, color);
+		run("spread", rend, counts, iterations, log, replace, spread, color);
+	}
+	
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	private static void run(String label, Renderer rend, Aggregates<Integer> counts, int iterations, Transfer... stages) {
+		Transfer chain = Seq.start(rend, stages[0]);
+		for (int i=1; i<stages.length; i++) {chain = ((Seq) chain).then(stages[i]);}
+		
+		long seqTotal=0, stepTotal=0;
+		for (int i=0; i<iterations; i++) {
+			long start = System.currentTimeMillis();
+			Transfer.Specialized ts = chain.specialize(counts);
+			ts.process(counts, rend);
+			long mid = System.currentTimeMillis();
+			
+			Aggregates aggs = counts;
+			for (Transfer t: stages) {aggs = rend.transfer(aggs, t.specialize(aggs));}
+			long end = System.currentTimeMillis();
+			
+			System.out.printf("%s: %d ms sequence, %d ms stage-by-stage (iter %d)\n", label, mid-start, end-mid, i);
+			seqTotal += mid-start;
+			stepTotal += end-mid;
+		}
+		System.out.printf("\t\t%s (avg; %d iters): %s ms sequence, %s ms stage-by-stage\n", label, iterations, seqTotal/((double) iterations), stepTotal/((double) iterations));
+	}
+}
@@ -1,6 +1,9 @@
 package ar;
 
 import java.io.Serializable;
+import java.util.List;
+
+import ar.rules.CategoricalCounts;
 
 
 /** Store of aggregate values.
@@ -83,4 +86,86 @@ public interface Aggregates<A> extends Serializable, Iterable<A> {
 	 * (See notes on lowX for boundary behaviors).
 	 * */
 	public int highY();
+	
+	
+	/**Aggregates that store int values and can get/set them without boxing.
+	 * 
+	 * Out-of-bounds behavior matches get/set.
+	 */
+	public static interface IntValued extends Aggregates<Integer> {
+		/**Unboxed equivalent of get.**/
+		public int getInt(int x, int y);
+		
+		/**Unboxed equivalent of set.**/
+		public void setInt(int x, int y, int val);
+		
+		/**Unboxed equivalent of defaultValue.**/
+		public int defaultInt();
+	}
+	
+	/**Aggregates that store double values and can get/set them without boxing.
+	 * 
+	 * Out-of-bounds behavior matches get/set.
+	 */
+	public static interface DoubleValued extends Aggregates<Double> {
+		/**Unboxed equivalent of get.**/
+		public double getDouble(int x, int y);
+		
+		/**Unboxed equivalent of set.**/
+		public void setDouble(int x, int y, double val);
+		
+		/**Unboxed equivalent of defaultValue.**/
+		public double defaultDouble();
+	}
+	
+	/**Aggregates that can read and write a run of positions along a row at once.
+	 * 
+	 * Runs may extend outside of the bounds: those positions read as the default value
+	 * and writes to them are ignored (as with get/set).
+	 * Array-backed implementations copy runs with System.arraycopy; 
+	 * see AggregateUtils for bulk operations that also work on aggregates without row access.
+	 */
+	public static interface Rows<A> extends Aggregates<A> {
+		/**Copy the values at x...x+length-1 on row y into dest, starting at offset.**/
+		public void getRow(int x, int y, A[] dest, int offset, int length);
+		
+		/**DESTRUCTIVELY set the values at x...x+length-1 on row y from src, starting at offset.**/
+		public void setRow(int x, int y, A[] src, int offset, int length);
+	}
+	
+	/**Unboxed row access for int-valued aggregates (see Rows).**/
+	public static interface IntRows extends IntValued {
+		public void getInts(int x, int y, int[] dest, int offset, int length);
+		public void setInts(int x, int y, int[] src, int offset, int length);
+	}
+
+	/**Unboxed row access for double-valued aggregates (see Rows).**/
+	public static interface DoubleRows extends DoubleValued {
+		public void getDoubles(int x, int y, double[] dest, int offset, int length);
+		public void setDoubles(int x, int y, double[] src, int offset, int length);
+	}
+	
+	/**Aggregates of categorical counts over a fixed set of categories, 
+	 * stored as one count per category per bin.
+	 * 
+	 * The primitive methods address categories by their index in "categories."
+	 * Get produces the same CategoricalCounts as sparse storage would (only non-zero categories are listed).
+	 * Out-of-bounds behavior matches get/set.
+	 */
+	public static interface CategoryValued<T> extends Aggregates<CategoricalCounts<T>> {
+		/**Known categories, in the order of the CategoricalCounts comparator.**/
+		public List<T> categories();
+		
+		/**Index of the category in "categories," negative if the category is not known.**/
+		public int index(T category);
+		
+		/**Count of the indexed category at x/y.**/
+		public int count(int x, int y, int category);
+		
+		/**Total count at x/y (the CategoricalCounts fullSize).**/
+		public int fullSize(int x, int y);
+		
+		/**DESTRUCTIVELY add to the count of the indexed category at x/y.**/
+		public void add(int x, int y, int category, int count);
+	}
 }
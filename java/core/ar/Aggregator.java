@@ -51,4 +51,87 @@ public interface Aggregator<IN,OUT> extends Serializable {
 	 * property (for example, pixel-serial rendering just uses it for the background).
 	 **/
 	public OUT identity();
+	
+	
+	/**Tagging interface.  Indicates that combine is commutative and associative
+	 * (so the order updates are applied in does not matter) and that combine has no side effects
+	 * (so it may be retried).  
+	 * 
+	 * Renderers may use this to apply the aggregator to a single set of aggregates 
+	 * shared by all worker threads, instead of creating per-worker aggregates
+	 * that must be rolled up afterwards.  Renderers are not required to do so.
+	 */
+	public static interface Commutative<IN,OUT> extends Aggregator<IN,OUT> {}
+	
+	/**Aggregator that can work directly with int values.
+	 * 
+	 * Paired with aggregates that implement Aggregates.IntValued, this
+	 * allows aggregation to proceed without boxing/unboxing on every update.
+	 * The primitive methods must agree with their boxed counterparts.
+	 */
+	public static interface IntValued<IN> extends Aggregator<IN, Integer> {
+		/**Unboxed equivalent of combine.**/
+		public int combineInt(int current, IN update);
+		
+		/**Unboxed equivalent of rollup.**/
+		public int rollupInt(int left, int right);
+		
+		/**Unboxed equivalent of identity.**/
+		public int identityInt();
+	}
+
+	/**Aggregator that can work directly with double values.
+	 * (See IntValued for details.)
+	 */
+	public static interface DoubleValued<IN> extends Aggregator<IN, Double> {
+		/**Unboxed equivalent of combine.**/
+		public double combineDouble(double current, IN update);
+		
+		/**Unboxed equivalent of rollup.**/
+		public double rollupDouble(double left, double right);
+		
+		/**Unboxed equivalent of identity.**/
+		public double identityDouble();
+	}
+
+	/**Int-valued aggregator that can take numeric updates unboxed, as doubles 
+	 * (e.g., from a numeric scan, see Glyphset.NumericScannable).
+	 * Must agree with combine on the boxed update.
+	 */
+	public static interface IntUpdates<IN> extends IntValued<IN> {
+		/**Unboxed equivalent of combine, for a numeric update.**/
+		public int combineNumber(int current, double update);
+	}
+
+	/**Double-valued aggregator that can take numeric updates unboxed (see IntUpdates).**/
+	public static interface DoubleUpdates<IN> extends DoubleValued<IN> {
+		/**Unboxed equivalent of combine, for a numeric update.**/
+		public double combineNumber(double current, double update);
+	}
+
+	/**Aggregator that can update a mutable accumulator in place.
+	 * 
+	 * Combine may not modify "current", so aggregate values that are collections
+	 * must be copied on every update.  Aggregators implementing this interface
+	 * also provide a mutable accumulator for their aggregate values.  Renderers may hold an
+	 * accumulator per bin while aggregating, update it in place and freeze it into an
+	 * ordinary (immutable) aggregate value before aggregates are merged or returned
+	 * (see ar.aggregates.wrappers.AccumulatingWrapper).
+	 * 
+	 * Accumulators are never shared between threads.  
+	 * Folding values with accumulate and then calling freeze must give the same result as folding them with combine.
+	 * 
+	 * @param <ACC> Type of the mutable accumulator
+	 */
+	public static interface Accumulating<IN,OUT,ACC> extends Aggregator<IN,OUT> {
+		/**Create an accumulator holding the given aggregate value.**/
+		public ACC accumulator(OUT initial);
+		
+		/**DESTRUCTIVELY add the update to the accumulator.**/
+		public void accumulate(ACC acc, IN update);
+		
+		/**Aggregate value with the current contents of the accumulator.
+		 * The result must not change when the accumulator is updated later.**/
+		public OUT freeze(ACC acc);
+	}
 }
@@ -91,5 +91,45 @@ public interface Glyphset<G,I> extends Iterable<Glyph<G,I>> {
 		/**Return the item at the specified index.**/
 		public Glyph<G,I> get(long l);
 	}
+	
+	/**Glyphsets that can pass their items to a visitor without making objects for each item.
+	 * 
+	 * The glyph (and its shape) passed to the visitor MAY BE REUSED for the next item,
+	 * so visitors must not keep a reference to them (copy the shape or value if needed).
+	 * Selectors (see TouchesPixel) use this instead of the iterator when it is available.
+	 */
+	public static interface Scannable<G,I> extends Glyphset<G,I> {
+		/**Pass items from low (inclusive) to high (exclusive) to the visitor, in iteration order.
+		 * Item indices run from 0 to size().  High may be larger than size(); the scan stops after the last item,
+		 * so scan(0, Long.MAX_VALUE, visitor) visits every item without computing the size first.**/
+		public void scan(long low, long high, Visitor<? super G, ? super I> visitor);
+	}
+	
+	/**Receives glyphs from a scan (see Scannable).**/
+	public static interface Visitor<G,I> {
+		public void visit(Glyph<? extends G, ? extends I> glyph);
+	}
+
+	/**Scannable glyphsets that can also pass their values unboxed, as doubles.
+	 * 
+	 * Only possible when values come from a primitive valuer (see Valuer.IntValued and DoubleValued; 
+	 * int values are widened), so check numeric() first.
+	 * Selectors (see TouchesPixel.Points) use this with aggregators that take unboxed updates 
+	 * (see Aggregator.IntUpdates and DoubleUpdates).
+	 */
+	public static interface NumericScannable<G,I> extends Scannable<G,I> {
+		/**Can scanNumbers be used?**/
+		public boolean numeric();
+		
+		/**Pass the shape and value of items from low (inclusive) to high (exclusive) to the visitor (see Scannable.scan).
+		 * @throws UnsupportedOperationException If values are not numeric (see numeric()) 
+		 * **/
+		public void scanNumbers(long low, long high, NumericVisitor<? super G> visitor);
+	}
+	
+	/**Receives shapes and unboxed values from a scan (see NumericScannable).**/
+	public static interface NumericVisitor<G> {
+		public void visit(G shape, double value);
+	}
 
 }
@@ -1,5 +1,7 @@
 package ar;
 
+import java.awt.Color;
+
 import java.io.Serializable;
 
 /**Transfer functions converts an aggregate value into another aggregate value, often a color.
@@ -88,5 +90,34 @@ public interface Transfer<IN,OUT> extends Serializable {
 		public OUT at(int x, int y, Aggregates<? extends IN> aggregates);
 	}
 	
+	/**Item-wise transfer where the value at x/y depends only on the aggregate at x/y.
+	 * 
+	 * The "at" method of a local transfer reads no other position of the aggregates 
+	 * (though it may use x/y and the default value).  Therefore, it can be applied
+	 * to any part of a set of aggregates as soon as that part is complete.
+	 * TileRenderer.render uses this to transfer as aggregates are produced.
+	 * 
+	 * Local transfers are used as given there, they are NOT re-specialized to the new aggregates.
+	 */
+	public static interface Local<IN,OUT> extends ItemWise<IN,OUT> {}
+	
+	/**Local transfer where the value at x/y depends only on the aggregate at x/y (and the default value), not on x/y themselves.
+	 * 
+	 * Positions holding the same aggregate give the same result, so a region known to hold
+	 * only the default value can be transferred once instead of position by position 
+	 * (e.g., the untouched tiles of sparse aggregates, see SparseTransfer).
+	 * Local transfers without this tag are assumed to possibly use x/y.
+	 */
+	public static interface PositionIndependent<IN,OUT> extends Local<IN,OUT> {}
+	
+	/**Item-wise transfer to colors that can also produce the color as a packed ARGB int (see Color.getRGB).
+	 * 
+	 * "atARGB" must give the same color as "at", but without creating a Color object.
+	 * Renderers use it when the result is stored as ARGB ints (e.g., ColorAggregates).
+	 */
+	public static interface ARGBValued<IN> extends ItemWise<IN,Color> {
+		public int atARGB(int x, int y, Aggregates<? extends IN> aggregates);
+	}
+	
 
 }
@@ -0,0 +1,154 @@
+package ar.aggregates;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ar.Aggregates;
+import ar.aggregates.implementations.ConstantAggregates;
+import ar.renderers.AggregateBuffers;
+import ar.renderers.ParallelRenderer;
+import ar.util.Util;
+
+/**Recycles aggregates between renders.
+ *
+ * Released aggregates are kept by the type of their default value and their bounds.
+ * A later request for the same type and bounds gets a kept set back (reset to the requested default value)
+ * instead of a new allocation.  This is intended for interactive displays, where repeated
+ * renders (pan, zoom, transfer changes) need buffers of the same size again and again.
+ *
+ * Only the most recently used MAX_KEYS type/bounds combinations are kept, so zooming through many sizes
+ * does not retain a buffer for each of them.  The memory kept (estimated as in AggregateBuffers.bytesPerBin) 
+ * is also limited; by default to ParallelRenderer.AGGREGATE_MEMORY_BUDGET.
+ *
+ * Only release aggregates that nothing else refers to anymore.
+ * Instances are safe to use from multiple threads.
+ * **/
+public class AggregatePool {
+	/**Default number of aggregates kept for each type/bounds combination.**/
+	public static int DEFAULT_CAPACITY = Runtime.getRuntime().availableProcessors()*2+1;
+
+	/**Number of type/bounds combinations kept.**/
+	public static int MAX_KEYS = 4;
+
+	private final int capacity;
+	private final long budget;
+	private final Map<Key, Deque<Aggregates<?>>> free = new LinkedHashMap<Key, Deque<Aggregates<?>>>(16, .75f, true) {
+		private static final long serialVersionUID = 3096429436582271357L;
+		@Override protected boolean removeEldestEntry(Map.Entry<Key, Deque<Aggregates<?>>> eldest) {
+			if (size() <= MAX_KEYS) {return false;}
+			keptBytes -= eldest.getValue().size()*eldest.getKey().bytes;
+			return true;
+		}
+	};
+	private long reused, made, keptBytes;
+
+	public AggregatePool() {this(DEFAULT_CAPACITY, ParallelRenderer.AGGREGATE_MEMORY_BUDGET);}
+
+	/**@param capacity Maximum number of aggregates kept for each type/bounds combination
+	 * @param budget Maximum memory (in bytes) kept over all combinations
+	 * **/
+	public AggregatePool(int capacity, long budget) {
+		this.capacity = capacity;
+		this.budget = budget;
+	}
+
+	public <A> Aggregates<A> take(Aggregates<?> like, A defVal) {return take(like.lowX(), like.lowY(), like.highX(), like.highY(), defVal);}
+
+	/**Get a set of aggregates with the given bounds where every position holds the default value.
+	 * A released set is reused if one has the same bounds and default value;
+	 * otherwise a new one is made (see AggregateUtils.make).
+	 * **/
+	@SuppressWarnings("unchecked")
+	public <A> Aggregates<A> take(int lowX, int lowY, int highX, int highY, A defVal) {
+		Aggregates<A> aggs = null;
+		if (defVal != null) {
+			synchronized(this) {
+				Key key = new Key(defVal, lowX, lowY, highX, highY);
+				Deque<Aggregates<?>> kept = free.get(key);
+				if (kept != null) {aggs = (Aggregates<A>) kept.poll();}
+				if (aggs != null) {keptBytes -= key.bytes;}
+			}
+		}
+
+		if (aggs == null || !Util.isEqual(aggs.defaultValue(), defVal)) {
+			synchronized(this) {made++;}
+			return AggregateUtils.make(lowX, lowY, highX, highY, defVal);
+		}
+
+		synchronized(this) {reused++;}
+		AggregateUtils.fill(aggs, defVal, lowX, lowY, highX, highY);
+		return aggs;
+	}
+
+	/**Make the aggregates available for reuse.
+	 * The caller must not use them afterwards.
+	 * Constant aggregates, aggregates without a default value and sets beyond the capacity or budget are dropped.
+	 * **/
+	public void release(Aggregates<?> aggs) {
+		if (aggs == null || aggs instanceof ConstantAggregates || aggs.defaultValue() == null) {return;}
+		Key key = new Key(aggs.defaultValue(), aggs.lowX(), aggs.lowY(), aggs.highX(), aggs.highY());
+		synchronized(this) {
+			Deque<Aggregates<?>> kept = free.get(key);
+			if (kept == null) {
+				kept = new ArrayDeque<>();
+				free.put(key, kept);
+			}
+			if (kept.size() < capacity && keptBytes + key.bytes <= budget) {
+				kept.offer(aggs);
+				keptBytes += key.bytes;
+			}
+		}
+	}
+
+	/**Drop all kept aggregates.**/
+	public synchronized void clear() {
+		free.clear();
+		keptBytes = 0;
+	}
+	
+	/**Estimated memory (in bytes) of the aggregates currently kept.**/
+	public synchronized long keptBytes() {return keptBytes;}
+
+	/**Number of aggregates currently kept.**/
+	public synchronized int size() {
+		int size = 0;
+		for (Deque<Aggregates<?>> kept: free.values()) {size += kept.size();}
+		return size;
+	}
+
+	@Override
+	public synchronized String toString() {return String.format("AggregatePool[kept: %d, reused: %d, made: %d]", size(), reused, made);}
+
+	private static final class Key {
+		private final Class<?> type;
+		private final int lowX, lowY, highX, highY;
+		private final long bytes;
+
+		public Key(Object defVal, int lowX, int lowY, int highX, int highY) {
+			this.type = defVal.getClass();
+			this.lowX = lowX;
+			this.lowY = lowY;
+			this.highX = highX;
+			this.highY = highY;
+			this.bytes = ((long) Math.max(0, highX-lowX)) * Math.max(0, highY-lowY) * AggregateBuffers.bytesPerBin(defVal);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key)) {return false;}
+			Key o = (Key) other;
+			return type == o.type && lowX == o.lowX && lowY == o.lowY && highX == o.highX && highY == o.highY;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = type.hashCode();
+			h = 31*h + lowX;
+			h = 31*h + lowY;
+			h = 31*h + highX;
+			return 31*h + highY;
+		}
+	}
+}
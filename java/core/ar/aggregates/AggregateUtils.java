@@ -1,12 +1,17 @@
 package ar.aggregates;
 
 import java.awt.Color;
-import java.awt.Graphics;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
 
 import ar.Aggregates;
+import ar.Transfer;
 import ar.aggregates.implementations.*;
+import ar.aggregates.wrappers.TransferWrapper;
+import ar.rules.CategoricalCounts;
+import ar.util.Util;
 
 /**Utilities for working with aggregates.
  * 
@@ -25,20 +30,83 @@ public class AggregateUtils {
 		return asImage(aggs, bounds(aggs).width, bounds(aggs).height, Color.white);
 	}
 
-	/**From a set of color aggregates, make a new image.**/
+	/**From a set of color aggregates, make a new image.
+	 * ColorAggregates share their pixels with the image (see ColorAggregates.image).
+	 * Otherwise, pixels are written directly into the image's ARGB array; 
+	 * transfer results computed by an ARGB-valued transfer (see TransferWrapper and Transfer.ARGBValued) 
+	 * are computed straight into that array, without creating Color objects.
+	 * Memoized transfer results are copied from their tiles, so only the visible tiles are computed (and kept).
+	 * **/
 	public static BufferedImage asImage(Aggregates<? extends Color> aggs, int width, int height, Color background) {
+		return asImage(aggs, width, height, background, null);
+	}
+	
+	/**From a set of color aggregates, make an image, overwriting the target image if possible.
+	 * The target is used if it is a TYPE_INT_ARGB image of the requested size (and the aggregates
+	 * do not already have an image of their own); otherwise a new image is made.
+	 * This lets repeated renders of the same size alternate between a few images instead of allocating each time.
+	 * 
+	 * @param target Image to reuse; may be null
+	 * @return The image drawn into
+	 * **/
+	@SuppressWarnings("unchecked")
+	public static BufferedImage asImage(Aggregates<? extends Color> aggs, int width, int height, Color background, BufferedImage target) {
 		if (aggs instanceof ColorAggregates) {return ((ColorAggregates) aggs).image();}
+		if (aggs instanceof BlockedColorAggregates) {return ((BlockedColorAggregates) aggs).image();}
+		if (aggs instanceof OffHeapColorAggregates) {return ((OffHeapColorAggregates) aggs).image(0, 0, width, height);}
+		
+		BufferedImage i = (target != null 
+					&& target.getType() == BufferedImage.TYPE_INT_ARGB 
+					&& target.getWidth() == width && target.getHeight() == height)
+				? target : new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		int[] pixels = ((DataBufferInt) i.getRaster().getDataBuffer()).getData();
+		Arrays.fill(pixels, background.getRGB());
 		
-		BufferedImage i = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-		Graphics g = i.getGraphics();
-		g.setColor(background);
-		g.fillRect(0, 0, width, height);
-		g.dispose();
-		for (int x=Math.max(0, aggs.lowX()); x<Math.min(width, aggs.highX()); x++) {
-			for (int y=Math.max(0, aggs.lowY()); y<Math.min(height, aggs.highY()); y++) {
-				Color c = aggs.get(x, y);
-				if (c != null) {i.setRGB(x, y, c.getRGB());}			
-			}			
+		int lowX = Math.max(0, aggs.lowX());
+		int lowY = Math.max(0, aggs.lowY());
+		int highX = Math.min(width, aggs.highX());
+		int highY = Math.min(height, aggs.highY());
+		if (aggs instanceof TransferWrapper.Memoized) {
+			//Copy from the memoized tiles (computing any that are missing), so they are kept for later reads
+			TransferWrapper.Memoized<?,Color> memo = (TransferWrapper.Memoized<?,Color>) aggs;
+			int y=lowY;
+			while (y<highY) {
+				Aggregates<Color> tile = memo.tile(lowX, y);
+				int tileHighY = Math.min(highY, tile.highY());
+				int x=lowX;
+				while (x<highX) {
+					tile = memo.tile(x, y);
+					int tileHighX = Math.min(highX, tile.highX());
+					for (int ty=y; ty<tileHighY; ty++) {
+						for (int tx=x; tx<tileHighX; tx++) {
+							if (tile instanceof ColorAggregates) {
+								pixels[ty*width+tx] = ((ColorAggregates) tile).getInt(tx, ty);
+							} else {
+								Color c = tile.get(tx, ty);
+								if (c != null) {pixels[ty*width+tx] = c.getRGB();}
+							}
+						}
+					}
+					x = tileHighX;
+				}
+				y = tileHighY;
+			}
+		} else if (aggs instanceof TransferWrapper && ((TransferWrapper<?,?>) aggs).transfer() instanceof Transfer.ARGBValued) {
+			TransferWrapper<Object,Color> wrapper = (TransferWrapper<Object,Color>) aggs;
+			Transfer.ARGBValued<Object> argb = (Transfer.ARGBValued<Object>) wrapper.transfer();
+			Aggregates<?> base = wrapper.base();
+			for (int y=lowY; y<highY; y++) {
+				for (int x=lowX; x<highX; x++) {
+					pixels[y*width+x] = argb.atARGB(x, y, base);
+				}
+			}
+		} else {
+			for (int y=lowY; y<highY; y++) {
+				for (int x=lowX; x<highX; x++) {
+					Color c = aggs.get(x, y);
+					if (c != null) {pixels[y*width+x] = c.getRGB();}
+				}
+			}
 		}
 		return i;
 	}
@@ -48,11 +116,7 @@ public class AggregateUtils {
 	 * **/
 	public static <A> Aggregates<A> copy(Aggregates<? extends A> source, A defVal) {
 		Aggregates<A> target = make(source, defVal);
-		for (int x=source.lowX(); x<source.highX(); x++) {
-			for (int y=source.lowY(); y<source.highY(); y++) {
-				target.set(x, y, source.get(x,y));
-			}
-		}
+		copyInto(source, target);
 		return target;
 	}
 
@@ -60,23 +124,316 @@ public class AggregateUtils {
 
 	public static <A> Aggregates<A> make(int width, int height, A defVal) {return make(0,0,width,height,defVal);}
 
-	/**Create a set of aggregates for the given type.*/
-	@SuppressWarnings("unchecked")
+	/**Number of bins at which int, double and color aggregates are stored off-heap instead of in a single array.
+	 * Must be at most Integer.MAX_VALUE (the largest array).**/
+	public static long OFF_HEAP_THRESHOLD = 1L << 28;
+	
+	/**Should int, double and color aggregates be stored in square blocks instead of row-by-row?
+	 * Blocked aggregates (see BlockedIntAggregates and friends) keep 2D neighborhoods close together in memory.**/
+	public static boolean BLOCKED_LAYOUT = false;
+	
+	/**Create a set of aggregates for the given type.
+	 * Categorical counts that list their known categories are stored densely (see CategoricalAggregates).
+	 * Booleans are stored as bits and enums as bytes (see BooleanAggregates and EnumAggregates).
+	 * Int, double and color aggregates with more than OFF_HEAP_THRESHOLD bins are stored off-heap 
+	 * (see OffHeapIntAggregates and friends).  Otherwise, they are stored in blocks if BLOCKED_LAYOUT is set.*/
+	@SuppressWarnings({"unchecked", "rawtypes"})
 	public static <A> Aggregates<A> make(int lowX, int lowY, int highX, int highY, A defVal) {
+		long size = size(lowX,lowY,highX,highY);
+		boolean large = size > Math.min(Integer.MAX_VALUE, OFF_HEAP_THRESHOLD);
+		
 		if (defVal != null && defVal instanceof Color) {
+			if (large) {return (Aggregates<A>) new OffHeapColorAggregates(lowX, lowY, highX, highY, (Color) defVal);}
+			if (BLOCKED_LAYOUT) {return (Aggregates<A>) new BlockedColorAggregates(lowX, lowY, highX, highY, (Color) defVal);}
 			return (Aggregates<A>) new ColorAggregates(lowX, lowY, highX, highY, (Color) defVal);
 		} else if (defVal instanceof Integer) {
+			if (large) {return (Aggregates<A>) new OffHeapIntAggregates(lowX, lowY, highX, highY, (Integer) defVal);}
+			if (BLOCKED_LAYOUT) {return (Aggregates<A>) new BlockedIntAggregates(lowX, lowY, highX, highY, (Integer) defVal);}
 			return (Aggregates<A>) new IntAggregates(lowX, lowY, highX, highY, (Integer) defVal);
 		} else if (defVal instanceof Double) {
+			if (large) {return (Aggregates<A>) new OffHeapDoubleAggregates(lowX, lowY, highX, highY, (Double) defVal);}
+			if (BLOCKED_LAYOUT) {return (Aggregates<A>) new BlockedDoubleAggregates(lowX, lowY, highX, highY, (Double) defVal);}
 			return (Aggregates<A>) new DoubleAggregates(lowX, lowY, highX, highY, (Double) defVal);
+		} else if (size > Integer.MAX_VALUE){
+			return new Ref2DAggregates<>(lowX, lowY, highX, highY, defVal);
+		} else if (defVal instanceof CategoricalCounts && ((CategoricalCounts<?>) defVal).categories() != null) {
+			return new CategoricalAggregates(lowX, lowY, highX, highY, (CategoricalCounts) defVal);
 		} else if (defVal instanceof Boolean) {
 			return (Aggregates<A>) new BooleanAggregates(lowX, lowY, highX, highY, (Boolean) defVal);
-		} else if (size(lowX,lowY,highX,highY) > Integer.MAX_VALUE){
-			return new Ref2DAggregates<>(lowX, lowY, highX, highY, defVal);
+		} else if (defVal instanceof Enum && EnumAggregates.fits((Enum) defVal)) {
+			return new EnumAggregates(lowX, lowY, highX, highY, (Enum) defVal);
 		} else {
 			return new RefFlatAggregates<>(lowX, lowY, highX, highY, defVal);
 		}
 	}
+	
+	/**Number of bins for an array-backed aggregate set.
+	 * @throws IllegalArgumentException If the bounds have too many bins for a single array (see AggregateUtils.make) 
+	 * **/
+	public static int arraySize(int lowX, int lowY, int highX, int highY) {
+		long size = size(lowX, lowY, highX, highY);
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(String.format("%d bins is too many for an array; use AggregateUtils.make to get off-heap storage.", size));
+		}
+		return (int) Math.max(0, size);
+	}
+
+	/**DESTRUCTIVELY copy the values of source into the same positions of target.
+	 * Only positions inside of both sets are copied.  
+	 * Rows of int, double or dense categorical backed sets are copied as array blocks.
+	 * **/
+	public static <A> void copyInto(Aggregates<? extends A> source, Aggregates<A> target) {
+		copyInto(source, target, source.lowX(), source.lowY(), source.highX(), source.highY());
+	}
+	
+	/**DESTRUCTIVELY copy the values of source in the given region into the same positions of target.
+	 * Only positions inside of the region and both sets are copied.
+	 * Rows of int, double or dense categorical backed sets are copied as array blocks.
+	 * Other sets are copied a row at a time through their row access (see Aggregates.Rows, IntRows and DoubleRows) where available. 
+	 * **/
+	@SuppressWarnings("unchecked")
+	public static <A> void copyInto(Aggregates<? extends A> source, Aggregates<A> target, int lowX, int lowY, int highX, int highY) {
+		lowX = Math.max(lowX, Math.max(source.lowX(), target.lowX()));
+		lowY = Math.max(lowY, Math.max(source.lowY(), target.lowY()));
+		highX = Math.min(highX, Math.min(source.highX(), target.highX()));
+		highY = Math.min(highY, Math.min(source.highY(), target.highY()));
+		if (lowX >= highX || lowY >= highY) {return;}
+		int width = highX-lowX;
+		
+		if (source instanceof IntAggregates && target instanceof IntAggregates) {
+			IntAggregates s = (IntAggregates) source, t = (IntAggregates) target;
+			for (int y=lowY; y<highY; y++) {
+				System.arraycopy(s.values(), idx(lowX, y, s.lowX(), s.lowY(), s.highX(), s.highY()), 
+						t.values(), idx(lowX, y, t.lowX(), t.lowY(), t.highX(), t.highY()), highX-lowX);
+			}
+		} else if (source instanceof DoubleAggregates && target instanceof DoubleAggregates) {
+			DoubleAggregates s = (DoubleAggregates) source, t = (DoubleAggregates) target;
+			for (int y=lowY; y<highY; y++) {
+				System.arraycopy(s.values(), idx(lowX, y, s.lowX(), s.lowY(), s.highX(), s.highY()), 
+						t.values(), idx(lowX, y, t.lowX(), t.lowY(), t.highX(), t.highY()), highX-lowX);
+			}
+		} else if (source instanceof CategoricalAggregates && target instanceof CategoricalAggregates
+				&& ((CategoricalAggregates<?>) source).categories().equals(((CategoricalAggregates<?>) target).categories())) {
+			CategoricalAggregates<?> s = (CategoricalAggregates<?>) source, t = (CategoricalAggregates<?>) target;
+			for (int c=0, categories=s.categories().size(); c<categories; c++) {
+				for (int y=lowY; y<highY; y++) {
+					System.arraycopy(s.plane(c), idx(lowX, y, s.lowX(), s.lowY(), s.highX(), s.highY()), 
+							t.plane(c), idx(lowX, y, t.lowX(), t.lowY(), t.highX(), t.highY()), highX-lowX);
+				}
+			}
+		} else if (source instanceof ColorAggregates && target instanceof ColorAggregates) {
+			int[] row = new int[width];
+			for (int y=lowY; y<highY; y++) {
+				((ColorAggregates) source).getInts(lowX, y, row, 0, width);
+				((ColorAggregates) target).setInts(lowX, y, row, 0, width);
+			}
+		} else if (source instanceof Aggregates.IntValued && target instanceof Aggregates.IntValued) {
+			int[] row = new int[width];
+			for (int y=lowY; y<highY; y++) {
+				getInts((Aggregates.IntValued) source, lowX, y, row, 0, width);
+				setInts((Aggregates.IntValued) target, lowX, y, row, 0, width);
+			}
+		} else if (source instanceof Aggregates.DoubleValued && target instanceof Aggregates.DoubleValued) {
+			double[] row = new double[width];
+			for (int y=lowY; y<highY; y++) {
+				getDoubles((Aggregates.DoubleValued) source, lowX, y, row, 0, width);
+				setDoubles((Aggregates.DoubleValued) target, lowX, y, row, 0, width);
+			}
+		} else {
+			A[] row = (A[]) new Object[width];
+			for (int y=lowY; y<highY; y++) {
+				getRow(source, lowX, y, row, 0, width);
+				setRow(target, lowX, y, row, 0, width);
+			}
+		}
+	}
+
+	/**DESTRUCTIVELY set all positions of the given region (clipped to the aggregates' bounds) to the value.
+	 * Int and double backed sets are filled a row at a time, as are sets with row access (see Aggregates.Rows).
+	 * Resetting sparse aggregates to their default value releases the tiles in the region.
+	 * **/
+	@SuppressWarnings("unchecked")
+	public static <A> void fill(Aggregates<A> target, A value, int lowX, int lowY, int highX, int highY) {
+		lowX = Math.max(lowX, target.lowX());
+		lowY = Math.max(lowY, target.lowY());
+		highX = Math.min(highX, target.highX());
+		highY = Math.min(highY, target.highY());
+		if (lowX >= highX || lowY >= highY) {return;}
+
+		if (target instanceof SparseAggregates && Util.isEqual(value, target.defaultValue())) {
+			((SparseAggregates<A>) target).clear(lowX, lowY, highX, highY);
+		} else if (target instanceof IntAggregates && value instanceof Integer) {
+			IntAggregates t = (IntAggregates) target;
+			for (int y=lowY; y<highY; y++) {
+				int start = idx(lowX, y, t.lowX(), t.lowY(), t.highX(), t.highY());
+				Arrays.fill(t.values(), start, start+(highX-lowX), (Integer) value);
+			}
+		} else if (target instanceof DoubleAggregates && value instanceof Double) {
+			DoubleAggregates t = (DoubleAggregates) target;
+			for (int y=lowY; y<highY; y++) {
+				int start = idx(lowX, y, t.lowX(), t.lowY(), t.highX(), t.highY());
+				Arrays.fill(t.values(), start, start+(highX-lowX), (Double) value);
+			}
+		} else if (target instanceof CategoricalAggregates && value instanceof CategoricalCounts && ((CategoricalCounts<?>) value).size() == 0) {
+			CategoricalAggregates<?> t = (CategoricalAggregates<?>) target;
+			for (int c=0, categories=t.categories().size(); c<categories; c++) {
+				for (int y=lowY; y<highY; y++) {
+					int start = idx(lowX, y, t.lowX(), t.lowY(), t.highX(), t.highY());
+					Arrays.fill(t.plane(c), start, start+(highX-lowX), 0);
+				}
+			}
+		} else if (target instanceof ColorAggregates && value instanceof Color) {
+			int[] row = new int[highX-lowX];
+			Arrays.fill(row, ((Color) value).getRGB());
+			for (int y=lowY; y<highY; y++) {((ColorAggregates) target).setInts(lowX, y, row, 0, row.length);}
+		} else if (target instanceof Aggregates.IntRows && value instanceof Integer) {
+			int[] row = new int[highX-lowX];
+			Arrays.fill(row, (Integer) value);
+			for (int y=lowY; y<highY; y++) {((Aggregates.IntRows) target).setInts(lowX, y, row, 0, row.length);}
+		} else if (target instanceof Aggregates.DoubleRows && value instanceof Double) {
+			double[] row = new double[highX-lowX];
+			Arrays.fill(row, (Double) value);
+			for (int y=lowY; y<highY; y++) {((Aggregates.DoubleRows) target).setDoubles(lowX, y, row, 0, row.length);}
+		} else if (target instanceof Aggregates.Rows) {
+			A[] row = (A[]) new Object[highX-lowX];
+			Arrays.fill(row, value);
+			for (int y=lowY; y<highY; y++) {((Aggregates.Rows<A>) target).setRow(lowX, y, row, 0, row.length);}
+		} else {
+			for (int x=lowX; x<highX; x++) {
+				for (int y=lowY; y<highY; y++) {
+					target.set(x, y, value);
+				}
+			}
+		}
+	}
+	
+	/**Copy the values at x...x+length-1 on row y into dest, starting at offset.
+	 * Uses the aggregates' row access if they have it (see Aggregates.Rows, IntRows and DoubleRows, 
+	 * the latter two through a primitive scratch row); otherwise reads one position at a time.
+	 * **/
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public static <A> void getRow(Aggregates<? extends A> aggs, int x, int y, A[] dest, int offset, int length) {
+		if (aggs instanceof Aggregates.Rows) {
+			((Aggregates.Rows) aggs).getRow(x, y, dest, offset, length);
+		} else if (aggs instanceof Aggregates.IntRows) {
+			int[] row = new int[length];
+			((Aggregates.IntRows) aggs).getInts(x, y, row, 0, length);
+			Object[] boxed = dest;
+			for (int i=0; i<length; i++) {boxed[offset+i] = row[i];}
+		} else if (aggs instanceof Aggregates.DoubleRows) {
+			double[] row = new double[length];
+			((Aggregates.DoubleRows) aggs).getDoubles(x, y, row, 0, length);
+			Object[] boxed = dest;
+			for (int i=0; i<length; i++) {boxed[offset+i] = row[i];}
+		} else {
+			for (int i=0; i<length; i++) {dest[offset+i] = aggs.get(x+i, y);}
+		}
+	}
+	
+	/**DESTRUCTIVELY set the values at x...x+length-1 on row y from src, starting at offset.
+	 * Uses the aggregates' row access if they have it (see Aggregates.Rows, IntRows and DoubleRows, 
+	 * the latter two through a primitive scratch row); otherwise writes one position at a time.
+	 * **/
+	public static <A> void setRow(Aggregates<A> aggs, int x, int y, A[] src, int offset, int length) {
+		if (aggs instanceof Aggregates.Rows) {
+			((Aggregates.Rows<A>) aggs).setRow(x, y, src, offset, length);
+		} else if (aggs instanceof Aggregates.IntRows) {
+			int[] row = new int[length];
+			for (int i=0; i<length; i++) {row[i] = (Integer) src[offset+i];}
+			((Aggregates.IntRows) aggs).setInts(x, y, row, 0, length);
+		} else if (aggs instanceof Aggregates.DoubleRows) {
+			double[] row = new double[length];
+			for (int i=0; i<length; i++) {row[i] = (Double) src[offset+i];}
+			((Aggregates.DoubleRows) aggs).setDoubles(x, y, row, 0, length);
+		} else {
+			for (int i=0; i<length; i++) {aggs.set(x+i, y, src[offset+i]);}
+		}
+	}
+	
+	/**Unboxed getRow for int-valued aggregates (see Aggregates.IntRows).**/
+	public static void getInts(Aggregates.IntValued aggs, int x, int y, int[] dest, int offset, int length) {
+		if (aggs instanceof Aggregates.IntRows) {
+			((Aggregates.IntRows) aggs).getInts(x, y, dest, offset, length);
+		} else {
+			for (int i=0; i<length; i++) {dest[offset+i] = aggs.getInt(x+i, y);}
+		}
+	}
+
+	/**Unboxed setRow for int-valued aggregates (see Aggregates.IntRows).**/
+	public static void setInts(Aggregates.IntValued aggs, int x, int y, int[] src, int offset, int length) {
+		if (aggs instanceof Aggregates.IntRows) {
+			((Aggregates.IntRows) aggs).setInts(x, y, src, offset, length);
+		} else {
+			for (int i=0; i<length; i++) {aggs.setInt(x+i, y, src[offset+i]);}
+		}
+	}
+	
+	/**Unboxed getRow for double-valued aggregates (see Aggregates.DoubleRows).**/
+	public static void getDoubles(Aggregates.DoubleValued aggs, int x, int y, double[] dest, int offset, int length) {
+		if (aggs instanceof Aggregates.DoubleRows) {
+			((Aggregates.DoubleRows) aggs).getDoubles(x, y, dest, offset, length);
+		} else {
+			for (int i=0; i<length; i++) {dest[offset+i] = aggs.getDouble(x+i, y);}
+		}
+	}
+
+	/**Unboxed setRow for double-valued aggregates (see Aggregates.DoubleRows).**/
+	public static void setDoubles(Aggregates.DoubleValued aggs, int x, int y, double[] src, int offset, int length) {
+		if (aggs instanceof Aggregates.DoubleRows) {
+			((Aggregates.DoubleRows) aggs).setDoubles(x, y, src, offset, length);
+		} else {
+			for (int i=0; i<length; i++) {aggs.setDouble(x+i, y, src[offset+i]);}
+		}
+	}
+	
+	/**Read the region from lowX/lowY (inclusive) to highX/highY (exclusive) row-by-row into dest.
+	 * @param dest Array to fill
+	 * @return dest
+	 * @throws IllegalArgumentException If dest is smaller than the region
+	 * **/
+	public static <A> A[] getRegion(Aggregates<? extends A> aggs, int lowX, int lowY, int highX, int highY, A[] dest) {
+		int width = Math.max(0, highX-lowX);
+		int size = arraySize(lowX, lowY, highX, highY);
+		if (dest.length < size) {throw new IllegalArgumentException(String.format("Region of %d values does not fit in an array of %d.", size, dest.length));}
+		for (int y=lowY; y<highY; y++) {getRow(aggs, lowX, y, dest, (y-lowY)*width, width);}
+		return dest;
+	}
+
+	/**DESTRUCTIVELY set the region from lowX/lowY (inclusive) to highX/highY (exclusive) from src, stored row-by-row.**/
+	public static <A> void setRegion(Aggregates<A> aggs, int lowX, int lowY, int highX, int highY, A[] src) {
+		int width = Math.max(0, highX-lowX);
+		for (int y=lowY; y<highY; y++) {setRow(aggs, lowX, y, src, (y-lowY)*width, width);}
+	}
+
+	/**Unboxed getRegion for int-valued aggregates.**/
+	public static int[] getIntRegion(Aggregates.IntValued aggs, int lowX, int lowY, int highX, int highY, int[] dest) {
+		int width = Math.max(0, highX-lowX);
+		int size = arraySize(lowX, lowY, highX, highY);
+		if (dest == null || dest.length < size) {dest = new int[size];}
+		for (int y=lowY; y<highY; y++) {getInts(aggs, lowX, y, dest, (y-lowY)*width, width);}
+		return dest;
+	}
+
+	/**Unboxed setRegion for int-valued aggregates.**/
+	public static void setIntRegion(Aggregates.IntValued aggs, int lowX, int lowY, int highX, int highY, int[] src) {
+		int width = Math.max(0, highX-lowX);
+		for (int y=lowY; y<highY; y++) {setInts(aggs, lowX, y, src, (y-lowY)*width, width);}
+	}
+
+	/**Unboxed getRegion for double-valued aggregates.**/
+	public static double[] getDoubleRegion(Aggregates.DoubleValued aggs, int lowX, int lowY, int highX, int highY, double[] dest) {
+		int width = Math.max(0, highX-lowX);
+		int size = arraySize(lowX, lowY, highX, highY);
+		if (dest == null || dest.length < size) {dest = new double[size];}
+		for (int y=lowY; y<highY; y++) {getDoubles(aggs, lowX, y, dest, (y-lowY)*width, width);}
+		return dest;
+	}
+
+	/**Unboxed setRegion for double-valued aggregates.**/
+	public static void setDoubleRegion(Aggregates.DoubleValued aggs, int lowX, int lowY, int highX, int highY, double[] src) {
+		int width = Math.max(0, highX-lowX);
+		for (int y=lowY; y<highY; y++) {setDoubles(aggs, lowX, y, src, (y-lowY)*width, width);}
+	}
 
 	/**Grid-style printing of the aggregates.  
 	 * Useful for debugging with small aggregate sets...**/
@@ -0,0 +1,179 @@
+package ar.aggregates;
+
+import ar.Aggregates;
+import ar.Aggregator;
+import ar.aggregates.implementations.AtomicDoubleAggregates;
+import ar.aggregates.implementations.AtomicIntAggregates;
+import ar.aggregates.wrappers.AccumulatingWrapper;
+import ar.rules.CategoricalCounts;
+import ar.rules.Categories;
+
+/**Applies an aggregator to a set of aggregates one position at a time.
+ *
+ * The update path is selected once (by "make") instead of on each pixel.
+ * If both the aggregates and the aggregator are int-valued (or both are double-valued),
+ * values are read, combined and written back without boxing.
+ * Dense categorical aggregates are counted in place by CountCategories.
+ * Accumulating wrappers are updated in place (see Aggregator.Accumulating).
+ * Atomic aggregates are updated with compare-and-set, so their updaters may be
+ * used from multiple threads at once.
+ * Otherwise, the standard get/combine/set path is used.
+ *
+ * @param <I> Type of the glyph values
+ * @param <A> Type of the aggregates
+ */
+public abstract class Updater<I,A> {
+	/**DESTRUCTIVELY updates the target at x/y with the value passed.**/
+	public abstract void update(int x, int y, I v);
+
+	/**Get the most direct updater for the given target/aggregator pair.**/
+	@SuppressWarnings({"unchecked","rawtypes"})
+	public static <I,A> Updater<I,A> make(Aggregates<A> target, Aggregator<I,A> op) {
+		if (target instanceof AccumulatingWrapper) {
+			return new Accumulating<>((AccumulatingWrapper) target);
+		} else if (target instanceof Aggregates.CategoryValued && op instanceof Categories.CountCategories) {
+			return (Updater<I,A>) new CategoryCount((Aggregates.CategoryValued) target);
+		} else if (target instanceof AtomicIntAggregates && op instanceof Aggregator.IntValued) {
+			return (Updater<I,A>) new AtomicInt((AtomicIntAggregates) target, (Aggregator.IntValued) op);
+		} else if (target instanceof AtomicDoubleAggregates && op instanceof Aggregator.DoubleValued) {
+			return (Updater<I,A>) new AtomicDouble((AtomicDoubleAggregates) target, (Aggregator.DoubleValued) op);
+		} else if (target instanceof Aggregates.IntValued && op instanceof Aggregator.IntValued) {
+			return (Updater<I,A>) new IntValued((Aggregates.IntValued) target, (Aggregator.IntValued) op);
+		} else if (target instanceof Aggregates.DoubleValued && op instanceof Aggregator.DoubleValued) {
+			return (Updater<I,A>) new DoubleValued((Aggregates.DoubleValued) target, (Aggregator.DoubleValued) op);
+		} else {
+			return new Boxed<>(target, op);
+		}
+	}
+
+	/**Get/combine/set through the general interfaces.**/
+	public static final class Boxed<I,A> extends Updater<I,A> {
+		private final Aggregates<A> target;
+		private final Aggregator<I,A> op;
+
+		public Boxed(Aggregates<A> target, Aggregator<I,A> op) {
+			this.target = target;
+			this.op = op;
+		}
+
+		@Override
+		public void update(int x, int y, I v) {
+			A existing = target.get(x,y);
+			A update = op.combine(existing, v);
+			target.set(x, y, update);
+		}
+	}
+
+	/**Get/combine/set on unboxed ints.**/
+	public static final class IntValued<I> extends Updater<I,Integer> {
+		private final Aggregates.IntValued target;
+		private final Aggregator.IntValued<I> op;
+
+		public IntValued(Aggregates.IntValued target, Aggregator.IntValued<I> op) {
+			this.target = target;
+			this.op = op;
+		}
+
+		@Override
+		public void update(int x, int y, I v) {
+			target.setInt(x, y, op.combineInt(target.getInt(x, y), v));
+		}
+	}
+
+	/**Get/combine/set on unboxed doubles.**/
+	public static final class DoubleValued<I> extends Updater<I,Double> {
+		private final Aggregates.DoubleValued target;
+		private final Aggregator.DoubleValued<I> op;
+
+		public DoubleValued(Aggregates.DoubleValued target, Aggregator.DoubleValued<I> op) {
+			this.target = target;
+			this.op = op;
+		}
+
+		@Override
+		public void update(int x, int y, I v) {
+			target.setDouble(x, y, op.combineDouble(target.getDouble(x, y), v));
+		}
+	}
+
+	/**Lock-free update of a shared int-valued target.**/
+	public static final class AtomicInt<I> extends Updater<I,Integer> {
+		private final AtomicIntAggregates target;
+		private final Aggregator.IntValued<I> op;
+
+		public AtomicInt(AtomicIntAggregates target, Aggregator.IntValued<I> op) {
+			this.target = target;
+			this.op = op;
+		}
+
+		@Override public void update(int x, int y, I v) {target.combine(x, y, v, op);}
+	}
+
+	/**Lock-free update of a shared double-valued target.**/
+	public static final class AtomicDouble<I> extends Updater<I,Double> {
+		private final AtomicDoubleAggregates target;
+		private final Aggregator.DoubleValued<I> op;
+
+		public AtomicDouble(AtomicDoubleAggregates target, Aggregator.DoubleValued<I> op) {
+			this.target = target;
+			this.op = op;
+		}
+
+		@Override public void update(int x, int y, I v) {target.combine(x, y, v, op);}
+	}
+
+	/**In-place update of a bin's accumulator.**/
+	public static final class Accumulating<I,A> extends Updater<I,A> {
+		private final AccumulatingWrapper<I,A,?> target;
+
+		public Accumulating(AccumulatingWrapper<I,A,?> target) {this.target = target;}
+
+		@Override public void update(int x, int y, I v) {target.accumulate(x, y, v);}
+	}
+
+	/**Applies unboxed numeric updates (e.g., from Glyphset.NumericScannable) 
+	 * with aggregators that take them (see Aggregator.IntUpdates and DoubleUpdates).
+	 * Atomic aggregates are updated with compare-and-set, as in Updater.
+	 * **/
+	public static abstract class Numeric {
+		/**DESTRUCTIVELY updates the target at x/y with the value passed.**/
+		public abstract void update(int x, int y, double v);
+		
+		/**Get a numeric updater for the given target/aggregator pair, or null if the pair cannot take unboxed updates.**/
+		public static Numeric make(Aggregates<?> target, Aggregator<?,?> op) {
+			if (target instanceof AtomicIntAggregates && op instanceof Aggregator.IntUpdates) {
+				final AtomicIntAggregates t = (AtomicIntAggregates) target;
+				final Aggregator.IntUpdates<?> o = (Aggregator.IntUpdates<?>) op;
+				return new Numeric() {public void update(int x, int y, double v) {t.combineNumber(x, y, v, o);}};
+			} else if (target instanceof AtomicDoubleAggregates && op instanceof Aggregator.DoubleUpdates) {
+				final AtomicDoubleAggregates t = (AtomicDoubleAggregates) target;
+				final Aggregator.DoubleUpdates<?> o = (Aggregator.DoubleUpdates<?>) op;
+				return new Numeric() {public void update(int x, int y, double v) {t.combineNumber(x, y, v, o);}};
+			} else if (target instanceof Aggregates.IntValued && op instanceof Aggregator.IntUpdates) {
+				final Aggregates.IntValued t = (Aggregates.IntValued) target;
+				final Aggregator.IntUpdates<?> o = (Aggregator.IntUpdates<?>) op;
+				return new Numeric() {public void update(int x, int y, double v) {t.setInt(x, y, o.combineNumber(t.getInt(x, y), v));}};
+			} else if (target instanceof Aggregates.DoubleValued && op instanceof Aggregator.DoubleUpdates) {
+				final Aggregates.DoubleValued t = (Aggregates.DoubleValued) target;
+				final Aggregator.DoubleUpdates<?> o = (Aggregator.DoubleUpdates<?>) op;
+				return new Numeric() {public void update(int x, int y, double v) {t.setDouble(x, y, o.combineNumber(t.getDouble(x, y), v));}};
+			}
+			return null;
+		}
+	}
+
+	/**Increment a category's count in dense categorical aggregates.**/
+	public static final class CategoryCount<T> extends Updater<T, CategoricalCounts<T>> {
+		private final Aggregates.CategoryValued<T> target;
+
+		public CategoryCount(Aggregates.CategoryValued<T> target) {this.target = target;}
+
+		/**@throws IllegalArgumentException If the category is not known to the target.**/
+		@Override 
+		public void update(int x, int y, T v) {
+			int category = target.index(v);
+			if (category < 0) {throw new IllegalArgumentException("Category not known to aggregates: " + v);}
+			target.add(x, y, category, 1);
+		}
+	}
+}
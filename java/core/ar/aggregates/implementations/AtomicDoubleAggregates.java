@@ -0,0 +1,86 @@
+package ar.aggregates.implementations;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import ar.Aggregates;
+import ar.Aggregator;
+import ar.aggregates.AggregateUtils;
+import ar.aggregates.BoundsInversionException;
+import ar.aggregates.Iterator2D;
+
+/**Set of double aggregates that may be safely updated from many threads at once.
+ * 
+ * Values are stored as their raw long bits so compare-and-set can be used.
+ * (See AtomicIntAggregates for details.)
+ * **/
+public class AtomicDoubleAggregates implements Aggregates.DoubleValued {
+	private static final long serialVersionUID = 4052404410564416528L;
+	private final AtomicLongArray values;
+	private final double defVal;
+	private final int lowX, lowY, highX, highY;
+
+	public AtomicDoubleAggregates(int lowX,int lowY, int highX, int highY, double defVal) {
+		if (lowX > highX) {throw new BoundsInversionException(lowX, highX, "X");}
+		if (lowY > highY) {throw new BoundsInversionException(lowY, highY, "Y");}
+
+		this.defVal = defVal;
+		this.lowX = lowX;
+		this.lowY = lowY;
+		this.highX = highX;
+		this.highY = highY;
+		
+		int size = AggregateUtils.arraySize(lowX, lowY, highX, highY);
+		this.values = new AtomicLongArray(size);
+		long bits = Double.doubleToRawLongBits(defVal);
+		if (bits != 0) {
+			for (int i=0; i<size; i++) {values.lazySet(i, bits);}
+		}
+	}
+	
+	/**Atomically combine the passed value into the value at x/y.
+	 * Requests outside of the bounds are ignored.
+	 * **/
+	public <I> void combine(int x, int y, I update, Aggregator.DoubleValued<I> op) {
+		if (x<lowX || x >=highX || y<lowY || y>=highY) {return;}
+		int idx = AggregateUtils.idx(x,y, lowX, lowY, highX, highY);
+		long current;
+		double next;
+		do {
+			current = values.get(idx);
+			next = op.combineDouble(Double.longBitsToDouble(current), update);
+		} while (!values.compareAndSet(idx, current, Double.doubleToRawLongBits(next)));
+	}
+
+	/**Atomically combine an unboxed numeric update into the value at x/y (see combine).**/
+	public void combineNumber(int x, int y, double update, Aggregator.DoubleUpdates<?> op) {
+		if (x<lowX || x >=highX || y<lowY || y>=highY) {return;}
+		int idx = AggregateUtils.idx(x,y, lowX, lowY, highX, highY);
+		long current;
+		double next;
+		do {
+			current = values.get(idx);
+			next = op.combineNumber(Double.longBitsToDouble(current), update);
+		} while (!values.compareAndSet(idx, current, Double.doubleToRawLongBits(next)));
+	}
+
+	public double getDouble(int x, int y) {
+		if (x<lowX || x >=highX || y<lowY || y>=highY) {return defVal;}
+		return Double.longBitsToDouble(values.get(AggregateUtils.idx(x,y, lowX, lowY, highX, highY)));
+	}
+
+	public void setDouble(int x, int y, double val) {
+		if (x<lowX || x >=highX || y<lowY || y>=highY) {return;}
+		values.set(AggregateUtils.idx(x,y, lowX, lowY, highX, highY), Double.doubleToRawLongBits(val));
+	}
+
+	public Double get(int x, int y) {return getDouble(x,y);}
+	public void set(int x, int y, Double val) {setDouble(x,y,val);}
+	public Iterator<Double> iterator() {return new Iterator2D<>(this);}
+	public Double defaultValue() {return defVal;}
+	public double defaultDouble() {return defVal;}
+	public int lowX() {return lowX;}
+	public int lowY() {return lowY;}
+	public int highX() {return highX;}
+	public int highY() {return highY;}
+}
@@ -0,0 +1,80 @@
+package ar.aggregates.implementations;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import ar.Aggregates;
+import ar.Aggregator;
+import ar.aggregates.AggregateUtils;
+import ar.aggregates.BoundsInversionException;
+import ar.aggregates.Iterator2D;
+
+/**Set of int aggregates that may be safely updated from many threads at once.
+ * 
+ * Updates made through "combine" are lock-free compare-and-set loops,
+ * so a single instance can be shared by all aggregation tasks
+ * (instead of giving each task its own set and rolling them up).
+ * **/
+public class AtomicIntAggregates implements Aggregates.IntValued {
+	private static final long serialVersionUID = -2372466713862370453L;
+	private final AtomicIntegerArray values;
+	private final int defVal;
+	private final int lowX, lowY, highX, highY;
+
+	public AtomicIntAggregates(int lowX,int lowY, int highX, int highY, int defVal) {
+		if (lowX > highX) {throw new BoundsInversionException(lowX, highX, "X");}
+		if (lowY > highY) {throw new BoundsInversionException(lowY, highY, "Y");}
+
+		this.defVal = defVal;
+		this.lowX = lowX;
+		this.lowY = lowY;
+		this.highX = highX;
+		this.highY = highY;
+		
+		int size = AggregateUtils.arraySize(lowX, lowY, highX, highY);
+		this.values = new AtomicIntegerArray(size);
+		if (defVal != 0) {
+			for (int i=0; i<size; i++) {values.lazySet(i, defVal);}
+		}
+	}
+	
+	/**Atomically combine the passed value into the value at x/y.
+	 * Requests outside of the bounds are ignored.
+	 * **/
+	public <I> void combine(int x, int y, I update, Aggregator.IntValued<I> op) {
+		if (x<lowX || x >=highX || y<lowY || y>=highY) {return;}
+		int idx = AggregateUtils.idx(x,y, lowX, lowY, highX, highY);
+		int current;
+		do {current = values.get(idx);}
+		while (!values.compareAndSet(idx, current, op.combineInt(current, update)));
+	}
+
+	/**Atomically combine an unboxed numeric update into the value at x/y (see combine).**/
+	public void combineNumber(int x, int y, double update, Aggregator.IntUpdates<?> op) {
+		if (x<lowX || x >=highX || y<lowY || y>=highY) {return;}
+		int idx = AggregateUtils.idx(x,y, lowX, lowY, highX, highY);
+		int current;
+		do {current = values.get(idx);}
+		while (!values.compareAndSet(idx, current, op.combineNumber(current, update)));
+	}
+
+	public int getInt(int x, int y) {
+		if (x<lowX || x >=highX || y<lowY || y>=highY) {return defVal;}
+		return values.get(AggregateUtils.idx(x,y, lowX, lowY, highX, highY));
+	}
+
+	public void setInt(int x, int y, int val) {
+		if (x<lowX || x >=highX || y<lowY || y>=highY) {return;}
+		values.set(AggregateUtils.idx(x,y, lowX, lowY, highX, highY), val);
+	}
+
+	public Integer get(int x, int y) {return getInt(x,y);}
+	public void set(int x, int y, Integer val) {setInt(x,y,val);}
+	public Iterator<Integer> iterator() {return new Iterator2D<>(this);}
+	public Integer defaultValue() {return defVal;}
+	public int defaultInt() {return defVal;}
+	public int lowX() {return lowX;}
+	public int lowY() {return lowY;}
+	public int highX() {return highX;}
+	public int highY() {return highY;}
+}
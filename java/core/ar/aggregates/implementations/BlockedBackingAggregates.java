@@ -0,0 +1,61 @@
+package ar.aggregates.implementations;
+
+/**Indexing for aggregates stored in square blocks instead of row-by-row.
+ * 
+ * Blocks are stored one after another, block-row by block-row; 
+ * values inside of a block are stored row-by-row.
+ * Neighboring bins (in x and y) are therefore usually in the same block,
+ * so 2D access patterns (quadrant tasks, stencils) touch fewer cache lines and pages. 
+ * Blocks on the high edges are padded, so the backing array may be larger than the bounds.
+ * **/
+abstract class BlockedBackingAggregates {
+	/**Default block width (and height); block sizes must be powers of two.**/
+	public static final int BLOCK_SIZE = 64;
+	
+	protected final int lowX, lowY, highX, highY;
+	protected final int blockShift, blockMask, blocksX, blocksY;
+	private final int blockBits;
+
+	protected BlockedBackingAggregates(int lowX, int lowY, int highX, int highY, int blockSize) {
+		if (Integer.bitCount(blockSize) != 1) {throw new IllegalArgumentException("Block size must be a power of two.");}
+		this.lowX = lowX;
+		this.lowY = lowY;
+		this.highX = highX;
+		this.highY = highY;
+		this.blockShift = Integer.numberOfTrailingZeros(blockSize);
+		this.blockMask = blockSize-1;
+		this.blockBits = 2*blockShift;
+		this.blocksX = Math.max(0, (highX-lowX+blockMask) >> blockShift);
+		this.blocksY = Math.max(0, (highY-lowY+blockMask) >> blockShift);
+	}
+	
+	/**Length of the backing array (including padding).
+	 * @throws IllegalArgumentException If that is more than fits in a single array 
+	 * **/
+	protected final int arraySize() {
+		long size = (((long) blocksX) * blocksY) << blockBits;
+		if (size > Integer.MAX_VALUE) {throw new IllegalArgumentException(String.format("Too many bins for blocked aggregates (%d bins requested).", size));}
+		return (int) size;
+	}
+	
+	protected final boolean inBounds(int x, int y) {return x>=lowX && x<highX && y>=lowY && y<highY;}
+	
+	/**Index of x/y (which must be in bounds) in the backing array.**/
+	public final int index(int x, int y) {
+		int rx = x-lowX;
+		int ry = y-lowY;
+		int block = (ry >> blockShift)*blocksX + (rx >> blockShift);
+		return (block << blockBits) + ((ry & blockMask) << blockShift) + (rx & blockMask);
+	}
+	
+	/**Number of positions from x/y (which must be in bounds) along the row that are stored contiguously, at most length.**/
+	protected final int run(int x, int length) {
+		return Math.min(length, Math.min(highX-x, blockMask+1 - ((x-lowX) & blockMask)));
+	}
+	
+	public int blockSize() {return blockMask+1;}
+	public int lowX() {return lowX;}
+	public int lowY() {return lowY;}
+	public int highX() {return highX;}
+	public int highY() {return highY;}
+}
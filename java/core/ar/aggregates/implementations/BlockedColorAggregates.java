@@ -0,0 +1,63 @@
+package ar.aggregates.implementations;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import ar.Aggregates;
+import ar.aggregates.Iterator2D;
+
+/**Color aggregates (stored as ARGB ints) in square blocks (see AggregateUtils.BLOCKED_LAYOUT).**/
+public class BlockedColorAggregates extends BlockedBackingAggregates implements Aggregates<Color> {
+	private static final long serialVersionUID = 6264813705380125457L;
+	private final int[] values;
+	private final Color background;
+
+	public BlockedColorAggregates(int lowX, int lowY, int highX, int highY, Color background) {
+		this(lowX, lowY, highX, highY, background, BLOCK_SIZE);
+	}
+
+	public BlockedColorAggregates(int lowX, int lowY, int highX, int highY, Color background, int blockSize) {
+		super(lowX, lowY, highX, highY, blockSize);
+		this.background = background;
+		this.values = new int[arraySize()];
+		Arrays.fill(values, background.getRGB());
+	}
+
+	public Color get(int x, int y) {
+		if (!inBounds(x,y)) {return background;}
+		return new Color(values[index(x,y)], true);
+	}
+
+	public void set(int x, int y, Color val) {
+		if (!inBounds(x,y)) {return;}
+		values[index(x,y)] = val.getRGB();
+	}
+
+	@Override public Iterator<Color> iterator() {return new Iterator2D<>(this);}
+	@Override public Color defaultValue() {return background;}
+	
+	/**Backing array (NOT a copy) of ARGB values, stored block-by-block; see "index" for the indexing.**/
+	public int[] values() {return values;}
+
+	/**Image of the aggregates, copied a block row at a time.**/
+	public BufferedImage image() {
+		int w = highX-lowX;
+		int h = highY-lowY;
+		if (w<=0 || h<=0) {return null;}
+		
+		int size = blockSize();
+		BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+		int[] row = new int[w];
+		for (int y=lowY; y<highY; y++) {
+			for (int bx=0; bx<blocksX; bx++) {
+				int x = lowX + bx*size;
+				int len = Math.min(size, highX-x);
+				System.arraycopy(values, index(x, y), row, bx*size, len);
+			}
+			img.setRGB(0, y-lowY, w, 1, row, 0, w);
+		}
+		return img;
+	}
+}
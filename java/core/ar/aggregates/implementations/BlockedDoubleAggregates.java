@@ -0,0 +1,68 @@
+package ar.aggregates.implementations;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import ar.Aggregates;
+import ar.aggregates.Iterator2D;
+
+/**Double aggregates stored in square blocks (see AggregateUtils.BLOCKED_LAYOUT).**/
+public class BlockedDoubleAggregates extends BlockedBackingAggregates implements Aggregates.DoubleRows {
+	private static final long serialVersionUID = -3309853071209435712L;
+	private final double[] values;
+	private final double defVal;
+
+	public BlockedDoubleAggregates(int lowX, int lowY, int highX, int highY, double defVal) {
+		this(lowX, lowY, highX, highY, defVal, BLOCK_SIZE);
+	}
+
+	public BlockedDoubleAggregates(int lowX, int lowY, int highX, int highY, double defVal, int blockSize) {
+		super(lowX, lowY, highX, highY, blockSize);
+		this.defVal = defVal;
+		this.values = new double[arraySize()];
+		Arrays.fill(values, defVal);
+	}
+
+	public double getDouble(int x, int y) {
+		if (!inBounds(x,y)) {return defVal;}
+		return values[index(x,y)];
+	}
+
+	public void setDouble(int x, int y, double val) {
+		if (!inBounds(x,y)) {return;}
+		values[index(x,y)] = val;
+	}
+
+	/**Copies a block-width run at a time.**/
+	public void getDoubles(int x, int y, double[] dest, int offset, int length) {
+		int i=0;
+		while (i<length) {
+			int at = x+i;
+			if (!inBounds(at, y)) {dest[offset+i] = defVal; i++; continue;}
+			int run = run(at, length-i);
+			System.arraycopy(values, index(at, y), dest, offset+i, run);
+			i+=run;
+		}
+	}
+
+	/**Copies a block-width run at a time.**/
+	public void setDoubles(int x, int y, double[] src, int offset, int length) {
+		int i=0;
+		while (i<length) {
+			int at = x+i;
+			if (!inBounds(at, y)) {i++; continue;}
+			int run = run(at, length-i);
+			System.arraycopy(src, offset+i, values, index(at, y), run);
+			i+=run;
+		}
+	}
+
+	@Override public Double get(int x, int y) {return getDouble(x, y);}
+	@Override public void set(int x, int y, Double val) {setDouble(x, y, val);}
+	@Override public Iterator<Double> iterator() {return new Iterator2D<>(this);}
+	@Override public Double defaultValue() {return defVal;}
+	public double defaultDouble() {return defVal;}
+	
+	/**Backing array (NOT a copy), stored block-by-block; see "index" for the indexing.**/
+	public double[] values() {return values;}
+}
@@ -0,0 +1,68 @@
+package ar.aggregates.implementations;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import ar.Aggregates;
+import ar.aggregates.Iterator2D;
+
+/**Int aggregates stored in square blocks (see AggregateUtils.BLOCKED_LAYOUT).**/
+public class BlockedIntAggregates extends BlockedBackingAggregates implements Aggregates.IntRows {
+	private static final long serialVersionUID = 4781329745839104625L;
+	private final int[] values;
+	private final int defVal;
+
+	public BlockedIntAggregates(int lowX, int lowY, int highX, int highY, int defVal) {
+		this(lowX, lowY, highX, highY, defVal, BLOCK_SIZE);
+	}
+
+	public BlockedIntAggregates(int lowX, int lowY, int highX, int highY, int defVal, int blockSize) {
+		super(lowX, lowY, highX, highY, blockSize);
+		this.defVal = defVal;
+		this.values = new int[arraySize()];
+		Arrays.fill(values, defVal);
+	}
+
+	public int getInt(int x, int y) {
+		if (!inBounds(x,y)) {return defVal;}
+		return values[index(x,y)];
+	}
+
+	public void setInt(int x, int y, int val) {
+		if (!inBounds(x,y)) {return;}
+		values[index(x,y)] = val;
+	}
+
+	/**Copies a block-width run at a time.**/
+	public void getInts(int x, int y, int[] dest, int offset, int length) {
+		int i=0;
+		while (i<length) {
+			int at = x+i;
+			if (!inBounds(at, y)) {dest[offset+i] = defVal; i++; continue;}
+			int run = run(at, length-i);
+			System.arraycopy(values, index(at, y), dest, offset+i, run);
+			i+=run;
+		}
+	}
+
+	/**Copies a block-width run at a time.**/
+	public void setInts(int x, int y, int[] src, int offset, int length) {
+		int i=0;
+		while (i<length) {
+			int at = x+i;
+			if (!inBounds(at, y)) {i++; continue;}
+			int run = run(at, length-i);
+			System.arraycopy(src, offset+i, values, index(at, y), run);
+			i+=run;
+		}
+	}
+
+	@Override public Integer get(int x, int y) {return getInt(x, y);}
+	@Override public void set(int x, int y, Integer val) {setInt(x, y, val);}
+	@Override public Iterator<Integer> iterator() {return new Iterator2D<>(this);}
+	@Override public Integer defaultValue() {return defVal;}
+	public int defaultInt() {return defVal;}
+	
+	/**Backing array (NOT a copy), stored block-by-block; see "index" for the indexing.**/
+	public int[] values() {return values;}
+}
@@ -1,14 +1,20 @@
 package ar.aggregates.implementations;
 
-import java.util.Arrays;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import ar.Aggregates;
+import ar.aggregates.AggregateUtils;
 import ar.aggregates.Iterator2D;
 
-/**Set of color aggregates backed by a buffered image.**/
+/**Set of boolean aggregates, stored as one bit per bin.
+ * 
+ * Neighboring bins share a 64-bit word, so bits are set with compare-and-set.
+ * Therefore (as with other aggregates) different bins may be set from different threads at once.
+ * **/
 public class BooleanAggregates implements Aggregates<Boolean> {
-	private final boolean[] values;
+	private static final long serialVersionUID = 2749201263540935384L;
+	private final AtomicLongArray words;
 	private final Boolean defVal;
 	private final int lowX, lowY, highX, highY;
 
@@ -19,19 +25,32 @@ public class BooleanAggregates implements Aggregates<Boolean> {
 		this.highX = highX;
 		this.highY = highY;
 		
-		int size = (highX-lowX)*(highY-lowY);
-		this.values = new boolean[size];
-		Arrays.fill(values, defVal);
+		int size = AggregateUtils.arraySize(lowX, lowY, highX, highY);
+		this.words = new AtomicLongArray((size+63) >>> 6);
+		if (defVal) {
+			for (int i=0; i<words.length(); i++) {words.lazySet(i, -1L);}
+		}
 	}
 
-	public Boolean get(int x, int y) {
+	public Boolean get(int x, int y) {return getBoolean(x,y);}
+	public void set(int x, int y, Boolean val) {setBoolean(x, y, val);}
+
+	public boolean getBoolean(int x, int y) {
 		if (x<lowX || x >=highX || y<lowY || y>=highY) {return defVal;}
-		return values[idx(x,y)];
+		int idx = idx(x,y);
+		return (words.get(idx >>> 6) & (1L << idx)) != 0;
 	}
 
-	public void set(int x, int y, Boolean val) {
+	public void setBoolean(int x, int y, boolean val) {
 		if (x<lowX || x >=highX || y<lowY || y>=highY) {return;}
-		values[idx(x,y)] = val;
+		int idx = idx(x,y);
+		int word = idx >>> 6;
+		long bit = 1L << idx;		//Shift distance is taken mod 64
+		while (true) {
+			long current = words.get(word);
+			long update = val ? current | bit : current & ~bit;
+			if (current == update || words.compareAndSet(word, current, update)) {return;}
+		}
 	}
 
 	public Iterator<Boolean> iterator() {return new Iterator2D<>(this);};
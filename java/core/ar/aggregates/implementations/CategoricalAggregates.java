@@ -0,0 +1,112 @@
+package ar.aggregates.implementations;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import ar.Aggregates;
+import ar.aggregates.AggregateUtils;
+import ar.aggregates.Iterator2D;
+import ar.rules.CategoricalCounts;
+
+/**Categorical counts over a known set of categories, stored as one int plane per category.
+ * 
+ * No CategoricalCounts objects are stored; "get" builds one from the planes 
+ * (listing only the categories with non-zero counts).  
+ * Setting a value with a category that is not known is an error.
+ * 
+ * The default value must list the known categories (see CategoricalCounts.categories).
+ * **/
+public class CategoricalAggregates<T> implements Aggregates.CategoryValued<T> {
+	private static final long serialVersionUID = -1827402760293729411L;
+	
+	private final CategoricalCounts<T> defVal;
+	private final Comparator<T> comp;
+	private final T[] categories;
+	private final List<T> categoryList;
+	private final int[][] counts;
+	private final int lowX, lowY, highX, highY;
+	
+	/**@param defVal Empty counts, listing the known categories.**/
+	public CategoricalAggregates(int lowX, int lowY, int highX, int highY, CategoricalCounts<T> defVal) {
+		if (defVal.categories() == null) {throw new IllegalArgumentException("Default value must list the known categories.");}
+		if (defVal.fullSize() != 0) {throw new IllegalArgumentException("Default value must be empty.");}
+		this.defVal = defVal;
+		this.comp = defVal.comparator();
+		this.categories = defVal.categories();
+		this.categoryList = Collections.unmodifiableList(Arrays.asList(categories));
+		this.lowX = lowX;
+		this.lowY = lowY;
+		this.highX = highX;
+		this.highY = highY;
+		this.counts = new int[categories.length][AggregateUtils.arraySize(lowX, lowY, highX, highY)];
+	}
+	
+	@Override public List<T> categories() {return categoryList;}
+	@Override public int index(T category) {return Arrays.binarySearch(categories, category, comp);}
+	
+	@Override
+	public int count(int x, int y, int category) {
+		if (x<lowX || x >=highX || y<lowY || y>=highY) {return 0;}
+		return counts[category][AggregateUtils.idx(x,y, lowX, lowY, highX, highY)];
+	}
+	
+	@Override
+	public int fullSize(int x, int y) {
+		if (x<lowX || x >=highX || y<lowY || y>=highY) {return 0;}
+		int idx = AggregateUtils.idx(x,y, lowX, lowY, highX, highY);
+		int total = 0;
+		for (int[] plane: counts) {total += plane[idx];}
+		return total;
+	}
+	
+	@Override
+	public void add(int x, int y, int category, int count) {
+		if (x<lowX || x >=highX || y<lowY || y>=highY) {return;}
+		counts[category][AggregateUtils.idx(x,y, lowX, lowY, highX, highY)] += count;
+	}
+
+	@Override
+	public CategoricalCounts<T> get(int x, int y) {
+		if (x<lowX || x >=highX || y<lowY || y>=highY) {return defVal;}
+		int idx = AggregateUtils.idx(x,y, lowX, lowY, highX, highY);
+		int present = 0;
+		for (int[] plane: counts) {if (plane[idx] != 0) {present++;}}
+		if (present == 0) {return defVal;}
+		
+		T[] labels = Arrays.copyOf(categories, present);
+		int[] values = new int[present];
+		for (int c=0, i=0; c<counts.length; c++) {
+			if (counts[c][idx] == 0) {continue;}
+			labels[i] = categories[c];
+			values[i] = counts[c][idx];
+			i++;
+		}
+		return CategoricalCounts.of(comp, labels, values);
+	}
+
+	/**@throws IllegalArgumentException If the value has a category that is not known.**/
+	@Override
+	public void set(int x, int y, CategoricalCounts<T> val) {
+		if (x<lowX || x >=highX || y<lowY || y>=highY) {return;}
+		int idx = AggregateUtils.idx(x,y, lowX, lowY, highX, highY);
+		for (int i=0; i<val.size(); i++) {
+			if (index(val.key(i)) < 0) {throw new IllegalArgumentException("Category not known to aggregates: " + val.key(i));}
+		}
+		for (int[] plane: counts) {plane[idx] = 0;}
+		for (int i=0; i<val.size(); i++) {counts[index(val.key(i))][idx] = val.count(i);}
+	}
+	
+	/**Backing array for the indexed category (NOT a copy), stored row-by-row over the bounds of this set.
+	 * Provided for bulk operations; see AggregateUtils.idx for the indexing.**/
+	public int[] plane(int category) {return counts[category];}
+	
+	@Override public Iterator<CategoricalCounts<T>> iterator() {return new Iterator2D<>(this);}
+	@Override public CategoricalCounts<T> defaultValue() {return defVal;}
+	@Override public int lowX() {return lowX;}
+	@Override public int lowY() {return lowY;}
+	@Override public int highX() {return highX;}
+	@Override public int highY() {return highY;}
+}
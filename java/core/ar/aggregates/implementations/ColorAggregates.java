@@ -2,47 +2,91 @@ package ar.aggregates.implementations;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 import java.util.Iterator;
 
 import ar.Aggregates;
 import ar.aggregates.Iterator2D;
 
-/**Set of colors, with extra tools for creating images.**/
+/**Set of colors, stored as ARGB ints that can be shared with a BufferedImage.
+ * 
+ * The backing array is laid out like the pixels of a TYPE_INT_ARGB image, 
+ * so "image" wraps it instead of copying it and aggregates made from such an image
+ * use the image's pixels directly.  In either case, changes to one are seen in the other.
+ * 
+ * Use getInt/setInt to read and write ARGB values without creating Color objects.
+ * **/
 public class ColorAggregates extends IntegerBackingAggregates implements Aggregates<Color> {
 	private final Color background;
+	private transient BufferedImage image;
 
+	/**Aggregates over the pixels of an image, placed with its top left corner at lowX/lowY.
+	 * The image's pixels are shared if it is an (unclipped) TYPE_INT_ARGB image; otherwise they are copied.
+	 * **/
 	public ColorAggregates(int lowX, int lowY, Color background, BufferedImage img) {
-		this(lowX, lowY, lowX+img.getWidth(), lowY+img.getHeight(), background, img);
+		super(lowX, lowY, lowX+img.getWidth(), lowY+img.getHeight(), background.getRGB(), pixels(img));
+		this.background = background;
+		if (shareable(img)) {this.image = img;}
 	}
 
 	public ColorAggregates(int lowX, int lowY, int highX, int highY, Color background) {
-		this(lowX, lowY, highX, highY, background, null);
-	}
-
-	private ColorAggregates(int lowX,int lowY, int highX, int highY, Color background, BufferedImage img) {
 		super(lowX, lowY, highX, highY, background.getRGB());
 		this.background = background;
-		if (img != null) {
-			//TODO: Implement initializing aggregates off of an image.
-			throw new UnsupportedOperationException("Can't initialize off of an image...yet...");
-		}
 	}
 
 	public Color get(int x, int y) {return new Color(super.getInt(x, y), true);}
 	public void set(int x, int y, Color val) {
-		super.set(x, y, val.getRGB());
+		super.setInt(x, y, val.getRGB());
 	}
 	public Iterator<Color> iterator() {return new Iterator2D<>(this);};
 	public Color defaultValue() {return background;}
 
+	/**Image of these aggregates.  The image shares its pixels with the aggregates (no copy is made).
+	 * @return An image or null if the aggregates are empty
+	 * **/
 	public BufferedImage image() {
 		int w = highX-lowX;
 		int h = highY-lowY;
-		if (w<=0 && h<=0) {return null;}
-		
-		BufferedImage img = new BufferedImage(w,h, BufferedImage.TYPE_INT_ARGB);
-		img.setRGB(0, 0, w, h, values, 0, w);
-		
-		return img;
+		if (w<=0 || h<=0) {return null;}
+		if (image == null) {image = wrap(values, w, h);}
+		return image;
+	}
+	
+	/**Backing array (NOT a copy) of ARGB values, stored row-by-row over the bounds of this set.
+	 * Provided for bulk operations; see AggregateUtils.idx for the indexing.**/
+	public int[] values() {return values;}
+	
+	/**Can the image's pixel array be used as-is?**/
+	private static boolean shareable(BufferedImage img) {
+		if (img.getType() != BufferedImage.TYPE_INT_ARGB) {return false;}
+		WritableRaster r = img.getRaster();
+		if (!(r.getDataBuffer() instanceof DataBufferInt) 
+				|| !(r.getSampleModel() instanceof SinglePixelPackedSampleModel)) {return false;}
+		DataBufferInt db = (DataBufferInt) r.getDataBuffer();
+		SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) r.getSampleModel();
+		return db.getNumBanks() == 1 
+				&& db.getOffset() == 0
+				&& r.getSampleModelTranslateX() == 0 && r.getSampleModelTranslateY() == 0
+				&& sm.getScanlineStride() == img.getWidth();
+	}
+	
+	private static int[] pixels(BufferedImage img) {
+		if (shareable(img)) {return ((DataBufferInt) img.getRaster().getDataBuffer()).getData();}
+		return img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+	}
+	
+	/**A TYPE_INT_ARGB image over the passed pixels (row-by-row, width*height long).**/
+	private static BufferedImage wrap(int[] pixels, int width, int height) {
+		DirectColorModel cm = (DirectColorModel) ColorModel.getRGBdefault();
+		DataBuffer db = new DataBufferInt(pixels, width*height);
+		SinglePixelPackedSampleModel sm = new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, width, height, cm.getMasks());
+		WritableRaster raster = Raster.createWritableRaster(sm, db, null);
+		return new BufferedImage(cm, raster, false, null);
 	}
 }
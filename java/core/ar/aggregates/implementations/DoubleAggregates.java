@@ -4,12 +4,13 @@ import java.util.Arrays;
 import java.util.Iterator;
 
 import ar.Aggregates;
+import ar.aggregates.AggregateUtils;
 import ar.aggregates.Iterator2D;
 
 /**Set of color aggregates backed by a buffered image.**/
-public class DoubleAggregates implements Aggregates<Double> {
+public class DoubleAggregates implements Aggregates.DoubleRows {
 	private final double[] values;
-	private final Double defVal;
+	private final double defVal;
 	private final int lowX, lowY, highX, highY;
 
 	public DoubleAggregates(int lowX,int lowY, int highX, int highY, double defVal) {
@@ -19,27 +20,54 @@ public class DoubleAggregates implements Aggregates<Double> {
 		this.highX = highX;
 		this.highY = highY;
 		
-		int size = (highX-lowX)*(highY-lowY);
+		int size = AggregateUtils.arraySize(lowX, lowY, highX, highY);
 		this.values = new double[size];
 		Arrays.fill(values, defVal);
 	}
 
-	public Double get(int x, int y) {
+	public Double get(int x, int y) {return getDouble(x,y);}
+	public void set(int x, int y, Double val) {setDouble(x,y,val);}
+
+	public double getDouble(int x, int y) {
 		if (x<lowX || x >=highX || y<lowY || y>=highY) {return defVal;}
 		return values[idx(x,y)];
 	}
 
-	public void set(int x, int y, Double val) {
+	public void setDouble(int x, int y, double val) {
 		if (x<lowX || x >=highX || y<lowY || y>=highY) {return;}
 		values[idx(x,y)] = val;
 	}
 
+	public void getDoubles(int x, int y, double[] dest, int offset, int length) {
+		int start = Math.max(x, lowX);
+		int end = Math.min(x+length, highX);
+		if (y<lowY || y>=highY || start >= end) {
+			Arrays.fill(dest, offset, offset+length, defVal);
+			return;
+		}
+		if (start > x) {Arrays.fill(dest, offset, offset+(start-x), defVal);}
+		System.arraycopy(values, idx(start, y), dest, offset+(start-x), end-start);
+		if (end < x+length) {Arrays.fill(dest, offset+(end-x), offset+length, defVal);}
+	}
+
+	public void setDoubles(int x, int y, double[] src, int offset, int length) {
+		int start = Math.max(x, lowX);
+		int end = Math.min(x+length, highX);
+		if (y<lowY || y>=highY || start >= end) {return;}
+		System.arraycopy(src, offset+(start-x), values, idx(start, y), end-start);
+	}
+
 	public Iterator<Double> iterator() {return new Iterator2D<>(this);};
 	public Double defaultValue() {return defVal;}
+	public double defaultDouble() {return defVal;}
 	public int lowX() {return lowX;}
 	public int lowY() {return lowY;}
 	public int highX() {return highX;}
 	public int highY() {return highY;}
+	
+	/**Backing array (NOT a copy), stored row-by-row over the bounds of this set.
+	 * Provided for bulk operations; see AggregateUtils.idx for the indexing.**/
+	public double[] values() {return values;}
 
 	private final int idx(int x,int y) {
 		int idx = ((highX-lowX)*(y-lowY))+(x-lowX);
@@ -0,0 +1,69 @@
+package ar.aggregates.implementations;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import ar.Aggregates;
+import ar.aggregates.AggregateUtils;
+import ar.aggregates.Iterator2D;
+
+/**Set of enum values, stored as one byte per bin.
+ * 
+ * Each byte holds the value's ordinal plus one (zero is null), so enums with up to MAX_CONSTANTS constants can be stored.
+ * **/
+public class EnumAggregates<E extends Enum<E>> implements Aggregates<E> {
+	private static final long serialVersionUID = -4186613180451278436L;
+	
+	/**Most enum constants that fit in a byte-per-bin set.**/
+	public static final int MAX_CONSTANTS = 255;
+	
+	private final byte[] values;
+	private final E[] constants;
+	private final E defVal;
+	private final int lowX, lowY, highX, highY;
+
+	/**@throws IllegalArgumentException If the enum has more than MAX_CONSTANTS constants**/
+	public EnumAggregates(int lowX,int lowY, int highX, int highY, E defVal) {
+		this.defVal = defVal;
+		this.constants = defVal.getDeclaringClass().getEnumConstants();
+		this.lowX = lowX;
+		this.lowY = lowY;
+		this.highX = highX;
+		this.highY = highY;
+		if (constants.length > MAX_CONSTANTS) {
+			throw new IllegalArgumentException(String.format("Too many constants in %s for byte storage (%d found).", defVal.getDeclaringClass().getName(), constants.length));
+		}
+		
+		int size = AggregateUtils.arraySize(lowX, lowY, highX, highY);
+		this.values = new byte[size];
+		Arrays.fill(values, code(defVal));
+	}
+	
+	/**Can values of the given enum be stored in byte-per-bin aggregates?**/
+	public static boolean fits(Enum<?> e) {return e.getDeclaringClass().getEnumConstants().length <= MAX_CONSTANTS;}
+
+	public E get(int x, int y) {
+		if (x<lowX || x >=highX || y<lowY || y>=highY) {return defVal;}
+		int code = values[idx(x,y)] & 0xFF;
+		return code == 0 ? null : constants[code-1];
+	}
+
+	public void set(int x, int y, E val) {
+		if (x<lowX || x >=highX || y<lowY || y>=highY) {return;}
+		values[idx(x,y)] = code(val);
+	}
+
+	public Iterator<E> iterator() {return new Iterator2D<>(this);};
+	public E defaultValue() {return defVal;}
+	public int lowX() {return lowX;}
+	public int lowY() {return lowY;}
+	public int highX() {return highX;}
+	public int highY() {return highY;}
+
+	private static byte code(Enum<?> val) {return (byte) (val == null ? 0 : val.ordinal()+1);}
+	
+	private final int idx(int x,int y) {
+		int idx = ((highX-lowX)*(y-lowY))+(x-lowX);
+		return idx;
+	}
+}
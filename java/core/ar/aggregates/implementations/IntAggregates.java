@@ -6,12 +6,17 @@ import ar.Aggregates;
 import ar.aggregates.Iterator2D;
 
 /**Set of color aggregates backed by a buffered image.**/
-public class IntAggregates extends IntegerBackingAggregates implements Aggregates<Integer> {
+public class IntAggregates extends IntegerBackingAggregates implements Aggregates.IntRows {
 	public IntAggregates(int lowX,int lowY, int highX, int highY, int defVal) {
 		super(lowX, lowY, highX, highY, defVal);
 	}
 
 	@Override public Iterator<Integer> iterator() {return new Iterator2D<>(this);}
 	@Override public Integer get(int x, int y) {return super.getInt(x, y);}
+	@Override public void set(int x, int y, Integer val) {super.setInt(x, y, val);}
 	@Override public Integer defaultValue() {return super.defaultInt();}
+	
+	/**Backing array (NOT a copy), stored row-by-row over the bounds of this set.
+	 * Provided for bulk operations; see AggregateUtils.idx for the indexing.**/
+	public int[] values() {return values;}
 }
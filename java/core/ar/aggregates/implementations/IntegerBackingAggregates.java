@@ -7,7 +7,7 @@ import ar.aggregates.AggregateUtils;
 /**Set of color aggregates backed by a buffered image.**/
 abstract class IntegerBackingAggregates {
 	protected final int[] values;
-	protected final Integer defVal;
+	protected final int defVal;
 	protected final int lowX, lowY, highX, highY;
 
 	public IntegerBackingAggregates(int lowX,int lowY, int highX, int highY, int defVal) {
@@ -17,22 +17,54 @@ abstract class IntegerBackingAggregates {
 		this.highX = highX;
 		this.highY = highY;
 		
-		int size = (highX-lowX)*(highY-lowY);
+		int size = AggregateUtils.arraySize(lowX, lowY, highX, highY);
 		this.values = new int[size];
 		Arrays.fill(values, defVal);
 	}
 
-	public Integer getInt(int x, int y) {
+	/**Use the passed array (NOT a copy) as the backing values; it must be stored row-by-row over the bounds.**/
+	protected IntegerBackingAggregates(int lowX,int lowY, int highX, int highY, int defVal, int[] values) {
+		if (values.length < AggregateUtils.arraySize(lowX, lowY, highX, highY)) {throw new IllegalArgumentException("Backing array smaller than the bounds.");}
+		this.defVal = defVal;
+		this.lowX = lowX;
+		this.lowY = lowY;
+		this.highX = highX;
+		this.highY = highY;
+		this.values = values;
+	}
+
+	public int getInt(int x, int y) {
 		if (x<lowX || x >=highX || y<lowY || y>=highY) {return defVal;}
 		return values[AggregateUtils.idx(x,y, lowX, lowY, highX, highY)];
 	}
 
-	public void set(int x, int y, Integer val) {
+	public void setInt(int x, int y, int val) {
 		if (x<lowX || x >=highX || y<lowY || y>=highY) {return;}
 		values[AggregateUtils.idx(x,y, lowX, lowY, highX, highY)] = val;
 	}
 
-	public Integer defaultInt() {return defVal;}
+	/**Copy the values at x...x+length-1 on row y into dest; positions outside of the bounds get the default value.**/
+	public void getInts(int x, int y, int[] dest, int offset, int length) {
+		int start = Math.max(x, lowX);
+		int end = Math.min(x+length, highX);
+		if (y<lowY || y>=highY || start >= end) {
+			Arrays.fill(dest, offset, offset+length, defVal);
+			return;
+		}
+		if (start > x) {Arrays.fill(dest, offset, offset+(start-x), defVal);}
+		System.arraycopy(values, AggregateUtils.idx(start, y, lowX, lowY, highX, highY), dest, offset+(start-x), end-start);
+		if (end < x+length) {Arrays.fill(dest, offset+(end-x), offset+length, defVal);}
+	}
+
+	/**DESTRUCTIVELY set the values at x...x+length-1 on row y from src; positions outside of the bounds are skipped.**/
+	public void setInts(int x, int y, int[] src, int offset, int length) {
+		int start = Math.max(x, lowX);
+		int end = Math.min(x+length, highX);
+		if (y<lowY || y>=highY || start >= end) {return;}
+		System.arraycopy(src, offset+(start-x), values, AggregateUtils.idx(start, y, lowX, lowY, highX, highY), end-start);
+	}
+
+	public int defaultInt() {return defVal;}
 	public int lowX() {return lowX;}
 	public int lowY() {return lowY;}
 	public int highX() {return highX;}
@@ -0,0 +1,76 @@
+package ar.aggregates.implementations;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**Fixed-width values stored outside of the Java heap, in chunks of direct byte buffers.
+ * 
+ * Indices are longs, so the number of bins is not limited by the maximum array size.
+ * Each chunk holds a whole number of values, so no value straddles two chunks.
+ * Memory is released when the aggregates are garbage collected.
+ * **/
+abstract class OffHeapBackingAggregates {
+	/**Default bytes per chunk (must be a power of two).**/
+	public static final int CHUNK_BYTES = 1 << 30;
+	
+	protected final int lowX, lowY, highX, highY;
+	protected final long width;
+	private final ByteBuffer[] chunks;
+	private final int chunkShift;
+	private final long chunkMask;
+	private final int valueShift;
+	
+	/**@param valueBytes Bytes per value (4 or 8)
+	 * @param chunkBytes Bytes per chunk (a power of two, at least valueBytes)
+	 * **/
+	protected OffHeapBackingAggregates(int lowX, int lowY, int highX, int highY, int valueBytes, int chunkBytes) {
+		if (Integer.bitCount(chunkBytes) != 1 || chunkBytes < valueBytes) {throw new IllegalArgumentException("Chunk size must be a power of two of at least one value.");}
+		this.lowX = lowX;
+		this.lowY = lowY;
+		this.highX = highX;
+		this.highY = highY;
+		this.width = Math.max(0, highX-lowX);
+		this.valueShift = Integer.numberOfTrailingZeros(valueBytes);
+		this.chunkShift = Integer.numberOfTrailingZeros(chunkBytes);
+		this.chunkMask = chunkBytes-1;
+		
+		long bytes = (width * Math.max(0, highY-lowY)) << valueShift;
+		int count = (int) ((bytes + chunkMask) >>> chunkShift);
+		this.chunks = new ByteBuffer[count];
+		for (int i=0; i<count; i++) {
+			int size = (int) Math.min(chunkBytes, bytes - (((long) i) << chunkShift));
+			chunks[i] = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+		}
+	}
+	
+	protected final boolean inBounds(int x, int y) {return x>=lowX && x<highX && y>=lowY && y<highY;}
+	
+	/**Byte offset of x/y (which must be in bounds).**/
+	protected final long offset(int x, int y) {return ((width*(y-lowY)) + (x-lowX)) << valueShift;}
+	
+	protected final int getInt(long offset) {return chunks[(int) (offset >>> chunkShift)].getInt((int) (offset & chunkMask));}
+	protected final void putInt(long offset, int val) {chunks[(int) (offset >>> chunkShift)].putInt((int) (offset & chunkMask), val);}
+	protected final double getDouble(long offset) {return chunks[(int) (offset >>> chunkShift)].getDouble((int) (offset & chunkMask));}
+	protected final void putDouble(long offset, double val) {chunks[(int) (offset >>> chunkShift)].putDouble((int) (offset & chunkMask), val);}
+	
+	/**Set every value to the given int (direct buffers start as zeros).**/
+	protected final void fillInts(int val) {
+		if (val == 0) {return;}
+		for (ByteBuffer chunk: chunks) {
+			for (int i=0; i<chunk.capacity(); i+=4) {chunk.putInt(i, val);}
+		}
+	}
+
+	/**Set every value to the given double (direct buffers start as zeros).**/
+	protected final void fillDoubles(double val) {
+		if (Double.doubleToRawLongBits(val) == 0) {return;}
+		for (ByteBuffer chunk: chunks) {
+			for (int i=0; i<chunk.capacity(); i+=8) {chunk.putDouble(i, val);}
+		}
+	}
+
+	public int lowX() {return lowX;}
+	public int lowY() {return lowY;}
+	public int highX() {return highX;}
+	public int highY() {return highY;}
+}
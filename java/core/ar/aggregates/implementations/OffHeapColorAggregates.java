@@ -0,0 +1,54 @@
+package ar.aggregates.implementations;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+
+import ar.Aggregates;
+import ar.aggregates.Iterator2D;
+
+/**Color aggregates (stored as ARGB ints) off-heap with long indexing, for canvases too large for a single array.
+ * The whole canvas usually cannot be one image, so images are made of regions (e.g., pyramid tiles).
+ * (See OffHeapBackingAggregates.)**/
+public class OffHeapColorAggregates extends OffHeapBackingAggregates implements Aggregates<Color> {
+	private static final long serialVersionUID = 2750419638312557104L;
+	private final Color background;
+
+	public OffHeapColorAggregates(int lowX,int lowY, int highX, int highY, Color background) {this(lowX, lowY, highX, highY, background, CHUNK_BYTES);}
+	
+	public OffHeapColorAggregates(int lowX,int lowY, int highX, int highY, Color background, int chunkBytes) {
+		super(lowX, lowY, highX, highY, 4, chunkBytes);
+		this.background = background;
+		fillInts(background.getRGB());
+	}
+
+	public Color get(int x, int y) {
+		if (!inBounds(x,y)) {return background;}
+		return new Color(getInt(offset(x,y)), true);
+	}
+
+	public void set(int x, int y, Color val) {
+		if (!inBounds(x,y)) {return;}
+		putInt(offset(x,y), val.getRGB());
+	}
+	
+	/**Image of the given region (positions outside of the aggregates are the background).**/
+	public BufferedImage image(int lowX, int lowY, int highX, int highY) {
+		int w = highX-lowX;
+		int h = highY-lowY;
+		if (w<=0 || h<=0) {return null;}
+		
+		int[] row = new int[w];
+		BufferedImage img = new BufferedImage(w,h, BufferedImage.TYPE_INT_ARGB);
+		for (int y=lowY; y<highY; y++) {
+			for (int x=lowX; x<highX; x++) {
+				row[x-lowX] = inBounds(x,y) ? getInt(offset(x,y)) : background.getRGB();
+			}
+			img.setRGB(0, y-lowY, w, 1, row, 0, w);
+		}
+		return img;
+	}
+
+	public Iterator<Color> iterator() {return new Iterator2D<>(this);}
+	public Color defaultValue() {return background;}
+}
@@ -0,0 +1,37 @@
+package ar.aggregates.implementations;
+
+import java.util.Iterator;
+
+import ar.Aggregates;
+import ar.aggregates.Iterator2D;
+
+/**Double aggregates stored off-heap with long indexing, for canvases too large for a single array.
+ * (See OffHeapBackingAggregates.)**/
+public class OffHeapDoubleAggregates extends OffHeapBackingAggregates implements Aggregates.DoubleValued {
+	private static final long serialVersionUID = -3519908722641037853L;
+	private final double defVal;
+
+	public OffHeapDoubleAggregates(int lowX,int lowY, int highX, int highY, double defVal) {this(lowX, lowY, highX, highY, defVal, CHUNK_BYTES);}
+	
+	public OffHeapDoubleAggregates(int lowX,int lowY, int highX, int highY, double defVal, int chunkBytes) {
+		super(lowX, lowY, highX, highY, 8, chunkBytes);
+		this.defVal = defVal;
+		fillDoubles(defVal);
+	}
+
+	public double getDouble(int x, int y) {
+		if (!inBounds(x,y)) {return defVal;}
+		return getDouble(offset(x,y));
+	}
+
+	public void setDouble(int x, int y, double val) {
+		if (!inBounds(x,y)) {return;}
+		putDouble(offset(x,y), val);
+	}
+
+	@Override public Iterator<Double> iterator() {return new Iterator2D<>(this);}
+	@Override public Double get(int x, int y) {return getDouble(x, y);}
+	@Override public void set(int x, int y, Double val) {setDouble(x, y, val);}
+	@Override public Double defaultValue() {return defVal;}
+	@Override public double defaultDouble() {return defVal;}
+}
@@ -0,0 +1,37 @@
+package ar.aggregates.implementations;
+
+import java.util.Iterator;
+
+import ar.Aggregates;
+import ar.aggregates.Iterator2D;
+
+/**Int aggregates stored off-heap with long indexing, for canvases too large for a single array.
+ * (See OffHeapBackingAggregates.)**/
+public class OffHeapIntAggregates extends OffHeapBackingAggregates implements Aggregates.IntValued {
+	private static final long serialVersionUID = 6124395520133212468L;
+	private final int defVal;
+
+	public OffHeapIntAggregates(int lowX,int lowY, int highX, int highY, int defVal) {this(lowX, lowY, highX, highY, defVal, CHUNK_BYTES);}
+	
+	public OffHeapIntAggregates(int lowX,int lowY, int highX, int highY, int defVal, int chunkBytes) {
+		super(lowX, lowY, highX, highY, 4, chunkBytes);
+		this.defVal = defVal;
+		fillInts(defVal);
+	}
+
+	public int getInt(int x, int y) {
+		if (!inBounds(x,y)) {return defVal;}
+		return getInt(offset(x,y));
+	}
+
+	public void setInt(int x, int y, int val) {
+		if (!inBounds(x,y)) {return;}
+		putInt(offset(x,y), val);
+	}
+
+	@Override public Iterator<Integer> iterator() {return new Iterator2D<>(this);}
+	@Override public Integer get(int x, int y) {return getInt(x, y);}
+	@Override public void set(int x, int y, Integer val) {setInt(x, y, val);}
+	@Override public Integer defaultValue() {return defVal;}
+	@Override public int defaultInt() {return defVal;}
+}
@@ -10,7 +10,7 @@ import ar.aggregates.BoundsInversionException;
 /** Aggregates implementation backed by a single array.
  * This class efficiently supports subset regions.
  */
-public class RefFlatAggregates<A> implements Aggregates<A>{
+public class RefFlatAggregates<A> implements Aggregates.Rows<A>{
 	private static final long serialVersionUID = 7143994707761884518L;
 	private final A[] values;
 	private final int lowX, lowY;
@@ -72,6 +72,25 @@ public class RefFlatAggregates<A> implements Aggregates<A>{
 		return values[idx];
 	}
 	
+	public synchronized void getRow(int x, int y, A[] dest, int offset, int length) {
+		int start = Math.max(x, lowX);
+		int end = Math.min(x+length, highX);
+		if (y<lowY || y>=highY || start >= end) {
+			Arrays.fill(dest, offset, offset+length, defaultVal);
+			return;
+		}
+		if (start > x) {Arrays.fill(dest, offset, offset+(start-x), defaultVal);}
+		System.arraycopy(values, AggregateUtils.idx(start, y, lowX, lowY, highX, highY), dest, offset+(start-x), end-start);
+		if (end < x+length) {Arrays.fill(dest, offset+(end-x), offset+length, defaultVal);}
+	}
+	
+	public synchronized void setRow(int x, int y, A[] src, int offset, int length) {
+		int start = Math.max(x, lowX);
+		int end = Math.min(x+length, highX);
+		if (y<lowY || y>=highY || start >= end) {return;}
+		System.arraycopy(src, offset+(start-x), values, AggregateUtils.idx(start, y, lowX, lowY, highX, highY), end-start);
+	}
+	
 	public A defaultValue() {return defaultVal;}
 
 	/**What are the bounds that can actually be stored in this aggregates object?*/
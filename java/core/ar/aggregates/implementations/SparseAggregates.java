@@ -0,0 +1,199 @@
+package ar.aggregates.implementations;
+
+import java.util.Iterator;
+
+import ar.Aggregates;
+import ar.aggregates.AggregateUtils;
+import ar.aggregates.Iterator2D;
+import ar.util.Util;
+
+/**Aggregates stored as fixed-size square tiles, allocated when a non-default value is first set in them.
+ * 
+ * Untouched tiles hold no memory, so memory is proportional to the touched tiles instead of the bounds.
+ * Each tile is an ordinary set of aggregates (from AggregateUtils.make), so tiles of
+ * int and double values keep their unboxed access (see "make" for matching unboxed sparse aggregates).
+ * 
+ * Bulk operations (roll-up, transfer, serialization) should visit tiles with "tile" and skip the nulls.
+ * Iteration (as with other aggregates) visits every position.
+ * 
+ * Like other aggregates, instances are not safe for concurrent writers.
+ * **/
+public class SparseAggregates<A> implements Aggregates<A> {
+	private static final long serialVersionUID = -6440236019436373931L;
+
+	/**Default width (and height) of a tile.  Tile sizes are rounded up to a power of two.**/
+	public static int TILE_SIZE = 64;
+	
+	protected final A defVal;
+	protected final int lowX, lowY, highX, highY;
+	protected final int tileSize, tileShift, tilesX, tilesY;
+	protected final Aggregates<A>[] tiles;
+	
+	public SparseAggregates(int lowX, int lowY, int highX, int highY, A defVal) {this(lowX, lowY, highX, highY, defVal, TILE_SIZE);}
+	
+	@SuppressWarnings("unchecked")
+	public SparseAggregates(int lowX, int lowY, int highX, int highY, A defVal, int tileSize) {
+		this.defVal = defVal;
+		this.lowX = lowX;
+		this.lowY = lowY;
+		this.highX = highX;
+		this.highY = highY;
+		this.tileShift = 32-Integer.numberOfLeadingZeros(Math.max(1, tileSize)-1);
+		this.tileSize = 1 << tileShift;
+		this.tilesX = Math.max(0, (highX-lowX+this.tileSize-1) >> tileShift);
+		this.tilesY = Math.max(0, (highY-lowY+this.tileSize-1) >> tileShift);
+		this.tiles = (Aggregates<A>[]) new Aggregates<?>[tilesX*tilesY];
+	}
+	
+	/**Sparse aggregates with unboxed access for int and double default values.**/
+	@SuppressWarnings("unchecked")
+	public static <A> SparseAggregates<A> make(int lowX, int lowY, int highX, int highY, A defVal, int tileSize) {
+		if (defVal instanceof Integer) {return (SparseAggregates<A>) new IntValued(lowX, lowY, highX, highY, (Integer) defVal, tileSize);}
+		if (defVal instanceof Double) {return (SparseAggregates<A>) new DoubleValued(lowX, lowY, highX, highY, (Double) defVal, tileSize);}
+		return new SparseAggregates<>(lowX, lowY, highX, highY, defVal, tileSize);
+	}
+	
+	/**Sparse aggregates with the same bounds and tiling as the passed ones.**/
+	public static <A> SparseAggregates<A> like(SparseAggregates<?> like, A defVal) {
+		return make(like.lowX, like.lowY, like.highX, like.highY, defVal, like.tileSize);
+	}
+	
+	public int tileSize() {return tileSize;}
+	public int tilesX() {return tilesX;}
+	public int tilesY() {return tilesY;}
+	
+	/**Aggregates for the tile at the given tile index (row-major); null if nothing has been set there.**/
+	public Aggregates<A> tile(int idx) {return tiles[idx];}
+	
+	/**Aggregates for the tile at the given tile index, allocating it if needed.**/
+	public Aggregates<A> touch(int idx) {
+		Aggregates<A> tile = tiles[idx];
+		if (tile == null) {
+			int tx = idx % tilesX;
+			int ty = idx / tilesX;
+			int tLowX = lowX + tx*tileSize;
+			int tLowY = lowY + ty*tileSize;
+			tile = AggregateUtils.make(tLowX, tLowY, Math.min(highX, tLowX+tileSize), Math.min(highY, tLowY+tileSize), defVal);
+			tiles[idx] = tile;
+		}
+		return tile;
+	}
+	
+	/**How many tiles have been allocated?**/
+	public int touchedTiles() {
+		int count = 0;
+		for (Aggregates<A> tile: tiles) {if (tile != null) {count++;}}
+		return count;
+	}
+	
+	/**Is the tile holding x/y allocated?  (False positions certainly hold the default value.)**/
+	public boolean touched(int x, int y) {return tileAt(x,y) != null;}
+	
+	/**Same bounds and tile size?  Tiles of such sparse aggregates line up with each other.**/
+	public boolean sameTiling(SparseAggregates<?> other) {
+		return lowX == other.lowX && lowY == other.lowY && highX == other.highX && highY == other.highY && tileSize == other.tileSize;
+	}
+	
+	/**DESTRUCTIVELY reset the region to the default value, releasing tiles that are entirely inside of it.**/
+	public void clear(int lowX, int lowY, int highX, int highY) {
+		for (int idx=0; idx<tiles.length; idx++) {
+			Aggregates<A> tile = tiles[idx];
+			if (tile == null) {continue;}
+			if (tile.lowX() >= lowX && tile.lowY() >= lowY && tile.highX() <= highX && tile.highY() <= highY) {
+				tiles[idx] = null;
+			} else {
+				AggregateUtils.fill(tile, defVal, lowX, lowY, highX, highY);
+			}
+		}
+	}
+	
+	protected final Aggregates<A> tileAt(int x, int y) {
+		if (x<lowX || x >=highX || y<lowY || y>=highY) {return null;}
+		return tiles[((y-lowY) >> tileShift)*tilesX + ((x-lowX) >> tileShift)];
+	}
+	
+	protected final Aggregates<A> touchAt(int x, int y) {
+		return touch(((y-lowY) >> tileShift)*tilesX + ((x-lowX) >> tileShift));
+	}
+	
+	@Override
+	public A get(int x, int y) {
+		Aggregates<A> tile = tileAt(x,y);
+		return tile == null ? defVal : tile.get(x, y);
+	}
+
+	@Override
+	public void set(int x, int y, A val) {
+		if (x<lowX || x >=highX || y<lowY || y>=highY) {return;}
+		Aggregates<A> tile = tileAt(x,y);
+		if (tile == null) {
+			if (Util.isEqual(val, defVal)) {return;}
+			tile = touchAt(x,y);
+		}
+		tile.set(x, y, val);
+	}
+
+	@Override public Iterator<A> iterator() {return new Iterator2D<>(this);}
+	@Override public A defaultValue() {return defVal;}
+	@Override public int lowX() {return lowX;}
+	@Override public int lowY() {return lowY;}
+	@Override public int highX() {return highX;}
+	@Override public int highY() {return highY;}
+	
+	
+	/**Sparse aggregates of ints, with unboxed access.**/
+	public static final class IntValued extends SparseAggregates<Integer> implements Aggregates.IntValued {
+		private static final long serialVersionUID = 3302218016575981787L;
+		private final int defInt;
+		
+		public IntValued(int lowX, int lowY, int highX, int highY, int defVal, int tileSize) {
+			super(lowX, lowY, highX, highY, defVal, tileSize);
+			this.defInt = defVal;
+		}
+		
+		public int getInt(int x, int y) {
+			Aggregates<Integer> tile = tileAt(x,y);
+			return tile == null ? defInt : ((Aggregates.IntValued) tile).getInt(x, y);
+		}
+		
+		public void setInt(int x, int y, int val) {
+			if (x<lowX || x >=highX || y<lowY || y>=highY) {return;}
+			Aggregates<Integer> tile = tileAt(x,y);
+			if (tile == null) {
+				if (val == defInt) {return;}
+				tile = touchAt(x,y);
+			}
+			((Aggregates.IntValued) tile).setInt(x, y, val);
+		}
+		
+		public int defaultInt() {return defInt;}
+	}
+
+	/**Sparse aggregates of doubles, with unboxed access.**/
+	public static final class DoubleValued extends SparseAggregates<Double> implements Aggregates.DoubleValued {
+		private static final long serialVersionUID = -8125640418939525770L;
+		private final double defDouble;
+		
+		public DoubleValued(int lowX, int lowY, int highX, int highY, double defVal, int tileSize) {
+			super(lowX, lowY, highX, highY, defVal, tileSize);
+			this.defDouble = defVal;
+		}
+		
+		public double getDouble(int x, int y) {
+			Aggregates<Double> tile = tileAt(x,y);
+			return tile == null ? defDouble : ((Aggregates.DoubleValued) tile).getDouble(x, y);
+		}
+		
+		public void setDouble(int x, int y, double val) {
+			if (x<lowX || x >=highX || y<lowY || y>=highY) {return;}
+			Aggregates<Double> tile = tileAt(x,y);
+			if (tile == null) {
+				if (val == defDouble) {return;}
+				tile = touchAt(x,y);
+			}
+			((Aggregates.DoubleValued) tile).setDouble(x, y, val);
+		}
+		
+		public double defaultDouble() {return defDouble;}
+	}
+}
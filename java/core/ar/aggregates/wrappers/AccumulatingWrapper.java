@@ -0,0 +1,127 @@
+package ar.aggregates.wrappers;
+
+import java.util.Iterator;
+
+import ar.Aggregates;
+import ar.Aggregator;
+import ar.aggregates.AggregateUtils;
+import ar.aggregates.Iterator2D;
+import ar.rules.CategoricalCounts;
+
+/**Wrap a set of aggregates so an accumulating aggregator can update bins in place.
+ * 
+ * The first update to a bin creates a mutable accumulator from the bin's current value;
+ * later updates modify that accumulator (see Aggregator.Accumulating).
+ * The wrapped aggregates are only changed by "freeze," which stores the frozen value of every accumulator.
+ * Reading a bin with a live accumulator freezes a snapshot, so "get" is correct but not fast.
+ * 
+ * The accumulators are held in an array with a slot for every bin of the wrapped aggregates.
+ * Memory budgets for aggregation buffers include that array (see accumulates and ar.renderers.AggregateBuffers.bytesPerBin).
+ * 
+ * Accumulators are not thread safe, so a wrapper must only be used by one thread.
+ * Reported bounds are the set-able region of the wrapped aggregates (ignoring any TouchedBoundsWrapper).
+ * **/
+public class AccumulatingWrapper<IN,A,ACC> implements Aggregates<A> {
+	private static final long serialVersionUID = -2306368374803862313L;
+	private final Aggregates<A> base;
+	private final Aggregator.Accumulating<IN,A,ACC> op;
+	private final int lowX, lowY, highX, highY;
+	private final Object[] accumulators;
+	
+	public AccumulatingWrapper(Aggregates<A> base, Aggregator.Accumulating<IN,A,ACC> op) {
+		Aggregates<?> region = base;
+		while (region instanceof TouchedBoundsWrapper) {region = ((TouchedBoundsWrapper<?>) region).base();}
+		
+		this.base = base;
+		this.op = op;
+		this.lowX = region.lowX();
+		this.lowY = region.lowY();
+		this.highX = region.highX();
+		this.highY = region.highY();
+		this.accumulators = new Object[(int) AggregateUtils.size(lowX, lowY, highX, highY)];
+	}
+	
+	/**Return the aggregate set that this class wraps (values there do not include un-frozen accumulators).**/
+	public Aggregates<A> base() {return base;}
+	
+	/**DESTRUCTIVELY add the update to the accumulator of x/y.  Positions outside of the bounds are ignored.**/
+	@SuppressWarnings("unchecked")
+	public void accumulate(int x, int y, IN update) {
+		if (x < lowX || x >= highX || y < lowY || y >= highY) {return;}
+		int idx = AggregateUtils.idx(x, y, lowX, lowY, highX, highY);
+		ACC acc = (ACC) accumulators[idx];
+		if (acc == null) {
+			acc = op.accumulator(base.get(x, y));
+			accumulators[idx] = acc;
+		}
+		op.accumulate(acc, update);
+	}
+	
+	/**Store the frozen value of each accumulator in the wrapped aggregates and discard the accumulators.
+	 * @return The wrapped aggregates
+	 * **/
+	@SuppressWarnings("unchecked")
+	public Aggregates<A> freeze() {
+		for (int idx=0; idx<accumulators.length; idx++) {
+			ACC acc = (ACC) accumulators[idx];
+			if (acc == null) {continue;}
+			int width = highX-lowX;
+			base.set(lowX + (idx % width), lowY + (idx / width), op.freeze(acc));
+			accumulators[idx] = null;
+		}
+		return base;
+	}
+	
+	@SuppressWarnings("unchecked")
+	public A get(int x, int y) {
+		if (x >= lowX && x < highX && y >= lowY && y < highY) {
+			ACC acc = (ACC) accumulators[AggregateUtils.idx(x, y, lowX, lowY, highX, highY)];
+			if (acc != null) {return op.freeze(acc);}
+		}
+		return base.get(x, y);
+	}
+
+	public void set(int x, int y, A val) {
+		if (x >= lowX && x < highX && y >= lowY && y < highY) {
+			accumulators[AggregateUtils.idx(x, y, lowX, lowY, highX, highY)] = null;
+		}
+		base.set(x, y, val);
+	}
+	
+	public Iterator<A> iterator() {return new Iterator2D<>(this);}
+	public A defaultValue() {return base.defaultValue();}
+	public int lowX() {return lowX;}
+	public int lowY() {return lowY;}
+	public int highX() {return highX;}
+	public int highY() {return highY;}
+	
+	/**Wrap the target if the aggregator is accumulating (and the target is small enough to track).
+	 * Targets that are already updated in place (e.g., dense categorical aggregates) are not wrapped.
+	 * @return The target itself or an AccumulatingWrapper around it
+	 * **/
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public static <I,A> Aggregates<A> wrap(Aggregates<A> target, Aggregator<I,A> op) {
+		if (!(op instanceof Aggregator.Accumulating)) {return target;}
+		if (target instanceof Aggregates.CategoryValued) {return target;}	//Already updated in place
+		if (AggregateUtils.size(target) <= 0 || AggregateUtils.size(target) > Integer.MAX_VALUE) {return target;}
+		return new AccumulatingWrapper(target, (Aggregator.Accumulating) op);
+	}
+	
+	/**Will aggregates made for the given aggregator (see AggregateUtils.make) be wrapped by "wrap"?
+	 * True for accumulating aggregators, except those whose identity is stored densely by category.
+	 * **/
+	public static boolean accumulates(Aggregator<?,?> op) {
+		if (!(op instanceof Aggregator.Accumulating)) {return false;}
+		Object identity = op.identity();
+		return !(identity instanceof CategoricalCounts && ((CategoricalCounts<?>) identity).categories() != null);
+	}
+	
+	/**Freeze the aggregates if they were wrapped by "wrap."
+	 * @return The aggregates originally passed to "wrap"
+	 * **/
+	@SuppressWarnings("unchecked")
+	public static <A> Aggregates<A> unwrap(Aggregates<A> aggs) {
+		if (aggs instanceof AccumulatingWrapper) {return ((AccumulatingWrapper<?,A,?>) aggs).freeze();}
+		return aggs;
+	}
+}
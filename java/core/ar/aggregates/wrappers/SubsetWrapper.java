@@ -3,6 +3,7 @@ package ar.aggregates.wrappers;
 import java.util.Iterator;
 
 import ar.Aggregates;
+import ar.aggregates.AggregateUtils;
 import ar.aggregates.Iterator2D;
 
 /**Wrap a set of aggregates, but make it have a different high/low X/Y than it did before.
@@ -13,8 +14,9 @@ import ar.aggregates.Iterator2D;
  * This is used to make zero-copy subsets and thus its name.
  * 
  * Setting outside of the ORIGINAL bounds results in no change.
+ * Row access is passed through to the base (see AggregateUtils.getRow and friends).
  * **/
-public class SubsetWrapper<A> implements Aggregates<A> {
+public class SubsetWrapper<A> implements Aggregates.Rows<A> {
 	private final Aggregates<A> base;
 	private final int lowX, lowY, highX, highY;
 	
@@ -35,6 +37,9 @@ public class SubsetWrapper<A> implements Aggregates<A> {
 
 	public void set(int x, int y, A val) {base.set(x,y, val);}
 
+	public void getRow(int x, int y, A[] dest, int offset, int length) {AggregateUtils.getRow(base, x, y, dest, offset, length);}
+	public void setRow(int x, int y, A[] src, int offset, int length) {AggregateUtils.setRow(base, x, y, src, offset, length);}
+
 	public A defaultValue() {return base.defaultValue();}
 	
 	public int lowX() {return lowX;}
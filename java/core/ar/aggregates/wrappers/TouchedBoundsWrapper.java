@@ -1,14 +1,18 @@
 package ar.aggregates.wrappers;
 
 import java.util.Iterator;
+import java.util.List;
 
 import ar.Aggregates;
+import ar.aggregates.AggregateUtils;
 import ar.aggregates.Iterator2D;
+import ar.rules.CategoricalCounts;
 import ar.util.Util;
 
 
-/**Wrap a set of aggregates.  Report min/max X/Y based on values set instead of the region that is set-able.**/
-public class TouchedBoundsWrapper<A> implements Aggregates<A> {
+/**Wrap a set of aggregates.  Report min/max X/Y based on values set instead of the region that is set-able.
+ * Row access is passed through to the base (see AggregateUtils.getRow and friends).**/
+public class TouchedBoundsWrapper<A> implements Aggregates.Rows<A> {
 	private final Aggregates<A> base;
 	private int lowX = Integer.MAX_VALUE;
 	private int lowY = Integer.MAX_VALUE;
@@ -42,7 +46,35 @@ public class TouchedBoundsWrapper<A> implements Aggregates<A> {
 
 	public void set(int x, int y, A val) {
 		base.set(x,y, val);
-		
+		touch(x,y);
+	}
+	
+	public void getRow(int x, int y, A[] dest, int offset, int length) {AggregateUtils.getRow(base, x, y, dest, offset, length);}
+
+	public void setRow(int x, int y, A[] src, int offset, int length) {
+		AggregateUtils.setRow(base, x, y, src, offset, length);
+		touchRow(x, y, length);
+	}
+	
+	/**Record that the region from lowX/lowY (inclusive) to highX/highY (exclusive) has been set.
+	 * For code that writes to the base directly.**/
+	public void touch(int lowX, int lowY, int highX, int highY) {
+		if (lowX >= highX || lowY >= highY) {return;}
+		touch(lowX, lowY);
+		touch(highX-1, highY-1);
+	}
+	
+	/**Record that x...x+length-1 on row y has been set.**/
+	protected final void touchRow(int x, int y, int length) {
+		int start = Math.max(x, base.lowX());
+		int end = Math.min(x+length, base.highX());
+		if (start >= end) {return;}
+		touch(start, y);
+		touch(end-1, y);
+	}
+	
+	/**Record that x/y has been set.**/
+	protected final void touch(int x, int y) {
 		if (x < lowX && x >= base.lowX()) {lowX = x;}
 		if (y < lowY && y >= base.lowY()) {lowY = y;}
 		if (x >= highX && x < base.highX()) {highX = x+1;}
@@ -57,4 +89,84 @@ public class TouchedBoundsWrapper<A> implements Aggregates<A> {
 	public int highY() {return Math.min(highY, base.highY());}
 
 	public String toString() {return String.format("Wrapped Aggregates from %d,%d to %d,%d.", lowX, lowY, highX,highY);}
+	
+	/**Wrap a set of aggregates, retaining primitive access if the base provides it.**/
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public static <A> TouchedBoundsWrapper<A> wrap(Aggregates<A> base, boolean discoverTouched) {
+		if (base instanceof Aggregates.CategoryValued) {
+			return (TouchedBoundsWrapper<A>) new CategoryValued((Aggregates.CategoryValued) base, discoverTouched);
+		} else if (base instanceof Aggregates.IntValued) {
+			return (TouchedBoundsWrapper<A>) new IntValued((Aggregates.IntValued) base, discoverTouched);
+		} else if (base instanceof Aggregates.DoubleValued) {
+			return (TouchedBoundsWrapper<A>) new DoubleValued((Aggregates.DoubleValued) base, discoverTouched);
+		} else {
+			return new TouchedBoundsWrapper<>(base, discoverTouched);
+		}
+	}
+
+	/**Touched-bounds wrapper that passes through unboxed int access.**/
+	public static final class IntValued extends TouchedBoundsWrapper<Integer> implements Aggregates.IntRows {
+		private static final long serialVersionUID = 8477052084778883867L;
+		private final Aggregates.IntValued base;
+		
+		public IntValued(Aggregates.IntValued base, boolean discoverTouched) {
+			super(base, discoverTouched);
+			this.base = base;
+		}
+		
+		public int getInt(int x, int y) {return base.getInt(x, y);}
+		public int defaultInt() {return base.defaultInt();}
+		public void setInt(int x, int y, int val) {
+			base.setInt(x, y, val);
+			touch(x,y);
+		}
+		public void getInts(int x, int y, int[] dest, int offset, int length) {AggregateUtils.getInts(base, x, y, dest, offset, length);}
+		public void setInts(int x, int y, int[] src, int offset, int length) {
+			AggregateUtils.setInts(base, x, y, src, offset, length);
+			touchRow(x, y, length);
+		}
+	}
+
+	/**Touched-bounds wrapper that passes through unboxed double access.**/
+	public static final class DoubleValued extends TouchedBoundsWrapper<Double> implements Aggregates.DoubleRows {
+		private static final long serialVersionUID = -3321800810696156187L;
+		private final Aggregates.DoubleValued base;
+		
+		public DoubleValued(Aggregates.DoubleValued base, boolean discoverTouched) {
+			super(base, discoverTouched);
+			this.base = base;
+		}
+		
+		public double getDouble(int x, int y) {return base.getDouble(x, y);}
+		public double defaultDouble() {return base.defaultDouble();}
+		public void setDouble(int x, int y, double val) {
+			base.setDouble(x, y, val);
+			touch(x,y);
+		}
+		public void getDoubles(int x, int y, double[] dest, int offset, int length) {AggregateUtils.getDoubles(base, x, y, dest, offset, length);}
+		public void setDoubles(int x, int y, double[] src, int offset, int length) {
+			AggregateUtils.setDoubles(base, x, y, src, offset, length);
+			touchRow(x, y, length);
+		}
+	}
+
+	/**Touched-bounds wrapper that passes through per-category access.**/
+	public static final class CategoryValued<T> extends TouchedBoundsWrapper<CategoricalCounts<T>> implements Aggregates.CategoryValued<T> {
+		private static final long serialVersionUID = -3414801472434113099L;
+		private final Aggregates.CategoryValued<T> base;
+		
+		public CategoryValued(Aggregates.CategoryValued<T> base, boolean discoverTouched) {
+			super(base, discoverTouched);
+			this.base = base;
+		}
+		
+		public List<T> categories() {return base.categories();}
+		public int index(T category) {return base.index(category);}
+		public int count(int x, int y, int category) {return base.count(x, y, category);}
+		public int fullSize(int x, int y) {return base.fullSize(x, y);}
+		public void add(int x, int y, int category, int count) {
+			base.add(x, y, category, count);
+			touch(x,y);
+		}
+	}
 }
@@ -0,0 +1,129 @@
+package ar.aggregates.wrappers;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import ar.Aggregates;
+import ar.Transfer;
+import ar.aggregates.AggregateUtils;
+import ar.aggregates.Iterator2D;
+import ar.aggregates.implementations.ColorAggregates;
+
+/**Present the results of an item-wise transfer as a set of aggregates, without computing them all.
+ * 
+ * Values are computed on request, as transfer.at(x,y,base), so reading position x/y is 
+ * the same as reading x/y from rend.transfer(base, transfer).
+ * Nothing is stored, so repeated reads recompute (see Memoized for an alternative). 
+ * 
+ * Setting values is not supported.
+ * **/
+public class TransferWrapper<IN,OUT> implements Aggregates<OUT> {
+	private static final long serialVersionUID = 6873303432598454611L;
+	protected final Aggregates<? extends IN> base;
+	protected final Transfer.ItemWise<IN,OUT> transfer;
+	
+	public TransferWrapper(Aggregates<? extends IN> base, Transfer.ItemWise<IN,OUT> transfer) {
+		this.base = base;
+		this.transfer = transfer;
+	}
+	
+	/**Return the aggregate set the transfer is applied to.**/
+	public Aggregates<? extends IN> base() {return base;}
+	
+	/**Return the transfer applied.**/
+	public Transfer.ItemWise<IN,OUT> transfer() {return transfer;}
+	
+	public Iterator<OUT> iterator() {return new Iterator2D<>(this);}
+	
+	public OUT get(int x, int y) {return transfer.at(x, y, base);}
+	
+	public void set(int x, int y, OUT val) {throw new UnsupportedOperationException("Transfer results are read-only.");}
+
+	public OUT defaultValue() {return transfer.emptyValue();}
+	
+	public int lowX() {return base.lowX();}
+	public int lowY() {return base.lowY();}
+	public int highX() {return base.highX();}
+	public int highY() {return base.highY();}
+	
+	
+	/**Transfer results that are computed one tile at a time, on first request, and then retained.
+	 * 
+	 * Reading any position computes (and stores) the whole tile around it.
+	 * This is useful when only part of a large transfer result will be used 
+	 * (such as showing a small window of large aggregates).  
+	 * The cost is then proportional to the tiles read instead of the full aggregates.
+	 * 
+	 * Safe for concurrent readers: a tile may be computed twice on a race, but both results are the same.
+	 * **/
+	public static class Memoized<IN,OUT> extends TransferWrapper<IN,OUT> {
+		private static final long serialVersionUID = 8043832030644377987L;
+		/**Default width (and height) of a memoized tile.**/
+		public static int TILE_SIZE = 256;
+		
+		private final int tileSize, tilesX, tilesY;
+		private final AtomicReferenceArray<Aggregates<OUT>> tiles;
+		
+		public Memoized(Aggregates<? extends IN> base, Transfer.ItemWise<IN,OUT> transfer) {this(base, transfer, TILE_SIZE);}
+		public Memoized(Aggregates<? extends IN> base, Transfer.ItemWise<IN,OUT> transfer, int tileSize) {
+			super(base, transfer);
+			this.tileSize = tileSize;
+			this.tilesX = Math.max(0, (base.highX()-base.lowX()+tileSize-1)/tileSize);
+			this.tilesY = Math.max(0, (base.highY()-base.lowY()+tileSize-1)/tileSize);
+			this.tiles = new AtomicReferenceArray<>(tilesX*tilesY);
+		}
+		
+		@Override
+		public OUT get(int x, int y) {
+			Aggregates<OUT> tile = tile(x, y);
+			return tile == null ? transfer.at(x, y, base) : tile.get(x, y);
+		}
+		
+		/**The tile holding x/y, computing it if needed.  Null if x/y is outside of the bounds.**/
+		public Aggregates<OUT> tile(int x, int y) {
+			if (x < lowX() || y < lowY() || x >= highX() || y >= highY()) {return null;}
+			int tx = (x-lowX())/tileSize;
+			int ty = (y-lowY())/tileSize;
+			int idx = ty*tilesX+tx;
+			Aggregates<OUT> tile = tiles.get(idx);
+			if (tile == null) {
+				tiles.compareAndSet(idx, null, compute(tx, ty));
+				tile = tiles.get(idx);
+			}
+			return tile;
+		}
+		
+		/**How many tiles have been computed so far?**/
+		public int computedTiles() {
+			int count=0;
+			for (int i=0; i<tiles.length(); i++) {if (tiles.get(i) != null) {count++;}}
+			return count;
+		}
+		
+		private Aggregates<OUT> compute(int tx, int ty) {
+			int lowX = lowX()+tx*tileSize;
+			int lowY = lowY()+ty*tileSize;
+			int highX = Math.min(highX(), lowX+tileSize);
+			int highY = Math.min(highY(), lowY+tileSize);
+			
+			Aggregates<OUT> tile = AggregateUtils.make(lowX, lowY, highX, highY, transfer.emptyValue());
+			if (transfer instanceof Transfer.ARGBValued && tile instanceof ColorAggregates) {
+				@SuppressWarnings("unchecked")
+				Transfer.ARGBValued<IN> argb = (Transfer.ARGBValued<IN>) transfer;
+				ColorAggregates colors = (ColorAggregates) tile;
+				for (int x=lowX; x<highX; x++) {
+					for (int y=lowY; y<highY; y++) {
+						colors.setInt(x, y, argb.atARGB(x, y, base));
+					}
+				}
+				return tile;
+			}
+			for (int x=lowX; x<highX; x++) {
+				for (int y=lowY; y<highY; y++) {
+					tile.set(x, y, transfer.at(x, y, base));
+				}
+			}
+			return tile;
+		}
+	}
+}
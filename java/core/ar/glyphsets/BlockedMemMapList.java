@@ -0,0 +1,430 @@
+package ar.glyphsets;
+
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import ar.Glyph;
+import ar.Glyphset;
+import ar.glyphsets.implicitgeometry.Indexed;
+import ar.glyphsets.implicitgeometry.Shaper;
+import ar.glyphsets.implicitgeometry.Valuer;
+import ar.util.Util;
+import ar.util.memoryMapping.MappedFile;
+import ar.util.memoryMapping.MemMapEncoder;
+import ar.util.memoryMapping.MemMapEncoder.TYPE;
+import ar.util.memoryMapping.SharedMappedFile;
+
+/**Implicit geometry glyphset backed by a memory-mapped file in the blocked columnar format
+ * (see MemMapEncoder.writeBlocked).
+ *
+ * Records are stored in blocks of a fixed number of rows.  Within a block, each field is a column,
+ * so reading items only touches the columns that the shaper, valuer and filters read.
+ * Every block has a zone map entry: the minimum and maximum of each field in the block.
+ * Zone maps let whole blocks be skipped without reading them:
+ *
+ *   + "within" keeps only the blocks whose bounds touch a region.
+ *     Block bounds come from the shaper applied to the zone map minima and maxima,
+ *     so this requires a Shaper.SafeApproximate shaper.
+ *     The point and rectangle selectors in TouchesPixel apply this for the target aggregates automatically.
+ *   + "where" keeps only the items with a field value in a range; blocks whose range misses it are skipped.
+ *
+ * Segment indices run over the rows of the kept blocks BEFORE "where" filters are applied,
+ * so segments() may be larger than size() and equal segments may hold different numbers of items.
+ *
+ * As with MemMapList, instances are NOT thread-safe, but segments can be used concurrently.
+ * The file is mapped once and shared by all segments and filtered views.
+ *
+ * @param <G> Geometry type
+ * @param <I> Value type
+ */
+public class BlockedMemMapList<G,I> implements Glyphset.NumericScannable<G,I> {
+	private final SharedMappedFile buffer;
+	private final MemMapEncoder.BlockedHeader header;
+	private final Shaper<G,Indexed> shaper;
+	private final Valuer<Indexed,I> valuer;
+
+	//Items are kept as spans: rows starts[s] (inclusive) to ends[s] (exclusive) of block blocks[s]
+	private final int[] blocks, starts, ends;
+	private final long[] prefix;	//Rows in spans before span s; last entry is the total
+
+	private final int[] filterFields;
+	private final double[] filterLows, filterHighs;
+
+	private long size = -1;
+	private Rectangle2D bounds;
+
+	public BlockedMemMapList(File source, Shaper<G,Indexed> shaper, Valuer<Indexed,I> valuer) {
+		this.shaper = shaper;
+		this.valuer = valuer;
+		try {this.buffer = new SharedMappedFile(source, MemMapList.BUFFER_BYTES);}
+		catch (Exception e) {throw new RuntimeException("Error construction buffer for blocked mem-mapped list.", e);}
+		this.header = MemMapEncoder.BlockedHeader.from(buffer);
+
+		this.blocks = new int[header.blocks];
+		this.starts = new int[header.blocks];
+		this.ends = new int[header.blocks];
+		for (int b=0; b<header.blocks; b++) {
+			blocks[b] = b;
+			ends[b] = header.rows(b);
+		}
+		this.prefix = prefix(ends, starts);
+		this.filterFields = new int[0];
+		this.filterLows = new double[0];
+		this.filterHighs = new double[0];
+	}
+
+	private BlockedMemMapList(BlockedMemMapList<G,I> source, int[] blocks, int[] starts, int[] ends,
+			int[] filterFields, double[] filterLows, double[] filterHighs) {
+		this.buffer = source.buffer;
+		this.header = source.header;
+		this.shaper = source.shaper;
+		this.valuer = source.valuer;
+		this.blocks = blocks;
+		this.starts = starts;
+		this.ends = ends;
+		this.prefix = prefix(ends, starts);
+		this.filterFields = filterFields;
+		this.filterLows = filterLows;
+		this.filterHighs = filterHighs;
+	}
+
+	private static long[] prefix(int[] ends, int[] starts) {
+		long[] prefix = new long[ends.length+1];
+		for (int s=0; s<ends.length; s++) {prefix[s+1] = prefix[s] + (ends[s]-starts[s]);}
+		return prefix;
+	}
+
+	/**Valuer being used to establish a value for each entry.**/
+	public Valuer<Indexed,I> valuer() {return valuer;}
+
+	/**Shaper being used to provide geometry for each entry.**/
+	public Shaper<G,Indexed> shaper() {return shaper;}
+
+	/**Types of the fields in each record.**/
+	public TYPE[] types() {return header.types;}
+
+	/**Number of blocks (whole or partial) in this glyphset.**/
+	public int blocks() {return blocks.length;}
+
+	/**Only the blocks that may have items in the given region.
+	 * Items are not tested individually, so items outside of the region may remain.
+	 * If the shaper is not a Shaper.SafeApproximate, block bounds are unknown and this glyphset is returned.
+	 * **/
+	public BlockedMemMapList<G,I> within(Rectangle2D region) {
+		if (!(shaper instanceof Shaper.SafeApproximate)) {return this;}
+		List<Integer> keep = new ArrayList<>();
+		for (int s=0; s<blocks.length; s++) {
+			Rectangle2D b = blockBounds(blocks[s]);
+			if (b.getMaxX() >= region.getMinX() && b.getMinX() <= region.getMaxX()
+					&& b.getMaxY() >= region.getMinY() && b.getMinY() <= region.getMaxY()) {
+				keep.add(s);
+			}
+		}
+		if (keep.size() == blocks.length) {return this;}
+		return keep(keep, filterFields, filterLows, filterHighs);
+	}
+
+	/**Only the items whose value in the given field is between low and high (inclusive).
+	 * Blocks where no item can qualify (per the zone map) are skipped without being read.
+	 * **/
+	public BlockedMemMapList<G,I> where(int field, double low, double high) {
+		if (field < 0 || field >= header.types.length) {throw new IllegalArgumentException(String.format("No field %d in records of %d fields.", field, header.types.length));}
+		List<Integer> keep = new ArrayList<>();
+		for (int s=0; s<blocks.length; s++) {
+			long zone = header.zoneAddress(blocks[s], field);
+			if (buffer.getDouble(zone) <= high && buffer.getDouble(zone+TYPE.DOUBLE.bytes) >= low) {keep.add(s);}
+		}
+
+		int filters = filterFields.length;
+		int[] fields = Arrays.copyOf(filterFields, filters+1);
+		double[] lows = Arrays.copyOf(filterLows, filters+1);
+		double[] highs = Arrays.copyOf(filterHighs, filters+1);
+		fields[filters] = field;
+		lows[filters] = low;
+		highs[filters] = high;
+		return keep(keep, fields, lows, highs);
+	}
+
+	private BlockedMemMapList<G,I> keep(List<Integer> spans, int[] fields, double[] lows, double[] highs) {
+		int[] b = new int[spans.size()], s = new int[spans.size()], e = new int[spans.size()];
+		for (int i=0; i<b.length; i++) {
+			int span = spans.get(i);
+			b[i] = blocks[span];
+			s[i] = starts[span];
+			e[i] = ends[span];
+		}
+		return new BlockedMemMapList<>(this, b, s, e, fields, lows, highs);
+	}
+
+	/**Bounds of a whole block, from its zone map.  Only meaningful for Shaper.SafeApproximate shapers.**/
+	private Rectangle2D blockBounds(int block) {
+		Rectangle2D min = Util.boundOne(shaper.shape(new Zone(buffer, header, block, false)));
+		Rectangle2D max = Util.boundOne(shaper.shape(new Zone(buffer, header, block, true)));
+		return Util.bounds(min, max);
+	}
+
+	private boolean passes(Entry entry) {
+		for (int i=0; i<filterFields.length; i++) {
+			double v = entry.getDouble(filterFields[i]);
+			if (!(v >= filterLows[i] && v <= filterHighs[i])) {return false;}
+		}
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void scan(long low, long high, final Glyphset.Visitor<? super G, ? super I> visitor) {
+		final FlyweightGlyph<G,I> glyph = new FlyweightGlyph<>();
+		final Shaper.Reusing<G,Indexed> reusing = shaper instanceof Shaper.Reusing ? (Shaper.Reusing<G,Indexed>) shaper : null;
+		scanRows(low, high, new RowVisitor() {
+			G shape = null;
+			public void visit(Entry entry) {
+				shape = reusing == null ? shaper.shape(entry) : reusing.shape(entry, shape);
+				visitor.visit(glyph.set(shape, valuer.value(entry)));
+			}
+		});
+	}
+
+	/**Are values read by a primitive valuer (see Valuer.IntValued and DoubleValued)?**/
+	public boolean numeric() {return valuer instanceof Valuer.IntValued || valuer instanceof Valuer.DoubleValued;}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void scanNumbers(long low, long high, final Glyphset.NumericVisitor<? super G> visitor) {
+		if (!numeric()) {throw new UnsupportedOperationException("Valuer does not produce unboxed values: " + valuer);}
+		final Valuer.IntValued<Indexed> ints = valuer instanceof Valuer.IntValued ? (Valuer.IntValued<Indexed>) valuer : null;
+		final Valuer.DoubleValued<Indexed> doubles = ints == null ? (Valuer.DoubleValued<Indexed>) valuer : null;
+		final Shaper.Reusing<G,Indexed> reusing = shaper instanceof Shaper.Reusing ? (Shaper.Reusing<G,Indexed>) shaper : null;
+		scanRows(low, high, new RowVisitor() {
+			G shape = null;
+			public void visit(Entry entry) {
+				shape = reusing == null ? shaper.shape(entry) : reusing.shape(entry, shape);
+				visitor.visit(shape, ints != null ? ints.intValue(entry) : doubles.doubleValue(entry));
+			}
+		});
+	}
+
+	/**Receives the rows of a scan (see scanRows); the entry is reused between rows.**/
+	private static interface RowVisitor {public void visit(Entry entry);}
+	
+	/**Pass the rows of items low (inclusive) to high (exclusive) to the visitor, skipping rows the filters reject.**/
+	private void scanRows(long low, long high, RowVisitor visitor) {
+		Entry entry = new Entry(buffer, header);
+		boolean filtered = filterFields.length > 0;
+
+		long item = 0;
+		for (int s=0; s<blocks.length && item < high; s++) {
+			int row = starts[s];
+			if (!filtered && item < low) {	//Without filters, rows before "low" can be skipped without reading them
+				int skip = (int) Math.min(low-item, ends[s]-starts[s]);
+				row += skip;
+				item += skip;
+			}
+			for (; row<ends[s] && item < high; row++) {
+				entry.at(blocks[s], row);
+				if (filtered && !passes(entry)) {continue;}
+				if (item >= low) {visitor.visit(entry);}
+				item++;
+			}
+		}
+	}
+
+	public Iterator<Glyph<G,I>> iterator() {return new Rows();}
+
+	/**Number of items.  With "where" filters, the filtered fields are read to count them (once).**/
+	public long size() {
+		if (filterFields.length == 0) {return prefix[blocks.length];}
+		if (size < 0) {
+			Entry entry = new Entry(buffer, header);
+			long count = 0;
+			for (int s=0; s<blocks.length; s++) {
+				for (int row=starts[s]; row<ends[s]; row++) {
+					if (passes(entry.at(blocks[s], row))) {count++;}
+				}
+			}
+			size = count;
+		}
+		return size;
+	}
+
+	public boolean isEmpty() {return segments() == 0 || size() == 0;}
+	public long segments() {return prefix[blocks.length];}
+
+	public Glyphset<G,I> segment(long bottom, long top) throws IllegalArgumentException {
+		if (bottom < 0 || top > segments() || bottom > top) {
+			throw new IllegalArgumentException(String.format("Invalid segment %d-%d of %d.", bottom, top, segments()));
+		}
+		if (bottom == top) {return new BlockedMemMapList<>(this, new int[0], new int[0], new int[0], filterFields, filterLows, filterHighs);}
+
+		int first = span(bottom);
+		int last = span(top-1);
+		int[] b = Arrays.copyOfRange(blocks, first, last+1);
+		int[] s = Arrays.copyOfRange(starts, first, last+1);
+		int[] e = Arrays.copyOfRange(ends, first, last+1);
+		s[0] = starts[first] + (int) (bottom-prefix[first]);
+		e[e.length-1] = starts[last] + (int) (top-prefix[last]);
+		return new BlockedMemMapList<>(this, b, s, e, filterFields, filterLows, filterHighs);
+	}
+
+	/**Span holding the given segment index.**/
+	private int span(long index) {
+		int s = Arrays.binarySearch(prefix, index);
+		return s >= 0 ? s : -s-2;
+	}
+
+	/**Bounds from the zone maps of the blocks kept (which may be larger than the items' bounds)
+	 * for Shaper.SafeApproximate shapers; otherwise found by scanning.**/
+	public Rectangle2D bounds() {
+		if (bounds != null) {return bounds;}
+		final Rectangle2D b = new Rectangle2D.Double(0,0,-1,-1);
+		if (shaper instanceof Shaper.SafeApproximate) {
+			for (int block: blocks) {Util.add(b, blockBounds(block));}
+		} else {
+			scan(0, Long.MAX_VALUE, new Glyphset.Visitor<G,I>() {
+				public void visit(Glyph<? extends G, ? extends I> glyph) {
+					Rectangle2D bound = Util.boundOne(glyph.shape());
+					if (bound != null) {Util.add(b, bound);}
+				}
+			});
+		}
+		bounds = b;
+		return bounds;
+	}
+
+	/**Iterates the items, making a new glyph for each.**/
+	private final class Rows implements Iterator<Glyph<G,I>> {
+		private final Entry entry = new Entry(buffer, header);
+		private int span = 0;
+		private int row = blocks.length == 0 ? 0 : starts[0];
+		private boolean ready = false;
+
+		private boolean advance() {
+			while (span < blocks.length) {
+				if (row >= ends[span]) {
+					span++;
+					if (span < blocks.length) {row = starts[span];}
+					continue;
+				}
+				if (passes(entry.at(blocks[span], row))) {return true;}
+				row++;
+			}
+			return false;
+		}
+
+		public boolean hasNext() {
+			if (!ready) {ready = advance();}
+			return ready;
+		}
+
+		public Glyph<G,I> next() {
+			if (!hasNext()) {return null;}
+			Glyph<G,I> g = new SimpleGlyph<>(shaper.shape(entry), valuer.value(entry));
+			ready = false;
+			row++;
+			return g;
+		}
+
+		public void remove() {throw new UnsupportedOperationException();}
+	}
+
+	/**A record of a blocked file.  Fields are read only when requested.
+	 * Can be moved between records (see "at").**/
+	public static final class Entry implements Indexed {
+		private static final long serialVersionUID = 1842079137260476311L;
+		private final MappedFile buffer;
+		private final MemMapEncoder.BlockedHeader header;
+		private int block, row;
+
+		public Entry(MappedFile buffer, MemMapEncoder.BlockedHeader header) {
+			this.buffer = buffer;
+			this.header = header;
+		}
+
+		/**Move to the given row of the given block.
+		 * @return this entry
+		 * **/
+		public Entry at(int block, int row) {
+			this.block = block;
+			this.row = row;
+			return this;
+		}
+
+		public Object get(int f) {
+			long offset = header.address(block, f, row);
+			switch(header.types[f]) {
+				case INT: return buffer.getInt(offset);
+				case SHORT: return buffer.getShort(offset);
+				case LONG: return buffer.getLong(offset);
+				case DOUBLE: return buffer.getDouble(offset);
+				case FLOAT: return buffer.getFloat(offset);
+				case BYTE: return buffer.get(offset);
+				case CHAR: return buffer.getChar(offset);
+				default: throw new IllegalArgumentException("Unhandled type " + header.types[f] + " at index " + f);
+			}
+		}
+
+		public double getDouble(int f) {
+			long offset = header.address(block, f, row);
+			switch(header.types[f]) {
+				case DOUBLE: return buffer.getDouble(offset);
+				case FLOAT: return buffer.getFloat(offset);
+				case INT: return buffer.getInt(offset);
+				case LONG: return buffer.getLong(offset);
+				case SHORT: return buffer.getShort(offset);
+				case BYTE: return buffer.get(offset);
+				case CHAR: return buffer.getChar(offset);
+				default: throw new IllegalArgumentException("Unhandled type " + header.types[f] + " at index " + f);
+			}
+		}
+
+		public int getInt(int f) {
+			long offset = header.address(block, f, row);
+			switch(header.types[f]) {
+				case INT: return buffer.getInt(offset);
+				case SHORT: return buffer.getShort(offset);
+				case BYTE: return buffer.get(offset);
+				case CHAR: return buffer.getChar(offset);
+				default: return (int) getLong(f);
+			}
+		}
+
+		public long getLong(int f) {
+			long offset = header.address(block, f, row);
+			switch(header.types[f]) {
+				case LONG: return buffer.getLong(offset);
+				case DOUBLE: return (long) buffer.getDouble(offset);
+				case FLOAT: return (long) buffer.getFloat(offset);
+				case INT: return buffer.getInt(offset);
+				case SHORT: return buffer.getShort(offset);
+				case BYTE: return buffer.get(offset);
+				case CHAR: return buffer.getChar(offset);
+				default: throw new IllegalArgumentException("Unhandled type " + header.types[f] + " at index " + f);
+			}
+		}
+	}
+
+	/**Minimum or maximum record of a block, from its zone map (all fields as doubles).**/
+	private static final class Zone implements Indexed {
+		private static final long serialVersionUID = -4396925364286335166L;
+		private final MappedFile buffer;
+		private final MemMapEncoder.BlockedHeader header;
+		private final int block;
+		private final boolean max;
+
+		public Zone(MappedFile buffer, MemMapEncoder.BlockedHeader header, int block, boolean max) {
+			this.buffer = buffer;
+			this.header = header;
+			this.block = block;
+			this.max = max;
+		}
+
+		public double getDouble(int f) {return buffer.getDouble(header.zoneAddress(block, f) + (max ? TYPE.DOUBLE.bytes : 0));}
+		public Object get(int f) {return getDouble(f);}
+		public int getInt(int f) {return (int) getDouble(f);}
+		public long getLong(int f) {return (long) getDouble(f);}
+	}
+}
@@ -0,0 +1,277 @@
+package ar.glyphsets;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import ar.Glyph;
+import ar.Glyphset;
+import ar.util.Util;
+
+/**Points or rectangles stored column-by-column in primitive arrays.
+ *
+ * Instead of a glyph object (with a shape object and a boxed value) per item,
+ * positions are kept in x/y columns (plus width/height columns for rectangles)
+ * and values in an int or double column, or as int codes into a dictionary of distinct values.
+ * The geometry type (Point2D or Rectangle2D) is set by the first glyph added.
+ *
+ * Glyphs returned by get/iterator are made on request; selectors that know
+ * this class (see TouchesPixel.Points and TouchesPixel.Rectangles) read the columns directly instead.
+ *
+ * Glyphs can be added with "add", so this class can be used as the target of Util.load
+ * (or see WrappedCollection.toColumns).  Segments are views of the columns as they were
+ * when the segment was made; they are not changed by later adds.
+ *
+ * @param <G> Geometry type; Point2D or Rectangle2D
+ * @param <I> Value type
+ */
+public class ColumnarGlyphs<G,I> implements Glyphset.RandomAccess<G,I> {
+	/**How values are stored.  INT and DOUBLE store Integer or Double values unboxed;
+	 * DICTIONARY stores a code per item into the list of distinct values.**/
+	public enum VALUES {INT, DOUBLE, DICTIONARY}
+
+	/**Initial capacity of the columns.**/
+	public static final int INITIAL_CAPACITY = 1024;
+
+	protected double[] xs, ys, ws, hs;
+	protected int[] ints;
+	protected double[] doubles;
+	protected List<I> dictionary;
+	protected Map<I, Integer> codes;
+	protected VALUES values;
+	protected Boolean rectangles;
+	protected int low, high;
+	protected Rectangle2D bounds;
+	private final boolean view;
+
+	/**Empty glyphset; the value storage is picked from the first value added.**/
+	public ColumnarGlyphs() {this(null);}
+
+	/**Empty glyphset with the given value storage.
+	 * Values that do not fit INT or DOUBLE storage (including null) switch the values to DICTIONARY storage.
+	 * **/
+	public ColumnarGlyphs(VALUES values) {
+		this.values = values;
+		this.view = false;
+	}
+
+	/**View of the items from low (inclusive) to high (exclusive) of the source.**/
+	protected ColumnarGlyphs(ColumnarGlyphs<G,I> source, int low, int high) {
+		this.xs = source.xs;
+		this.ys = source.ys;
+		this.ws = source.ws;
+		this.hs = source.hs;
+		this.ints = source.ints;
+		this.doubles = source.doubles;
+		this.dictionary = source.dictionary;
+		this.values = source.values;
+		this.rectangles = source.rectangles;
+		this.low = low;
+		this.high = high;
+		this.view = true;
+	}
+
+	/**Add a glyph; its shape must be a Point2D or a Rectangle2D (matching the earlier glyphs).**/
+	public void add(Glyph<G,I> g) {
+		Object shape = g.shape();
+		if (shape instanceof Point2D && !Boolean.TRUE.equals(rectangles)) {
+			Point2D p = (Point2D) shape;
+			rectangles = false;
+			append(p.getX(), p.getY(), 0, 0, g.info());
+		} else if (shape instanceof Rectangle2D && !Boolean.FALSE.equals(rectangles)) {
+			Rectangle2D r = (Rectangle2D) shape;
+			rectangles = true;
+			append(r.getX(), r.getY(), r.getWidth(), r.getHeight(), g.info());
+		} else {
+			throw new IllegalArgumentException(String.format("Columnar glyphs hold %s; received: %s",
+					rectangles == null ? "points or rectangles" : rectangles ? "rectangles" : "points",
+					shape == null ? null : shape.getClass().getName()));
+		}
+	}
+
+	/**Add a point.**/
+	public void add(double x, double y, I value) {
+		if (Boolean.TRUE.equals(rectangles)) {throw new IllegalArgumentException("Cannot add a point to columnar rectangles.");}
+		rectangles = false;
+		append(x, y, 0, 0, value);
+	}
+
+	/**Add a rectangle.**/
+	public void add(double x, double y, double w, double h, I value) {
+		if (Boolean.FALSE.equals(rectangles)) {throw new IllegalArgumentException("Cannot add a rectangle to columnar points.");}
+		rectangles = true;
+		append(x, y, w, h, value);
+	}
+
+	private void append(double x, double y, double w, double h, I value) {
+		if (view) {throw new UnsupportedOperationException("Cannot add to a segment of columnar glyphs.");}
+		if (values == null) {values = value instanceof Integer ? VALUES.INT : value instanceof Double ? VALUES.DOUBLE : VALUES.DICTIONARY;}
+		if ((values == VALUES.INT && !(value instanceof Integer))
+				|| (values == VALUES.DOUBLE && !(value instanceof Double))) {
+			toDictionary();
+		}
+		ensureCapacity(high+1);
+
+		xs[high] = x;
+		ys[high] = y;
+		if (rectangles) {
+			ws[high] = w;
+			hs[high] = h;
+		}
+		switch (values) {
+			case INT: ints[high] = (Integer) value; break;
+			case DOUBLE: doubles[high] = (Double) value; break;
+			default: ints[high] = code(value);
+		}
+		high++;
+		bounds = null;
+	}
+
+	private int code(I value) {
+		Integer code = codes.get(value);
+		if (code == null) {
+			code = dictionary.size();
+			dictionary.add(value);
+			codes.put(value, code);
+		}
+		return code;
+	}
+
+	/**Switch the value storage to dictionary codes, re-encoding the existing values.**/
+	@SuppressWarnings("unchecked")
+	private void toDictionary() {
+		VALUES old = values;
+		values = VALUES.DICTIONARY;
+		dictionary = new ArrayList<>();
+		codes = new HashMap<>();
+		int[] newCodes = new int[xs == null ? 0 : xs.length];
+		for (int i=0; i<high; i++) {
+			I value = (I) (old == VALUES.INT ? (Object) ints[i] : (Object) doubles[i]);
+			newCodes[i] = code(value);
+		}
+		ints = newCodes;
+		doubles = null;
+	}
+
+	private void ensureCapacity(int capacity) {
+		int current = xs == null ? 0 : xs.length;
+		if (capacity <= current) {return;}
+		int size = Math.max(INITIAL_CAPACITY, Math.max(capacity, current + (current >> 1)));
+		xs = xs == null ? new double[size] : Arrays.copyOf(xs, size);
+		ys = ys == null ? new double[size] : Arrays.copyOf(ys, size);
+		if (rectangles) {
+			ws = ws == null ? new double[size] : Arrays.copyOf(ws, size);
+			hs = hs == null ? new double[size] : Arrays.copyOf(hs, size);
+		}
+		if (values == VALUES.DOUBLE) {
+			doubles = doubles == null ? new double[size] : Arrays.copyOf(doubles, size);
+		} else {
+			ints = ints == null ? new int[size] : Arrays.copyOf(ints, size);
+		}
+		if (values == VALUES.DICTIONARY && dictionary == null) {
+			dictionary = new ArrayList<>();
+			codes = new HashMap<>();
+		}
+	}
+
+	/**Are the glyphs rectangles (or points)?**/
+	public boolean rectangles() {return Boolean.TRUE.equals(rectangles);}
+
+	/**How values are stored; null if nothing has been added yet.**/
+	public VALUES values() {return values;}
+
+	/**Index of the first item of this set in the columns.**/
+	public int low() {return low;}
+
+	/**One past the index of the last item of this set in the columns.**/
+	public int high() {return high;}
+
+	/**X column (NOT a copy); items are at low()...high()-1.**/
+	public double[] xs() {return xs;}
+
+	/**Y column (NOT a copy).**/
+	public double[] ys() {return ys;}
+
+	/**Width column (NOT a copy); null for points.**/
+	public double[] ws() {return ws;}
+
+	/**Height column (NOT a copy); null for points.**/
+	public double[] hs() {return hs;}
+
+	/**Int values or dictionary codes (NOT a copy); null for DOUBLE values.**/
+	public int[] ints() {return ints;}
+
+	/**Double values (NOT a copy); null unless values are DOUBLE.**/
+	public double[] doubles() {return doubles;}
+
+	/**Distinct values, indexed by code; null unless values are DICTIONARY.**/
+	public List<I> dictionary() {return dictionary == null ? null : Collections.unmodifiableList(dictionary);}
+
+	/**Value at the given column index (between low and high).**/
+	@SuppressWarnings("unchecked")
+	public I value(int i) {
+		switch (values) {
+			case INT: return (I) Integer.valueOf(ints[i]);
+			case DOUBLE: return (I) Double.valueOf(doubles[i]);
+			default: return dictionary.get(ints[i]);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	public Glyph<G,I> get(long l) {
+		if (l < 0 || l >= size()) {throw new IndexOutOfBoundsException(String.format("Index %d of %d items.", l, size()));}
+		int i = (int) (low+l);
+		Object shape = rectangles()
+				? new Rectangle2D.Double(xs[i], ys[i], ws[i], hs[i])
+				: new Point2D.Double(xs[i], ys[i]);
+		return new SimpleGlyph<>((G) shape, value(i));
+	}
+
+	public Iterator<Glyph<G,I>> iterator() {return new GlyphsetIterator<>(this);}
+	public boolean isEmpty() {return high <= low;}
+	public long size() {return high-low;}
+	public long segments() {return size();}
+
+	public Glyphset<G,I> segment(long bottom, long top) throws IllegalArgumentException {
+		if (bottom < 0 || top > size() || bottom > top) {throw new IllegalArgumentException(String.format("Invalid segment %d-%d of %d items.", bottom, top, size()));}
+		return new ColumnarGlyphs<>(this, (int) (low+bottom), (int) (low+top));
+	}
+
+	/**Bounds are computed by scanning the columns.
+	 * For rectangles, these are the same bounds as Util.bounds computes for the equivalent glyphs.
+	 * For points, they are tight around the points (Util.bounds also includes the origin), 
+	 * so the bounds of a segment can be used to cull it.
+	 * **/
+	public Rectangle2D bounds() {
+		if (bounds != null) {return bounds;}
+		Rectangle2D b = new Rectangle2D.Double(0,0,-1,-1);
+		if (isEmpty()) {return bounds = b;}
+
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		if (rectangles()) {
+			for (int i=low; i<high; i++) {
+				minX = Math.min(minX, xs[i]);
+				minY = Math.min(minY, ys[i]);
+				maxX = Math.max(maxX, xs[i]+ws[i]);
+				maxY = Math.max(maxY, ys[i]+hs[i]);
+			}
+			Util.add(b, new Rectangle2D.Double(minX, minY, maxX-minX, maxY-minY));
+		} else {
+			for (int i=low; i<high; i++) {
+				minX = Math.min(minX, xs[i]);
+				minY = Math.min(minY, ys[i]);
+				maxX = Math.max(maxX, xs[i]);
+				maxY = Math.max(maxY, ys[i]);
+			}
+			b.setFrame(minX, minY, maxX-minX, maxY-minY);
+		}
+		return bounds = b;
+	}
+}
@@ -0,0 +1,26 @@
+package ar.glyphsets;
+
+import ar.Glyph;
+
+/**Glyph whose shape and value can be replaced.
+ * Used to pass many items through one object when scanning (see Glyphset.Scannable).
+ * 
+ * @param <G> Geometry type
+ * @param <I> Value type
+ */
+public class FlyweightGlyph<G,I> implements Glyph<G,I> {
+	private G shape;
+	private I value;
+	
+	/**Replace the shape and value.
+	 * @return this glyph
+	 * **/
+	public FlyweightGlyph<G,I> set(G shape, I value) {
+		this.shape = shape;
+		this.value = value;
+		return this;
+	}
+
+	public G shape() {return shape;}
+	public I info() {return value;}
+}
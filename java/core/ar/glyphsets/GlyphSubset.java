@@ -1,6 +1,7 @@
 package ar.glyphsets;
 
 import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
 
 import ar.Glyph;
 import ar.Glyphset;
@@ -72,6 +73,26 @@ public abstract class GlyphSubset<G,I> implements Glyphset.RandomAccess<G,I> {
 		public Glyph<G,I> get(long l) {return glyphs.get(low+l);}
 	}
 
+	/**Subset made of an explicit list of indices into the backing dataset.
+	 * Only the first "count" entries of the indices array are used.
+	 * The indices array is NOT copied.**/
+	public static final class Indexed<G,I> extends GlyphSubset<G,I> {
+		private final long[] indices;
+		
+		public Indexed(Glyphset.RandomAccess<G,I> glyphs, long[] indices, int count) {
+			super(glyphs, 0, count);
+			this.indices = indices;
+		}
+		
+		public Glyph<G,I> get(long l) {return glyphs.get(indices[(int) l]);}
+		
+		@Override
+		public Glyphset<G,I> segment(long bottom, long top) {
+			long[] sub = Arrays.copyOfRange(indices, (int) bottom, (int) top);
+			return new Indexed<>(glyphs, sub, sub.length);
+		}
+	}
+
 	/**Subset a random-access glyphset; caching optional.*/
 	public static <G,I> GlyphSubset<G,I> make(Glyphset.RandomAccess<G,I> source, long low, long  high, boolean cache) {
 		if (cache) {
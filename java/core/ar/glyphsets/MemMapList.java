@@ -1,7 +1,9 @@
 package ar.glyphsets;
 
 import java.awt.geom.Rectangle2D;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.channels.FileChannel;
 import java.util.Iterator;
@@ -17,6 +19,7 @@ import ar.glyphsets.implicitgeometry.Valuer;
 import ar.util.memoryMapping.MappedFile;
 import ar.util.memoryMapping.MemMapEncoder;
 import ar.util.memoryMapping.MemMapEncoder.TYPE;
+import ar.util.memoryMapping.SharedMappedFile;
 import ar.util.Util;
 
 /**Implicit geometry, sequentially arranged glyphset backed by a memory-mapped file.
@@ -34,6 +37,12 @@ import ar.util.Util;
  *  
  *  This is class is NOT thread-safe.  However, subsets are logically independent units 
  *  so multiple subsets can be safely created and used concurrently (even if they overlap).
+ *  The file is mapped once; subsets are views of that mapping (see SharedMappedFile), 
+ *  so making one does not map the file again.
+ *  
+ *  "get" (and so the iterator) makes a new record wrapper, glyph, shape and value for each item.
+ *  "scan" reuses one record wrapper and one glyph per call, 
+ *  and one shape as well if the shaper is a Shaper.Reusing.
  *  
  *  The characters that describe field types are:
  *  
@@ -48,12 +57,12 @@ import ar.util.Util;
  * @author jcottam
  *
  */
-public class MemMapList<G,I> implements Glyphset.RandomAccess<G,I> {
+public class MemMapList<G,I> implements Glyphset.RandomAccess<G,I>, Glyphset.NumericScannable<G,I> {
 	/**Flag field indicating the binary file encoding (hbin) version understood by the parser.**/
 	public static final int VERSION_UNDERSTOOD = -1;
 	
-	/**How large should backing read buffer be?
-	 * Reducing this number tends to result in faster thread startup times, but slower overall run-times.
+	/**How large should the mapped windows of the backing file be (see SharedMappedFile)?
+	 * The whole file is mapped either way; this only controls how it is divided.
 	 * **/
 	public static int BUFFER_BYTES = Integer.MAX_VALUE;
 	
@@ -81,7 +90,7 @@ public class MemMapList<G,I> implements Glyphset.RandomAccess<G,I> {
 		this.source = source;
 		
 		if (source != null) {
-			try {this.buffer = MappedFile.Util.make(source, FileChannel.MapMode.READ_ONLY, BUFFER_BYTES);}
+			try {this.buffer = new SharedMappedFile(source, BUFFER_BYTES);}
 			catch (Exception e) {throw new RuntimeException("Error construction buffer for mem-mapped list.", e);}
 			
 			MemMapEncoder.Header header = MemMapEncoder.Header.from(buffer);
@@ -113,6 +122,17 @@ public class MemMapList<G,I> implements Glyphset.RandomAccess<G,I> {
 		
 	}
 	
+	/**Open an hbin file with the reader for its version:
+	 * MemMapList for the row format, BlockedMemMapList for the blocked columnar format.**/
+	public static <G,I> Glyphset<G,I> open(File source, Shaper<G,Indexed> shaper, Valuer<Indexed,I> valuer) {
+		int version;
+		try (DataInputStream in = new DataInputStream(new FileInputStream(source))) {version = in.readInt();}
+		catch (IOException e) {throw new RuntimeException("Error reading version of " + source, e);}
+		
+		if (version == MemMapEncoder.BLOCKED_VERSION_ID) {return new BlockedMemMapList<>(source, shaper, valuer);}
+		return new MemMapList<>(source, shaper, valuer);
+	}
+	
 	public MemMapList(MappedFile buffer, File source, Shaper<G,Indexed> shaper, Valuer<Indexed,I> valuer, TYPE[] types, long dataTableOffset) {
 		this.buffer = buffer;
 		this.shaper = shaper;
@@ -132,6 +152,45 @@ public class MemMapList<G,I> implements Glyphset.RandomAccess<G,I> {
 		return g;
 	}
 
+	@SuppressWarnings("unchecked")
+	@Override
+	public void scan(long low, long high, Glyphset.Visitor<? super G, ? super I> visitor) {
+		high = Math.min(high, size());
+		if (low >= high) {return;}
+		IndexedEncoding entry = entryAt(recordOffset(low));
+		FlyweightGlyph<G,I> glyph = new FlyweightGlyph<>();
+		Shaper.Reusing<G,Indexed> reusing = shaper instanceof Shaper.Reusing ? (Shaper.Reusing<G,Indexed>) shaper : null;
+		G shape = null;
+		
+		for (long i=low; i<high; i++) {
+			entry.at(recordOffset(i));
+			shape = reusing == null ? shaper.shape(entry) : reusing.shape(entry, shape);
+			visitor.visit(glyph.set(shape, valuer.value(entry)));
+		}
+	}
+
+	/**Are values read by a primitive valuer (see Valuer.IntValued and DoubleValued)?**/
+	public boolean numeric() {return valuer instanceof Valuer.IntValued || valuer instanceof Valuer.DoubleValued;}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void scanNumbers(long low, long high, Glyphset.NumericVisitor<? super G> visitor) {
+		if (!numeric()) {throw new UnsupportedOperationException("Valuer does not produce unboxed values: " + valuer);}
+		high = Math.min(high, size());
+		if (low >= high) {return;}
+		Valuer.IntValued<Indexed> ints = valuer instanceof Valuer.IntValued ? (Valuer.IntValued<Indexed>) valuer : null;
+		Valuer.DoubleValued<Indexed> doubles = ints == null ? (Valuer.DoubleValued<Indexed>) valuer : null;
+		IndexedEncoding entry = entryAt(recordOffset(low));
+		Shaper.Reusing<G,Indexed> reusing = shaper instanceof Shaper.Reusing ? (Shaper.Reusing<G,Indexed>) shaper : null;
+		G shape = null;
+		
+		for (long i=low; i<high; i++) {
+			entry.at(recordOffset(i));
+			shape = reusing == null ? shaper.shape(entry) : reusing.shape(entry, shape);
+			visitor.visit(shape, ints != null ? ints.intValue(entry) : doubles.doubleValue(entry));
+		}
+	}
+
 	protected long recordOffset(long i) {return (i*recordLength)+dataTableOffset;}
 	
 	protected IndexedEncoding entryAt(long recordOffset) {
@@ -158,11 +217,14 @@ public class MemMapList<G,I> implements Glyphset.RandomAccess<G,I> {
 	public Glyphset<G,I> segment(long bottom, long top)
 			throws IllegalArgumentException {
 		
+		if (buffer instanceof SharedMappedFile) {
+			SharedMappedFile view = ((SharedMappedFile) buffer).view(recordOffset(bottom), recordOffset(top));
+			return new MemMapList<>(view, source, shaper, valuer, types, 0);
+		}
+
 		long offset = recordOffset(bottom)+buffer.filePosition();
 		long end = recordOffset(top)+buffer.filePosition();
 		
-		
-		
 		try {
 			MappedFile mf = MappedFile.Util.make(source, FileChannel.MapMode.READ_ONLY, BUFFER_BYTES, offset, end);
 			return new MemMapList<>(mf, source, shaper, valuer, types, 0);
@@ -202,13 +264,13 @@ public class MemMapList<G,I> implements Glyphset.RandomAccess<G,I> {
 		}
 
 		private Rectangle2D local() {
-			Rectangle2D bounds = new Rectangle2D.Double(0,0,-1,-1);
-
-			for (long i=low; i<high; i++) {
-				Rectangle2D bound = Util.boundOne(MemMapList.this.get(i).shape());
-				if (bound != null) {Util.add(bounds, bound);}
-
-			}
+			final Rectangle2D bounds = new Rectangle2D.Double(0,0,-1,-1);
+			scan(low, high, new Glyphset.Visitor<G,I>() {
+				public void visit(Glyph<? extends G, ? extends I> glyph) {
+					Rectangle2D bound = Util.boundOne(glyph.shape());
+					if (bound != null) {Util.add(bounds, bound);}
+				}
+			});
 			return bounds;
 		}
 
@@ -15,11 +15,22 @@ import ar.util.memoryMapping.MemMapEncoder;
  * 
  * The subclasses are common ways of working with indexed records.
  * 
+ * The typed accessors (getDouble, getInt, getLong) return numeric fields without boxing 
+ * where the record allows it; they convert as the corresponding Number methods do.
  * **/
 public interface Indexed extends Serializable {
 	/**What value is at index i? */
 	public Object get(int i);
 	
+	/**Numeric value at index i, as a double.**/
+	public double getDouble(int i);
+
+	/**Numeric value at index i, as an int.**/
+	public int getInt(int i);
+
+	/**Numeric value at index i, as a long.**/
+	public long getLong(int i);
+	
 	/**Wrap an array as an Indexed item.**/
 	public static class ArrayWrapper implements Indexed {
 		private static final long serialVersionUID = -7081805779069559306L;
@@ -28,6 +39,20 @@ public interface Indexed extends Serializable {
 		@SuppressWarnings("javadoc")
 		public ArrayWrapper(Object parts) {this.array = parts;}
 		public Object get(int i) {return Array.get(array, i);}
+		
+		/**Primitive arrays are read without boxing; object arrays must hold Numbers.
+		 * Floating-point arrays are narrowed to int/long with a cast (Array.getInt/getLong only widen).**/
+		public double getDouble(int i) {return array instanceof Object[] ? ((Number) get(i)).doubleValue() : Array.getDouble(array, i);}
+		public int getInt(int i) {
+			if (array instanceof Object[]) {return ((Number) get(i)).intValue();}
+			if (array instanceof double[] || array instanceof float[]) {return (int) Array.getDouble(array, i);}
+			return Array.getInt(array, i);
+		}
+		public long getLong(int i) {
+			if (array instanceof Object[]) {return ((Number) get(i)).longValue();}
+			if (array instanceof double[] || array instanceof float[]) {return (long) Array.getDouble(array, i);}
+			return Array.getLong(array, i);
+		}
 	}
 
 	/**Converts the elements of the passed array to the given types.
@@ -67,6 +92,33 @@ public interface Indexed extends Serializable {
 			}
 		}
 		
+		/**Parses the value directly as the requested primitive (no boxed intermediate).**/
+		@Override
+		public double getDouble(int i) {
+			String s = values[i].toString();
+			switch (types[i]) {
+				case INT: 
+				case SHORT: 
+				case LONG: return Long.parseLong(s);
+				case FLOAT: return Float.parseFloat(s);
+				case DOUBLE: return Double.parseDouble(s);
+				default: throw new UnsupportedOperationException("Cannot perform numeric conversion of " + types[i]);
+			}
+		}
+
+		@Override
+		public int getInt(int i) {return (int) getLong(i);}
+
+		@Override
+		public long getLong(int i) {
+			switch (types[i]) {
+				case INT: 
+				case SHORT: 
+				case LONG: return Long.parseLong(values[i].toString());
+				default: return (long) getDouble(i);
+			}
+		}
+		
 		/**Get the type array associated with this converter.**/
 		public TYPE[] types() {return types;}
 		public Converter applyTo(Object[] values) {return new Converter(values, types);}
@@ -99,11 +151,31 @@ public interface Indexed extends Serializable {
 	
 
 
+	/**Read a numeric field as an int (see Indexed.getInt).**/
+	public static class ToInt implements Valuer.IntValued<Indexed>, Serializable {
+		private static final long serialVersionUID = 4105624207733870826L;
+		private final int vIdx;
+		
+		public ToInt(int vIdx) {this.vIdx = vIdx;}
+		public int intValue(Indexed from) {return from.getInt(vIdx);}
+		public Integer value(Indexed from) {return intValue(from);}
+	}
+
+	/**Read a numeric field as a double (see Indexed.getDouble).**/
+	public static class ToDouble implements Valuer.DoubleValued<Indexed>, Serializable {
+		private static final long serialVersionUID = -1480339916240683446L;
+		private final int vIdx;
+		
+		public ToDouble(int vIdx) {this.vIdx = vIdx;}
+		public double doubleValue(Indexed from) {return from.getDouble(vIdx);}
+		public Double value(Indexed from) {return doubleValue(from);}
+	}
+	
 	/**Convert an item to a fixed-sized rectangle at a variable
 	 * position.  The passed value determines the position, but the size
 	 * is set by the ToRect constructor. 
 	 */
-	public static class ToPoint implements Shaper.SafeApproximate<Point2D, Indexed>, Serializable {
+	public static class ToPoint implements Shaper.SafeApproximate<Point2D, Indexed>, Shaper.Reusing<Point2D, Indexed>, Serializable {
 		private static final long serialVersionUID = 2509334944102906705L;
 		private final boolean flipY;
 		private final int xIdx, yIdx;
@@ -114,12 +186,16 @@ public interface Indexed extends Serializable {
 			this.xIdx = xIdx;
 			this.yIdx = yIdx;
 		}
-		public Point2D shape(Indexed from) {
-			double x=((Number) from.get(xIdx)).doubleValue();
-			double y=((Number) from.get(yIdx)).doubleValue();
+		public Point2D shape(Indexed from) {return shape(from, null);}
+		
+		public Point2D shape(Indexed from, Point2D into) {
+			double x=from.getDouble(xIdx);
+			double y=from.getDouble(yIdx);
 			
 			y = flipY ? -y : y; 
-			return new Point2D.Double(x, y);
+			if (into == null) {return new Point2D.Double(x, y);}
+			into.setLocation(x, y);
+			return into;
 		}	
 	}
 	
@@ -128,7 +204,7 @@ public interface Indexed extends Serializable {
 	 * position.  The passed value determines the position, but the size
 	 * is set by the ToRect constructor. 
 	 */
-	public static class ToRect implements Shaper.SafeApproximate<Rectangle2D, Indexed>, Serializable {
+	public static class ToRect implements Shaper.SafeApproximate<Rectangle2D, Indexed>, Shaper.Reusing<Rectangle2D, Indexed>, Serializable {
 		private static final long serialVersionUID = 2509334944102906705L;
 		private final double width,height;
 		private final boolean flipY;
@@ -148,12 +224,16 @@ public interface Indexed extends Serializable {
 			this.xIdx = xIdx;
 			this.yIdx = yIdx;
 		}
-		public Rectangle2D shape(Indexed from) {
-			double x=((Number) from.get(xIdx)).doubleValue();
-			double y=((Number) from.get(yIdx)).doubleValue();
+		public Rectangle2D shape(Indexed from) {return shape(from, null);}
+		
+		public Rectangle2D shape(Indexed from, Rectangle2D into) {
+			double x=from.getDouble(xIdx);
+			double y=from.getDouble(yIdx);
 			
 			y = flipY ? -y : y; 
-			return new Rectangle2D.Double(x, y, width, height);
+			if (into == null) {return new Rectangle2D.Double(x, y, width, height);}
+			into.setRect(x, y, width, height);
+			return into;
 		}	
 	}
 }
@@ -29,6 +29,14 @@ public class IndexedEncoding implements Indexed {
 		this.recordOffset = recordOffset;
 	}
 
+	/**Move to the record at the given offset, so one encoding can be reused across records.
+	 * @return this encoding
+	 * **/
+	public IndexedEncoding at(long recordOffset) {
+		this.recordOffset = recordOffset;
+		return this;
+	}
+
 	public Object get(int f) {
 		TYPE t = types[f];
 		long offset= offsets[f]+recordOffset;
@@ -44,4 +52,46 @@ public class IndexedEncoding implements Indexed {
 		}
 		throw new IllegalArgumentException("'Unhandled type at offset " + offset);
 	}
+
+	/**Reads the field directly from the buffer (no boxed intermediate).**/
+	public double getDouble(int f) {
+		long offset= offsets[f]+recordOffset;
+		switch(types[f]) {
+			case DOUBLE: return buffer.getDouble(offset);
+			case FLOAT: return buffer.getFloat(offset);
+			case INT: return buffer.getInt(offset);
+			case LONG: return buffer.getLong(offset);
+			case SHORT: return buffer.getShort(offset);
+			case BYTE: return buffer.get(offset);
+			default: throw new IllegalArgumentException("Non-numeric type " + types[f] + " at index " + f);
+		}
+	}
+
+	/**Reads the field directly from the buffer (no boxed intermediate).**/
+	public int getInt(int f) {
+		long offset= offsets[f]+recordOffset;
+		switch(types[f]) {
+			case INT: return buffer.getInt(offset);
+			case SHORT: return buffer.getShort(offset);
+			case BYTE: return buffer.get(offset);
+			case LONG: return (int) buffer.getLong(offset);
+			case DOUBLE: return (int) buffer.getDouble(offset);
+			case FLOAT: return (int) buffer.getFloat(offset);
+			default: throw new IllegalArgumentException("Non-numeric type " + types[f] + " at index " + f);
+		}
+	}
+
+	/**Reads the field directly from the buffer (no boxed intermediate).**/
+	public long getLong(int f) {
+		long offset= offsets[f]+recordOffset;
+		switch(types[f]) {
+			case LONG: return buffer.getLong(offset);
+			case INT: return buffer.getInt(offset);
+			case SHORT: return buffer.getShort(offset);
+			case BYTE: return buffer.get(offset);
+			case DOUBLE: return (long) buffer.getDouble(offset);
+			case FLOAT: return (long) buffer.getFloat(offset);
+			default: throw new IllegalArgumentException("Non-numeric type " + types[f] + " at index " + f);
+		}
+	}
 }
@@ -21,6 +21,15 @@ public interface Shaper<G,I> extends Serializable {
 	 */
 	public static interface SafeApproximate<G,I> extends Shaper<G,I> {}
 	
+	/**Shapers that can set the geometry of an existing shape instead of creating a new one.
+	 * Used to scan glyphsets without allocating a shape per item (see Glyphset.Scannable).
+	 */
+	public static interface Reusing<G,I> extends Shaper<G,I> {
+		/**Set "into" to the shape of the passed item and return it.  
+		 * If "into" is null, a new shape is returned (as by shape(from)).**/
+		public G shape(I from, G into);
+	}
+	
 	
 	/**Given a map entry, return the value.  Used for maps where the key determines the shape
 	 * and the value determines the info.
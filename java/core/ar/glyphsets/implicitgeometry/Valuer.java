@@ -23,6 +23,21 @@ public interface Valuer<I,V> extends Serializable {
 	/**Create a value from the passed item.**/
 	public V value(I from);
 	
+	/**Valuers that can produce their value as an unboxed int.
+	 * The value method should return the same value, boxed.
+	 * 
+	 * Memory-mapped glyphsets (MemMapList and BlockedMemMapList) with a primitive valuer 
+	 * can scan values without boxing them (see Glyphset.NumericScannable).**/
+	public static interface IntValued<I> extends Valuer<I,Integer> {
+		public int intValue(I from);
+	}
+
+	/**Valuers that can produce their value as an unboxed double.
+	 * The value method should return the same value, boxed (see IntValued about current use).**/
+	public static interface DoubleValued<I> extends Valuer<I,Double> {
+		public double doubleValue(I from);
+	}
+	
 	/**Pass-through valuer.  Value-in=value-out.*/
 	public static class IdentityValuer<I> implements Valuer<I,I> {
 		private static final long serialVersionUID = 6961888682185387204L;
@@ -94,7 +109,7 @@ public interface Valuer<I,V> extends Serializable {
 		public CategoricalCounts<T> value(Indexed from) {
 			@SuppressWarnings("unchecked")
 			T key = (T) from.get(catIdx);
-			int val = ((Integer) from.get(valIdx)).intValue();
+			int val = from.getInt(valIdx);
 			return new CategoricalCounts<>(comp, key, val); 
 		}
 	}
@@ -0,0 +1,205 @@
+package ar.renderers;
+
+import java.awt.Rectangle;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ar.Aggregates;
+import ar.Aggregator;
+import ar.aggregates.AggregatePool;
+import ar.aggregates.AggregateUtils;
+import ar.aggregates.implementations.ConstantAggregates;
+import ar.aggregates.implementations.SparseAggregates;
+import ar.aggregates.wrappers.AccumulatingWrapper;
+import ar.aggregates.wrappers.TouchedBoundsWrapper;
+
+/**Limits and recycles the per-task aggregate buffers of a single glyph-parallel aggregation.
+ * 
+ * Every split of an aggregation task creates one more live buffer until its two halves are merged.
+ * A task must reserve that buffer before it splits; if the reservation fails, the task 
+ * processes its whole range into one buffer instead.  Reservations never block, so 
+ * a small budget reduces parallelism instead of running out of memory (or deadlocking the pool).
+ * 
+ * Buffers merged away are reset to the identity value and handed to the next task that
+ * allocates aggregates inside of their bounds.  Those idle buffers count against the limit too;
+ * a reservation that would exceed the limit drops an idle buffer instead of failing.
+ * 
+ * Tasks with few glyphs for the bins they cover get sparse, tile-paged buffers (see SparseAggregates),
+ * so their memory and merge time follow the bins actually touched.  If the buffers filled
+ * by earlier tasks turn out mostly allocated anyway, later tasks get dense buffers.
+ * 
+ * If a pool is given (see AggregatePool), dense buffers are taken from it when none are free
+ * and the free buffers are returned to it when the render closes the buffers, 
+ * so repeated renders of the same view reuse the same per-task buffers.
+ * 
+ * The budget covers the accumulators that accumulating aggregators keep per buffer (see bytesPerBin(Aggregator)).
+ * 
+ * Instances are for a single render; they are safe to use from all tasks of that render.
+ * **/
+public final class AggregateBuffers<A> {
+	private final A identity;
+	private final int limit;
+	private final AtomicInteger live = new AtomicInteger(1);	//The root task's result
+	private final AtomicInteger idle = new AtomicInteger(0);	//Buffers in the free queue
+	private final Queue<Aggregates<A>> free = new ConcurrentLinkedQueue<>();
+	private final AggregatePool pool;
+	private volatile boolean sparseFits = true;
+	
+	/**@param limit Maximum number of buffers live at once (at least one is always allowed)**/
+	public AggregateBuffers(A identity, int limit) {this(identity, limit, null);}
+
+	/**@param limit Maximum number of buffers live at once (at least one is always allowed)
+	 * @param pool Source of recycled buffers between renders; may be null 
+	 * **/
+	public AggregateBuffers(A identity, int limit, AggregatePool pool) {
+		this.identity = identity;
+		this.limit = Math.max(1, limit);
+		this.pool = pool;
+	}
+	
+	/**Buffers for an aggregation where no budget applies.**/
+	public static <A> AggregateBuffers<A> unbounded(A identity) {return new AggregateBuffers<>(identity, Integer.MAX_VALUE);}
+	
+	/**Buffers limited so the estimated total size stays inside of the budget.
+	 * @param bins Number of bins in each buffer
+	 * @param budget Memory available for buffers (in bytes) 
+	 * **/
+	public static <A> AggregateBuffers<A> budgeted(Aggregator<?,A> op, long bins, long budget) {return budgeted(op, bins, budget, null);}
+	
+	/**Budgeted buffers that are recycled through the given pool (may be null).**/
+	public static <A> AggregateBuffers<A> budgeted(Aggregator<?,A> op, long bins, long budget, AggregatePool pool) {
+		long bytes = Math.max(1, bins * bytesPerBin(op));
+		return new AggregateBuffers<>(op.identity(), (int) Math.min(Integer.MAX_VALUE, budget/bytes), pool);
+	}
+	
+	/**Estimated memory for one bin of the aggregates created for the given aggregator.
+	 * Primitive-valued and enum aggregates are exact (booleans are rounded up to a byte); other values are estimated by ParallelRenderer.REFERENCE_BIN_BYTES.
+	 * Accumulating aggregators may also hold a dense array of accumulators beside each buffer while it is filled 
+	 * (see AccumulatingWrapper.accumulates), so another ParallelRenderer.REFERENCE_BIN_BYTES is added for them.
+	 * **/
+	public static long bytesPerBin(Aggregator<?,?> op) {
+		long bytes = bytesPerBin(op.identity());
+		if (AccumulatingWrapper.accumulates(op)) {bytes += ParallelRenderer.REFERENCE_BIN_BYTES;}
+		return bytes;
+	}
+	
+	/**Estimated memory for one bin of aggregates with the given default value (see bytesPerBin(Aggregator)).**/
+	public static long bytesPerBin(Object identity) {
+		if (identity instanceof Integer) {return 4;}
+		if (identity instanceof Double) {return 8;}
+		if (identity instanceof Boolean || identity instanceof Enum) {return 1;}
+		return ParallelRenderer.REFERENCE_BIN_BYTES;
+	}
+	
+	/**Maximum number of live buffers.**/
+	public int limit() {return limit;}
+	
+	/**Reserve one more live buffer.
+	 * Idle buffers are dropped if needed to stay in the budget.
+	 * @return True if the buffer fits in the budget; the reservation is returned by merged. 
+	 * **/
+	public boolean reserve() {
+		while (true) {
+			int current = live.get();
+			if (current + idle.get() >= limit) {
+				if (poll() != null) {continue;}
+				return false;
+			}
+			if (live.compareAndSet(current, current+1)) {return true;}
+		}
+	}
+	
+	/**Take an idle buffer off of the free queue (null if there are none).**/
+	private Aggregates<A> poll() {
+		Aggregates<A> aggs = free.poll();
+		if (aggs != null) {idle.decrementAndGet();}
+		return aggs;
+	}
+	
+	/**Get a dense buffer covering the given bounds, recycled if possible.
+	 * A recycled buffer may extend beyond the given bounds, but the result is wrapped 
+	 * to report only the bounds touched (see TouchedBoundsWrapper).
+	 * **/
+	public Aggregates<A> take(Rectangle bounds) {return take(bounds, Long.MAX_VALUE);}
+
+	/**Get a buffer covering the given bounds for a task that processes the given number of glyph segments.
+	 * If the segments cannot cover a meaningful fraction of the bins, the buffer is sparse.
+	 * @see #sparse(long, long)
+	 * **/
+	public Aggregates<A> take(Rectangle bounds, long segments) {
+		boolean sparse = sparseFits && sparse(segments, AggregateUtils.size(bounds.x, bounds.y, bounds.x+bounds.width, bounds.y+bounds.height));
+		Aggregates<A> aggs = poll();
+		if (aggs == null 
+				|| !AggregateUtils.bounds(aggs).contains(bounds)
+				|| (aggs instanceof SparseAggregates) != sparse) {
+			if (aggs != null && pool != null && !(aggs instanceof SparseAggregates)) {pool.release(aggs);}
+			if (sparse) {
+				aggs = SparseAggregates.make(bounds.x, bounds.y, bounds.x+bounds.width, bounds.y+bounds.height, identity, SparseAggregates.TILE_SIZE);
+			} else if (pool != null) {
+				aggs = pool.take(bounds.x, bounds.y, bounds.x+bounds.width, bounds.y+bounds.height, identity);
+				if (aggs instanceof SparseAggregates) {aggs = AggregateUtils.make(bounds.x, bounds.y, bounds.x+bounds.width, bounds.y+bounds.height, identity);}
+			} else {
+				aggs = AggregateUtils.make(bounds.x, bounds.y, bounds.x+bounds.width, bounds.y+bounds.height, identity);
+			}
+		}
+		return TouchedBoundsWrapper.wrap(aggs, false);
+	}
+	
+	/**Should a task with the given number of glyph segments use sparse aggregates over the given number of bins?
+	 * True for int and double values when the canvas has at least ParallelRenderer.SPARSE_MIN_BINS bins and
+	 * there are more than ParallelRenderer.SPARSE_TASK_RATIO bins per segment.
+	 * (Other values are often updated through accumulators that are allocated densely; see AccumulatingWrapper.)
+	 * **/
+	public boolean sparse(long segments, long bins) {
+		return (identity instanceof Integer || identity instanceof Double)
+				&& bins >= ParallelRenderer.SPARSE_MIN_BINS 
+				&& segments < bins / ParallelRenderer.SPARSE_TASK_RATIO;
+	}
+
+	/**Report a buffer that a task has finished filling.
+	 * If a sparse buffer has more than ParallelRenderer.SPARSE_MAX_FILL of its tiles allocated,
+	 * the glyphs are spread too widely to benefit and later buffers are dense.
+	 * **/
+	public void filled(Aggregates<A> aggs) {
+		Aggregates<A> base = base(aggs);
+		if (!(base instanceof SparseAggregates)) {return;}
+		SparseAggregates<A> sparse = (SparseAggregates<A>) base;
+		if (sparse.touchedTiles() > ParallelRenderer.SPARSE_MAX_FILL * sparse.tilesX() * sparse.tilesY()) {sparseFits = false;}
+	}
+
+	/**Report that two buffers were merged into result, returning the reservation made for the split.
+	 * Whichever of left/right is not the result is reset and made available for reuse.
+	 * **/
+	public void merged(Aggregates<A> left, Aggregates<A> right, Aggregates<A> result) {
+		Aggregates<A> base = base(result);
+		live.decrementAndGet();
+		if (base(left) != base) {release(left);}
+		if (base(right) != base) {release(right);}
+	}
+	
+	private static <A> Aggregates<A> base(Aggregates<A> aggs) {
+		return aggs instanceof TouchedBoundsWrapper ? ((TouchedBoundsWrapper<A>) aggs).base() : aggs;
+	}
+	
+	/**Hand the free buffers to the pool (if any) once the render is done with them.
+	 * Sparse buffers are not kept, they are cheap to make.**/
+	public void close() {
+		if (pool == null) {return;}
+		Aggregates<A> aggs;
+		while ((aggs = poll()) != null) {
+			if (!(aggs instanceof SparseAggregates)) {pool.release(aggs);}
+		}
+	}
+	
+	/**Reset a buffer that is no longer used and make it available for reuse.**/
+	public void release(Aggregates<A> aggs) {
+		if (aggs == null || aggs instanceof ConstantAggregates) {return;}
+		Aggregates<A> base = base(aggs);
+		
+		//Only the reported region of a buffer is ever written
+		AggregateUtils.fill(base, identity, aggs.lowX(), aggs.lowY(), aggs.highX(), aggs.highY());
+		idle.incrementAndGet();
+		free.offer(base);
+	}
+}
@@ -3,11 +3,19 @@ package ar.renderers;
 import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinTask;
 
 import ar.Aggregates;
 import ar.Aggregator;
 import ar.aggregates.AggregateUtils;
+import ar.aggregates.implementations.CategoricalAggregates;
 import ar.aggregates.implementations.ConstantAggregates;
+import ar.aggregates.implementations.DoubleAggregates;
+import ar.aggregates.implementations.IntAggregates;
+import ar.aggregates.implementations.SparseAggregates;
+import ar.aggregates.wrappers.TouchedBoundsWrapper;
+import ar.renderers.tasks.TiledRollup;
+import ar.rules.Categories;
 import ar.util.Util;
 
 
@@ -29,6 +37,19 @@ public class AggregationStrategies {
 	 * @return Resulting aggregate set (may be new or a destructively updated left or right parameter) 
 	 */
 	public static <T> Aggregates<T> horizontalRollup(Aggregates<T> left, Aggregates<T> right, Aggregator<?,T> red) {
+		return horizontalRollup(left, right, red, Long.MAX_VALUE);
+	}
+
+	/**Combine two aggregate sets according to the passed reducer, merging tiles in parallel.
+	 * 
+	 * When called from inside of a fork/join pool, the merged region is split into 
+	 * horizontal stripes of about tileSize bins, which are merged as tasks in that pool.
+	 * Otherwise (or if the region is no larger than one tile, or the target is sparse) the merge is done in the calling thread.
+	 * 
+	 * @param tileSize Number of bins to merge in a single task 
+	 * @see #horizontalRollup(Aggregates, Aggregates, Aggregator)
+	 */
+	public static <T> Aggregates<T> horizontalRollup(Aggregates<T> left, Aggregates<T> right, Aggregator<?,T> red, long tileSize) {
 		if (left == null) {return right;}
 		if (right == null) {return left;}
 
@@ -36,6 +57,14 @@ public class AggregationStrategies {
 
 		if ((left instanceof ConstantAggregates) && Util.isEqual(identity, left.defaultValue())) {return right;}
 		if ((right instanceof ConstantAggregates) && Util.isEqual(identity, right.defaultValue())) {return left;}
+		
+		Aggregates<T> leftBase = left instanceof TouchedBoundsWrapper ? ((TouchedBoundsWrapper<T>) left).base() : left;
+		Aggregates<T> rightBase = right instanceof TouchedBoundsWrapper ? ((TouchedBoundsWrapper<T>) right).base() : right;
+		if (leftBase instanceof SparseAggregates && rightBase instanceof SparseAggregates
+				&& ((SparseAggregates<T>) leftBase).sameTiling((SparseAggregates<T>) rightBase)
+				&& Util.isEqual(identity, leftBase.defaultValue())) {
+			return rollupTiles((SparseAggregates<T>) leftBase, (SparseAggregates<T>) rightBase, red);
+		}
 
 		List<Aggregates<T> >sources = new ArrayList<Aggregates<T>>();
 		Aggregates<T> target;
@@ -43,7 +72,7 @@ public class AggregationStrategies {
 		Rectangle lb = new Rectangle(left.lowX(), left.lowY(), left.highX()-left.lowX(), left.highY()-left.lowY());
 		Rectangle bounds = rb.union(lb);
 
-		if (lb.contains(bounds)) {
+		if (lb.contains(bounds) && !(rb.contains(bounds) && leftBase instanceof SparseAggregates)) {	//Prefer dense targets
 			target = left;
 			sources.add(right);
 		} else if (rb.contains(bounds)) {
@@ -55,18 +84,183 @@ public class AggregationStrategies {
 			target = AggregateUtils.make((int) bounds.getMinX(), (int) bounds.getMinY(), 
 					(int) bounds.getMaxX(), (int) bounds.getMaxY(), red.identity());
 		}
+		
+		int lowX = Math.max(0, bounds.x);
+		int lowY = Math.max(0, bounds.y);
+		int highX = bounds.x + bounds.width;
+		int highY = bounds.y + bounds.height;
+		long area = ((long) Math.max(0, highX-lowX)) * Math.max(0, highY-lowY);
+		
+		//Sparse tiles are allocated on first write, so stripes must not share a sparse target
+		Aggregates<T> targetBase = target instanceof TouchedBoundsWrapper ? ((TouchedBoundsWrapper<T>) target).base() : target;
+		if (area > tileSize && ForkJoinTask.inForkJoinPool() && !(targetBase instanceof SparseAggregates)) {
+			new TiledRollup<>(target, sources, red, tileSize, lowX, lowY, highX, highY).invoke();
+		} else {
+			for (Aggregates<T> source: sources) {
+				rollupRegion(target, source, red, lowX, lowY, highX, highY);
+			}
+		}
+		return target;
+	}
 	
-		for (Aggregates<T> source: sources) {
-			for (int x=Math.max(0, source.lowX()); x<source.highX(); x++) {
-				for (int y=Math.max(0, source.lowY()); y<source.highY(); y++) {
-					T newVal = source.get(x,y);
+	/**Combine sparse aggregates with the same tiling, visiting only the tiles allocated in the source.
+	 * Tiles only the source has are copied (not shared) into the target.
+	 * @return The target, which is updated in place
+	 * **/
+	public static <T> SparseAggregates<T> rollupTiles(SparseAggregates<T> target, SparseAggregates<T> source, Aggregator<?,T> red) {
+		for (int idx=0; idx<source.tilesX()*source.tilesY(); idx++) {
+			Aggregates<T> from = source.tile(idx);
+			if (from == null) {continue;}
+			Aggregates<T> to = target.touch(idx);
+			rollupRegion(to, from, red, to.lowX(), to.lowY(), to.highX(), to.highY());
+		}
+		return target;
+	}
+	
+	/**Combine the values of source into target, restricted to the given region.
+	 * 
+	 * Only the part of the region covered by the source is visited (for sparse sources, only their allocated tiles).
+	 * The region must be inside of the target's bounds (as reported by lowX/highX, etc). 
+	 * Different regions of the same target may be merged concurrently.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public static <T> void rollupRegion(Aggregates<T> target, Aggregates<T> source, Aggregator<?,T> red, int lowX, int lowY, int highX, int highY) {
+		lowX = Math.max(lowX, Math.max(0, source.lowX()));
+		lowY = Math.max(lowY, Math.max(0, source.lowY()));
+		highX = Math.min(highX, source.highX());
+		highY = Math.min(highY, source.highY());
+		if (lowX >= highX || lowY >= highY) {return;}
+
+		//Writes stay in the target's reported bounds, so a touched-bounds wrapper would not change; go to the array directly
+		Aggregates<T> base = target instanceof TouchedBoundsWrapper ? ((TouchedBoundsWrapper<T>) target).base() : target;
+		Aggregates<T> src = source instanceof TouchedBoundsWrapper ? ((TouchedBoundsWrapper<T>) source).base() : source;
+		
+		if (src instanceof SparseAggregates) {
+			SparseAggregates<T> sparse = (SparseAggregates<T>) src;
+			for (int idx=0; idx<sparse.tilesX()*sparse.tilesY(); idx++) {
+				Aggregates<T> tile = sparse.tile(idx);
+				if (tile != null) {rollupRegion(target, tile, red, lowX, lowY, highX, highY);}
+			}
+		} else if (red instanceof Aggregator.IntValued 
+				&& base instanceof IntAggregates 
+				&& src instanceof IntAggregates) {
+			rollupIntArrays((IntAggregates) base, (IntAggregates) src, (Aggregator.IntValued) red, lowX, lowY, highX, highY);
+		} else if (red instanceof Aggregator.DoubleValued 
+				&& base instanceof DoubleAggregates 
+				&& src instanceof DoubleAggregates) {
+			rollupDoubleArrays((DoubleAggregates) base, (DoubleAggregates) src, (Aggregator.DoubleValued) red, lowX, lowY, highX, highY);
+		} else if ((red instanceof Categories.CountCategories || red instanceof Categories.MergeCategories)
+				&& base instanceof CategoricalAggregates 
+				&& src instanceof CategoricalAggregates
+				&& ((CategoricalAggregates<?>) base).categories().equals(((CategoricalAggregates<?>) src).categories())) {
+			rollupCategoryPlanes((CategoricalAggregates<?>) base, (CategoricalAggregates<?>) src, lowX, lowY, highX, highY);
+		} else if (base instanceof Aggregates.IntValued 
+				&& src instanceof Aggregates.IntValued 
+				&& red instanceof Aggregator.IntValued) {
+			rollupInts((Aggregates.IntValued) base, (Aggregates.IntValued) src, (Aggregator.IntValued<?>) red, lowX, lowY, highX, highY);
+		} else if (base instanceof Aggregates.DoubleValued 
+				&& src instanceof Aggregates.DoubleValued 
+				&& red instanceof Aggregator.DoubleValued) {
+			rollupDoubles((Aggregates.DoubleValued) base, (Aggregates.DoubleValued) src, (Aggregator.DoubleValued<?>) red, lowX, lowY, highX, highY);
+		} else {
+			T identity = red.identity();
+			T[] row = (T[]) new Object[highX-lowX];
+			for (int y=lowY; y<highY; y++) {
+				AggregateUtils.getRow(source, lowX, y, row, 0, row.length);
+				for (int i=0; i<row.length; i++) {
+					T newVal = row[i];
 					if (Util.isEqual(identity, newVal)) {continue;}
-					T comb = red.rollup(target.get(x,y), source.get(x,y));
-					target.set(x,y, comb); 
+					T comb = red.rollup(target.get(lowX+i,y), newVal);
+					target.set(lowX+i,y, comb); 
 				}
 			}
 		}
-		return target;
+	}
+	
+	/**Unboxed version of the horizontalRollup inner loop.  
+	 * Works a row at a time, so aggregates with row access (see Aggregates.IntRows) are read and written in bulk.**/
+	private static void rollupInts(Aggregates.IntValued target, Aggregates.IntValued source, Aggregator.IntValued<?> red, int lowX, int lowY, int highX, int highY) {
+		int identity = red.identityInt();
+		int width = highX-lowX;
+		int[] t = new int[width];
+		int[] s = new int[width];
+		for (int y=lowY; y<highY; y++) {
+			AggregateUtils.getInts(source, lowX, y, s, 0, width);
+			AggregateUtils.getInts(target, lowX, y, t, 0, width);
+			for (int i=0; i<width; i++) {
+				int newVal = s[i];
+				if (newVal == identity) {continue;}
+				t[i] = red.rollupInt(t[i], newVal);
+			}
+			AggregateUtils.setInts(target, lowX, y, t, 0, width);
+		}
+	}
+
+	/**Unboxed version of the horizontalRollup inner loop (see rollupInts).**/
+	private static void rollupDoubles(Aggregates.DoubleValued target, Aggregates.DoubleValued source, Aggregator.DoubleValued<?> red, int lowX, int lowY, int highX, int highY) {
+		double identity = red.identityDouble();
+		int width = highX-lowX;
+		double[] t = new double[width];
+		double[] s = new double[width];
+		for (int y=lowY; y<highY; y++) {
+			AggregateUtils.getDoubles(source, lowX, y, s, 0, width);
+			AggregateUtils.getDoubles(target, lowX, y, t, 0, width);
+			for (int i=0; i<width; i++) {
+				double newVal = s[i];
+				if (Double.compare(newVal, identity) == 0) {continue;}
+				t[i] = red.rollupDouble(t[i], newVal);
+			}
+			AggregateUtils.setDoubles(target, lowX, y, t, 0, width);
+		}
+	}
+	
+	/**Row-by-row merge directly on the backing arrays.  The region must be inside of both sets.**/
+	private static void rollupIntArrays(IntAggregates target, IntAggregates source, Aggregator.IntValued<?> red, int lowX, int lowY, int highX, int highY) {
+		int identity = red.identityInt();
+		int[] t = target.values();
+		int[] s = source.values();
+		int width = highX-lowX;
+		for (int y=lowY; y<highY; y++) {
+			int ti = AggregateUtils.idx(lowX, y, target.lowX(), target.lowY(), target.highX(), target.highY());
+			int si = AggregateUtils.idx(lowX, y, source.lowX(), source.lowY(), source.highX(), source.highY());
+			for (int i=0; i<width; i++, ti++, si++) {
+				int newVal = s[si];
+				if (newVal == identity) {continue;}
+				t[ti] = red.rollupInt(t[ti], newVal);
+			}
+		}
+	}
+
+	/**Category-by-category sum of dense categorical counts (the roll-up of both categorical count aggregators).  
+	 * The region must be inside of both sets and they must have the same categories.**/
+	private static void rollupCategoryPlanes(CategoricalAggregates<?> target, CategoricalAggregates<?> source, int lowX, int lowY, int highX, int highY) {
+		int width = highX-lowX;
+		for (int c=0, categories=target.categories().size(); c<categories; c++) {
+			int[] t = target.plane(c);
+			int[] s = source.plane(c);
+			for (int y=lowY; y<highY; y++) {
+				int ti = AggregateUtils.idx(lowX, y, target.lowX(), target.lowY(), target.highX(), target.highY());
+				int si = AggregateUtils.idx(lowX, y, source.lowX(), source.lowY(), source.highX(), source.highY());
+				for (int i=0; i<width; i++, ti++, si++) {t[ti] += s[si];}
+			}
+		}
+	}
+
+	/**Row-by-row merge directly on the backing arrays.  The region must be inside of both sets.**/
+	private static void rollupDoubleArrays(DoubleAggregates target, DoubleAggregates source, Aggregator.DoubleValued<?> red, int lowX, int lowY, int highX, int highY) {
+		double identity = red.identityDouble();
+		double[] t = target.values();
+		double[] s = source.values();
+		int width = highX-lowX;
+		for (int y=lowY; y<highY; y++) {
+			int ti = AggregateUtils.idx(lowX, y, target.lowX(), target.lowY(), target.highX(), target.highY());
+			int si = AggregateUtils.idx(lowX, y, source.lowX(), source.lowY(), source.highX(), source.highY());
+			for (int i=0; i<width; i++, ti++, si++) {
+				double newVal = s[si];
+				if (Double.compare(newVal, identity) == 0) {continue;}
+				t[ti] = red.rollupDouble(t[ti], newVal);
+			}
+		}
 	}
 
 	/**Performs a nxn fold-up of the passed aggregate set.
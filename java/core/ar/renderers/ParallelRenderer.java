@@ -10,14 +10,39 @@ import ar.Glyphset;
 import ar.Renderer;
 import ar.Selector;
 import ar.Transfer;
+import ar.aggregates.AggregatePool;
 import ar.aggregates.AggregateUtils;
+import ar.aggregates.implementations.AtomicDoubleAggregates;
+import ar.aggregates.implementations.AtomicIntAggregates;
+import ar.aggregates.implementations.SparseAggregates;
 import ar.renderers.tasks.GlyphParallelAggregation;
 import ar.renderers.tasks.PixelParallelTransfer;
+import ar.renderers.tasks.SharedCanvasAggregation;
+import ar.renderers.tasks.SparseTransfer;
+import ar.util.Util;
 
 
 /**Task-stealing renderer that works on a per-glyph basis, designed for use with a linear stored glyph-set.
  * Iterates the glyphs and produces many aggregate sets that are then combined
  * (i.e., glyph-driven iteration).
+ * 
+ * In shared-canvas mode, commutative int- or double-valued aggregators 
+ * (see Aggregator.Commutative) are instead applied by all tasks to a single 
+ * set of atomically updated aggregates covering the viewport.  This avoids
+ * the per-task aggregates and the roll-up entirely.  Other aggregators
+ * are processed as usual.
+ * 
+ * By default, the aggregation task size is chosen from measured throughput (see TaskSizer.Adaptive)
+ * instead of a fixed number of tasks per worker.
+ * The sizer is kept between renders, so overhead measurements carry over.
+ * 
+ * Per-task aggregates are limited to AGGREGATE_MEMORY_BUDGET (see AggregateBuffers).
+ * Large canvases or object-valued aggregates therefore get fewer tasks instead of exhausting the heap.
+ * 
+ * If a recycling pool is set (see AggregatePool), per-task aggregates are taken from it and returned
+ * to it after each aggregation, so repeated renders of the same view allocate few new aggregates.
+ * The aggregates returned by aggregate are never recycled by the renderer.
+ * Transfer results can be written into caller-provided aggregates (see transfer with a target).
  */
 public class ParallelRenderer implements Renderer {
 	private static final long serialVersionUID = 1103433143653202677L;
@@ -28,14 +53,42 @@ public class ParallelRenderer implements Renderer {
 	 * but actual interpretation is left up to the ForJoinPool implementation.**/ 
 	public static int THREAD_POOL_PARALLELISM = Runtime.getRuntime().availableProcessors();
 	
-	/**How many tasks should be created for each potential parallel worker during aggregation?*/
+	/**How many tasks should be created for each potential parallel worker during aggregation?
+	 * When adaptive task sizing is used, this is only the initial guess.*/
 	public static int AGGREGATE_TASK_MULTIPLIER = 2;
+	
+	/**Should aggregation task size be adjusted based on measured throughput?**/
+	public static boolean ADAPTIVE_TASK_SIZE = true;
 
 	/**How small can a transfer task get before it won't be subdivided anymore.**/
 	public static final long TRANSFER_TASK_MIN = 100000;
+	
+	/**Memory (in bytes) that the per-task aggregates of a single aggregation may use.  
+	 * Fewer tasks are made when the estimated size of their aggregates would exceed this.**/
+	public static long AGGREGATE_MEMORY_BUDGET = Runtime.getRuntime().maxMemory()/2;
+	
+	/**Estimated bytes per bin for aggregates that hold references (includes an allowance for the object referred to).**/
+	public static int REFERENCE_BIN_BYTES = 64;
+	
+	/**How many bins are merged by a single task when combining the aggregates of two aggregation tasks.**/
+	public static long ROLLUP_TILE_SIZE = 128*128;
+	
+	/**Aggregation tasks with more than this many bins per glyph segment use sparse aggregates (see SparseAggregates).
+	 * Set to Long.MAX_VALUE to always use dense aggregates.**/
+	public static long SPARSE_TASK_RATIO = 16;
+	
+	/**Canvases with fewer bins than this always use dense aggregates.**/
+	public static long SPARSE_MIN_BINS = 256*256;
+	
+	/**Fraction of tiles a task's sparse aggregates may allocate before the rest of that aggregation switches to dense aggregates.**/
+	public static double SPARSE_MAX_FILL = .25;
 	//-------------------------------------------------------------------------------------
 	
 	private final ForkJoinPool pool;
+	private final boolean sharedCanvas;
+	private final TaskSizer.Overhead overhead = new TaskSizer.Overhead();
+	private transient volatile TaskSizer.Adaptive lastSizer;
+	private transient volatile AggregatePool recycling;
 
 	private final ProgressReporter recorder = RenderUtils.recorder();
 	
@@ -45,15 +98,35 @@ public class ParallelRenderer implements Renderer {
 	 * 
 	 * @param ForkJoinPool -- Pool to use.  Null to create a pool
 	 * **/
-	public ParallelRenderer(ForkJoinPool pool) {
+	public ParallelRenderer(ForkJoinPool pool) {this(pool, false);}
+	
+	/**Render that uses the given thread pool for parallel operations.
+	 * 
+	 * @param ForkJoinPool -- Pool to use.  Null to create a pool
+	 * @param sharedCanvas -- Use a single shared set of aggregates when the aggregator supports it?
+	 * **/
+	public ParallelRenderer(ForkJoinPool pool, boolean sharedCanvas) {
 		if (pool == null) {pool = new ForkJoinPool(THREAD_POOL_PARALLELISM);}
 		this.pool = pool;
+		this.sharedCanvas = sharedCanvas;
 	}
 
+	/**Task size for the given glyphs: estimated from the most recent aggregation (adaptive sizing) or the fixed task size.**/
 	public long taskSize(Glyphset<?,?> glyphs) {
+		TaskSizer.Adaptive last = lastSizer;
+		if (ADAPTIVE_TASK_SIZE && last != null) {return last.taskSize(glyphs.segments(), pool.getParallelism());}
 		return glyphs.size()/(pool.getParallelism()*AGGREGATE_TASK_MULTIPLIER);
 	}
 	
+	/**Sizer of the most recently started aggregation (null before the first); its toString reports its estimates.**/
+	public TaskSizer.Adaptive taskSizer() {return lastSizer;}
+	
+	/**Pool that per-task aggregates are recycled through between renders; null if not recycling.**/
+	public AggregatePool recycling() {return recycling;}
+	
+	/**Recycle per-task aggregates through the given pool (null to stop recycling).**/
+	public void recycling(AggregatePool pool) {this.recycling = pool;}
+	
 	@Override
 	public <I,G,A> Aggregates<A> aggregate(
 			Glyphset<? extends G, ? extends I> glyphs, 
@@ -62,26 +135,70 @@ public class ParallelRenderer implements Renderer {
 			AffineTransform view, int width, int height) {
 		
 		//long taskSize = Math.min(AGGREGATE_TASK_MAX, glyphs.size()/(pool.getParallelism()*AGGREGATE_TASK_MULTIPLIER));
-		long taskSize = taskSize(glyphs);
+		long taskSize = glyphs.size()/(pool.getParallelism()*AGGREGATE_TASK_MULTIPLIER);
 		recorder.reset(glyphs.size());
+		
+		Aggregates<A> shared = sharedCanvas ? sharedAggregates(op, width, height) : null;
+		if (shared != null) {
+			SharedCanvasAggregation<G,I,A> t = new SharedCanvasAggregation<>(
+					glyphs, selector, op, view, shared, taskSize, recorder, 0, glyphs.segments());
+			pool.invoke(t);
+			return shared;
+		}
 
+		AggregateBuffers<A> buffers = AggregateBuffers.budgeted(op, ((long) width)*height, AGGREGATE_MEMORY_BUDGET, recycling);
 		GlyphParallelAggregation<G,I,A> t = new GlyphParallelAggregation<>(
 				glyphs, 
 				selector,
 				op, 
 				view, 
 				new Rectangle(0,0,width,height),
-				taskSize,
+				taskSizer(glyphs, taskSize),
+				buffers,
 				recorder,
 				0, glyphs.segments());
 		
 		Aggregates<A> a= pool.invoke(t);
+		buffers.close();
 		return a;
 	}
 	
+	private TaskSizer taskSizer(Glyphset<?,?> glyphs, long taskSize) {
+		if (!ADAPTIVE_TASK_SIZE) {return new TaskSizer.Fixed(taskSize);}
+		TaskSizer.Adaptive sizer = new TaskSizer.Adaptive(AGGREGATE_TASK_MULTIPLIER, overhead);	//Per render, so concurrent renders do not reset each other
+		sizer.reset(glyphs.segments(), pool.getParallelism());
+		lastSizer = sizer;
+		return sizer;
+	}
+	
+	/**Create a viewport-sized set of aggregates that all tasks can update concurrently.
+	 * @return Shared aggregates or null if the aggregator cannot be used that way 
+	 * **/
+	@SuppressWarnings("unchecked")
+	private static <A> Aggregates<A> sharedAggregates(Aggregator<?,A> op, int width, int height) {
+		if (!(op instanceof Aggregator.Commutative) || width <= 0 || height <= 0) {return null;}
+		if (AggregateUtils.size(0, 0, width, height) > Math.min(Integer.MAX_VALUE, AggregateUtils.OFF_HEAP_THRESHOLD)) {return null;}	//Too large for an array
+		if (op instanceof Aggregator.IntValued) {
+			int identity = ((Aggregator.IntValued<?>) op).identityInt();
+			return (Aggregates<A>) new AtomicIntAggregates(0,0, width, height, identity);
+		} else if (op instanceof Aggregator.DoubleValued) {
+			double identity = ((Aggregator.DoubleValued<?>) op).identityDouble();
+			return (Aggregates<A>) new AtomicDoubleAggregates(0,0, width, height, identity);
+		}
+		return null;
+	}
+	
 	
 	public <IN,OUT> Aggregates<OUT> transfer(Aggregates<? extends IN> aggregates, Transfer.ItemWise<IN,OUT> t) {
-		Aggregates<OUT> result = AggregateUtils.make(aggregates, t.emptyValue());		
+		if (aggregates instanceof SparseAggregates && t instanceof Transfer.Local) {
+			return transfer((SparseAggregates<? extends IN>) aggregates, (Transfer.Local<IN,OUT>) t);
+		}
+		
+		return transfer(aggregates, t, AggregateUtils.make(aggregates, t.emptyValue()));
+	}
+	
+	/**Item-wise transfer into the given aggregates, which must cover the bounds of the input.**/
+	private <IN,OUT> Aggregates<OUT> transfer(Aggregates<? extends IN> aggregates, Transfer.ItemWise<IN,OUT> t, Aggregates<OUT> result) {
 		long taskSize = Math.max(TRANSFER_TASK_MIN, AggregateUtils.size(aggregates)/pool.getParallelism());
 		
 		recorder.reset(0);
@@ -92,6 +209,20 @@ public class ParallelRenderer implements Renderer {
 		return result;		
 	}
 	
+	/**Transfer sparse aggregates tile by tile; the result is sparse with the same tiling (see SparseTransfer).**/
+	private <IN,OUT> Aggregates<OUT> transfer(SparseAggregates<? extends IN> aggregates, Transfer.Local<IN,OUT> t) {
+		SparseAggregates<OUT> result = SparseAggregates.like(aggregates, SparseTransfer.untouchedValue(aggregates, t));
+		int tiles = aggregates.tilesX()*aggregates.tilesY();
+		long tileBins = ((long) aggregates.tileSize())*aggregates.tileSize();
+		long taskSize = Math.max(TRANSFER_TASK_MIN/tileBins, tiles/pool.getParallelism());
+
+		recorder.reset(0);
+		pool.invoke(new SparseTransfer<>(aggregates, result, t, taskSize, 0, tiles));
+		recorder.reset(1);
+		recorder.update(1);
+		return result;
+	}
+	
 	public <IN,OUT> Aggregates<OUT> transfer(Aggregates<? extends IN> aggregates, Transfer.Specialized<IN,OUT> t) {
 		if (t instanceof Transfer.ItemWise) {
 			return transfer(aggregates, (Transfer.ItemWise<IN, OUT>) t);
@@ -100,5 +231,27 @@ public class ParallelRenderer implements Renderer {
 		}
 	}	
 	
+	/**Transfer, writing the results into the target if possible.
+	 * 
+	 * Item-wise transfers of dense aggregates overwrite every position of the target 
+	 * if it has exactly the bounds of the input aggregates and the transfer's empty value as its default value.
+	 * Otherwise (or if target is null), this is the same as transfer(aggregates, t).
+	 * This lets callers that transfer the same region repeatedly (e.g., a display) 
+	 * alternate between a few result buffers instead of allocating new results each time.
+	 * 
+	 * @param target Aggregates to overwrite with the results; may be null
+	 * @return The target if it was used, otherwise new aggregates 
+	 * **/
+	public <IN,OUT> Aggregates<OUT> transfer(Aggregates<? extends IN> aggregates, Transfer.Specialized<IN,OUT> t, Aggregates<OUT> target) {
+		if (target == null
+				|| !(t instanceof Transfer.ItemWise)
+				|| aggregates instanceof SparseAggregates
+				|| !AggregateUtils.bounds(target).equals(AggregateUtils.bounds(aggregates))
+				|| !Util.isEqual(target.defaultValue(), t.emptyValue())) {
+			return transfer(aggregates, t);
+		}
+		return transfer(aggregates, (Transfer.ItemWise<IN, OUT>) t, target);
+	}
+	
 	public ProgressReporter progress() {return recorder;}
 }
@@ -12,6 +12,7 @@ import ar.Renderer;
 import ar.Selector;
 import ar.Transfer;
 import ar.aggregates.AggregateUtils;
+import ar.aggregates.implementations.ColorAggregates;
 
 /**Simple renderer that implements the basic abstract rendering algorithm.
  * This class is largely for reference.  In most cases, a parallel renderer is better.
@@ -54,6 +55,19 @@ public final class SerialRenderer implements Renderer {
 		recorder.reset(AggregateUtils.size(aggregates));
 		
 		Aggregates<OUT> out = AggregateUtils.make(aggregates, t.emptyValue());
+		if (t instanceof Transfer.ARGBValued && out instanceof ColorAggregates) {
+			@SuppressWarnings("unchecked")
+			Transfer.ARGBValued<IN> argb = (Transfer.ARGBValued<IN>) t;
+			ColorAggregates colors = (ColorAggregates) out;
+			for (int x=aggregates.lowX(); x<aggregates.highX(); x++) {
+				for (int y=aggregates.lowY(); y<aggregates.highY(); y++) {
+					colors.setInt(x, y, argb.atARGB(x, y, aggregates));
+				}
+				recorder.update(aggregates.highY()-aggregates.lowY());
+			}
+			return out;
+		}
+		
 		for (int x=aggregates.lowX(); x<aggregates.highX(); x++) {
 			for (int y=aggregates.lowY(); y<aggregates.highY(); y++) {
 				OUT val = t.at(x, y, aggregates);
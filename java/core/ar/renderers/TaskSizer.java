@@ -0,0 +1,161 @@
+package ar.renderers;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**Decides how many glyph segments a single aggregation task processes.
+ * 
+ * Tasks report how long their work took; sizers may use those reports
+ * to change the task size while the render is in progress.
+ * Sizers are shared between all tasks of a render, so implementations must be thread safe.
+ * Sizers with per-render state (such as Adaptive) should not be shared between concurrent renders. 
+ * **/
+public abstract class TaskSizer {
+	/**Current task size.  Tasks with more segments than this are split.**/
+	public abstract long taskSize();
+	
+	/**Prepare for a new render.
+	 * @param segments Number of glyph segments in the render
+	 * @param parallelism Number of workers available
+	 * **/
+	public void reset(long segments, int parallelism) {}
+
+	/**If a sample should be processed before splitting, how many segments should it include?
+	 * Returns zero after the first call in a render (so only one task takes the sample).**/
+	public long claimSample(long segments) {return 0;}
+
+	/**Report that a number of glyph segments were processed in the given time.**/
+	public void processed(long segments, long nanos) {}
+	
+	/**Report the time spent on task overhead that does not depend on the glyphs (e.g., allocating or merging aggregates).**/
+	public void overhead(long nanos) {}
+	
+	
+	/**Always the same task size.**/
+	public static final class Fixed extends TaskSizer {
+		private final long taskSize;
+		public Fixed(long taskSize) {this.taskSize = taskSize;}
+		public long taskSize() {return taskSize;}
+		public String toString() {return String.format("Fixed task size: %d", taskSize);}
+	}
+	
+	/**Choose task size from measured throughput.
+	 * 
+	 * At the start of a render, one task processes a small sample of the glyphs to 
+	 * estimate segments-per-millisecond for this glyphset/selector/aggregator combination.
+	 * Task overhead (allocating and merging aggregates) is measured as tasks complete.
+	 * Tasks are sized so they take at least MIN_TASK_MS and so that overhead is at most
+	 * OVERHEAD_FRACTION of a task's time.  Between MIN_TASKS_PER_THREAD and MAX_TASKS_PER_THREAD 
+	 * tasks are made for each worker.
+	 * 
+	 * All estimates are revised as reports arrive, so tasks split later in a render see better estimates.
+	 * Throughput is sampled for each render, so each render should use its own sizer.
+	 * Overhead estimates can be kept between renders by giving their sizers the same Overhead.
+	 * **/
+	public static final class Adaptive extends TaskSizer {
+		/**Shortest task time worth creating a task for.**/
+		public static double MIN_TASK_MS = 2;
+		
+		/**Largest acceptable ratio of overhead time to glyph-processing time in a task.**/
+		public static double OVERHEAD_FRACTION = .1;
+		
+		/**Bounds on the number of tasks per worker.**/
+		public static int MIN_TASKS_PER_THREAD = 1, MAX_TASKS_PER_THREAD = 32;
+		
+		/**Portion of the initial (non-adaptive) task size used as a sample.**/
+		public static int SAMPLE_DIVISOR = 8;
+
+		/**Weight of a new report in the running estimates.**/
+		private static final double WEIGHT = .25;
+		
+		private final long fallbackMultiplier;
+		private final Overhead overhead;
+		private final AtomicBoolean sampleClaimed = new AtomicBoolean();
+		private long segments;
+		private int parallelism = 1;
+		private double segmentsPerNano = Double.NaN;
+		private volatile long taskSize = 1;
+		
+		/**@param fallbackMultiplier Tasks per worker to use before any measurements are made**/
+		public Adaptive(long fallbackMultiplier) {this(fallbackMultiplier, new Overhead());}
+		
+		/**@param fallbackMultiplier Tasks per worker to use before any measurements are made
+		 * @param overhead Per-task overhead estimate, may be shared with other sizers
+		 * **/
+		public Adaptive(long fallbackMultiplier, Overhead overhead) {
+			this.fallbackMultiplier = fallbackMultiplier;
+			this.overhead = overhead;
+		}
+		
+		public long taskSize() {return taskSize;}
+		
+		/**Task size these estimates give for a render of the given number of segments.**/
+		public synchronized long taskSize(long segments, int parallelism) {
+			parallelism = Math.max(1, parallelism);
+			long minSize = Math.max(1, segments/(parallelism*MAX_TASKS_PER_THREAD));
+			long maxSize = Math.max(1, segments/(parallelism*MIN_TASKS_PER_THREAD));
+			
+			long size;
+			if (Double.isNaN(segmentsPerNano)) {
+				size = segments/(parallelism*fallbackMultiplier);
+			} else {
+				double taskNanos = Math.max(MIN_TASK_MS*1000000, overhead.nanos()/OVERHEAD_FRACTION);
+				size = (long) (segmentsPerNano * taskNanos);
+			}
+			return Math.min(maxSize, Math.max(minSize, size));
+		}
+		
+		public synchronized void reset(long segments, int parallelism) {
+			this.segments = segments;
+			this.parallelism = Math.max(1, parallelism);
+			this.segmentsPerNano = Double.NaN;
+			this.sampleClaimed.set(false);
+			resize();
+		}
+		
+		public long claimSample(long segments) {
+			if (sampleClaimed.getAndSet(true)) {return 0;}
+			return Math.max(1, Math.min(segments, taskSize/SAMPLE_DIVISOR));
+		}
+		
+		public synchronized void processed(long segments, long nanos) {
+			if (segments <= 0) {return;}
+			double rate = segments / (double) Math.max(1, nanos);
+			segmentsPerNano = Double.isNaN(segmentsPerNano) ? rate : (1-WEIGHT)*segmentsPerNano + WEIGHT*rate;
+			resize();
+		}
+		
+		public synchronized void overhead(long nanos) {
+			overhead.report(nanos);
+			resize();
+		}
+		
+		/**Estimated segments processed per millisecond (NaN before any measurement).**/
+		public synchronized double segmentsPerMS() {return segmentsPerNano*1000000;}
+		
+		/**Estimated per-task overhead in milliseconds.**/
+		public double overheadMS() {return overhead.nanos()/1000000;}
+		
+		private void resize() {taskSize = taskSize(segments, parallelism);}
+		
+		public synchronized String toString() {
+			return String.format("Adaptive task size: %d (%.1f segments/ms, %.3f ms overhead/task, %d segments, %d workers)", 
+					taskSize, segmentsPerMS(), overheadMS(), segments, parallelism);
+		}
+	}
+	
+	/**Running estimate of per-task overhead; safe to share between sizers of concurrent renders.**/
+	public static final class Overhead implements Serializable {
+		private static final long serialVersionUID = -3329311542617387127L;
+		private static final double WEIGHT = .25;
+		private double nanos = 0;
+		
+		/**Report the overhead of one task.**/
+		public synchronized void report(long nanos) {
+			this.nanos = this.nanos == 0 ? nanos : (1-WEIGHT)*this.nanos + WEIGHT*nanos;
+		}
+		
+		/**Current estimate, in nanoseconds (zero before any report).**/
+		public synchronized double nanos() {return nanos;}
+	}
+}
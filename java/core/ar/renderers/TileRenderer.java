@@ -0,0 +1,155 @@
+package ar.renderers;
+
+import java.awt.geom.AffineTransform;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import ar.Aggregates;
+import ar.Aggregator;
+import ar.Glyphset;
+import ar.Renderer;
+import ar.Selector;
+import ar.Transfer;
+import ar.aggregates.AggregateUtils;
+import ar.aggregates.implementations.ConstantAggregates;
+import ar.renderers.tasks.PixelParallelTransfer;
+import ar.renderers.tasks.TileAggregation;
+import ar.renderers.tasks.TileBinning;
+import ar.rules.combinators.Seq;
+
+/**Two-pass renderer that divides the screen into tiles.
+ * 
+ * The first pass (glyph-parallel) projects each glyph and sorts it into 
+ * the screen tiles its bounding box touches.  The second pass (tile-parallel)
+ * aggregates each tile independently into a tile-sized buffer and copies it 
+ * to the result.  Since tiles do not overlap, there is no roll-up step 
+ * and no task ever allocates a full-canvas set of aggregates.
+ * 
+ * Works with any glyphset/selector combination.  Random-access glyphsets
+ * are binned by index, so glyphs are not retained between the passes.
+ * The order glyphs are presented to the aggregator is the glyphset order,
+ * restricted to the glyphs of a tile.
+ */
+public class TileRenderer implements Renderer {
+	private static final long serialVersionUID = -5404306462713744906L;
+
+	/**Default width (and height) of a screen tile, in bins.**/
+	public static int TILE_SIZE = 256;
+	
+	private final ForkJoinPool pool;
+	private final int tileSize;
+	private final ProgressReporter recorder = RenderUtils.recorder();
+
+	public TileRenderer() {this(null);}
+	public TileRenderer(ForkJoinPool pool) {this(pool, TILE_SIZE);}
+	
+	/**Render using the given thread pool and tile size.
+	 * 
+	 * @param ForkJoinPool -- Pool to use.  Null to create a pool
+	 * @param tileSize -- Width (and height) of a screen tile
+	 * **/
+	public TileRenderer(ForkJoinPool pool, int tileSize) {
+		if (pool == null) {pool = new ForkJoinPool(ParallelRenderer.THREAD_POOL_PARALLELISM);}
+		if (tileSize <= 0) {throw new IllegalArgumentException("Tile size must be positive; received " + tileSize);}
+		this.pool = pool;
+		this.tileSize = tileSize;
+	}
+	
+	@Override
+	public long taskSize(Glyphset<?,?> glyphs) {
+		return glyphs.size()/(pool.getParallelism()*ParallelRenderer.AGGREGATE_TASK_MULTIPLIER);
+	}
+
+	@Override
+	public <I,G,A> Aggregates<A> aggregate(
+			Glyphset<? extends G, ? extends I> glyphs, 
+			Selector<G> selector,
+			Aggregator<I,A> op,
+			AffineTransform view, int width, int height) {
+		
+		Aggregates<A> canvas = AggregateUtils.make(width, height, op.identity());
+		recorder.reset(glyphs.size());
+		if (width <= 0 || height <= 0) {return canvas;}
+		
+		List<TileBinning.Bins<G,I>> bins = bin(glyphs, view, width, height);
+		pool.invoke(new TileAggregation<>(bins, selector, op, view, canvas, width, height, tileSize, 0, tiles(width, height)));
+		return canvas;
+	}
+	
+	/**Aggregate and transfer in one step.
+	 * 
+	 * The result is the same as transfer(aggregate(...), transfer), but each tile's
+	 * transfer runs as soon as its aggregates are complete. 
+	 * Only tile-sized aggregates are ever allocated.
+	 * 
+	 * @param t Local transfer to apply (used as given, it is not re-specialized; see fusable)
+	 * **/
+	public <I,G,A,OUT> Aggregates<OUT> render(
+			Glyphset<? extends G, ? extends I> glyphs, 
+			Selector<G> selector,
+			Aggregator<I,A> op,
+			Transfer.Local<? super A, OUT> t,
+			AffineTransform view, int width, int height) {
+
+		Aggregates<OUT> out = AggregateUtils.make(width, height, t.emptyValue());
+		recorder.reset(glyphs.size());
+		if (width <= 0 || height <= 0) {return out;}
+		
+		List<TileBinning.Bins<G,I>> bins = bin(glyphs, view, width, height);
+		pool.invoke(new TileAggregation.Fused<>(bins, selector, op, t, view, out, width, height, tileSize, 0, tiles(width, height)));
+		return out;
+	}
+	
+	/**Compose the transfers into a single local transfer for render, if none of them depend on the aggregates they are applied to.
+	 * 
+	 * A transfer is taken to be independent of its aggregates if it is local and specializes to itself.
+	 * That is checked by specializing each transfer to empty aggregates holding the empty value of the transfer before it
+	 * (the aggregator identity for the first one), so transfers that compute parameters from their aggregates 
+	 * (e.g., Numbers.Interpolate) are never fused.
+	 * 
+	 * @param identity Identity value of the aggregator that produces the input of the first transfer
+	 * @return A local transfer equivalent to applying the transfers in order; null if the transfers are empty or any depends on its aggregates
+	 * **/
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static Transfer.Local<?,?> fusable(Object identity, List<? extends Transfer<?,?>> transfers) {
+		Transfer.Local fused = null;
+		Object empty = identity;
+		for (Transfer t: transfers) {
+			if (!(t instanceof Transfer.Local) || t.specialize(new ConstantAggregates(empty)) != t) {return null;}
+			fused = fused == null ? (Transfer.Local) t : Seq.fused(fused, (Transfer.Local) t);
+			empty = t.emptyValue();
+		}
+		return fused;
+	}
+	
+	private <G,I> List<TileBinning.Bins<G,I>> bin(Glyphset<? extends G, ? extends I> glyphs, AffineTransform view, int width, int height) {
+		TileBinning<G,I> binning = new TileBinning<>(glyphs, view, width, height, tileSize, taskSize(glyphs), recorder, 0, glyphs.segments());
+		return pool.invoke(binning);
+	}
+	
+	private int tiles(int width, int height) {
+		return TileBinning.tiles(width, tileSize) * TileBinning.tiles(height, tileSize);
+	}
+	
+	public <IN,OUT> Aggregates<OUT> transfer(Aggregates<? extends IN> aggregates, Transfer.ItemWise<IN,OUT> t) {
+		Aggregates<OUT> result = AggregateUtils.make(aggregates, t.emptyValue());		
+		long taskSize = Math.max(ParallelRenderer.TRANSFER_TASK_MIN, AggregateUtils.size(aggregates)/pool.getParallelism());
+		
+		recorder.reset(0);
+		PixelParallelTransfer<IN, OUT> task = new PixelParallelTransfer<>(aggregates, result, t, taskSize, aggregates.lowX(),aggregates.lowY(), aggregates.highX(), aggregates.highY());
+		pool.invoke(task);
+		recorder.reset(1);
+		recorder.update(1);
+		return result;		
+	}
+	
+	public <IN,OUT> Aggregates<OUT> transfer(Aggregates<? extends IN> aggregates, Transfer.Specialized<IN,OUT> t) {
+		if (t instanceof Transfer.ItemWise) {
+			return transfer(aggregates, (Transfer.ItemWise<IN, OUT>) t);
+		} else  {
+			return t.process(aggregates, this);
+		}
+	}	
+	
+	public ProgressReporter progress() {return recorder;}
+}
@@ -12,14 +12,38 @@ import ar.Glyphset;
 import ar.Selector;
 import ar.aggregates.AggregateUtils;
 import ar.aggregates.implementations.ConstantAggregates;
+import ar.aggregates.implementations.SparseAggregates;
+import ar.aggregates.wrappers.AccumulatingWrapper;
 import ar.aggregates.wrappers.TouchedBoundsWrapper;
+import ar.glyphsets.BlockedMemMapList;
+import ar.glyphsets.ColumnarGlyphs;
+import ar.glyphsets.implicitgeometry.Shaper;
+import ar.renderers.AggregateBuffers;
 import ar.renderers.AggregationStrategies;
+import ar.renderers.ParallelRenderer;
 import ar.renderers.ProgressReporter;
+import ar.renderers.TaskSizer;
 import ar.util.Util;
 
+/**Glyph-parallel aggregation: glyph ranges are split until they are no larger than the current task size,
+ * each range is aggregated into its own aggregates and the results are rolled up.
+ * 
+ * The task size is read from a TaskSizer when each split decision is made.  
+ * Leaf tasks report their glyph-processing time and their allocation/roll-up time to the sizer.
+ * If the sizer asks for a sample, the first task to see the request processes that
+ * many segments before splitting the rest.
+ * 
+ * Per-task aggregates come from an AggregateBuffers instance, which limits how many are live at once
+ * (a task that cannot reserve a buffer does not split) and recycles aggregates that have been merged.
+ * Tasks with few glyphs for the viewport get sparse aggregates from it.
+ * 
+ * Leaf tasks are culled (and their aggregates sized) by the bounds of their own glyph range 
+ * where those are cheap to find (see taskBounds); otherwise by the bounds of the whole glyphset.
+ */
 public class GlyphParallelAggregation<G,I,A> extends RecursiveTask<Aggregates<A>> {
 	private static final long serialVersionUID = 705015978061576950L;
-	protected final long taskSize;
+	protected final TaskSizer sizer;
+	protected final AggregateBuffers<A> buffers;
 	protected final long low;
 	protected final long high;
 	protected final Glyphset<? extends G, ? extends I> glyphs;
@@ -38,13 +62,39 @@ public class GlyphParallelAggregation<G,I,A> extends RecursiveTask<Aggregates<A>
 		long taskSize,
 		ProgressReporter recorder,
 		long low, long high) {
+		this(glyphs, selector, op, view, viewport, new TaskSizer.Fixed(taskSize), recorder, low, high);
+	}
+
+	public GlyphParallelAggregation(
+		Glyphset<? extends G, ? extends I> glyphs, 
+		Selector<G> selector,
+		Aggregator<I,A> op,
+		AffineTransform view,
+		Rectangle viewport,
+		TaskSizer sizer,
+		ProgressReporter recorder,
+		long low, long high) {
+		this(glyphs, selector, op, view, viewport, sizer, AggregateBuffers.unbounded(op.identity()), recorder, low, high);
+	}
+
+	public GlyphParallelAggregation(
+		Glyphset<? extends G, ? extends I> glyphs, 
+		Selector<G> selector,
+		Aggregator<I,A> op,
+		AffineTransform view,
+		Rectangle viewport,
+		TaskSizer sizer,
+		AggregateBuffers<A> buffers,
+		ProgressReporter recorder,
+		long low, long high) {
 
 		this.glyphs = glyphs;
 		this.selector = selector;
 		this.op = op;
 		this.view = view;
 		this.viewport =viewport;
-		this.taskSize = taskSize;
+		this.sizer = sizer;
+		this.buffers = buffers;
 		this.recorder = recorder;
 		this.low = low;
 		this.high = high;
@@ -53,13 +103,20 @@ public class GlyphParallelAggregation<G,I,A> extends RecursiveTask<Aggregates<A>
 	protected Aggregates<A> compute() {
 		if (viewport.isEmpty()) {return new ConstantAggregates<>(op.identity());}
 		Aggregates<A> rslt;
-		if ((high-low) > taskSize) {rslt=split();}
+		long sample = sizer.claimSample(high-low);
+		if (sample > 0 && sample < (high-low) && buffers.reserve()) {rslt=sampled(low+sample);}
+		else if ((high-low) > sizer.taskSize() && buffers.reserve()) {rslt=split(Util.mean(low, high));}
 		else {rslt=local();}
 		recorder.update((high-low)/3);
 		
 		if (rslt instanceof TouchedBoundsWrapper) {
 			TouchedBoundsWrapper<A> tbr = (TouchedBoundsWrapper<A>) rslt;
-			if (AggregateUtils.bounds(tbr).equals(AggregateUtils.bounds(tbr.base()))) {return tbr.base();}
+			if (tbr.highX() <= tbr.lowX() || tbr.highY() <= tbr.lowY()) {	//Nothing landed in the viewport
+				buffers.release(tbr);
+				return new ConstantAggregates<>(op.identity());
+			}
+			if (AggregateUtils.bounds(tbr).equals(AggregateUtils.bounds(tbr.base()))
+					|| tbr.base() instanceof SparseAggregates) {return tbr.base();}	//Sparse aggregates track what was touched themselves
 		} 
 
 		return rslt;
@@ -67,44 +124,86 @@ public class GlyphParallelAggregation<G,I,A> extends RecursiveTask<Aggregates<A>
 	
 	protected final Aggregates<A> local() {
 		long step = recorder.reportStep() <= 0 ? high-low : recorder.reportStep();  //How often should reports be made?
-		Aggregates<A> target = allocateAggregates(glyphs.bounds());
+		Rectangle2D bounds = taskBounds();
+		if (aggregateBounds(bounds).isEmpty()) {	//Nothing can land in the viewport
+			recorder.update(high-low);
+			return new ConstantAggregates<>(op.identity());
+		}
+
+		long start = System.nanoTime();
+		Aggregates<A> target = allocateAggregates(bounds);
+		long allocated = System.nanoTime();
+		sizer.overhead(allocated-start);
 		
+		Aggregates<A> accumulators = AccumulatingWrapper.wrap(target, op);	//Update in place; frozen before returning
 		for (long bottom=low; bottom < high; bottom+= step) {
 			long top = Math.min(bottom+step, high);
 			Glyphset<? extends G, ? extends I> subset = glyphs.segment(bottom, top);
-			selector.processSubset(subset, view, target, op);
+			selector.processSubset(subset, view, accumulators, op);
 			recorder.update(2*(step/3));
 		}
+		AccumulatingWrapper.unwrap(accumulators);
+		sizer.processed(high-low, System.nanoTime()-allocated);
+		buffers.filled(target);
 		
 		return target;
 	}
 	
-	protected final Aggregates<A> split() {
-		long mid = Util.mean(low, high);
-
-		GlyphParallelAggregation<G,I,A> top = new GlyphParallelAggregation<>(glyphs, selector, op, view, viewport, taskSize, recorder, low, mid);
-		GlyphParallelAggregation<G,I,A> bottom = new GlyphParallelAggregation<>(glyphs, selector, op, view, viewport, taskSize, recorder, mid, high);
+	protected final Aggregates<A> split(long mid) {
+		GlyphParallelAggregation<G,I,A> top = new GlyphParallelAggregation<>(glyphs, selector, op, view, viewport, sizer, buffers, recorder, low, mid);
+		GlyphParallelAggregation<G,I,A> bottom = new GlyphParallelAggregation<>(glyphs, selector, op, view, viewport, sizer, buffers, recorder, mid, high);
 		invokeAll(top, bottom);
-		Aggregates<A> aggs;
-		try {aggs = AggregationStrategies.horizontalRollup(top.get(), bottom.get(), op);}
+		try {return rollup(top.get(), bottom.get());}
 		catch (InterruptedException | ExecutionException e) {throw new RuntimeException(e);}
-		return aggs;
 	}
 	
-	
-	/**DESTRUCTIVELY updates the target at x/y with the value passed and the target operation.**/
-	protected final void update(Aggregates<A> target, I v, int x, int y) {
-		A existing = target.get(x,y);
-		A update = op.combine(existing, v);
-		target.set(x, y, update);
+	/**Process [low, mid) in this thread so the sizer can measure it, then split the rest with the updated task size.**/
+	protected final Aggregates<A> sampled(long mid) {
+		GlyphParallelAggregation<G,I,A> sample = new GlyphParallelAggregation<>(glyphs, selector, op, view, viewport, sizer, buffers, recorder, low, mid);
+		GlyphParallelAggregation<G,I,A> rest = new GlyphParallelAggregation<>(glyphs, selector, op, view, viewport, sizer, buffers, recorder, mid, high);
+		Aggregates<A> first = sample.invoke();
+		return rollup(first, rest.invoke());
 	}
 	
+	/**Merge the results of a split, returning the buffer reserved for the split.**/
+	private final Aggregates<A> rollup(Aggregates<A> left, Aggregates<A> right) {
+		long start = System.nanoTime();
+		Aggregates<A> aggs = AggregationStrategies.horizontalRollup(left, right, op, ParallelRenderer.ROLLUP_TILE_SIZE);
+		buffers.merged(left, right, aggs);
+		sizer.overhead(System.nanoTime()-start);
+		return aggs;
+	}
+
+	/**Bounds of the glyphs in this task's range, if they are cheap to find: from the zone maps of a blocked file 
+	 * (see BlockedMemMapList and Shaper.SafeApproximate) or the coordinate columns of columnar glyphs (see ColumnarGlyphs).
+	 * Otherwise, the bounds of the whole glyphset (which glyphsets compute once).
+	 * **/
+	protected Rectangle2D taskBounds() {
+		if (glyphs instanceof ColumnarGlyphs
+				|| (glyphs instanceof BlockedMemMapList && ((BlockedMemMapList<?,?>) glyphs).shaper() instanceof Shaper.SafeApproximate)) {
+			return glyphs.segment(low, high).bounds();
+		}
+		return glyphs.bounds();
+	}
 
 	protected Aggregates<A> allocateAggregates(Rectangle2D bounds) {
-		Rectangle fullBounds = view.createTransformedShape(bounds).getBounds();
-		Aggregates<A> aggs = AggregateUtils.make(fullBounds.x, fullBounds.y,
-				fullBounds.x+fullBounds.width, fullBounds.y+fullBounds.height, 
-				op.identity());
-		return new TouchedBoundsWrapper<>(aggs, false);
-	}	
+		return buffers.take(aggregateBounds(bounds), high-low);
+	}
+	
+	/**Bins that glyphs inside of the passed (geometry-space) bounds can touch in the viewport.
+	 * 
+	 * Aggregates are never allocated beyond the viewport, so memory use is proportional 
+	 * to the viewport even when the view is zoomed deep into the data.
+	 * **/
+	protected Rectangle aggregateBounds(Rectangle2D bounds) {
+		Rectangle2D projected = view.createTransformedShape(bounds).getBounds2D();
+		
+		//A glyph on the high edge lands in bin floor(max), so include that bin
+		int lowX = (int) Math.floor(projected.getMinX());
+		int lowY = (int) Math.floor(projected.getMinY());
+		int highX = (int) Math.floor(projected.getMaxX())+1;
+		int highY = (int) Math.floor(projected.getMaxY())+1;
+		Rectangle fullBounds = new Rectangle(lowX, lowY, highX-lowX, highY-lowY);
+		return fullBounds.intersection(viewport);
+	}
 }
@@ -4,6 +4,7 @@ import java.util.concurrent.RecursiveAction;
 
 import ar.Aggregates;
 import ar.Transfer;
+import ar.aggregates.implementations.ColorAggregates;
 import ar.util.Util;
 
 public final class PixelParallelTransfer<IN, OUT> extends RecursiveAction {
@@ -42,6 +43,15 @@ public final class PixelParallelTransfer<IN, OUT> extends RecursiveAction {
 			PixelParallelTransfer<IN, OUT> SE = new PixelParallelTransfer<>(in, out, t, taskSize, centerx, lowy,    highx,   centery);
 			PixelParallelTransfer<IN, OUT> NE = new PixelParallelTransfer<>(in, out, t, taskSize, centerx, centery, highx,   highy);
 			invokeAll(SW,NW,SE,NE);
+		} else if (t instanceof Transfer.ARGBValued && out instanceof ColorAggregates) {
+			@SuppressWarnings("unchecked")
+			Transfer.ARGBValued<IN> argb = (Transfer.ARGBValued<IN>) t;
+			ColorAggregates colors = (ColorAggregates) out;
+			for (int x=lowx; x<highx; x++) {
+				for (int y=lowy; y<highy; y++) {
+					colors.setInt(x, y, argb.atARGB(x, y, in));
+				}
+			}
 		} else {
 			for (int x=lowx; x<highx; x++) {
 				for (int y=lowy; y<highy; y++) {
@@ -0,0 +1,69 @@
+package ar.renderers.tasks;
+
+import java.awt.geom.AffineTransform;
+import java.util.concurrent.RecursiveAction;
+
+import ar.Aggregates;
+import ar.Aggregator;
+import ar.Glyphset;
+import ar.Selector;
+import ar.renderers.ProgressReporter;
+import ar.util.Util;
+
+/**Glyph-parallel aggregation where all tasks write into a single, shared set of aggregates.
+ *
+ * In contrast to GlyphParallelAggregation, no per-task aggregates are allocated
+ * and no roll-up is performed.  This is only correct if the target aggregates
+ * support concurrent updates (e.g., AtomicIntAggregates) with the given aggregator
+ * and the aggregator is commutative (see Aggregator.Commutative).
+ */
+public class SharedCanvasAggregation<G,I,A> extends RecursiveAction {
+	private static final long serialVersionUID = -3806335208838391457L;
+	protected final long taskSize;
+	protected final long low;
+	protected final long high;
+	protected final Glyphset<? extends G, ? extends I> glyphs;
+	protected final AffineTransform view;
+	protected final Aggregates<A> target;
+	protected final Aggregator<I,A> op;
+	protected final ProgressReporter recorder;
+	protected final Selector<G> selector;
+
+	public SharedCanvasAggregation(
+		Glyphset<? extends G, ? extends I> glyphs,
+		Selector<G> selector,
+		Aggregator<I,A> op,
+		AffineTransform view,
+		Aggregates<A> target,
+		long taskSize,
+		ProgressReporter recorder,
+		long low, long high) {
+
+		this.glyphs = glyphs;
+		this.selector = selector;
+		this.op = op;
+		this.view = view;
+		this.target = target;
+		this.taskSize = taskSize;
+		this.recorder = recorder;
+		this.low = low;
+		this.high = high;
+	}
+
+	protected void compute() {
+		if ((high-low) > Math.max(1, taskSize)) {
+			long mid = Util.mean(low, high);
+			SharedCanvasAggregation<G,I,A> top = new SharedCanvasAggregation<>(glyphs, selector, op, view, target, taskSize, recorder, low, mid);
+			SharedCanvasAggregation<G,I,A> bottom = new SharedCanvasAggregation<>(glyphs, selector, op, view, target, taskSize, recorder, mid, high);
+			invokeAll(top, bottom);
+		} else {
+			long step = recorder.reportStep() <= 0 ? high-low : recorder.reportStep();  //How often should reports be made?
+			for (long bottom=low; bottom < high; bottom+= step) {
+				long top = Math.min(bottom+step, high);
+				Glyphset<? extends G, ? extends I> subset = glyphs.segment(bottom, top);
+				selector.processSubset(subset, view, target, op);
+				recorder.update(top-bottom);
+			}
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package ar.renderers.tasks;
+
+import java.util.concurrent.RecursiveAction;
+
+import ar.Aggregates;
+import ar.Transfer;
+import ar.aggregates.implementations.ColorAggregates;
+import ar.aggregates.implementations.SparseAggregates;
+
+/**Apply a local transfer to the allocated tiles of sparse aggregates, one range of tiles per task.
+ * 
+ * The result has the same tiling as the input, and its default value is the transfer 
+ * of an untouched position (see "untouchedValue").  Untouched input tiles hold only the input's
+ * default value, so for position-independent transfers (see Transfer.PositionIndependent) they are skipped 
+ * and the work follows the number of allocated tiles.  Other local transfers may use x/y, 
+ * so their untouched tiles are transferred as well; a result tile is only allocated for them 
+ * if some position transfers to something other than the result's default.  
+ * Tiles are disjoint, so tasks never touch the same result tile.
+ * **/
+public final class SparseTransfer<IN, OUT> extends RecursiveAction {
+	private static final long serialVersionUID = -2945313383640526440L;
+	
+	private final SparseAggregates<? extends IN> in;
+	private final SparseAggregates<OUT> out;
+	private final Transfer.Local<IN, OUT> t;
+	private final int low, high;
+	private final long taskSize;
+
+	/**@param taskSize Number of tiles transferred in a single task**/
+	public SparseTransfer(
+			SparseAggregates<? extends IN> input, SparseAggregates<OUT> result,
+			Transfer.Local<IN, OUT> t,
+			long taskSize,
+			int low, int high) {
+		this.in = input;
+		this.out = result;
+		this.t = t;
+		this.taskSize = Math.max(1, taskSize);
+		this.low = low;
+		this.high = high;
+	}
+	
+	/**Value of the result at positions where nothing was set in the input.  
+	 * Uses the transfer's empty value when every tile of the input has been allocated.
+	 * **/
+	public static <IN,OUT> OUT untouchedValue(SparseAggregates<? extends IN> input, Transfer.Local<IN,OUT> t) {
+		for (int idx=0; idx<input.tilesX()*input.tilesY(); idx++) {
+			if (input.tile(idx) == null) {
+				int x = input.lowX() + (idx % input.tilesX())*input.tileSize();
+				int y = input.lowY() + (idx / input.tilesX())*input.tileSize();
+				return t.at(x, y, input);
+			}
+		}
+		return t.emptyValue();
+	}
+
+	protected void compute() {
+		if (high-low > taskSize) {
+			int mid = (low+high)/2;
+			invokeAll(new SparseTransfer<>(in, out, t, taskSize, low, mid),
+					  new SparseTransfer<>(in, out, t, taskSize, mid, high));
+			return;
+		}
+		
+		for (int idx=low; idx<high; idx++) {
+			Aggregates<? extends IN> source = in.tile(idx);
+			if (source == null) {
+				if (!(t instanceof Transfer.PositionIndependent)) {untouched(idx);}
+				continue;
+			}
+			Aggregates<OUT> target = out.touch(idx);
+			if (t instanceof Transfer.ARGBValued && target instanceof ColorAggregates) {
+				@SuppressWarnings("unchecked")
+				Transfer.ARGBValued<IN> argb = (Transfer.ARGBValued<IN>) t;
+				ColorAggregates colors = (ColorAggregates) target;
+				for (int x=source.lowX(); x<source.highX(); x++) {
+					for (int y=source.lowY(); y<source.highY(); y++) {
+						colors.setInt(x, y, argb.atARGB(x, y, in));
+					}
+				}
+				continue;
+			}
+			for (int x=source.lowX(); x<source.highX(); x++) {
+				for (int y=source.lowY(); y<source.highY(); y++) {
+					target.set(x, y, t.at(x, y, in));
+				}
+			}
+		}
+	}
+	
+	/**Transfer a tile with nothing set in the input.  The result's "set" skips default values, so usually nothing is allocated.**/
+	private void untouched(int idx) {
+		int lowX = in.lowX() + (idx % in.tilesX())*in.tileSize();
+		int lowY = in.lowY() + (idx / in.tilesX())*in.tileSize();
+		int highX = Math.min(in.highX(), lowX+in.tileSize());
+		int highY = Math.min(in.highY(), lowY+in.tileSize());
+		for (int x=lowX; x<highX; x++) {
+			for (int y=lowY; y<highY; y++) {
+				out.set(x, y, t.at(x, y, in));
+			}
+		}
+	}
+}
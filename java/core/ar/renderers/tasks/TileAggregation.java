@@ -0,0 +1,139 @@
+package ar.renderers.tasks;
+
+import java.awt.geom.AffineTransform;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+import ar.Aggregates;
+import ar.Aggregator;
+import ar.Glyphset;
+import ar.Selector;
+import ar.Transfer;
+import ar.aggregates.AggregateUtils;
+import ar.aggregates.implementations.ColorAggregates;
+import ar.aggregates.wrappers.AccumulatingWrapper;
+
+/**Second pass of tile-based rendering: aggregate each screen tile on its own.
+ * 
+ * A tile is aggregated into a tile-sized buffer (small enough to stay in cache)
+ * using only the glyphs binned to it, then copied into the shared canvas.
+ * Tiles do not overlap, so no roll-up is required.
+ * **/
+public class TileAggregation<G,I,A> extends RecursiveAction {
+	private static final long serialVersionUID = 6044405640361553530L;
+	
+	protected final List<TileBinning.Bins<G,I>> bins;
+	protected final Selector<G> selector;
+	protected final Aggregator<I,A> op;
+	protected final AffineTransform view;
+	protected final Aggregates<A> canvas;
+	protected final int width, height, tileSize;
+	protected final int low, high;
+	
+	public TileAggregation(
+			List<TileBinning.Bins<G,I>> bins,
+			Selector<G> selector,
+			Aggregator<I,A> op,
+			AffineTransform view,
+			Aggregates<A> canvas,
+			int width, int height, int tileSize,
+			int low, int high) {
+		this.bins = bins;
+		this.selector = selector;
+		this.op = op;
+		this.view = view;
+		this.canvas = canvas;
+		this.width = width;
+		this.height = height;
+		this.tileSize = tileSize;
+		this.low = low;
+		this.high = high;
+	}
+	
+	@Override
+	protected void compute() {
+		if (high-low > 1) {
+			int mid = low + (high-low)/2;
+			invokeAll(task(low, mid), task(mid, high));
+		} else {
+			aggregateTile(low);
+		}
+	}
+	
+	/**Task for a subset of the tiles.**/
+	protected TileAggregation<G,I,A> task(int low, int high) {
+		return new TileAggregation<>(bins, selector, op, view, canvas, width, height, tileSize, low, high);
+	}
+	
+	protected void aggregateTile(int tile) {
+		int tilesX = TileBinning.tiles(width, tileSize);
+		int lowX = (tile % tilesX) * tileSize;
+		int lowY = (tile / tilesX) * tileSize;
+		int highX = Math.min(width, lowX + tileSize);
+		int highY = Math.min(height, lowY + tileSize);
+		
+		Aggregates<A> target = null;
+		for (TileBinning.Bins<G,I> bin: bins) {
+			Glyphset<? extends G, ? extends I> glyphs = bin.tile(tile);
+			if (glyphs == null) {continue;}
+			if (target == null) {target = AccumulatingWrapper.wrap(AggregateUtils.make(lowX, lowY, highX, highY, op.identity()), op);}
+			selector.processSubset(glyphs, view, target, op);
+		}
+		complete(target == null ? null : AccumulatingWrapper.unwrap(target), lowX, lowY, highX, highY);
+	}
+	
+	/**Store the aggregates of a finished tile.
+	 * @param tile Aggregates of the tile; null if no glyphs were binned to the tile.
+	 * **/
+	protected void complete(Aggregates<A> tile, int lowX, int lowY, int highX, int highY) {
+		if (tile != null) {AggregateUtils.copyInto(tile, canvas);}
+	}
+	
+	/**Tile aggregation that immediately applies a local transfer to each finished tile.
+	 * Only the transfer results are stored, so the aggregates are never held for the whole canvas.**/
+	public static class Fused<G,I,A,OUT> extends TileAggregation<G,I,A> {
+		private static final long serialVersionUID = -3300498624101592856L;
+		protected final Transfer.Local<? super A, OUT> transfer;
+		protected final Aggregates<OUT> out;
+
+		public Fused(
+				List<TileBinning.Bins<G,I>> bins,
+				Selector<G> selector,
+				Aggregator<I,A> op,
+				Transfer.Local<? super A, OUT> transfer,
+				AffineTransform view,
+				Aggregates<OUT> out,
+				int width, int height, int tileSize,
+				int low, int high) {
+			super(bins, selector, op, view, null, width, height, tileSize, low, high);
+			this.transfer = transfer;
+			this.out = out;
+		}
+		
+		@Override
+		protected TileAggregation<G,I,A> task(int low, int high) {
+			return new Fused<>(bins, selector, op, transfer, view, out, width, height, tileSize, low, high);
+		}
+		
+		@Override
+		protected void complete(Aggregates<A> tile, int lowX, int lowY, int highX, int highY) {
+			if (tile == null) {tile = AggregateUtils.make(lowX, lowY, highX, highY, op.identity());}
+			if (transfer instanceof Transfer.ARGBValued && out instanceof ColorAggregates) {
+				@SuppressWarnings("unchecked")
+				Transfer.ARGBValued<? super A> argb = (Transfer.ARGBValued<? super A>) transfer;
+				ColorAggregates colors = (ColorAggregates) out;
+				for (int x=lowX; x<highX; x++) {
+					for (int y=lowY; y<highY; y++) {
+						colors.setInt(x, y, argb.atARGB(x, y, tile));
+					}
+				}
+				return;
+			}
+			for (int x=lowX; x<highX; x++) {
+				for (int y=lowY; y<highY; y++) {
+					out.set(x, y, transfer.at(x, y, tile));
+				}
+			}
+		}
+	}
+}
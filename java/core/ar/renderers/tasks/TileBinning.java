@@ -0,0 +1,180 @@
+package ar.renderers.tasks;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+import ar.Glyph;
+import ar.Glyphset;
+import ar.glyphsets.GlyphList;
+import ar.glyphsets.GlyphSubset;
+import ar.renderers.ProgressReporter;
+import ar.util.Util;
+
+/**First pass of tile-based rendering: sort glyphs into the screen tiles they may touch.
+ * 
+ * Each leaf task produces one set of bins, with one bin per tile.
+ * The result is the list of those sets, in glyph order, so 
+ * the glyphs of a tile can be visited in their original order.
+ * 
+ * Glyphs are binned by the projection of their bounding box, so a bin 
+ * may hold glyphs that do not actually touch the tile (but never misses one that does).
+ * If the glyphset is random access, bins hold indices instead of glyph references.
+ * **/
+public class TileBinning<G,I> extends RecursiveTask<List<TileBinning.Bins<G,I>>> {
+	private static final long serialVersionUID = -1563196433389297281L;
+	
+	protected final Glyphset<? extends G, ? extends I> glyphs;
+	protected final AffineTransform view;
+	protected final int width, height, tileSize;
+	protected final long taskSize;
+	protected final ProgressReporter recorder;
+	protected final long low, high;
+
+	public TileBinning(
+			Glyphset<? extends G, ? extends I> glyphs,
+			AffineTransform view,
+			int width, int height, int tileSize,
+			long taskSize,
+			ProgressReporter recorder,
+			long low, long high) {
+		this.glyphs = glyphs;
+		this.view = view;
+		this.width = width;
+		this.height = height;
+		this.tileSize = tileSize;
+		this.taskSize = taskSize;
+		this.recorder = recorder;
+		this.low = low;
+		this.high = high;
+	}
+	
+	/**Number of tiles across the viewport.**/
+	public static int tiles(int span, int tileSize) {return (span + tileSize -1)/tileSize;}
+	
+	@Override
+	protected List<Bins<G,I>> compute() {
+		if ((high-low) > Math.max(1, taskSize)) {
+			long mid = Util.mean(low, high);
+			TileBinning<G,I> top = new TileBinning<>(glyphs, view, width, height, tileSize, taskSize, recorder, low, mid);
+			TileBinning<G,I> bottom = new TileBinning<>(glyphs, view, width, height, tileSize, taskSize, recorder, mid, high);
+			invokeAll(top, bottom);
+			List<Bins<G,I>> bins = new ArrayList<>(top.join());
+			bins.addAll(bottom.join());
+			return bins;
+		} 
+		
+		List<Bins<G,I>> rslt = new ArrayList<>();
+		rslt.add(local());
+		return rslt;
+	}
+	
+	@SuppressWarnings("unchecked")
+	protected Bins<G,I> local() {
+		int tilesX = tiles(width, tileSize);
+		int tiles = tilesX * tiles(height, tileSize);
+		Point2D p = new Point2D.Double();
+		Bins<G,I> bins;
+
+		if (glyphs instanceof Glyphset.RandomAccess && glyphs.segments() == glyphs.size()) {
+			Glyphset.RandomAccess<G,I> source = (Glyphset.RandomAccess<G,I>) glyphs;
+			bins = new IndexBins<>(source, tiles);
+			for (long i=low; i<high; i++) {
+				bin(bins, source.get(i), i, tilesX, p);
+			}
+		} else {
+			bins = new GlyphBins<>(tiles);
+			for (Glyph<? extends G, ? extends I> g: glyphs.segment(low, high)) {
+				bin(bins, g, -1, tilesX, p);
+			}
+		}
+		recorder.update(high-low);
+		return bins;
+	}
+	
+	private final void bin(Bins<G,I> bins, Glyph<? extends G, ? extends I> g, long idx, int tilesX, Point2D p) {
+		Object shape = g.shape();
+		double minX, minY, maxX, maxY;
+		if (shape instanceof Point2D) {
+			view.transform((Point2D) shape, p);
+			minX = maxX = p.getX();
+			minY = maxY = p.getY();
+		} else {
+			Rectangle2D b = view.createTransformedShape(Util.boundOne(shape)).getBounds2D();
+			minX = b.getMinX();
+			minY = b.getMinY();
+			maxX = b.getMaxX();
+			maxY = b.getMaxY();
+		}
+		
+		int lowX = Math.max(0, (int) Math.floor(minX));
+		int lowY = Math.max(0, (int) Math.floor(minY));
+		int highX = Math.min(width-1, (int) Math.floor(maxX));
+		int highY = Math.min(height-1, (int) Math.floor(maxY));
+		if (lowX > highX || lowY > highY) {return;}
+		
+		for (int ty=lowY/tileSize; ty<=highY/tileSize; ty++) {
+			for (int tx=lowX/tileSize; tx<=highX/tileSize; tx++) {
+				bins.add(ty*tilesX+tx, idx, g);
+			}
+		}
+	}
+	
+	/**Glyphs sorted into tiles.**/
+	public static abstract class Bins<G,I> {
+		protected abstract void add(int tile, long idx, Glyph<? extends G, ? extends I> g);
+		
+		/**Glyphs binned into the given tile.  Null if there are none.**/
+		public abstract Glyphset<? extends G, ? extends I> tile(int tile);
+	}
+	
+	/**Bins that hold the glyphs themselves.**/
+	public static final class GlyphBins<G,I> extends Bins<G,I> {
+		private final GlyphList<G,I>[] bins;
+		
+		@SuppressWarnings("unchecked")
+		public GlyphBins(int tiles) {bins = (GlyphList<G,I>[]) new GlyphList<?,?>[tiles];}
+		
+		@SuppressWarnings("unchecked")
+		protected void add(int tile, long idx, Glyph<? extends G, ? extends I> g) {
+			if (bins[tile] == null) {bins[tile] = new GlyphList<>();}
+			bins[tile].add((Glyph<G,I>) g);
+		}
+		
+		public Glyphset<? extends G, ? extends I> tile(int tile) {return bins[tile];}
+	}
+	
+	/**Bins that hold indices into a random-access glyphset.
+	 * Glyphs are only retrieved again when the tile is processed. 
+	 **/
+	public static final class IndexBins<G,I> extends Bins<G,I> {
+		private final Glyphset.RandomAccess<G,I> source;
+		private final long[][] bins;
+		private final int[] counts;
+		
+		public IndexBins(Glyphset.RandomAccess<G,I> source, int tiles) {
+			this.source = source;
+			this.bins = new long[tiles][];
+			this.counts = new int[tiles];
+		}
+		
+		protected void add(int tile, long idx, Glyph<? extends G, ? extends I> g) {
+			long[] bin = bins[tile];
+			if (bin == null) {
+				bin = bins[tile] = new long[16];
+			} else if (counts[tile] == bin.length) {
+				bin = bins[tile] = Arrays.copyOf(bin, bin.length*2);
+			}
+			bin[counts[tile]++] = idx;
+		}
+		
+		public Glyphset<? extends G, ? extends I> tile(int tile) {
+			if (counts[tile] == 0) {return null;}
+			return new GlyphSubset.Indexed<>(source, bins[tile], counts[tile]);
+		}
+	}
+}
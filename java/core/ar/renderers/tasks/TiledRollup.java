@@ -0,0 +1,55 @@
+package ar.renderers.tasks;
+
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+import ar.Aggregates;
+import ar.Aggregator;
+import ar.renderers.AggregationStrategies;
+import ar.util.Util;
+
+/**Combine a set of sources into a target, one horizontal stripe of the region per task.
+ * 
+ * Stripes are disjoint, so tasks never touch the same bin.  
+ * Stripes (instead of quadrants) keep each task on contiguous rows of the 
+ * row-major backing arrays.
+ * **/
+public final class TiledRollup<T> extends RecursiveAction {
+	private static final long serialVersionUID = 2393125011393420413L;
+	
+	private final int lowx, lowy, highx, highy;
+	private final Aggregates<T> target;
+	private final List<Aggregates<T>> sources;
+	private final Aggregator<?,T> red;
+	private final long taskSize;
+
+	public TiledRollup(
+			Aggregates<T> target, List<Aggregates<T>> sources, 
+			Aggregator<?,T> red,
+			long taskSize,
+			int lowX, int lowY, int highX, int highY) {
+		this.target = target;
+		this.sources = sources;
+		this.red = red;
+		this.taskSize = taskSize;
+		this.lowx = lowX;
+		this.lowy = lowY;
+		this.highx = highX;
+		this.highy = highY;
+	}
+	
+	protected void compute() {
+		long width = highx-lowx;
+		long height = highy-lowy;
+		if (height > 1 && width * height > taskSize) {
+			int centery = Util.mean(lowy, highy);
+			TiledRollup<T> top = new TiledRollup<>(target, sources, red, taskSize, lowx, lowy, highx, centery);
+			TiledRollup<T> bottom = new TiledRollup<>(target, sources, red, taskSize, lowx, centery, highx, highy);
+			invokeAll(top, bottom);
+		} else {
+			for (Aggregates<T> source: sources) {
+				AggregationStrategies.rollupRegion(target, source, red, lowx, lowy, highx, highy);
+			}
+		}
+	}
+}
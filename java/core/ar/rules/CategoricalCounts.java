@@ -14,6 +14,7 @@ public class CategoricalCounts<T> {
 	private final int[] counts;
 	private final T[] labels;
 	private final int fullSize;
+	private final T[] categories;
 	
 	/**Create a new CoC with "natural" ordering.**/
 	@SuppressWarnings({ "unchecked", "rawtypes" })
@@ -23,6 +24,16 @@ public class CategoricalCounts<T> {
 	@SuppressWarnings({ "unchecked"})
 	public CategoricalCounts(Comparator<T> comp) {this(comp, (T[]) new Object[0], new int[0], 0);}
 	
+	/**Create empty counts over a known set of categories.
+	 * 
+	 * The counts themselves behave as any other empty counts (no categories are listed until counted).
+	 * The known categories are a hint that aggregates of this value can be stored densely,
+	 * one count per category (see AggregateUtils.make).
+	 * **/
+	public CategoricalCounts(Comparator<T> comp, T[] categories) {
+		this(comp, Arrays.copyOf(categories, 0), new int[0], 0, sorted(comp, categories));
+	}
+	
 	/**Create a Categorical count with a single categorical/count pair.**/
 	@SuppressWarnings({ "unchecked"})
 	public CategoricalCounts(Comparator<T> comp, T label, int count) {
@@ -32,12 +43,30 @@ public class CategoricalCounts<T> {
 	/**@param counts Map backing this set of counts
 	 * @param fullSize Total of the items in the counts (the relationship is not checked, but must hold for derivatives to work correctly)
 	 ***/
-	private CategoricalCounts(Comparator<T> comp, T[] labels, int[] counts, int fullSize) {
+	private CategoricalCounts(Comparator<T> comp, T[] labels, int[] counts, int fullSize) {this(comp, labels, counts, fullSize, null);}
+	
+	private CategoricalCounts(Comparator<T> comp, T[] labels, int[] counts, int fullSize, T[] categories) {
 		//System.out.printf("count with %d cats and %d total\n", counts.size(), fullSize);
 		this.counts = counts;
 		this.labels = labels;
 		this.fullSize = fullSize;
 		this.comp = comp;
+		this.categories = categories;
+	}
+	
+	/**Counts with the given labels and counts.
+	 * Labels must be distinct and sorted according to comp.  The arrays are used directly (not copied), so they must not be modified afterwards. 
+	 * **/
+	public static <T> CategoricalCounts<T> of(Comparator<T> comp, T[] labels, int[] counts) {
+		int fullSize = 0;
+		for (int c: counts) {fullSize += c;}
+		return new CategoricalCounts<>(comp, labels, counts, fullSize);
+	}
+	
+	private static <T> T[] sorted(Comparator<T> comp, T[] categories) {
+		T[] sorted = Arrays.copyOf(categories, categories.length);
+		Arrays.sort(sorted, comp);
+		return sorted;
 	}
 	
 	public CategoricalCounts<T> extend(T key, int count) {
@@ -102,7 +131,13 @@ public class CategoricalCounts<T> {
 	/**Create an empty version of the current thing.
 	 * Does not remove any values,  but creates a new counter with the same construction parameters as the current one.
 	 */
-	public CategoricalCounts<T> empty() {return new CategoricalCounts<>(comp);} 
+	public CategoricalCounts<T> empty() {return new CategoricalCounts<>(comp, Arrays.copyOf(labels, 0), new int[0], 0, categories);} 
+	
+	/**Comparator used to order categories.**/
+	public Comparator<T> comparator() {return comp;}
+	
+	/**Categories known in advance (sorted), or null if they are not known.  The array must not be modified.**/
+	public T[] categories() {return categories;}
 
 
 	/**Combine multiple CoC objects into a single CoC.
@@ -134,6 +169,58 @@ public class CategoricalCounts<T> {
 		return cc;
 	}
 	
+	/**Mutable counterpart of CategoricalCounts, updated in place.
+	 * 
+	 * Labels and counts are kept in sorted arrays with spare capacity,
+	 * so adding to an existing category does not allocate.
+	 * Not thread safe.
+	 */
+	public static final class Accumulator<T> {
+		private final Comparator<T> comp;
+		private T[] labels;
+		private int[] counts;
+		private int size;
+		private int fullSize;
+		
+		/**Accumulator starting with the contents of the given counts.**/
+		public Accumulator(CategoricalCounts<T> initial) {
+			this.comp = initial.comp;
+			this.labels = Arrays.copyOf(initial.labels, Math.max(4, initial.labels.length));
+			this.counts = Arrays.copyOf(initial.counts, labels.length);
+			this.size = initial.labels.length;
+			this.fullSize = initial.fullSize;
+		}
+		
+		/**DESTRUCTIVELY add count to the given category.**/
+		public void add(T key, int count) {
+			int idx = Arrays.binarySearch(labels, 0, size, key, comp);
+			if (idx < 0) {
+				idx = -(idx+1);
+				if (size == labels.length) {
+					labels = Arrays.copyOf(labels, size*2);
+					counts = Arrays.copyOf(counts, size*2);
+				}
+				System.arraycopy(labels, idx, labels, idx+1, size-idx);
+				System.arraycopy(counts, idx, counts, idx+1, size-idx);
+				labels[idx] = key;
+				counts[idx] = 0;
+				size++;
+			}
+			counts[idx] += count;
+			fullSize += count;
+		}
+		
+		/**DESTRUCTIVELY add all categories of the passed counts.**/
+		public void addAll(CategoricalCounts<T> other) {
+			for (int i=0; i<other.labels.length; i++) {add(other.labels[i], other.counts[i]);}
+		}
+		
+		/**Immutable counts with the current contents.**/
+		public CategoricalCounts<T> freeze() {
+			return new CategoricalCounts<>(comp, Arrays.copyOf(labels, size), Arrays.copyOf(counts, size), fullSize);
+		}
+	}
+	
 	/**Sort categorical counts based on their full size.**/
 	public static final class MangitudeComparator<K> implements Comparator<CategoricalCounts<K>> {
 		@Override
@@ -1,6 +1,7 @@
 package ar.rules;
 
 import java.awt.Color;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -38,7 +39,7 @@ public class Categories {
 
 	
 	/**Convert a set of categorical counts to its total.**/ 
-	public static final class NumCategories<IN> implements Transfer.ItemWise<CategoricalCounts<IN>, Integer> {
+	public static final class NumCategories<IN> implements Transfer.PositionIndependent<CategoricalCounts<IN>, Integer> {
 		private static final long serialVersionUID = -8842454931082209229L;
 
 		@Override public Integer emptyValue() {return 0;}
@@ -48,6 +49,12 @@ public class Categories {
 
 		@Override
 		public Integer at(int x, int y,Aggregates<? extends CategoricalCounts<IN>> aggregates) {
+			if (aggregates instanceof Aggregates.CategoryValued) {
+				Aggregates.CategoryValued<?> dense = (Aggregates.CategoryValued<?>) aggregates;
+				int present = 0;
+				for (int c=0, size=dense.categories().size(); c<size; c++) {if (dense.count(x, y, c) != 0) {present++;}}
+				return present;
+			}
 			return aggregates.get(x,y).size();
 		}
 		@Override
@@ -58,7 +65,7 @@ public class Categories {
 	
 	
 	/**Convert a set of categorical counts to its total.**/ 
-	public static final class ToCount<IN> implements Transfer.ItemWise<CategoricalCounts<IN>, Integer> {
+	public static final class ToCount<IN> implements Transfer.PositionIndependent<CategoricalCounts<IN>, Integer> {
 		private static final long serialVersionUID = -8842454931082209229L;
 
 		@Override public Integer emptyValue() {return 0;}
@@ -68,6 +75,7 @@ public class Categories {
 
 		@Override
 		public Integer at(int x, int y,Aggregates<? extends CategoricalCounts<IN>> aggregates) {
+			if (aggregates instanceof Aggregates.CategoryValued) {return ((Aggregates.CategoryValued<?>) aggregates).fullSize(x, y);}
 			return aggregates.get(x,y).fullSize();
 		}
 
@@ -81,7 +89,7 @@ public class Categories {
 	 * 
 	 * Useful for (for example) assigning categories to colors.
 	 * **/ 
-	public static final class Rekey<IN,OUT> implements Transfer.ItemWise<CategoricalCounts<IN>, CategoricalCounts<OUT>> {
+	public static final class Rekey<IN,OUT> implements Transfer.PositionIndependent<CategoricalCounts<IN>, CategoricalCounts<OUT>> {
 		private static final long serialVersionUID = -1547309163997797688L;
 		
 		final CategoricalCounts<OUT> like;
@@ -179,7 +187,7 @@ public class Categories {
 			return new Specialized<>(like, outkeys, missing, comp, aggregates);
 		}
 		
-		public static final class Specialized<IN,OUT> extends DynamicRekey<IN,OUT> implements Transfer.ItemWise<CategoricalCounts<IN>, CategoricalCounts<OUT>> {
+		public static final class Specialized<IN,OUT> extends DynamicRekey<IN,OUT> implements Transfer.PositionIndependent<CategoricalCounts<IN>, CategoricalCounts<OUT>> {
 			private final Map<IN,OUT> rekey;
 			
 			public Specialized(CategoricalCounts<OUT> like,
@@ -227,7 +235,7 @@ public class Categories {
 	 * multiple values are presented and ANY of them are
 	 * not the expected value, then it is treated as the unexpected value.
 	 */
-	public static final class Binary<IN,OUT> implements Transfer.ItemWise<IN,OUT> {
+	public static final class Binary<IN,OUT> implements Transfer.PositionIndependent<IN,OUT> {
 		private static final long serialVersionUID = 7268579911789809640L;
 		private final IN key;
 		private final OUT match, noMatch;
@@ -266,7 +274,7 @@ public class Categories {
 	
 	
 	/**Given a CategoricalCounts as value on a glyph, create CategoricalCounts aggregates.**/
-	public static final class MergeCategories<T> implements Aggregator<CategoricalCounts<T>, CategoricalCounts<T>> {
+	public static final class MergeCategories<T> implements Aggregator.Accumulating<CategoricalCounts<T>, CategoricalCounts<T>, CategoricalCounts.Accumulator<T>> {
 		private static final long serialVersionUID = 1L;
 
 		public CategoricalCounts<T> combine(CategoricalCounts<T> current, CategoricalCounts<T> update) {
@@ -279,6 +287,10 @@ public class Categories {
 
 		public CategoricalCounts<T> identity() {return new CategoricalCounts<T>();}
 		
+		public CategoricalCounts.Accumulator<T> accumulator(CategoricalCounts<T> initial) {return new CategoricalCounts.Accumulator<>(initial);}
+		public void accumulate(CategoricalCounts.Accumulator<T> acc, CategoricalCounts<T> update) {acc.addAll(update);}
+		public CategoricalCounts<T> freeze(CategoricalCounts.Accumulator<T> acc) {return acc.freeze();}
+		
 		public boolean equals(Object other) {return other instanceof MergeCategories;}
 		
 		public int hashCode() {return MergeCategories.class.hashCode() + 901812091;}
@@ -289,8 +301,9 @@ public class Categories {
 	 * 
 	 * @param <T> The type of the categories
 	 */
-	public static final class CountCategories<T> implements Aggregator<T, CategoricalCounts<T>> {
+	public static final class CountCategories<T> implements Aggregator.Accumulating<T, CategoricalCounts<T>, CategoricalCounts.Accumulator<T>> {
 		private final Comparator<T> comp;
+		private final T[] categories;
 		
 		/**Create categories based on the passed comparator.
 		 *   
@@ -299,7 +312,21 @@ public class Categories {
 		 * 
 		 * @param comp
 		 */
-		public CountCategories(Comparator<T> comp) {this.comp = comp;}
+		public CountCategories(Comparator<T> comp) {this(comp, null);}
+		
+		/**Count a known set of categories.
+		 * 
+		 * The identity lists the categories, so aggregates are stored densely 
+		 * (one int per category per bin, see CategoricalAggregates) instead of as one CategoricalCounts per bin.
+		 * Counting a category that is not listed into such aggregates is an error.
+		 * 
+		 * @param comp Comparator for categories (null for natural ordering)
+		 * @param categories All categories that will be counted 
+		 */
+		public CountCategories(Comparator<T> comp, T[] categories) {
+			this.comp = comp;
+			this.categories = categories;
+		}
 		
 		/**Create categories based on the default definition of equality.**/
 		public CountCategories() {this(null);}
@@ -318,20 +345,27 @@ public class Categories {
 		public boolean equals(Object other) {
 			if (!(other instanceof CountCategories)) {return false;}
 			CountCategories alter = (CountCategories) other;
-			return comp == alter.comp ||
-					(comp != null && comp.equals(alter.comp));
+			return (comp == alter.comp || (comp != null && comp.equals(alter.comp)))
+					&& Arrays.equals(categories, alter.categories);
 		}
 		
 		public int hashCode() {
 			int base = comp == null ? Categories.class.hashCode() : comp.hashCode();
-			return base + 891734501; //Plus noise....
+			return base + Arrays.hashCode(categories) + 891734501; //Plus noise....
 		}
 
-		@Override public CategoricalCounts<T> identity() {return new CategoricalCounts<>(comp);}
+		@Override 
+		public CategoricalCounts<T> identity() {
+			return categories == null ? new CategoricalCounts<>(comp) : new CategoricalCounts<>(comp, categories);
+		}
+
+		@Override public CategoricalCounts.Accumulator<T> accumulator(CategoricalCounts<T> initial) {return new CategoricalCounts.Accumulator<>(initial);}
+		@Override public void accumulate(CategoricalCounts.Accumulator<T> acc, T update) {acc.add(update, 1);}
+		@Override public CategoricalCounts<T> freeze(CategoricalCounts.Accumulator<T> acc) {return acc.freeze();}
 	}
 	
 	/**Pull the nth-item from a set of categories.**/
-	public static final class NthItem<T> implements Transfer.ItemWise<CategoricalCounts<T>, Integer> {
+	public static final class NthItem<T> implements Transfer.PositionIndependent<CategoricalCounts<T>, Integer> {
 		private static final long serialVersionUID = -7261917422124936899L;
 		private final Integer background;
 		private final int n;
@@ -347,6 +381,17 @@ public class Categories {
 		
 		@Override
 		public Integer at(int x, int y, Aggregates<? extends CategoricalCounts<T>> aggregates) {
+			if (aggregates instanceof Aggregates.CategoryValued) {
+				Aggregates.CategoryValued<?> dense = (Aggregates.CategoryValued<?>) aggregates;
+				for (int c=0, present=0, size=dense.categories().size(); c<size; c++) {
+					int count = dense.count(x, y, c);
+					if (count == 0) {continue;}
+					if (present == n) {return count;}
+					present++;
+				}
+				return background;
+			}
+			
 			CategoricalCounts<T> cats = aggregates.get(x,y);
 			if (cats.size() <= n) {return background;}
 			else {return cats.count(n);}
@@ -371,7 +416,7 @@ public class Categories {
 	 * return one value.  Otherwise return another.  If category X is not present, return a third.
 	 * 
 	 ***/
-	public static final class KeyPercent<T> implements Transfer.ItemWise<CategoricalCounts<T>, Color> {
+	public static final class KeyPercent<T> implements Transfer.PositionIndependent<CategoricalCounts<T>, Color> {
 		private static final long serialVersionUID = -5019762670520542229L;
 		private final double ratio;
 		private final Color background, match, noMatch;
@@ -394,6 +439,19 @@ public class Categories {
 		
 		@Override
 		public Color at(int x, int y, Aggregates<? extends CategoricalCounts<T>> aggregates) {
+			if (aggregates instanceof Aggregates.CategoryValued) {
+				Aggregates.CategoryValued<?> dense = (Aggregates.CategoryValued<?>) aggregates;
+				double size = dense.fullSize(x, y);
+				if (size == 0) {return background;}
+				List<?> categories = dense.categories();
+				for (int c=0; c<categories.size(); c++) {
+					int count = dense.count(x, y, c);
+					if (count == 0) {continue;}
+					if (!categories.get(c).equals(firstKey)) {return noMatch;}
+					return count/size >= ratio ? match : noMatch;
+				}
+			}
+			
 			CategoricalCounts<T> cats = aggregates.get(x,y);
 			double size = cats.fullSize();
 			
@@ -447,11 +505,18 @@ public class Categories {
 		@Override
 		public HighDefAlpha.Specialized specialize(Aggregates<? extends CategoricalCounts<Color>> aggregates) {
 			int max=Integer.MIN_VALUE;
-			for (CategoricalCounts<Color> cats:aggregates) {max = Math.max(max,cats.fullSize());}
+			if (aggregates instanceof Aggregates.CategoryValued) {
+				Aggregates.CategoryValued<?> dense = (Aggregates.CategoryValued<?>) (Aggregates<?>) aggregates;
+				for (int x=dense.lowX(); x<dense.highX(); x++) {
+					for (int y=dense.lowY(); y<dense.highY(); y++) {max = Math.max(max, dense.fullSize(x, y));}
+				}
+			} else {
+				for (CategoricalCounts<Color> cats:aggregates) {max = Math.max(max,cats.fullSize());}
+			}
 			return new Specialized(max, background, omin, log);
 		}
 
-		protected static final class Specialized extends HighDefAlpha implements Transfer.ItemWise<CategoricalCounts<Color>, Color> {
+		protected static final class Specialized extends HighDefAlpha implements Transfer.PositionIndependent<CategoricalCounts<Color>, Color>, Transfer.ARGBValued<CategoricalCounts<Color>> {
 			private static final long serialVersionUID = 4453971577170705122L;
 			private final int max; //Full size of cell with largest number of items
 			
@@ -467,24 +532,38 @@ public class Categories {
 
 			@Override
 			public Color at(int x, int y, Aggregates<? extends CategoricalCounts<Color>> aggregates) {
-				CategoricalCounts<Color> cats = aggregates.get(x, y);
-				Color c;
-				if (cats.fullSize() == 0) {c = background;}
-				else {
-					c = fullInterpolate(cats);
-					double alpha;
-					if (log) {
-						alpha = omin + ((1-omin) * (Math.log(cats.fullSize())/Math.log(max)));
-					} else {
-						alpha = omin + ((1-omin) * (cats.fullSize()/max));
-					}
-					alpha = (int) Math.min(255, (alpha*255));
-					c = new Color(c.getRed(), c.getGreen(), c.getBlue(), (int) alpha);
+				return new Color(atARGB(x, y, aggregates), true);
+			}
+			
+			@Override
+			public int atARGB(int x, int y, Aggregates<? extends CategoricalCounts<Color>> aggregates) {
+				int fullSize;
+				int rgb;
+				if (aggregates instanceof Aggregates.CategoryValued) {
+					@SuppressWarnings("unchecked")
+					Aggregates.CategoryValued<Color> dense = (Aggregates.CategoryValued<Color>) (Aggregates<?>) aggregates;
+					fullSize = dense.fullSize(x, y);
+					if (fullSize == 0) {return background.getRGB();}
+					rgb = fullInterpolate(dense, x, y, fullSize);
+				} else {
+					CategoricalCounts<Color> cats = aggregates.get(x, y);
+					fullSize = cats.fullSize();
+					if (fullSize == 0) {return background.getRGB();}
+					rgb = fullInterpolate(cats);
 				}
-				return c;			
+				
+				double alpha;
+				if (log) {
+					alpha = omin + ((1-omin) * (Math.log(fullSize)/Math.log(max)));
+				} else {
+					alpha = omin + ((1-omin) * (fullSize/max));
+				}
+				alpha = (int) Math.min(255, (alpha*255));
+				return (((int) alpha) << 24) | (rgb & 0xFFFFFF);
 			}
 			
-			private static Color fullInterpolate(CategoricalCounts<Color> cats) {
+			/**Count-weighted average of the category colors, as an RGB int.**/
+			private static int fullInterpolate(CategoricalCounts<Color> cats) {
 				double total = cats.fullSize();
 				double r = 0;
 				double g = 0;
@@ -501,7 +580,30 @@ public class Categories {
 					g += g2;
 					b += b2;
 				}
-				return new Color((int) (r*255), (int) (g * 255), (int) (b*255));
+				return rgb(r, g, b);
+			}
+			
+			private static int rgb(double r, double g, double b) {
+				return (((int) (r*255)) << 16) | (((int) (g*255)) << 8) | ((int) (b*255));
+			}
+			
+			/**fullInterpolate reading the counts directly from dense aggregates.**/
+			private static int fullInterpolate(Aggregates.CategoryValued<Color> dense, int x, int y, double total) {
+				double r = 0;
+				double g = 0;
+				double b = 0;
+				
+				List<Color> categories = dense.categories();
+				for (int i=0; i<categories.size(); i++) {
+					int count = dense.count(x, y, i);
+					if (count == 0) {continue;}
+					Color c = categories.get(i);
+					double p = count/total;
+					r += (c.getRed()/255.0) * p;
+					g += (c.getGreen()/255.0) * p;
+					b += (c.getBlue()/255.0) * p;
+				}
+				return rgb(r, g, b);
 			}
 		}
 	}
@@ -537,7 +639,7 @@ public class Categories {
 	}
 	
 	/**Convert a CategoricalCounts just a set of counts for a specific category.**/
-	public static class Select<IN> implements Transfer.ItemWise<CategoricalCounts<IN>, Integer> {
+	public static class Select<IN> implements Transfer.PositionIndependent<CategoricalCounts<IN>, Integer> {
 		private final IN label;
 		public Select(IN label) {this.label = label;}
 		@Override public Integer emptyValue() {return 0;}
@@ -547,6 +649,12 @@ public class Categories {
 		
 		@Override
 		public Integer at(int x, int y, Aggregates<? extends CategoricalCounts<IN>> aggregates) {
+			if (aggregates instanceof Aggregates.CategoryValued) {
+				@SuppressWarnings("unchecked")
+				Aggregates.CategoryValued<IN> dense = (Aggregates.CategoryValued<IN>) aggregates;
+				int category = dense.index(label);
+				return category < 0 ? 0 : dense.count(x, y, category);
+			}
 			return aggregates.get(x, y).count(label);
 		}
 
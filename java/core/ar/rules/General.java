@@ -53,7 +53,7 @@ public class General {
 	}
 
 	/**Wrap a valuer in a transfer function.**/
-	public static final class ValuerTransfer<IN,OUT> implements Transfer.ItemWise<IN, OUT> {
+	public static final class ValuerTransfer<IN,OUT> implements Transfer.PositionIndependent<IN, OUT> {
 		private final Valuer<IN,OUT> valuer;
 		private final OUT empty;
 		public ValuerTransfer(Valuer<IN,OUT> valuer, OUT empty) {
@@ -80,7 +80,7 @@ public class General {
 	 * Specified values are replaced, others as passed through.
 	 * For more control or type-converting replace, use MapWrapper instead.
 	 * **/
-	public static class Replace<T> implements Transfer.ItemWise<T,T> {
+	public static class Replace<T> implements Transfer.PositionIndependent<T,T> {
 		private final Map<T,T> mapping;
 		private final T empty;
 		
@@ -299,7 +299,7 @@ public class General {
 	/**Aggregator and Transfer that always returns the same value.
 	 * **/
 	
-	public static final class Const<A,OUT> implements Aggregator<A,OUT>, Transfer.ItemWise<A, OUT> {
+	public static final class Const<A,OUT> implements Aggregator<A,OUT>, Transfer.PositionIndependent<A, OUT> {
 		private static final long serialVersionUID = 2274344808417248367L;
 		private final OUT val;
 		
@@ -326,7 +326,7 @@ public class General {
 
 
 	/**Return what is found at the given location.**/
-	public static final class Echo<T> implements Transfer.ItemWise<T,T>, Aggregator<T,T> {
+	public static final class Echo<T> implements Transfer.PositionIndependent<T,T>, Aggregator<T,T> {
 		private static final long serialVersionUID = -7963684190506107639L;
 		private final T empty;
 		
@@ -353,7 +353,7 @@ public class General {
 	}
 
 	/**Return the given value when presented with a non-empty value.**/
-	public static final class Present<IN, OUT> implements Transfer.ItemWise<IN,OUT> {
+	public static final class Present<IN, OUT> implements Transfer.PositionIndependent<IN,OUT> {
 		private static final long serialVersionUID = -7511305102790657835L;
 		private final OUT present, absent;
 		
@@ -384,7 +384,7 @@ public class General {
 	/**Transfer function that wraps a java.util.map.
 	 * The empty value is returned if the input value is not found in the mapping.
 	 * **/
-	public static class MapWrapper<IN,OUT> implements Transfer.ItemWise<IN,OUT> {
+	public static class MapWrapper<IN,OUT> implements Transfer.PositionIndependent<IN,OUT> {
 		private static final long serialVersionUID = -4326656735271228944L;
 		private final Map<IN, OUT> mappings;
 		private final OUT other; 
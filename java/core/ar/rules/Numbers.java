@@ -17,18 +17,43 @@ public final class Numbers {
 	 * 
 	 * Input type does not matter, always produces integer outputs.
 	 ***/
-	public static final class Count<V> implements Aggregator<V, Integer> {
+	public static final class Count<V> implements Aggregator.IntUpdates<V>, Aggregator.Commutative<V,Integer> {
 		private static final long serialVersionUID = 5984959309743633510L;
 		
 		public Integer combine(Integer left, V update) {return left+1;}
 		public Integer rollup(Integer left, Integer right) {return left+right;}
+		public int combineInt(int left, V update) {return left+1;}
+		public int rollupInt(int left, int right) {return left+right;}
+		public int combineNumber(int left, double update) {return left+1;}
 		
 		public Integer identity() {return 0;}
+		public int identityInt() {return 0;}
 		public boolean equals(Object other) {return other instanceof Count;}
 		public int hashCode() {return Count.class.hashCode();}
 	}
 	
 	
+	/**Sum of the values seen, as a double.
+	 * 
+	 * Commutative, so the parallel renderer can aggregate it into one shared canvas 
+	 * (see ParallelRenderer and AtomicDoubleAggregates).  
+	 * Sums of values that are not exact in doubles may round differently depending on update order.
+	 ***/
+	public static final class Sum<N extends Number> implements Aggregator.DoubleUpdates<N>, Aggregator.Commutative<N,Double> {
+		private static final long serialVersionUID = -3107512462339813297L;
+		
+		public Double combine(Double current, N update) {return current + update.doubleValue();}
+		public Double rollup(Double left, Double right) {return left+right;}
+		public double combineDouble(double current, N update) {return current + update.doubleValue();}
+		public double rollupDouble(double left, double right) {return left+right;}
+		public double combineNumber(double current, double update) {return current + update;}
+		
+		public Double identity() {return 0d;}
+		public double identityDouble() {return 0;}
+		public boolean equals(Object other) {return other instanceof Sum;}
+		public int hashCode() {return Sum.class.hashCode();}
+	}
+	
 	/**Retain the largest value seen.*/
 	public static final class Max<N extends Number> implements Aggregator<N, N> {
 		private final Valuer<Double,N> wrapper;
@@ -52,7 +77,7 @@ public final class Numbers {
 	 * 
 	 * @author jcottam
 	 */
-	public static final class FixedInterpolate<IN extends Number> implements Transfer.ItemWise<IN,Color> {
+	public static final class FixedInterpolate<IN extends Number> implements Transfer.PositionIndependent<IN,Color>, Transfer.ARGBValued<IN> {
 		private static final long serialVersionUID = -2583391379423930420L;
 		final Color low, high, background;
 		final double lowv, highv;
@@ -81,6 +106,14 @@ public final class Numbers {
 			return Util.interpolate(low, high, lowv, highv, aggregates.get(x, y).doubleValue());
 		}
 
+		@Override
+		public int atARGB(int x, int y, Aggregates<? extends IN> aggregates) {
+			double v = aggregates instanceof Aggregates.IntValued ? ((Aggregates.IntValued) aggregates).getInt(x, y) 
+					: aggregates instanceof Aggregates.DoubleValued ? ((Aggregates.DoubleValued) aggregates).getDouble(x, y)
+					: aggregates.get(x, y).doubleValue();
+			return Util.interpolateARGB(low, high, lowv, highv, v);
+		}
+
 		@Override
 		public Aggregates<Color> process(Aggregates<? extends IN> aggregates, Renderer rend) {
 			return rend.transfer(aggregates,this);
@@ -119,7 +152,7 @@ public final class Numbers {
 		
 		@Override public Color emptyValue() {return empty;}
 		
-		private static class Specialized<A extends Number> extends Interpolate<A> implements Transfer.ItemWise<A, Color> {
+		private static class Specialized<A extends Number> extends Interpolate<A> implements Transfer.PositionIndependent<A, Color>, Transfer.ARGBValued<A> {
 			private static final long serialVersionUID = 1106343839501609604L;
 			protected final Util.Stats<? extends Number> extrema;
 
@@ -135,6 +168,19 @@ public final class Numbers {
 				return Util.interpolate(low, high, extrema.min.doubleValue(), extrema.max.doubleValue(), v.doubleValue());
 			}
 
+			@Override
+			public int atARGB(int x, int y, Aggregates<? extends A> aggregates) {
+				if (aggregates instanceof Aggregates.IntValued) {
+					Aggregates.IntValued ints = (Aggregates.IntValued) aggregates;
+					int v = ints.getInt(x, y);
+					if (v == ints.defaultInt()) {return empty.getRGB();}
+					return Util.interpolateARGB(low, high, extrema.min.doubleValue(), extrema.max.doubleValue(), v);
+				}
+				Number v = aggregates.get(x,y);
+				if (Util.isEqual(v, aggregates.defaultValue())) {return empty.getRGB();}
+				return Util.interpolateARGB(low, high, extrema.min.doubleValue(), extrema.max.doubleValue(), v.doubleValue());
+			}
+
 			@Override
 			public Aggregates<Color> process(Aggregates<? extends A> aggregates, Renderer rend) {
 				return rend.transfer(aggregates, this);
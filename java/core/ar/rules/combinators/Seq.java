@@ -1,8 +1,12 @@
 package ar.rules.combinators;
 
+import java.util.Iterator;
+
 import ar.Aggregates;
 import ar.Renderer;
 import ar.Transfer;
+import ar.aggregates.Iterator2D;
+import ar.aggregates.wrappers.TransferWrapper;
 import ar.renderers.ParallelRenderer;
 
 /**Do one transfer, then pipe its results into another.
@@ -27,35 +31,206 @@ public class Seq<IN,MID,OUT> implements Transfer<IN,OUT> {
     
     @Override public OUT emptyValue() {return second.emptyValue();}
 
+    /**Specializes both stages.  
+     * 
+     * Specializing the second stage requires the results of the first stage.
+     * Nested sequences pass their results up instead of having them recomputed,
+     * so each stage of a long chain runs at most once here.
+     * Results of local stages are not computed at all, they are read on demand 
+     * (see TransferWrapper) by the specialization of the stage after them.
+     * 
+     * The result keeps the first stage's results for the aggregates passed here, 
+     * so processing those same aggregates only runs the last stage (see Specialized).
+     */
     @Override
     public Transfer.Specialized<IN, OUT> specialize(Aggregates<? extends IN> aggregates) {
-        Transfer.Specialized<IN, MID> f = first.specialize(aggregates);
-
-        Aggregates<MID> tempAggs = rend.transfer(aggregates, f); 
-        Transfer.Specialized<MID,OUT> s = second.specialize(tempAggs);
+    	return stage(aggregates, false).transfer;
+    }
+    
+    /**Specialize this sequence to the given aggregates; if requested, also provide its results on those aggregates.**/
+    protected Stage<IN,OUT> stage(Aggregates<? extends IN> aggregates, boolean withResult) {
+    	Stage<IN,MID> f = stage(first, aggregates, rend, true);
+    	Transfer.Specialized<MID,OUT> s = second.specialize(f.result);
+    	if (withResult) {return new Stage<>(fuse(f.transfer, s, null, null), apply(f.result, s, rend));}
+    	return new Stage<>(fuse(f.transfer, s, aggregates, f.result), null);
+    }
+    
+    @SuppressWarnings("unchecked")
+	private static <IN,OUT> Stage<IN,OUT> stage(Transfer<IN,OUT> t, Aggregates<? extends IN> aggregates, Renderer rend, boolean withResult) {
+    	if (t instanceof Seq && !(t instanceof SeqStart) && !(t instanceof Transfer.Specialized)) {
+    		return ((Seq<IN,?,OUT>) t).stage(aggregates, withResult);
+    	}
+    	Transfer.Specialized<IN,OUT> spec = t.specialize(aggregates);
+    	return new Stage<>(spec, withResult ? apply(aggregates, spec, rend) : null);
+    }
 
-        return new Specialized<>(f,s);
+    /**Results of a specialized transfer: a view for local transfers, otherwise computed by the renderer.**/
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+	private static <IN,OUT> Aggregates<OUT> apply(Aggregates<? extends IN> aggregates, Transfer.Specialized<IN,OUT> t, Renderer rend) {
+    	if (t instanceof Transfer.Local) {return new TransferWrapper<>(aggregates, (Transfer.Local) t);}
+    	return rend.transfer(aggregates, t);
+    }
+    
+    /**A specialized transfer and (optionally) its results on the aggregates it was specialized to.**/
+    protected static final class Stage<IN,OUT> {
+    	final Transfer.Specialized<IN,OUT> transfer;
+    	final Aggregates<OUT> result;
+    	Stage(Transfer.Specialized<IN,OUT> transfer, Aggregates<OUT> result) {
+    		this.transfer = transfer;
+    		this.result = result;
+    	}
+    }
+    
+    /**Combine specialized stages, fusing them into a single pass if they are both local.
+     * Otherwise, the first stage's results on the given input (both may be null) are kept for process.**/
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+	protected static <IN,MID,OUT> Specialized<IN,MID,OUT> fuse(
+			Transfer.Specialized<IN,MID> first, Transfer.Specialized<MID,OUT> second, 
+			Aggregates<? extends IN> input, Aggregates<MID> intermediate) {
+    	if (first instanceof Transfer.Local && second instanceof Transfer.Local) {
+    		return fused((Transfer.Local) first, (Transfer.Local) second);
+    	}
+    	return new Specialized<>(first, second, input, intermediate);
+    }
+    
+    /**Two local stages as a single local transfer; position independent if both stages are (see Transfer.PositionIndependent).**/
+    public static <IN,MID,OUT> Fused<IN,MID,OUT> fused(Transfer.Local<IN,MID> first, Transfer.Local<MID,OUT> second) {
+    	if (first instanceof Transfer.PositionIndependent && second instanceof Transfer.PositionIndependent) {
+    		return new Fused.Independent<>(first, second);
+    	}
+    	return new Fused<>(first, second);
     }
       
+    /**Two specialized stages, run one after the other.
+     * 
+     * If the results of the first stage on some input are known (typically from specialization),
+     * processing that same input (by identity) uses them instead of running the first stage again.
+     */
     public static class Specialized<IN,MID,OUT> extends Seq<IN,MID, OUT> implements Transfer.Specialized<IN,OUT> {
         protected final Transfer.Specialized<IN,MID> first;
         protected final Transfer.Specialized<MID,OUT> second;
+        private final transient Aggregates<? extends IN> input;
+        private final transient Aggregates<MID> intermediate;
 
         public Specialized(final Transfer.Specialized<IN, MID> first,
                            final Transfer.Specialized<MID, OUT> second) {
+            this(first, second, null, null);
+        }
+
+        /**@param input Aggregates the intermediate results were computed from (may be null)
+         * @param intermediate Results of the first stage on input (may be null)
+         */
+        public Specialized(final Transfer.Specialized<IN, MID> first,
+                           final Transfer.Specialized<MID, OUT> second,
+                           final Aggregates<? extends IN> input,
+                           final Aggregates<MID> intermediate) {
             super(first, second);
             this.first = first;
             this.second = second;
+            this.input = intermediate == null ? null : input;
+            this.intermediate = intermediate;
         }
 
 		@Override
 		public Aggregates<OUT> process(Aggregates<? extends IN> aggs, Renderer rend) {
-            Aggregates<MID> tempAggs1 = rend.transfer(aggs, first);
+            Aggregates<MID> tempAggs1 = aggs == input && aggs != null ? intermediate : rend.transfer(aggs, first);
             Aggregates<OUT> tempAggs2 = rend.transfer(tempAggs1, second);
             return tempAggs2;
 		}
     }
     
+    /**Two local stages as a single local transfer.
+     * 
+     * The value at x/y is computed by applying the second stage to the result of the 
+     * first stage at x/y, so no intermediate aggregates are created.
+     * Since the result is local, longer chains fuse into a single pass.
+     * 
+     * The second stage reads the first stage's result through a single-position view,
+     * one per thread, that computes the value once and reuses it for repeated reads.
+     */
+    public static class Fused<IN,MID,OUT> extends Specialized<IN,MID,OUT> implements Transfer.Local<IN,OUT> {
+    	private static final long serialVersionUID = -5648268548154604521L;
+    	private transient ThreadLocal<Cell<IN,MID>> cells;
+    	
+		public Fused(Transfer.Local<IN, MID> first, Transfer.Local<MID, OUT> second) {
+			super(first, second);
+		}
+
+		@Override
+		public OUT at(int x, int y, Aggregates<? extends IN> aggregates) {
+			Cell<IN,MID> cell = cell();
+			if (cell.busy()) {cell = new Cell<>((Transfer.Local<IN,MID>) first);}	//Same stage reached again inside of its own evaluation
+			cell.at(aggregates, x, y);
+			try {return ((Transfer.Local<MID,OUT>) second).at(x, y, cell);}
+			finally {cell.at(null, x, y);}
+		}
+		
+		private Cell<IN,MID> cell() {
+			ThreadLocal<Cell<IN,MID>> local = cells;
+			if (local == null) {
+				local = new ThreadLocal<>();
+				cells = local;
+			}
+			Cell<IN,MID> cell = local.get();
+			if (cell == null) {
+				cell = new Cell<>((Transfer.Local<IN,MID>) first);
+				local.set(cell);
+			}
+			return cell;
+		}
+		
+		@Override
+		public Aggregates<OUT> process(Aggregates<? extends IN> aggs, Renderer rend) {
+			return rend.transfer(aggs, this);
+		}
+		
+		/**Fused stages that are both position independent.**/
+		public static class Independent<IN,MID,OUT> extends Fused<IN,MID,OUT> implements Transfer.PositionIndependent<IN,OUT> {
+			private static final long serialVersionUID = 3820947133645279015L;
+			public Independent(Transfer.Local<IN, MID> first, Transfer.Local<MID, OUT> second) {super(first, second);}
+		}
+    }
+    
+    /**Result of a local transfer at a single position, computed on first read.
+     * Reads of other positions (which local transfers do not make) are computed each time.**/
+    private static final class Cell<IN,OUT> implements Aggregates<OUT> {
+		private static final long serialVersionUID = 1L;
+		private final Transfer.Local<IN,OUT> transfer;
+    	private Aggregates<? extends IN> base;
+    	private int x, y;
+    	private boolean computed;
+    	private OUT value;
+    	
+    	Cell(Transfer.Local<IN,OUT> transfer) {this.transfer = transfer;}
+    	
+    	boolean busy() {return base != null;}
+    	
+    	void at(Aggregates<? extends IN> base, int x, int y) {
+    		this.base = base;
+    		this.x = x;
+    		this.y = y;
+    		this.computed = false;
+    		this.value = null;
+    	}
+    	
+		public OUT get(int x, int y) {
+			if (x != this.x || y != this.y) {return transfer.at(x, y, base);}
+			if (!computed) {
+				value = transfer.at(x, y, base);
+				computed = true;
+			}
+			return value;
+		}
+		
+		public void set(int x, int y, OUT val) {throw new UnsupportedOperationException("Transfer results are read-only.");}
+		public Iterator<OUT> iterator() {return new Iterator2D<>(this);}
+		public OUT defaultValue() {return transfer.emptyValue();}
+		public int lowX() {return base.lowX();}
+		public int lowY() {return base.lowY();}
+		public int highX() {return base.highX();}
+		public int highY() {return base.highY();}
+    }
+    
     /**Extend the sequence of transfers with a new step.**/ 
     public <OUT2> Seq<IN,?,OUT2> then(Transfer<OUT,OUT2> next) {return new Seq<>(this, next);}
     
@@ -2,6 +2,7 @@ package ar.selectors;
 
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
@@ -11,42 +12,189 @@ import ar.Aggregator;
 import ar.Glyph;
 import ar.Glyphset;
 import ar.Selector;
+import ar.aggregates.Updater;
+import ar.aggregates.implementations.DoubleAggregates;
+import ar.aggregates.implementations.IntAggregates;
+import ar.aggregates.wrappers.TouchedBoundsWrapper;
+import ar.glyphsets.BlockedMemMapList;
+import ar.glyphsets.ColumnarGlyphs;
 
 /**Collection of selectors that modify bins that a shape touches.
+ * 
+ * Updates are made through an ar.aggregates.Updater, so int- and double-valued
+ * aggregator/aggregates pairs are updated without boxing.
+ * Glyphsets that support Glyphset.Scannable are scanned instead of iterated,
+ * so the glyph passed to the loop body may be reused between items.
  * **/
 public abstract class TouchesPixel {
 	
-	/**DESTRUCTIVELY updates the target at x/y with the value passed and the target operation.**/
-	protected static final <A,I> void update(Aggregates<A> target, I v, int x, int y, Aggregator<I,A> op) {
-		A existing = target.get(x,y);
-		A update = op.combine(existing,v);
-		target.set(x, y, update);
+	/**Pass each glyph of the glyphset to the visitor.
+	 * Uses Glyphset.Scannable when available (scanning to the end, since size() may require its own pass), otherwise the iterator.
+	 * **/
+	@SuppressWarnings("unchecked")
+	protected static final <G,I> void visit(Glyphset<? extends G, ? extends I> glyphs, Glyphset.Visitor<G,I> visitor) {
+		if (glyphs instanceof Glyphset.Scannable) {
+			((Glyphset.Scannable<? extends G, ? extends I>) glyphs).scan(0, Long.MAX_VALUE, visitor);
+		} else {
+			for (Glyph<? extends G, ? extends I> g: glyphs) {visitor.visit(g);}
+		}
 	}
 	
+	/**Glyphs that may land in the target.
+	 * Blocked files (see BlockedMemMapList) are reduced to the blocks whose bounds touch the target
+	 * (plus a bin on each side, since projected positions are truncated); other glyphsets are returned as-is.
+	 * **/
+	@SuppressWarnings("unchecked")
+	protected static final <G,I> Glyphset<? extends G, ? extends I> cull(Glyphset<? extends G, ? extends I> glyphs, AffineTransform view, Aggregates<?> target) {
+		if (!(glyphs instanceof BlockedMemMapList)) {return glyphs;}
+		Aggregates<?> clip = clip(target);
+		Rectangle2D bins = new Rectangle2D.Double(clip.lowX()-1, clip.lowY()-1, clip.highX()-clip.lowX()+2, clip.highY()-clip.lowY()+2);
+		try {
+			Rectangle2D region = view.createInverse().createTransformedShape(bins).getBounds2D();
+			return ((BlockedMemMapList<? extends G, ? extends I>) glyphs).within(region);
+		} catch (NoninvertibleTransformException e) {return glyphs;}
+	}
+	
+	/**Aggregates that determine the set-able region of the target.
+	 * 
+	 * A touched-bounds wrapper reports only the region set so far, 
+	 * so glyphs are clipped against the wrapped aggregates instead.
+	 * **/
+	protected static final Aggregates<?> clip(Aggregates<?> target) {
+		while (target instanceof TouchedBoundsWrapper) {target = ((TouchedBoundsWrapper<?>) target).base();}
+		return target;
+	}
 	
 	
+	/**Number of columnar glyphs (see ColumnarGlyphs) projected at a time.**/
+	public static int COLUMN_BLOCK = 512;
+	
+	/**Aggregates that can be written directly when updating target: 
+	 * the target itself or the base of a single touched-bounds wrapper.  Null if there are none.
+	 * **/
+	private static Aggregates<?> direct(Aggregates<?> target) {
+		if (!(target instanceof TouchedBoundsWrapper)) {return target;}
+		Aggregates<?> base = ((TouchedBoundsWrapper<?>) target).base();
+		return base instanceof TouchedBoundsWrapper ? null : base;
+	}
+	
 	public static final class Points implements Selector<Point2D> {
-		/**Sets the value at a single point in the aggregates.**/
+		/**Sets the value at a single point in the aggregates.
+		 * 
+		 * Columnar glyphs (see ColumnarGlyphs) are read from their columns, 
+		 * projecting COLUMN_BLOCK points at a time with one multiply-add loop per axis.
+		 * Int- and double-valued aggregators then update int and double array-backed aggregates 
+		 * directly in their arrays.
+		 * Glyphsets with primitive valuers are scanned without boxing values when the aggregator 
+		 * takes unboxed updates (see Glyphset.NumericScannable and Updater.Numeric).
+		 * **/
+		@SuppressWarnings("unchecked")
 		public <I,A> Aggregates<A> processSubset(
 				Glyphset<? extends Point2D, ? extends I> subset,
 				AffineTransform view, 
 				Aggregates<A> target, 
 				Aggregator<I, A> op) {
 			
-			Point2D scratch = new Point2D.Double();
-			for (Glyph<? extends Point2D, ? extends I> g: subset) {
-				Point2D p = g.shape();	//A point has no bounding box...so life is easy
-				view.transform(p, scratch);
-				int x = (int) scratch.getX();
-				int y = (int) scratch.getY();
-				I v = g.info();
-				
-				TouchesPixel.update(target, v, x, y, op);
+			if (subset instanceof ColumnarGlyphs && !((ColumnarGlyphs<?,?>) subset).rectangles()) {
+				return columnar((ColumnarGlyphs<?, ? extends I>) subset, view, target, op);
 			}
+			subset = cull(subset, view, target);
+			
+			final AffineTransform vt = view;
+			final Point2D scratch = new Point2D.Double();
+			final Updater.Numeric numeric = Updater.Numeric.make(target, op);
+			if (numeric != null && subset instanceof Glyphset.NumericScannable 
+					&& ((Glyphset.NumericScannable<?,?>) subset).numeric()) {
+				((Glyphset.NumericScannable<? extends Point2D, ?>) subset).scanNumbers(0, Long.MAX_VALUE, new Glyphset.NumericVisitor<Point2D>() {
+					public void visit(Point2D p, double v) {
+						vt.transform(p, scratch);
+						numeric.update((int) scratch.getX(), (int) scratch.getY(), v);
+					}
+				});
+				return target;
+			}
+			
+			final Updater<I,A> updater = Updater.make(target, op);
+			visit(subset, new Glyphset.Visitor<Point2D, I>() {
+				public void visit(Glyph<? extends Point2D, ? extends I> g) {
+					Point2D p = g.shape();	//A point has no bounding box...so life is easy
+					vt.transform(p, scratch);
+					int x = (int) scratch.getX();
+					int y = (int) scratch.getY();
+					I v = g.info();
+					
+					updater.update(x, y, v);
+				}
+			});
 
 			return target;		
 		}
 
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		private static <I,A> Aggregates<A> columnar(ColumnarGlyphs<?, ? extends I> glyphs, AffineTransform view, Aggregates<A> target, Aggregator<I,A> op) {
+			double m00 = view.getScaleX(), m01 = view.getShearX(), m02 = view.getTranslateX();
+			double m10 = view.getShearY(), m11 = view.getScaleY(), m12 = view.getTranslateY();
+			double[] xs = glyphs.xs();
+			double[] ys = glyphs.ys();
+			int[] px = new int[COLUMN_BLOCK];
+			int[] py = new int[COLUMN_BLOCK];
+			
+			Aggregates<?> direct = direct(target);
+			Updater<I,A> updater = null;
+			int[] ints = null;
+			double[] doubles = null;
+			if (direct instanceof IntAggregates && op instanceof Aggregator.IntValued) {
+				ints = ((IntAggregates) direct).values();
+			} else if (direct instanceof DoubleAggregates && op instanceof Aggregator.DoubleValued) {
+				doubles = ((DoubleAggregates) direct).values();
+			} else {
+				updater = Updater.make(target, op);
+			}
+			
+			int lowX = direct == null ? 0 : direct.lowX();
+			int lowY = direct == null ? 0 : direct.lowY();
+			int highX = direct == null ? 0 : direct.highX();
+			int highY = direct == null ? 0 : direct.highY();
+			int width = highX-lowX;
+			int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+			
+			for (int start=glyphs.low(); start<glyphs.high(); start+=COLUMN_BLOCK) {
+				int count = Math.min(COLUMN_BLOCK, glyphs.high()-start);
+				for (int k=0; k<count; k++) {
+					double x = xs[start+k];
+					double y = ys[start+k];
+					px[k] = (int) (x * m00 + y * m01 + m02);
+					py[k] = (int) (x * m10 + y * m11 + m12);
+				}
+				
+				if (updater != null) {
+					for (int k=0; k<count; k++) {updater.update(px[k], py[k], glyphs.value(start+k));}
+					continue;
+				}
+				
+				for (int k=0; k<count; k++) {
+					int x = px[k];
+					int y = py[k];
+					if (x < lowX || x >= highX || y < lowY || y >= highY) {continue;}
+					int idx = (y-lowY)*width + (x-lowX);
+					if (ints != null) {
+						ints[idx] = ((Aggregator.IntValued) op).combineInt(ints[idx], glyphs.value(start+k));
+					} else {
+						doubles[idx] = ((Aggregator.DoubleValued) op).combineDouble(doubles[idx], glyphs.value(start+k));
+					}
+					if (x < minX) {minX = x;}
+					if (x > maxX) {maxX = x;}
+					if (y < minY) {minY = y;}
+					if (y > maxY) {maxY = y;}
+				}
+			}
+			
+			if (updater == null && target instanceof TouchedBoundsWrapper && minX <= maxX) {
+				((TouchedBoundsWrapper<A>) target).touch(minX, minY, maxX+1, maxY+1);
+			}
+			return target;
+		}
+
 		@Override
 		public boolean hitsBin(Glyph<? extends Point2D, ?> glyph, AffineTransform view, int x, int y) {
 			Point2D p = view.transform(glyph.shape(), null);
@@ -64,15 +212,20 @@ public abstract class TouchesPixel {
 				Aggregates<A> 
 				target, Aggregator<I, A> op) {
 
-			Point2D p1 = new Point2D.Double();
-			Point2D p2 = new Point2D.Double();
-			for (Glyph<? extends Line2D, ? extends I> g: subset) {
-				Line2D p = g.shape();	//A point has no bounding box...so life is easy
-				view.transform(p.getP1(), p1);
-				view.transform(p.getP2(), p2);
+			final Updater<I,A> updater = Updater.make(target, op);
+			final Aggregates<A> canvas = target;
+			final AffineTransform vt = view;
+			final Point2D p1 = new Point2D.Double();
+			final Point2D p2 = new Point2D.Double();
+			visit(subset, new Glyphset.Visitor<Line2D, I>() {
+				public void visit(Glyph<? extends Line2D, ? extends I> g) {
+					Line2D p = g.shape();	//A point has no bounding box...so life is easy
+					vt.transform(p.getP1(), p1);
+					vt.transform(p.getP2(), p2);
 
-				bressenham(target, op, p1,p2, g.info());
-			}
+					bressenham(canvas, updater, p1,p2, g.info());
+				}
+			});
 
 			return target;
 		}	
@@ -85,7 +238,7 @@ public abstract class TouchesPixel {
 		}
 		
 		//based on 'optimized' version at http://en.wikipedia.org/wiki/Bresenham's_line_algorithm
-		private static <I,A> void bressenham(Aggregates<A> canvas, Aggregator<I,A> aggregator, Point2D start, Point2D end, I val) {
+		private static <I,A> void bressenham(Aggregates<A> canvas, Updater<I,A> updater, Point2D start, Point2D end, I val) {
 			int x0 = (int) start.getX(); 
 			int y0 = (int) start.getY();
 			int x1 = (int) end.getX();
@@ -121,11 +274,11 @@ public abstract class TouchesPixel {
 			    if (steep) {
 			      if (x >= canvas.highY()) {break;}
 			      if (y >= canvas.highX()) {break;}
-			      TouchesPixel.update(canvas, val, x,y, aggregator);
+			      updater.update(x, y, val);
 			    } else {
 			      if (x >= canvas.highX()) {break;}
 			      if (y >= canvas.highY()) {break;}
-			      TouchesPixel.update(canvas, val, x,y, aggregator);
+			      updater.update(x, y, val);
 			    }
 
 			    error = error - deltay;
@@ -139,40 +292,83 @@ public abstract class TouchesPixel {
 	
 	public static final class Rectangles implements Selector<Rectangle2D> {
 		/**Iterates over the projection of a rectangle (no hit-tests required).
+		 * Columnar glyphs (see ColumnarGlyphs) are read from their columns instead of as glyph objects.
 		 * 
 		 * TODO: Can this be done with Point instead of Point2D?
 		 * **/
+		@SuppressWarnings("unchecked")
 		public <I,A> Aggregates<A> processSubset(
 				Glyphset<? extends Rectangle2D, ? extends I> subset,
 				AffineTransform view, 
 				Aggregates<A> target, 
 				Aggregator<I, A> op) {
 
-			Point2D lowP = new Point2D.Double();
-			Point2D highP = new Point2D.Double();
+			final Updater<I,A> updater = Updater.make(target, op);
+			final Aggregates<?> clip = clip(target);
+			if (subset instanceof ColumnarGlyphs && ((ColumnarGlyphs<?,?>) subset).rectangles()) {
+				columnar((ColumnarGlyphs<?, ? extends I>) subset, view, clip, updater);
+				return target;
+			}
+
+			final AffineTransform vt = view;
+			final Point2D lowP = new Point2D.Double();
+			final Point2D highP = new Point2D.Double();
+
+			subset = cull(subset, view, target);
+			visit(subset, new Glyphset.Visitor<Rectangle2D, I>() {
+				public void visit(Glyph<? extends Rectangle2D, ? extends I> g) {
+					Rectangle2D b = g.shape();	//A rectangle is its own bounding box!
+					lowP.setLocation(b.getMinX(), b.getMinY());
+					highP.setLocation(b.getMaxX(), b.getMaxY());
 
-			for (Glyph<? extends Rectangle2D, ? extends I> g: subset) {
-				Rectangle2D b = g.shape();	//A rectangle is its own bounding box!
-				lowP.setLocation(b.getMinX(), b.getMinY());
-				highP.setLocation(b.getMaxX(), b.getMaxY());
+					vt.transform(lowP, lowP);
+					vt.transform(highP, highP);
 
-				view.transform(lowP, lowP);
-				view.transform(highP, highP);
+					int lowx = (int) Math.floor(lowP.getX());
+					int lowy = (int) Math.floor(lowP.getY());
+					int highx = (int) Math.ceil(highP.getX());
+					int highy = (int) Math.ceil(highP.getY());
 
-				int lowx = (int) Math.floor(lowP.getX());
-				int lowy = (int) Math.floor(lowP.getY());
-				int highx = (int) Math.ceil(highP.getX());
-				int highy = (int) Math.ceil(highP.getY());
+					//Only iterate the part of the glyph that can be stored
+					lowx = Math.max(lowx, clip.lowX());
+					lowy = Math.max(lowy, clip.lowY());
+					highx = Math.min(highx, clip.highX());
+					highy = Math.min(highy, clip.highY());
 
-				I v = g.info();
+					I v = g.info();
 
+					for (int x=lowx; x<highx; x++){
+						for (int y=lowy; y<highy; y++) {
+							updater.update(x, y, v);
+						}
+					}
+				}
+			});
+			return target;
+		}
+		
+		/**Same projection as the glyph loop in processSubset, on the columns.**/
+		private static <I,A> void columnar(ColumnarGlyphs<?, ? extends I> glyphs, AffineTransform view, Aggregates<?> clip, Updater<I,A> updater) {
+			double m00 = view.getScaleX(), m01 = view.getShearX(), m02 = view.getTranslateX();
+			double m10 = view.getShearY(), m11 = view.getScaleY(), m12 = view.getTranslateY();
+			double[] xs = glyphs.xs(), ys = glyphs.ys(), ws = glyphs.ws(), hs = glyphs.hs();
+			
+			for (int i=glyphs.low(); i<glyphs.high(); i++) {
+				double x0 = xs[i], y0 = ys[i];
+				double x1 = x0+ws[i], y1 = y0+hs[i];
+				int lowx = Math.max((int) Math.floor(x0 * m00 + y0 * m01 + m02), clip.lowX());
+				int lowy = Math.max((int) Math.floor(x0 * m10 + y0 * m11 + m12), clip.lowY());
+				int highx = Math.min((int) Math.ceil(x1 * m00 + y1 * m01 + m02), clip.highX());
+				int highy = Math.min((int) Math.ceil(x1 * m10 + y1 * m11 + m12), clip.highY());
+				if (lowx >= highx || lowy >= highy) {continue;}
+				
+				I v = glyphs.value(i);
 				for (int x=lowx; x<highx; x++){
 					for (int y=lowy; y<highy; y++) {
-						update(target, v, x,y, op);
+						updater.update(x, y, v);
 					}
 				}
 			}
-			return target;
 		}
 		
 		@Override
@@ -193,31 +389,38 @@ public abstract class TouchesPixel {
 				Aggregates<A> target, 
 				Aggregator<I, A> op) {
 
-			Point2D lowP = new Point2D.Double();
-			Point2D highP = new Point2D.Double();
-			Point2D testP = new Point2D.Double();
+			final Updater<I,A> updater = Updater.make(target, op);
+			final Aggregates<?> clip = clip(target);
+			final AffineTransform vt = view;
+			final Point2D lowP = new Point2D.Double();
+			final Point2D highP = new Point2D.Double();
+			final Point2D testP = new Point2D.Double();
 
-			for (Glyph<? extends Shape, ? extends I> g: subset) {
-				Shape transformedShape = view.createTransformedShape(g.shape()); 	//Full new transformed shape to support hit-testing
-				Rectangle2D b = transformedShape.getBounds();
-				lowP.setLocation(b.getMinX(), b.getMinY());
-				highP.setLocation(b.getMaxX(), b.getMaxY());
+			visit(subset, new Glyphset.Visitor<Shape, I>() {
+				public void visit(Glyph<? extends Shape, ? extends I> g) {
+					Shape transformedShape = vt.createTransformedShape(g.shape()); 	//Full new transformed shape to support hit-testing
+					Rectangle2D b = transformedShape.getBounds();
+					lowP.setLocation(b.getMinX(), b.getMinY());
+					highP.setLocation(b.getMaxX(), b.getMaxY());
 
-				int lowx = (int) Math.floor(lowP.getX());
-				int lowy = (int) Math.floor(lowP.getY());
-				int highx = (int) Math.ceil(highP.getX());
-				int highy = (int) Math.ceil(highP.getY());
+					//Hit-tests are only done in the part of the bounds that can be stored
+					int lowx = Math.max((int) Math.floor(lowP.getX()), clip.lowX());
+					int lowy = Math.max((int) Math.floor(lowP.getY()), clip.lowY());
+					int highx = Math.min((int) Math.ceil(highP.getX()), clip.highX());
+					int highy = Math.min((int) Math.ceil(highP.getY()), clip.highY());
+					if (lowx >= highx || lowy >= highy) {return;}
 
-				I v = g.info();
-				for (int x=lowx; x<highx; x++){ 
-					for (int y=lowy; y<highy; y++) { 
-						testP.setLocation(x, y);
-						if (transformedShape.contains(testP)) {
-							update(target, v, x,y, op);
+					I v = g.info();
+					for (int x=lowx; x<highx; x++){ 
+						for (int y=lowy; y<highy; y++) { 
+							testP.setLocation(x, y);
+							if (transformedShape.contains(testP)) {
+								updater.update(x, y, v);
+							}
 						}
 					}
 				}
-			}
+			});
 
 			return target;
 		}
@@ -5,6 +5,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 
 import ar.Aggregates;
+import ar.aggregates.AggregateUtils;
 import static java.lang.String.format;
 
 /**Utilities for creating a CSV encoding of a set of aggregates.**/
@@ -36,13 +37,29 @@ public class AggregatesToCSV {
 		b.append("%%%% Abstract rendering: Aggregates output\n");
 		b.append(format("%%%% lowX/Y:(%d,%d)\n", aggs.lowX(), aggs.lowY()));
 		b.append(format("%%%% highX/Y:(%d,%d)\n", aggs.highX(), aggs.highY()));
-		for (int y=aggs.lowY(); y<aggs.highY();y++) {
-			for (int x=aggs.lowX(); x<aggs.highX(); x++) {
-				b.append(aggs.get(x, y));
-				b.append(",");
+		int width = Math.max(0, aggs.highX()-aggs.lowX());
+		if (aggs instanceof Aggregates.IntValued) {	//Unboxed rows
+			int[] row = new int[width];
+			for (int y=aggs.lowY(); y<aggs.highY();y++) {
+				AggregateUtils.getInts((Aggregates.IntValued) aggs, aggs.lowX(), y, row, 0, row.length);
+				for (int v: row) {
+					b.append(v);
+					b.append(",");
+				}
+				b.deleteCharAt(b.length()-1);
+				b.append("\n");
+			}
+		} else {
+			Integer[] row = new Integer[width];
+			for (int y=aggs.lowY(); y<aggs.highY();y++) {
+				AggregateUtils.getRow(aggs, aggs.lowX(), y, row, 0, row.length);
+				for (Integer v: row) {
+					b.append(v);
+					b.append(",");
+				}
+				b.deleteCharAt(b.length()-1);
+				b.append("\n");
 			}
-			b.deleteCharAt(b.length()-1);
-			b.append("\n");
 		}
 		return b.toString();
 	}
@@ -204,15 +204,20 @@ public class Util {
 	 * @param v Current value 
 	 * **/
 	public static Color interpolate(Color low, Color high, double min, double max, double v) {
+		return new java.awt.Color(interpolateARGB(low, high, min, max, v), true);
+	}
+
+	/**Interpolate as "interpolate" does, but return the result as a packed ARGB int (see Color.getRGB).**/
+	public static int interpolateARGB(Color low, Color high, double min, double max, double v) {
 		if (v>max) {v=max;}
 		if (v<min) {v=min;}
 		double distance = 1-((max-v)/(max-min));
-		if (Double.isNaN(distance) || Double.isInfinite(distance)) {return high;}
+		if (Double.isNaN(distance) || Double.isInfinite(distance)) {return high.getRGB();}
 		int r = (int) weightedAverage(high.getRed(), low.getRed(), distance);
 		int g = (int) weightedAverage(high.getGreen(), low.getGreen(), distance);
 		int b = (int) weightedAverage(high.getBlue(), low.getBlue(), distance);
 		int a = (int) weightedAverage(high.getAlpha(), low.getAlpha(), distance);
-		return new java.awt.Color(r,g,b,a);
+		return ((a & 0xFF) << 24) | ((r & 0xFF) << 16) | ((g & 0xFF) << 8) | (b & 0xFF);
 	}
 
 
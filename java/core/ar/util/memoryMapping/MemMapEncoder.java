@@ -3,6 +3,7 @@ package ar.util.memoryMapping;
 import java.nio.*;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.io.*;
 
 import ar.glyphsets.implicitgeometry.IndexedEncoding;
@@ -39,10 +40,27 @@ import ar.util.DelimitedReader;
  * + Record Size (Int): How many fields are in each record
  * + Record Types ([Char]): Type characters (described above), one for each field.  Cannot include 'x'
  * + Info Records: Metadata not be required to interpret the file.  Currently two data records to provide max/min values for columns.  
+ * 
+ * Blocked columnar format (version -2, written by writeBlocked and read by BlockedMemMapList):
+ * 
+ * + Version Number (Int): BLOCKED_VERSION_ID
+ * + Data Offset (Long): Where the first block starts
+ * + Zone Offset (Long): Where the zone table starts
+ * + Entries (Long): How many records are in the file
+ * + Block Rows (Int): How many records are in each block (the last block is padded to this size)
+ * + Record Size (Int) and Record Types ([Char]): As in the header above
+ * + Blocks: For each block, each field as a column of "block rows" values
+ * + Zone table: For each block, for each field, the minimum and maximum (Double, Double) of the field in that block
  */
 public class MemMapEncoder {
 	/**(Magic) Number as the first value in the file to indicate what version of the format was used.*/
 	public static final int VERSION_ID = -1;
+
+	/**Version number of the blocked columnar format (see writeBlocked).**/
+	public static final int BLOCKED_VERSION_ID = -2;
+	
+	/**Default number of records in each block of the blocked columnar format.**/
+	public static int BLOCK_ROWS = 8192;
 	
 	/**Types the encoder understands.
 	 * The "X" type is used to indicate that the field is being skipped.
@@ -90,7 +108,9 @@ public class MemMapEncoder {
 		/**Parse a given file, return a Header object.**/
 		public static Header from(MappedFile buffer) {
 			int version = buffer.getInt();
-			if (version != VERSION_ID) {
+			if (version == BLOCKED_VERSION_ID) {
+				throw new IllegalArgumentException("File is in the blocked columnar format; read it with BlockedMemMapList (or MemMapList.open).");
+			} else if (version != VERSION_ID) {
 				throw new IllegalArgumentException(String.format("Unexpected version number in file %d; expected %d", version, VERSION_ID));
 			}
 
@@ -116,6 +136,65 @@ public class MemMapEncoder {
 	}
 	
 	
+	/**Container for information found in the header of a blocked columnar file.**/
+	@SuppressWarnings("javadoc")
+	public static final class BlockedHeader {
+		/**Bytes in each zone table entry (min and max).**/
+		public static final int ZONE_BYTES = 2*TYPE.DOUBLE.bytes;
+
+		public final long dataTableOffset;
+		public final long zoneTableOffset;
+		public final long entries;
+		public final int blockRows;
+		public final int blocks;
+		public final TYPE[] types;
+		public final int recordLength;
+		private final long[] columnOffsets;
+		
+		public BlockedHeader(TYPE[] types, long dataTableOffset, long zoneTableOffset, long entries, int blockRows) {
+			this.types = types;
+			this.dataTableOffset = dataTableOffset;
+			this.zoneTableOffset = zoneTableOffset;
+			this.entries = entries;
+			this.blockRows = blockRows;
+			this.blocks = (int) ((entries+blockRows-1)/blockRows);
+			this.recordLength = recordLength(types);
+			
+			int[] offsets = recordOffsets(types);
+			this.columnOffsets = new long[offsets.length];
+			for (int f=0; f<offsets.length; f++) {columnOffsets[f] = ((long) blockRows)*offsets[f];}
+		}
+		
+		/**Number of records in the given block.**/
+		public int rows(int block) {return (int) Math.min(blockRows, entries-((long) block)*blockRows);}
+		
+		/**File position of a field of a record (given by block and row within the block).**/
+		public long address(int block, int field, int row) {
+			return dataTableOffset + ((long) block)*blockRows*recordLength + columnOffsets[field] + ((long) row)*types[field].bytes;
+		}
+		
+		/**File position of the minimum of a field in a block; the maximum follows it.**/
+		public long zoneAddress(int block, int field) {
+			return zoneTableOffset + (((long) block)*types.length + field)*ZONE_BYTES;
+		}
+		
+		/**Parse a given file, return a BlockedHeader object.**/
+		public static BlockedHeader from(MappedFile buffer) {
+			int version = buffer.getInt();
+			if (version != BLOCKED_VERSION_ID) {
+				throw new IllegalArgumentException(String.format("Unexpected version number in file %d; expected %d", version, BLOCKED_VERSION_ID));
+			}
+			long dataTableOffset = buffer.getLong();
+			long zoneTableOffset = buffer.getLong();
+			long entries = buffer.getLong();
+			int blockRows = buffer.getInt();
+			int recordEntries = buffer.getInt();
+			TYPE[] types = new TYPE[recordEntries];
+			for (int i =0; i<recordEntries; i++) {types[i] = TYPE.typeFor(buffer.getChar());}
+			return new BlockedHeader(types, dataTableOffset, zoneTableOffset, entries, blockRows);
+		}
+	}
+	
 	/**Utility for append byte arrays together.**/
 	private static byte[] append(byte[]... allBytes) {
 		int len = 0;
@@ -256,6 +335,92 @@ public class MemMapEncoder {
 	}
 
 
+	/**Write from source text to the blocked columnar format (see class description).
+	 * Each block is buffered in memory while it is filled, then written with its zone map entries.
+	 * **/
+	public static void writeBlocked(File sourceFile, int skip, File target, char[] types, int blockRows) throws Exception {
+		DelimitedReader source = new DelimitedReader(sourceFile, skip, DelimitedReader.CSV); 
+		char[] keep = keepTypes(types);
+		TYPE[] kept = new TYPE[keep.length];
+		for (int f=0; f<keep.length; f++) {kept[f] = TYPE.typeFor(keep[f]);}
+		int[] offsets = recordOffsets(kept);
+		
+		ByteBuffer block = ByteBuffer.allocate(blockRows*recordLength(kept));
+		ByteArrayOutputStream zoneBytes = new ByteArrayOutputStream();
+		DataOutputStream zones = new DataOutputStream(zoneBytes);
+		double[] mins = new double[keep.length];
+		double[] maxs = new double[keep.length];
+		
+		long entriesRead = 0;
+		int rows = 0;
+		try(RandomAccessFile file = new RandomAccessFile(target, "rw")) {
+			file.setLength(0);
+			file.write(blockedHeader(keep, 0, 0, blockRows));
+
+			while(source.hasNext()) {
+				String[] entry = source.next();
+				if (entry == null) {continue;}
+				if (rows == 0) {
+					Arrays.fill(mins, Double.POSITIVE_INFINITY);
+					Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+				}
+				for (int i=0, f=0; i<types.length; i++) {
+					if (types[i]=='x') {continue;}
+					double v = put(block, blockRows*offsets[f] + rows*kept[f].bytes, entry[i], types[i]);
+					mins[f] = Math.min(mins[f], v);
+					maxs[f] = Math.max(maxs[f], v);
+					f++;
+				}
+				rows++;
+				entriesRead++;
+				if (rows == blockRows) {rows = flush(file, block, zones, mins, maxs);}
+				if (entriesRead % 100000 ==0) {System.out.printf("Processed %,d entries.\n", entriesRead);}
+			}
+			if (rows > 0) {flush(file, block, zones, mins, maxs);}
+			System.out.printf("Processed %,d entries.\n", entriesRead);
+			
+			long zoneOffset = file.getFilePointer();
+			zones.flush();
+			file.write(zoneBytes.toByteArray());
+			file.seek(0);
+			file.write(blockedHeader(keep, entriesRead, zoneOffset, blockRows));
+		} catch (Exception e) {
+			throw new RuntimeException(String.format("Error on or near entry %,d", entriesRead), e);
+		}
+	}
+	
+	/**Header of a blocked columnar file.**/
+	private static byte[] blockedHeader(char[] keep, long entries, long zoneOffset, int blockRows) {
+		byte[] version = intBytes(BLOCKED_VERSION_ID);
+		byte[] fields = append(intBytes(keep.length), charBytes(keep));
+		int headerSize = version.length + 3*TYPE.LONG.bytes + TYPE.INT.bytes + fields.length;
+		return append(version, longBytes(headerSize), longBytes(zoneOffset), longBytes(entries), intBytes(blockRows), fields);
+	}
+	
+	/**Write a block (padded to full size) and its zone map entries; clears the block for reuse.**/
+	private static int flush(RandomAccessFile file, ByteBuffer block, DataOutputStream zones, double[] mins, double[] maxs) throws IOException {
+		file.write(block.array());
+		for (int f=0; f<mins.length; f++) {
+			zones.writeDouble(mins[f]);
+			zones.writeDouble(maxs[f]);
+		}
+		Arrays.fill(block.array(), (byte) 0);
+		return 0;
+	}
+	
+	/**Store a single data value in the buffer at the given position, returning it as a double.**/
+	private static double put(ByteBuffer buffer, int at, String value, char type) {
+		switch (type) {
+		case 's' : {short v = Short.parseShort(value); buffer.putShort(at, v); return v;}
+		case 'i' : {int v = Integer.parseInt(value); buffer.putInt(at, v); return v;}
+		case 'l' : {long v = Long.parseLong(value); buffer.putLong(at, v); return v;}
+		case 'f' : {float v = Float.parseFloat(value); buffer.putFloat(at, v); return v;}
+		case 'd' : {double v = Double.parseDouble(value); buffer.putDouble(at, v); return v;}
+		case 'c' : {char v = value.charAt(0); buffer.putChar(at, v); return v;}
+		default: throw new IllegalArgumentException("Unknown type: " + type);
+		}			
+	}
+
 	@SuppressWarnings("resource")
 	private static void copy(File source, File target) throws Exception {
 		if (!target.exists()) {target.createNewFile();}
@@ -357,8 +522,9 @@ public class MemMapEncoder {
 		
 	/**Utility for converting CSVs to header-carrying binary encodings.**/
 	public static void main(String[] args) throws Exception {
-		System.out.println("Usage: MemMapEncoder -in <file> -out <file> -skip <int> -types <string>");
+		System.out.println("Usage: MemMapEncoder -in <file> -out <file> -skip <int> -types <string> [-blocked <rows>]");
 		System.out.println("Type string is a string made up of s/i/l/f/d/c for short/int/long/float/double/char.");
+		System.out.println("With -blocked, the blocked columnar format is written with the given number of rows per block.");
 		System.out.println();
 		
 		File temp;
@@ -387,7 +553,9 @@ public class MemMapEncoder {
 			int skip = Integer.parseInt(entry(args, "-skip", null));
 			char[] types = entry(args, "-types", "").toCharArray();
 			
-			write(in, skip, temp, types);
+			String blocked = entry(args, "-blocked", null);
+			if (blocked == null) {write(in, skip, temp, types);}
+			else {writeBlocked(in, skip, temp, types, Integer.parseInt(blocked));}
 			
 			if (!direct) {
 				try {
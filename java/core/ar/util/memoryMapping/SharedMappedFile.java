@@ -0,0 +1,114 @@
+package ar.util.memoryMapping;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**Read-only mapping of a whole file that many views can share.
+ *
+ * The file is mapped once, as a series of windows (nio buffers are int-indexed, so large files need several).
+ * Each window extends OVERLAP bytes into the next, so no single value straddles two windows.
+ *
+ * A view (see "view") is a start and length over the same windows: making one does not
+ * touch the file system.  Positions passed to a view are relative to its start.
+ *
+ * Positional reads (get(long), getInt(long), etc.) do not change any state,
+ * so they may be used from multiple threads at once.
+ * Relative reads (get(), getInt(), etc.) move a cursor kept by each view and are NOT thread-safe.
+ * **/
+public class SharedMappedFile implements MappedFile {
+	/**Largest window mapped.**/
+	public static final int MAX_WINDOW = 1<<30;
+
+	/**Bytes each window extends into the next; at least as large as the largest single value read.**/
+	public static final int OVERLAP = 8;
+
+	private final ByteBuffer[] windows;
+	private final int shift;
+	private final long mask;
+	private final long start;
+	private final long length;
+	private long cursor;
+
+	public SharedMappedFile(File source) throws IOException {this(source, MAX_WINDOW);}
+
+	/**@param windowBytes Size of the mapped windows; rounded down to a power of two, at most MAX_WINDOW.**/
+	public SharedMappedFile(File source, int windowBytes) throws IOException {
+		if (windowBytes < OVERLAP) {throw new IllegalArgumentException("Window must be at least " + OVERLAP + " bytes; requested " + windowBytes);}
+		int stride = Integer.highestOneBit(Math.min(windowBytes, MAX_WINDOW));
+		this.shift = Integer.numberOfTrailingZeros(stride);
+		this.mask = stride-1;
+
+		try (RandomAccessFile file = new RandomAccessFile(source, "r");
+				FileChannel channel = file.getChannel()) {
+			long size = channel.size();
+			int count = (int) Math.max(1, (size+mask) >>> shift);
+			windows = new ByteBuffer[count];
+			for (int i=0; i<count; i++) {
+				long pos = ((long) i) << shift;
+				windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(stride+OVERLAP, size-pos));
+			}
+			this.start = 0;
+			this.length = size;
+		}
+	}
+
+	private SharedMappedFile(SharedMappedFile source, long start, long length) {
+		this.windows = source.windows;
+		this.shift = source.shift;
+		this.mask = source.mask;
+		this.start = start;
+		this.length = length;
+	}
+
+	/**View of the bytes from offset (inclusive) to end (exclusive) of this one, sharing the same mapping.**/
+	public SharedMappedFile view(long offset, long end) {
+		if (offset < 0 || end > length || offset > end) {
+			throw new IllegalArgumentException(String.format("Invalid view %d-%d of %d bytes.", offset, end, length));
+		}
+		return new SharedMappedFile(this, start+offset, end-offset);
+	}
+
+	private ByteBuffer window(long pos) {return windows[(int) ((start+pos) >>> shift)];}
+	private int offset(long pos) {return (int) ((start+pos) & mask);}
+
+	public byte get(long pos) {return window(pos).get(offset(pos));}
+	public short getShort(long pos) {return window(pos).getShort(offset(pos));}
+	public int getInt(long pos) {return window(pos).getInt(offset(pos));}
+	public long getLong(long pos) {return window(pos).getLong(offset(pos));}
+	public char getChar(long pos) {return window(pos).getChar(offset(pos));}
+	public float getFloat(long pos) {return window(pos).getFloat(offset(pos));}
+	public double getDouble(long pos) {return window(pos).getDouble(offset(pos));}
+
+	public byte get() {byte v = get(cursor); cursor += 1; return v;}
+	public short getShort() {short v = getShort(cursor); cursor += 2; return v;}
+	public int getInt() {int v = getInt(cursor); cursor += 4; return v;}
+	public long getLong() {long v = getLong(cursor); cursor += 8; return v;}
+	public char getChar() {char v = getChar(cursor); cursor += 2; return v;}
+	public float getFloat() {float v = getFloat(cursor); cursor += 4; return v;}
+	public double getDouble() {double v = getDouble(cursor); cursor += 8; return v;}
+
+	/**Copy length bytes, starting at the given position, into the start of the target.**/
+	public void get(byte[] target, long offset, int length) {
+		int copied = 0;
+		while (copied < length) {
+			long pos = offset+copied;
+			ByteBuffer window = window(pos).duplicate();
+			int at = offset(pos);
+			int count = (int) Math.min(length-copied, (mask+1)-at);
+			window.position(at);
+			window.get(target, copied, count);
+			copied += count;
+		}
+	}
+
+	public long capacity() {return length;}
+	public long position() {return cursor;}
+
+	/**Move the cursor used by relative reads.**/
+	public void position(long pos) {this.cursor = pos;}
+
+	public long filePosition() {return start;}
+}
@@ -26,6 +26,7 @@ import org.apache.avro.io.EncoderFactory;
 
 import ar.Aggregates;
 import ar.aggregates.AggregateUtils;
+import ar.aggregates.implementations.SparseAggregates;
 import ar.glyphsets.implicitgeometry.Valuer;
 import ar.rules.CategoricalCounts;
 
@@ -104,9 +105,14 @@ public class AggregateSerializer {
 		A defVal = aggs.defaultValue();
 		GenericRecord defrec = converter.value(defVal);
 
+		SparseAggregates<A> sparse = aggs instanceof SparseAggregates ? (SparseAggregates<A>) aggs : null;
+		@SuppressWarnings("unchecked")
+		A[] row = (A[]) new Object[Math.max(0, aggs.highX()-aggs.lowX())];
 		for (int y=aggs.lowY(); y<aggs.highY(); y++) {
+			AggregateUtils.getRow(aggs, aggs.lowX(), y, row, 0, row.length);
 			for (int x=aggs.lowX(); x<aggs.highX(); x++) {
-				A val = aggs.get(x,y);
+				if (sparse != null && !sparse.touched(x, y)) {records.add(defrec); continue;}	//Untouched tiles hold only the default
+				A val = row[x-aggs.lowX()];
 				//if (defVal == val || (defVal != null && defVal.equals(val))) {continue;}  TODO: Investigate reinstating default-value omission by making a union type with null...(maybe)
 				GenericRecord vr = converter.value(val);
 				records.add(vr);
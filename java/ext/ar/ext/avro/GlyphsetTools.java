@@ -26,6 +26,9 @@ public class GlyphsetTools {
 		private final GenericRecord r;
 		public IndexedRecord(GenericRecord r) {this.r=r;}
 		public Object get(int f) {return r.get(f);}
+		public double getDouble(int f) {return ((Number) r.get(f)).doubleValue();}
+		public int getInt(int f) {return ((Number) r.get(f)).intValue();}
+		public long getLong(int f) {return ((Number) r.get(f)).longValue();}
 	}
 	
 	/**Internal utility for seting up an avro reader.**/
@@ -27,6 +27,7 @@ import ar.glyphsets.implicitgeometry.Valuer;
 import ar.glyphsets.implicitgeometry.Indexed.ToValue;
 import ar.glyphsets.implicitgeometry.Valuer.Binary;
 import ar.renderers.ParallelRenderer;
+import ar.renderers.TileRenderer;
 import ar.rules.Categories;
 import ar.rules.Debug;
 import ar.rules.General;
@@ -54,7 +55,7 @@ public class ARServer extends NanoHTTPD {
 				new Indexed.ToValue(4, new Valuer.ToInt<Object>()));
 		
 		@SuppressWarnings({"unchecked", "rawtypes"})
-		Glyphset boost = new MemMapList<>(
+		Glyphset boost = MemMapList.open(
 				new File("../data/MemVisScaled.hbin"),
 				new Indexed.ToRect(.001, .001, true, 0, 1), 
 				new ToValue(2, new Binary<Integer,Color>(0, Color.BLUE, Color.RED)));
@@ -125,11 +126,17 @@ public class ARServer extends NanoHTTPD {
 	
 	/**Execute the passed aggregator and list of transfers.
 	 * This is inherently not statically type-safe, so it may produce type errors at runtime.  
+	 * 
+	 * If none of the transfers depend on the aggregates (see TileRenderer.fusable), 
+	 * aggregation and transfer are done in one pass without full-size aggregates. 
 	 */
 	@SuppressWarnings({ "rawtypes", "unchecked" }) 
 	public Aggregates<?> execute(Glyphset<?,?> glyphs, Aggregator agg, List<Transfer<?,?>> transfers, AffineTransform view, int width, int height) {
-		Renderer r = new ParallelRenderer();
 		Selector s = TouchesPixel.make(glyphs);
+		Transfer.Local fused = TileRenderer.fusable(agg.identity(), transfers);
+		if (fused != null) {return new TileRenderer().render(glyphs, s, agg, fused, view, width, height);}
+		
+		Renderer r = new ParallelRenderer();
 		Aggregates aggs = r.aggregate(glyphs, s, agg, view, width, height);
 
 		Transfer transfer;
@@ -11,6 +11,9 @@ public class IndexedProduct implements Indexed {
 	
 	public IndexedProduct(Product p) {this.p =p;}
 	public Object get(int i) {return p.productElement(i);} 
+	public double getDouble(int i) {return ((Number) p.productElement(i)).doubleValue();}
+	public int getInt(int i) {return ((Number) p.productElement(i)).intValue();}
+	public long getLong(int i) {return ((Number) p.productElement(i)).longValue();}
 	
 	
 	/**Spark functional expression of wrapping.  Use this class to convert a 
@@ -73,6 +73,16 @@ public class Renderings {
 		BufferedImage pg_img = image(r, glyphs, agg, t);
 		Util.writeImage(pg_img, new File(String.format("./testResults/%s/pg.png", test)));
 		assertImageEquals("Parallel glyphs", ref_img, pg_img);
+		
+		r = new ParallelRenderer(null, true);
+		BufferedImage sc_img = image(r, glyphs, agg, t);
+		Util.writeImage(sc_img, new File(String.format("./testResults/%s/sc.png", test)));
+		assertImageEquals("Parallel shared canvas", ref_img, sc_img);
+		
+		r = new TileRenderer(null, 32);
+		BufferedImage tile_img = image(r, glyphs, agg, t);
+		Util.writeImage(tile_img, new File(String.format("./testResults/%s/tile.png", test)));
+		assertImageEquals("Tiles", ref_img, tile_img);
 	}
 	
 
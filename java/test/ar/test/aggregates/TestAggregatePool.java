@@ -0,0 +1,133 @@
+package ar.test.aggregates;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import ar.Aggregates;
+import ar.Aggregator;
+import ar.Transfer;
+import ar.aggregates.AggregatePool;
+import ar.aggregates.AggregateUtils;
+import ar.aggregates.implementations.ColorAggregates;
+import ar.aggregates.wrappers.TransferWrapper;
+import ar.glyphsets.GlyphList;
+import ar.glyphsets.SimpleGlyph;
+import ar.renderers.ParallelRenderer;
+import ar.rules.Numbers;
+import ar.selectors.TouchesPixel;
+
+public class TestAggregatePool {
+	@Test
+	public void recyclesByTypeAndBounds() {
+		AggregatePool pool = new AggregatePool();
+		Aggregates<Integer> ints = pool.take(0, 0, 10, 10, 0);
+		ints.set(3, 4, 7);
+		pool.release(ints);
+
+		assertThat(pool.take(0, 0, 10, 12, 0), is(not(sameInstance(ints))));
+		assertThat(pool.take(0, 0, 10, 10, 0d), is(not(sameInstance((Object) ints))));
+
+		Aggregates<Integer> again = pool.take(0, 0, 10, 10, 0);
+		assertThat(again, is(sameInstance(ints)));
+		assertThat(again.get(3, 4), is(0));
+		assertThat(pool.size(), is(0));
+	}
+
+	@Test
+	public void resetsToRequestedDefault() {
+		AggregatePool pool = new AggregatePool();
+		Aggregates<Integer> ints = pool.take(0, 0, 5, 5, 0);
+		pool.release(ints);
+
+		Aggregates<Integer> other = pool.take(0, 0, 5, 5, 1);
+		assertThat(other, is(not(sameInstance(ints))));
+		assertThat(other.get(2, 2), is(1));
+	}
+
+	@Test
+	public void keepsWithinBudget() {
+		AggregatePool pool = new AggregatePool(10, 4*100*2);
+		Aggregates<Integer> a = pool.take(0, 0, 10, 10, 0);
+		Aggregates<Integer> b = pool.take(0, 0, 10, 10, 0);
+		Aggregates<Integer> c = pool.take(0, 0, 10, 10, 0);
+		pool.release(a);
+		pool.release(b);
+		pool.release(c);
+		assertThat(pool.size(), is(2));
+		assertThat(pool.keptBytes(), is(800L));
+		
+		pool.take(0, 0, 10, 10, 0);
+		assertThat(pool.keptBytes(), is(400L));
+		pool.clear();
+		assertThat(pool.keptBytes(), is(0L));
+	}
+
+	@Test
+	public void imageTarget() {
+		Aggregates<Integer> counts = AggregateUtils.make(20, 10, 0);
+		for (int x=0; x<20; x++) {counts.set(x, x%10, x);}
+		Transfer.ItemWise<Integer,Color> t = new Numbers.FixedInterpolate<>(Color.white, Color.red, 0, 20);
+
+		BufferedImage img = new BufferedImage(20, 10, BufferedImage.TYPE_INT_ARGB);
+		assertThat(AggregateUtils.asImage(new TransferWrapper<>(counts, t), 20, 10, Color.white, img), is(sameInstance(img)));
+		assertThat(img.getRGB(7, 7), is(t.at(7, 7, counts).getRGB()));
+		assertThat(AggregateUtils.asImage(new TransferWrapper<>(counts, t), 21, 10, Color.white, img), is(not(sameInstance(img))));
+	}
+
+	@Test
+	public void transferTarget() {
+		Aggregates<Integer> counts = AggregateUtils.make(20, 10, 0);
+		for (int x=0; x<20; x++) {counts.set(x, x%10, x);}
+		Transfer.ItemWise<Integer,Color> t = new Numbers.FixedInterpolate<>(Color.white, Color.red, 0, 20);
+		ParallelRenderer r = new ParallelRenderer(new ForkJoinPool(4));
+		Aggregates<Color> expected = r.transfer(counts, t);
+
+		ColorAggregates target = new ColorAggregates(0, 0, 20, 10, t.emptyValue());
+		target.set(7, 7, Color.blue);
+		assertThat(r.transfer(counts, t, target), is(sameInstance((Aggregates<Color>) target)));
+		for (int x=0; x<20; x++) {
+			for (int y=0; y<10; y++) {
+				assertThat(String.format("Mismatch at %d,%d", x, y), target.get(x, y), is(expected.get(x, y)));
+			}
+		}
+		
+		ColorAggregates wrongSize = new ColorAggregates(0, 0, 21, 10, t.emptyValue());
+		assertThat(r.transfer(counts, t, wrongSize), is(not(sameInstance((Aggregates<Color>) wrongSize))));
+		ColorAggregates wrongBackground = new ColorAggregates(0, 0, 20, 10, Color.black);
+		assertThat(r.transfer(counts, t, wrongBackground), is(not(sameInstance((Aggregates<Color>) wrongBackground))));
+	}
+
+	@Test
+	public void rendererRecycling() {
+		GlyphList<Point2D, Object> glyphs = new GlyphList<>();
+		for (int i=0; i<10000; i++) {
+			glyphs.add(new SimpleGlyph<Point2D, Object>(new Point2D.Double(i%31, i%29), i));
+		}
+
+		Aggregator<Object,Integer> count = new Numbers.Count<>();
+		ParallelRenderer r = new ParallelRenderer(new ForkJoinPool(4));
+		Aggregates<Integer> plain = r.aggregate(glyphs, new TouchesPixel.Points(), count, new AffineTransform(), 40, 40);
+
+		AggregatePool pool = new AggregatePool();
+		r.recycling(pool);
+		Aggregates<Integer> first = r.aggregate(glyphs, new TouchesPixel.Points(), count, new AffineTransform(), 40, 40);
+		assertThat("Buffers returned to the pool", pool.size(), is(not(0)));
+		Aggregates<Integer> second = r.aggregate(glyphs, new TouchesPixel.Points(), count, new AffineTransform(), 40, 40);
+
+		assertThat(second, is(not(sameInstance(first))));
+		for (int x=0; x<40; x++) {
+			for (int y=0; y<40; y++) {
+				assertThat(String.format("Mismatch at %d,%d", x, y), first.get(x, y), is(plain.get(x, y)));
+				assertThat(String.format("Mismatch at %d,%d", x, y), second.get(x, y), is(plain.get(x, y)));
+			}
+		}
+	}
+}
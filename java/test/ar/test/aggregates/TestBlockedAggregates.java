@@ -0,0 +1,78 @@
+package ar.test.aggregates;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+import ar.Aggregates;
+import ar.aggregates.AggregateUtils;
+import ar.aggregates.implementations.BlockedColorAggregates;
+import ar.aggregates.implementations.BlockedDoubleAggregates;
+import ar.aggregates.implementations.BlockedIntAggregates;
+
+public class TestBlockedAggregates {
+	@Test
+	public void matchesRowLayout() {
+		//Bounds that are not a multiple of the block size, so edge blocks are padded
+		BlockedIntAggregates ints = new BlockedIntAggregates(-5, 3, 30, 20, -1, 8);
+		BlockedDoubleAggregates doubles = new BlockedDoubleAggregates(-5, 3, 30, 20, .5, 8);
+		
+		for (int x=ints.lowX(); x<ints.highX(); x++) {
+			for (int y=ints.lowY(); y<ints.highY(); y++) {
+				assertThat(ints.getInt(x, y), is(-1));
+				ints.setInt(x, y, x*100+y);
+				doubles.setDouble(x, y, x+y/10.0);
+			}
+		}
+		
+		boolean[] used = new boolean[ints.values().length];
+		for (int x=ints.lowX(); x<ints.highX(); x++) {
+			for (int y=ints.lowY(); y<ints.highY(); y++) {
+				assertThat(String.format("Error at %d,%d", x,y), ints.get(x, y), is(x*100+y));
+				assertThat(String.format("Error at %d,%d", x,y), doubles.get(x, y), is(x+y/10.0));
+				assertThat(String.format("Index reused at %d,%d", x, y), used[ints.index(x, y)], is(false));
+				used[ints.index(x, y)] = true;
+			}
+		}
+		
+		ints.set(100, 100, 7);
+		assertThat(ints.get(100, 100), is(-1));
+		assertThat(doubles.get(-6, 3), is(.5));
+	}
+	
+	@Test
+	public void image() {
+		BlockedColorAggregates colors = new BlockedColorAggregates(0, 0, 70, 40, Color.white, 16);
+		colors.set(0, 0, Color.red);
+		colors.set(69, 39, Color.blue);
+		colors.set(17, 5, Color.green);
+		
+		BufferedImage img = AggregateUtils.asImage(colors);
+		assertThat(img.getWidth(), is(70));
+		assertThat(img.getHeight(), is(40));
+		assertThat(img.getRGB(0, 0), is(Color.red.getRGB()));
+		assertThat(img.getRGB(69, 39), is(Color.blue.getRGB()));
+		assertThat(img.getRGB(17, 5), is(Color.green.getRGB()));
+		assertThat(img.getRGB(16, 5), is(Color.white.getRGB()));
+	}
+	
+	@Test
+	public void makeBlocked() {
+		boolean blocked = AggregateUtils.BLOCKED_LAYOUT;
+		try {
+			AggregateUtils.BLOCKED_LAYOUT = true;
+			Aggregates<Integer> ints = AggregateUtils.make(10, 10, 0);
+			Aggregates<Double> doubles = AggregateUtils.make(10, 10, 0d);
+			Aggregates<Color> colors = AggregateUtils.make(10, 10, Color.white);
+			assertThat(ints, instanceOf(BlockedIntAggregates.class));
+			assertThat(doubles, instanceOf(BlockedDoubleAggregates.class));
+			assertThat(colors, instanceOf(BlockedColorAggregates.class));
+		} finally {
+			AggregateUtils.BLOCKED_LAYOUT = blocked;
+		}
+	}
+}
@@ -0,0 +1,149 @@
+package ar.test.aggregates;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+
+import org.junit.Test;
+
+import ar.Aggregates;
+import ar.aggregates.AggregateUtils;
+import ar.aggregates.implementations.BlockedDoubleAggregates;
+import ar.aggregates.implementations.BlockedIntAggregates;
+import ar.aggregates.implementations.ColorAggregates;
+import ar.aggregates.implementations.DoubleAggregates;
+import ar.aggregates.implementations.IntAggregates;
+import ar.aggregates.implementations.RefFlatAggregates;
+import ar.aggregates.wrappers.SubsetWrapper;
+import ar.aggregates.wrappers.TouchedBoundsWrapper;
+import ar.util.AggregatesToCSV;
+
+public class TestBulkAccess {
+	private static void number(Aggregates.IntValued aggs) {
+		for (int x=aggs.lowX(); x<aggs.highX(); x++) {
+			for (int y=aggs.lowY(); y<aggs.highY(); y++) {aggs.setInt(x, y, x*100+y);}
+		}
+	}
+
+	@Test
+	public void intRowsClip() {
+		for (Aggregates.IntRows aggs: new Aggregates.IntRows[]{
+				new IntAggregates(2, 3, 12, 9, -1),
+				new BlockedIntAggregates(2, 3, 12, 9, -1, 4)}) {
+			number(aggs);
+			int[] row = new int[16];
+			aggs.getInts(0, 5, row, 1, 15);
+			assertThat(aggs.getClass().getSimpleName(), row[0], is(0));
+			for (int i=0; i<15; i++) {
+				assertThat(aggs.getClass().getSimpleName() + " at " + i, row[i+1], is(aggs.getInt(i, 5)));
+			}
+
+			aggs.getInts(0, 20, row, 0, 16);
+			assertThat(row[7], is(-1));
+
+			int[] src = new int[20];
+			for (int i=0; i<src.length; i++) {src[i] = -i;}
+			aggs.setInts(-5, 4, src, 0, 20);
+			for (int x=2; x<12; x++) {assertThat(aggs.getInt(x, 4), is(-(x+5)));}
+			assertThat(aggs.getInt(2, 3), is(203));
+		}
+	}
+
+	@Test
+	public void doubleRowsMatchCells() {
+		for (Aggregates.DoubleRows aggs: new Aggregates.DoubleRows[]{
+				new DoubleAggregates(0, 0, 70, 3, .5),
+				new BlockedDoubleAggregates(0, 0, 70, 3, .5, 8)}) {
+			double[] src = new double[70];
+			for (int i=0; i<src.length; i++) {src[i] = i/2d;}
+			aggs.setDoubles(0, 1, src, 0, 70);
+			double[] dest = new double[80];
+			aggs.getDoubles(-5, 1, dest, 0, 80);
+			for (int i=0; i<80; i++) {
+				assertThat(aggs.getClass().getSimpleName() + " at " + i, dest[i], is(aggs.getDouble(i-5, 1)));
+			}
+		}
+	}
+
+	@Test
+	public void primitiveRowsThroughGenericAccess() {
+		IntAggregates ints = new IntAggregates(0, 0, 4, 3, -1);
+		number(ints);
+		Integer[] row = new Integer[6];
+		AggregateUtils.getRow(ints, -1, 2, row, 0, 6);
+		assertThat(row[0], is(-1));
+		assertThat(row[2], is(102));
+		assertThat(row[5], is(-1));
+		AggregateUtils.setRow(ints, 1, 1, new Integer[]{7,8,9}, 0, 3);
+		assertThat(ints.getInt(3, 1), is(9));
+
+		DoubleAggregates doubles = new DoubleAggregates(0, 0, 3, 3, 0);
+		AggregateUtils.setRow(doubles, 0, 2, new Double[]{.5, 1.5, 2.5}, 0, 3);
+		Double[] drow = new Double[3];
+		AggregateUtils.getRow(doubles, 0, 2, drow, 0, 3);
+		assertThat(drow[1], is(1.5));
+
+		assertThat(AggregatesToCSV.asCSV(ints), containsString("\n1,7,8,9\n2,102,202,302\n"));
+	}
+
+	@Test
+	public void objectRegions() {
+		RefFlatAggregates<String> refs = new RefFlatAggregates<>(0, 0, 5, 5, "");
+		String[] src = new String[9];
+		for (int i=0; i<src.length; i++) {src[i] = Integer.toString(i);}
+		AggregateUtils.setRegion(refs, 3, 3, 6, 6, src);
+		assertThat(refs.get(3, 3), is("0"));
+		assertThat(refs.get(4, 4), is("4"));
+		assertThat(refs.get(3, 4), is("3"));
+
+		String[] read = AggregateUtils.getRegion(refs, 2, 2, 5, 5, new String[9]);
+		assertThat(read.length, is(9));
+		assertThat(read[0], is(""));
+		assertThat(read[4], is("0"));
+		assertThat(read[8], is("4"));
+	}
+
+	@Test
+	public void wrappersDelegate() {
+		IntAggregates base = new IntAggregates(0, 0, 10, 10, 0);
+		TouchedBoundsWrapper<Integer> touched = TouchedBoundsWrapper.wrap((Aggregates<Integer>) base, false);
+		assertThat(touched, instanceOf(Aggregates.IntRows.class));
+
+		int[] src = {1,2,3,4};
+		((Aggregates.IntRows) touched).setInts(8, 6, src, 0, 4);
+		assertThat(base.getInt(9, 6), is(2));
+		assertThat(AggregateUtils.bounds(touched), is(new java.awt.Rectangle(8, 6, 2, 1)));
+
+		SubsetWrapper<Integer> subset = new SubsetWrapper<Integer>(base, 5, 5, 10, 10);
+		Integer[] row = new Integer[3];
+		AggregateUtils.getRow(subset, 7, 6, row, 0, 3);
+		assertThat(row[2], is(2));
+	}
+
+	@Test
+	public void copyAndFillRegions() {
+		IntAggregates source = new IntAggregates(0, 0, 10, 10, 0);
+		number(source);
+		BlockedIntAggregates target = new BlockedIntAggregates(0, 0, 10, 10, -1, 4);
+		AggregateUtils.copyInto(source, target, 2, 3, 7, 8);
+		assertThat(target.getInt(2, 3), is(203));
+		assertThat(target.getInt(6, 7), is(607));
+		assertThat(target.getInt(7, 7), is(-1));
+		assertThat(target.getInt(6, 8), is(-1));
+
+		AggregateUtils.fill(target, 5, 0, 0, 3, 10);
+		assertThat(target.getInt(2, 9), is(5));
+		assertThat(target.getInt(3, 3), is(303));
+
+		Aggregates<Integer> copy = AggregateUtils.copy(source, 0);
+		assertThat(copy.get(9, 9), is(909));
+
+		ColorAggregates colors = new ColorAggregates(0, 0, 4, 4, Color.white);
+		AggregateUtils.fill(colors, Color.red, 1, 1, 3, 3);
+		ColorAggregates colorCopy = new ColorAggregates(0, 0, 4, 4, Color.black);
+		AggregateUtils.copyInto(colors, colorCopy);
+		assertThat(colorCopy.get(2, 2), is(Color.red));
+		assertThat(colorCopy.get(0, 0), is(Color.white));
+	}
+}
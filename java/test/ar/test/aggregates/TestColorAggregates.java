@@ -0,0 +1,90 @@
+package ar.test.aggregates;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import ar.Aggregates;
+import ar.Transfer;
+import ar.aggregates.AggregateUtils;
+import ar.aggregates.implementations.ColorAggregates;
+import ar.aggregates.wrappers.TransferWrapper;
+import ar.renderers.ParallelRenderer;
+import ar.rules.Numbers;
+
+public class TestColorAggregates {
+	@Test
+	public void sharesImagePixels() {
+		BufferedImage img = new BufferedImage(7, 5, BufferedImage.TYPE_INT_ARGB);
+		img.setRGB(2, 3, Color.red.getRGB());
+		ColorAggregates aggs = new ColorAggregates(10, 20, Color.white, img);
+		
+		assertThat(aggs.highX(), is(17));
+		assertThat(aggs.highY(), is(25));
+		assertThat(aggs.get(12, 23), is(Color.red));
+		assertThat(aggs.image(), is(sameInstance(img)));
+		
+		aggs.set(16, 24, Color.blue);
+		assertThat(img.getRGB(6, 4), is(Color.blue.getRGB()));
+		img.setRGB(0, 0, Color.green.getRGB());
+		assertThat(aggs.getInt(10, 20), is(Color.green.getRGB()));
+	}
+	
+	@Test
+	public void imageIsView() {
+		ColorAggregates aggs = new ColorAggregates(0, 0, 5, 4, Color.white);
+		BufferedImage img = aggs.image();
+		assertThat(img.getType(), is(BufferedImage.TYPE_INT_ARGB));
+		assertThat(img.getRGB(4, 3), is(Color.white.getRGB()));
+		
+		aggs.set(4, 3, Color.red);
+		assertThat(img.getRGB(4, 3), is(Color.red.getRGB()));
+		img.setRGB(1, 2, Color.blue.getRGB());
+		assertThat(aggs.get(1, 2), is(Color.blue));
+		assertThat(aggs.image(), is(sameInstance(img)));
+	}
+	
+	@Test
+	public void copiesOtherImages() {
+		BufferedImage img = new BufferedImage(3, 3, BufferedImage.TYPE_INT_RGB);
+		img.setRGB(1, 1, Color.red.getRGB());
+		ColorAggregates aggs = new ColorAggregates(0, 0, Color.white, img);
+		assertThat(aggs.get(1, 1), is(Color.red));
+		
+		aggs.set(1, 1, Color.blue);
+		assertThat(img.getRGB(1, 1), is(Color.red.getRGB()));
+	}
+	
+	@Test
+	public void argbTransfers() {
+		Aggregates<Integer> counts = AggregateUtils.make(40, 30, 0);
+		for (int x=0; x<40; x++) {
+			for (int y=0; y<30; y++) {if ((x+y)%3 != 0) {counts.set(x, y, x*y);}}
+		}
+		
+		Transfer.ItemWise<Integer,Color> fixed = new Numbers.FixedInterpolate<>(new Color(255,255,255,10), Color.red, 0, 500);
+		@SuppressWarnings("unchecked")
+		Transfer.ItemWise<Integer,Color> hd = (Transfer.ItemWise<Integer,Color>) new Numbers.Interpolate<Integer>(Color.white, Color.red, Color.black).specialize(counts);
+		ParallelRenderer r = new ParallelRenderer(new ForkJoinPool(4));
+		
+		for (Transfer.ItemWise<Integer,Color> t: Arrays.asList(fixed, hd)) {
+			assertThat(t, instanceOf(Transfer.ARGBValued.class));
+			Aggregates<Color> colors = r.transfer(counts, t);
+			BufferedImage img = AggregateUtils.asImage(new TransferWrapper<>(counts, t), 40, 30, Color.white);
+			for (int x=0; x<40; x++) {
+				for (int y=0; y<30; y++) {
+					Color expected = t.at(x, y, counts);
+					assertThat(String.format("ARGB mismatch at %d,%d", x, y), ((Transfer.ARGBValued<Integer>) t).atARGB(x, y, counts), is(expected.getRGB()));
+					assertThat(String.format("Transfer mismatch at %d,%d", x, y), colors.get(x, y), is(expected));
+					assertThat(String.format("Image mismatch at %d,%d", x, y), img.getRGB(x, y), is(expected.getRGB()));
+				}
+			}
+		}
+	}
+}
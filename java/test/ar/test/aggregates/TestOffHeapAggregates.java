@@ -0,0 +1,86 @@
+package ar.test.aggregates;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+import ar.Aggregates;
+import ar.aggregates.AggregateUtils;
+import ar.aggregates.implementations.OffHeapColorAggregates;
+import ar.aggregates.implementations.OffHeapDoubleAggregates;
+import ar.aggregates.implementations.OffHeapIntAggregates;
+
+public class TestOffHeapAggregates {
+	@Test
+	public void spansChunks() {
+		//64-byte chunks: 16 ints or 8 doubles each, so a 13x7 region spans many chunks
+		OffHeapIntAggregates ints = new OffHeapIntAggregates(-3, 2, 10, 9, -1, 64);
+		OffHeapDoubleAggregates doubles = new OffHeapDoubleAggregates(-3, 2, 10, 9, .5, 64);
+		
+		for (int x=ints.lowX(); x<ints.highX(); x++) {
+			for (int y=ints.lowY(); y<ints.highY(); y++) {
+				assertThat(ints.getInt(x, y), is(-1));
+				assertThat(doubles.getDouble(x, y), is(.5));
+				ints.setInt(x, y, x*100+y);
+				doubles.setDouble(x, y, x+y/10.0);
+			}
+		}
+		
+		for (int x=ints.lowX(); x<ints.highX(); x++) {
+			for (int y=ints.lowY(); y<ints.highY(); y++) {
+				assertThat(String.format("Error at %d,%d", x,y), ints.get(x, y), is(x*100+y));
+				assertThat(String.format("Error at %d,%d", x,y), doubles.get(x, y), is(x+y/10.0));
+			}
+		}
+		
+		ints.set(100, 100, 7);
+		assertThat(ints.get(100, 100), is(-1));
+		assertThat(doubles.get(-4, 2), is(.5));
+	}
+	
+	@Test
+	public void selectedByMake() {
+		long threshold = AggregateUtils.OFF_HEAP_THRESHOLD;
+		try {
+			AggregateUtils.OFF_HEAP_THRESHOLD = 50;
+			assertThat(AggregateUtils.make(10, 10, 0), instanceOf(OffHeapIntAggregates.class));
+			assertThat(AggregateUtils.make(10, 10, 0d), instanceOf(OffHeapDoubleAggregates.class));
+			assertThat(AggregateUtils.make(10, 10, Color.RED), instanceOf(OffHeapColorAggregates.class));
+			assertThat(AggregateUtils.make(5, 5, 0), not(instanceOf(OffHeapIntAggregates.class)));
+			
+			Aggregates<Integer> copy = AggregateUtils.make(20, 20, 0);
+			Aggregates<Integer> source = AggregateUtils.make(4, 4, 3);
+			AggregateUtils.copyInto(source, copy);
+			assertThat(copy.get(3, 3), is(3));
+			assertThat(copy.get(4, 4), is(0));
+		} finally {
+			AggregateUtils.OFF_HEAP_THRESHOLD = threshold;
+		}
+	}
+	
+	@Test
+	public void imageRegion() {
+		OffHeapColorAggregates colors = new OffHeapColorAggregates(0, 0, 10, 10, Color.WHITE, 64);
+		colors.set(5, 6, Color.RED);
+		
+		BufferedImage img = colors.image(4, 4, 14, 14);
+		assertThat(img.getWidth(), is(10));
+		assertThat(img.getRGB(1, 2), is(Color.RED.getRGB()));
+		assertThat(img.getRGB(0, 0), is(Color.WHITE.getRGB()));
+		assertThat(img.getRGB(9, 9), is(Color.WHITE.getRGB()));
+	}
+	
+	@Test
+	public void beyondArrayLimit() {
+		//4 billion bins with no allocation; only a check that make does not try to build one array
+		assertThat(AggregateUtils.size(0, 0, 65536, 65536) > Integer.MAX_VALUE, is(true));
+		try {
+			AggregateUtils.arraySize(0, 0, 65536, 65536);
+			fail("Expected an exception for an oversize array");
+		} catch (IllegalArgumentException e) {}
+	}
+}
@@ -0,0 +1,81 @@
+package ar.test.aggregates;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.junit.Test;
+
+import ar.Aggregates;
+import ar.aggregates.AggregateUtils;
+import ar.aggregates.implementations.BooleanAggregates;
+import ar.aggregates.implementations.EnumAggregates;
+import ar.rules.ISOContours.MC_TYPE;
+
+public class TestPackedAggregates {
+	@Test
+	public void booleanBits() {
+		//Rows of 37 bins, so rows start in the middle of words
+		BooleanAggregates aggs = new BooleanAggregates(-3, 2, 34, 12, true);
+		for (int x=aggs.lowX(); x<aggs.highX(); x++) {
+			for (int y=aggs.lowY(); y<aggs.highY(); y++) {
+				assertThat(aggs.get(x, y), is(true));
+				aggs.set(x, y, (x*7+y) % 3 == 0);
+			}
+		}
+		
+		for (int x=aggs.lowX(); x<aggs.highX(); x++) {
+			for (int y=aggs.lowY(); y<aggs.highY(); y++) {
+				assertThat(String.format("Error at %d,%d", x,y), aggs.get(x, y), is((x*7+y) % 3 == 0));
+			}
+		}
+		assertThat(aggs.get(100, 100), is(true));
+	}
+	
+	@Test
+	public void booleanConcurrentSets() {
+		final BooleanAggregates aggs = new BooleanAggregates(0, 0, 1000, 100, false);
+		
+		//One task per column, so every task writes bits shared with other tasks
+		class Column extends RecursiveAction {
+			private static final long serialVersionUID = 1L;
+			final int low, high;
+			Column(int low, int high) {this.low = low; this.high = high;}
+			protected void compute() {
+				if (high-low > 1) {invokeAll(new Column(low, (low+high)/2), new Column((low+high)/2, high)); return;}
+				for (int y=0; y<aggs.highY(); y++) {aggs.set(low, y, (low+y) % 2 == 0);}
+			}
+		}
+		new ForkJoinPool(4).invoke(new Column(0, aggs.highX()));
+		
+		for (int x=aggs.lowX(); x<aggs.highX(); x++) {
+			for (int y=aggs.lowY(); y<aggs.highY(); y++) {
+				assertThat(String.format("Lost update at %d,%d", x,y), aggs.get(x, y), is((x+y) % 2 == 0));
+			}
+		}
+	}
+	
+	@Test
+	public void enumBytes() {
+		Aggregates<MC_TYPE> aggs = AggregateUtils.make(0, 0, 10, 10, MC_TYPE.empty);
+		assertThat(aggs, instanceOf(EnumAggregates.class));
+		assertThat(aggs.get(3, 3), is(MC_TYPE.empty));
+		
+		MC_TYPE[] types = MC_TYPE.values();
+		for (int x=0; x<10; x++) {
+			for (int y=0; y<10; y++) {aggs.set(x, y, types[(x+y) % types.length]);}
+		}
+		aggs.set(9, 9, null);
+		
+		for (int x=0; x<10; x++) {
+			for (int y=0; y<10; y++) {
+				if (x == 9 && y == 9) {continue;}
+				assertThat(aggs.get(x, y), is(types[(x+y) % types.length]));
+			}
+		}
+		assertThat(aggs.get(9, 9), is(nullValue()));
+		assertThat(aggs.get(-1, 0), is(MC_TYPE.empty));
+	}
+}
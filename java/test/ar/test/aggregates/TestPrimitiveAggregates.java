@@ -0,0 +1,119 @@
+package ar.test.aggregates;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import ar.Aggregates;
+import ar.Aggregator;
+import ar.aggregates.AggregateUtils;
+import ar.aggregates.Updater;
+import ar.aggregates.implementations.AtomicDoubleAggregates;
+import ar.aggregates.implementations.AtomicIntAggregates;
+import ar.aggregates.implementations.RefFlatAggregates;
+import ar.aggregates.wrappers.TouchedBoundsWrapper;
+import ar.glyphsets.GlyphList;
+import ar.glyphsets.SimpleGlyph;
+import ar.renderers.AggregationStrategies;
+import ar.renderers.ParallelRenderer;
+import ar.rules.Numbers;
+import ar.selectors.TouchesPixel;
+
+public class TestPrimitiveAggregates {
+	@Test
+	public void updaterSelection() {
+		Aggregator<Object,Integer> count = new Numbers.Count<>();
+		Aggregates<Integer> ints = AggregateUtils.make(10, 10, 0);
+		Aggregates<Integer> refs = new RefFlatAggregates<>(10, 10, 0);
+
+		assertThat(Updater.make(ints, count), instanceOf(Updater.IntValued.class));
+		assertThat(Updater.make(TouchedBoundsWrapper.wrap(ints, false), count), instanceOf(Updater.IntValued.class));
+		assertThat(Updater.make(refs, count), instanceOf(Updater.Boxed.class));
+	}
+
+	@Test
+	public void pointsMatchBoxed() {
+		GlyphList<Point2D, Object> glyphs = new GlyphList<>();
+		for (int i=0; i<1000; i++) {
+			glyphs.add(new SimpleGlyph<Point2D, Object>(new Point2D.Double(i%17, i%13), i));
+		}
+
+		Aggregator<Object,Integer> count = new Numbers.Count<>();
+		TouchesPixel.Points points = new TouchesPixel.Points();
+		Aggregates<Integer> ints = points.processSubset(glyphs, new AffineTransform(), AggregateUtils.make(20, 20, 0), count);
+		Aggregates<Integer> refs = points.processSubset(glyphs, new AffineTransform(), new RefFlatAggregates<>(20, 20, 0), count);
+
+		for (int x=0; x<20; x++) {
+			for (int y=0; y<20; y++) {
+				assertThat(String.format("Mismatch at %d,%d", x,y), ints.get(x,y), is(refs.get(x,y)));
+			}
+		}
+	}
+
+	@Test
+	public void unboxedRollup() {
+		Aggregator<Object,Integer> count = new Numbers.Count<>();
+		Aggregates<Integer> left = AggregateUtils.make(0,0,10,10, 0);
+		Aggregates<Integer> right = AggregateUtils.make(5,5,15,15, 0);
+		for (int x=0; x<15; x++) {
+			for (int y=0; y<15; y++) {
+				left.set(x, y, 1);
+				right.set(x, y, 2);
+			}
+		}
+
+		Aggregates<Integer> rslt = AggregationStrategies.horizontalRollup(left, right, count);
+		assertThat(rslt.get(0, 0), is(1));
+		assertThat(rslt.get(7, 7), is(3));
+		assertThat(rslt.get(14, 14), is(2));
+	}
+
+	@Test
+	public void sharedCanvasCounts() {
+		int[][] expected = new int[40][40];
+		GlyphList<Point2D, Object> glyphs = new GlyphList<>();
+		for (int i=0; i<100000; i++) {
+			glyphs.add(new SimpleGlyph<Point2D, Object>(new Point2D.Double(i%31, i%29), i));
+			expected[i%31][i%29]++;
+		}
+
+		Aggregator<Object,Integer> count = new Numbers.Count<>();
+		ParallelRenderer r = new ParallelRenderer(new ForkJoinPool(4), true);
+		Aggregates<Integer> shared = r.aggregate(glyphs, new TouchesPixel.Points(), count, new AffineTransform(), 40, 40);
+
+		assertThat(shared, instanceOf(AtomicIntAggregates.class));
+		for (int x=0; x<40; x++) {
+			for (int y=0; y<40; y++) {
+				assertThat(String.format("Mismatch at %d,%d", x,y), shared.get(x,y), is(expected[x][y]));
+			}
+		}
+	}
+
+	@Test
+	public void sharedCanvasSums() {
+		double[][] expected = new double[40][40];
+		GlyphList<Point2D, Integer> glyphs = new GlyphList<>();
+		for (int i=0; i<100000; i++) {
+			glyphs.add(new SimpleGlyph<Point2D, Integer>(new Point2D.Double(i%31, i%29), i%7));
+			expected[i%31][i%29] += i%7;
+		}
+
+		Aggregator<Integer,Double> sum = new Numbers.Sum<>();
+		ParallelRenderer r = new ParallelRenderer(new ForkJoinPool(4), true);
+		Aggregates<Double> shared = r.aggregate(glyphs, new TouchesPixel.Points(), sum, new AffineTransform(), 40, 40);
+		Aggregates<Double> rolled = new ParallelRenderer(new ForkJoinPool(4)).aggregate(glyphs, new TouchesPixel.Points(), sum, new AffineTransform(), 40, 40);
+
+		assertThat(shared, instanceOf(AtomicDoubleAggregates.class));
+		for (int x=0; x<40; x++) {
+			for (int y=0; y<40; y++) {
+				assertThat(String.format("Mismatch at %d,%d", x,y), shared.get(x,y), is(expected[x][y]));
+				assertThat(String.format("Roll-up mismatch at %d,%d", x,y), rolled.get(x,y), is(expected[x][y]));
+			}
+		}
+	}
+}
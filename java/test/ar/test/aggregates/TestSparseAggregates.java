@@ -0,0 +1,190 @@
+package ar.test.aggregates;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import ar.Aggregates;
+import ar.Aggregator;
+import ar.Renderer;
+import ar.Transfer;
+import ar.aggregates.AggregateUtils;
+import ar.aggregates.implementations.SparseAggregates;
+import ar.glyphsets.GlyphList;
+import ar.glyphsets.SimpleGlyph;
+import ar.renderers.AggregationStrategies;
+import ar.renderers.ParallelRenderer;
+import ar.rules.Numbers;
+import ar.selectors.TouchesPixel;
+
+public class TestSparseAggregates {
+	@Test
+	public void allocatesOnWrite() {
+		SparseAggregates<Integer> aggs = SparseAggregates.make(-10, 0, 190, 100, 0, 16);
+		assertThat(aggs, instanceOf(Aggregates.IntValued.class));
+		assertThat(aggs.tilesX(), is(13));
+		assertThat(aggs.tilesY(), is(7));
+		assertThat(aggs.touchedTiles(), is(0));
+		
+		aggs.set(5, 5, 0);
+		assertThat("Default value allocated a tile", aggs.touchedTiles(), is(0));
+		
+		aggs.set(-10, 0, 3);
+		aggs.set(20, 5, 4);
+		((Aggregates.IntValued) aggs).setInt(189, 99, 5);
+		aggs.set(500, 500, 6);
+		assertThat(aggs.touchedTiles(), is(3));
+		assertThat(aggs.get(-10, 0), is(3));
+		assertThat(aggs.get(20, 5), is(4));
+		assertThat(aggs.get(189, 99), is(5));
+		assertThat(aggs.get(500, 500), is(0));
+		assertThat(aggs.get(100, 50), is(0));
+		assertThat(aggs.touched(100, 50), is(false));
+		
+		AggregateUtils.fill(aggs, 0, -10, 0, 30, 20);
+		assertThat("Tiles inside of the region not released", aggs.touchedTiles(), is(1));
+		assertThat(aggs.get(-10, 0), is(0));
+		assertThat(aggs.get(20, 5), is(0));
+		assertThat(aggs.get(189, 99), is(5));
+	}
+	
+	@Test
+	public void rollupTiles() {
+		Aggregator<Object,Integer> count = new Numbers.Count<>();
+		SparseAggregates<Integer> left = SparseAggregates.make(0, 0, 256, 256, 0, 32);
+		SparseAggregates<Integer> right = SparseAggregates.make(0, 0, 256, 256, 0, 32);
+		left.set(1, 1, 1);
+		left.set(100, 100, 2);
+		right.set(100, 100, 3);
+		right.set(200, 10, 4);
+		
+		Aggregates<Integer> rslt = AggregationStrategies.horizontalRollup(left, right, count);
+		assertThat(rslt, is((Aggregates<Integer>) left));
+		assertThat(left.touchedTiles(), is(3));
+		assertThat(rslt.get(1, 1), is(1));
+		assertThat(rslt.get(100, 100), is(5));
+		assertThat(rslt.get(200, 10), is(4));
+		
+		right.set(200, 10, 0);
+		assertThat("Tile shared with source", rslt.get(200, 10), is(4));
+	}
+	
+	@Test
+	public void sparseTargetInPool() throws Exception {
+		final Aggregator<Object,Integer> count = new Numbers.Count<>();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		for (int run=0; run<20; run++) {
+			final SparseAggregates<Integer> left = SparseAggregates.make(0, 0, 1000, 1000, 0, 64);
+			final Aggregates<Integer> right = SparseAggregates.make(0, 0, 600, 600, 0, 64);
+			for (int x=0; x<600; x++) {
+				for (int y=0; y<600; y++) {right.set(x, y, 1);}
+			}
+			left.set(999, 999, 1);
+			
+			Aggregates<Integer> rslt = pool.submit(new Callable<Aggregates<Integer>>() {
+				public Aggregates<Integer> call() {return AggregationStrategies.horizontalRollup(left, right, count, 1000);}
+			}).get();
+			for (int x=0; x<600; x++) {
+				for (int y=0; y<600; y++) {
+					assertThat(String.format("Lost update at %d,%d in run %d", x, y, run), rslt.get(x, y), is(1));
+				}
+			}
+			assertThat(rslt.get(999, 999), is(1));
+		}
+	}
+	
+	@Test
+	public void positionalTransfer() {
+		SparseAggregates<Integer> aggs = SparseAggregates.make(0, 0, 256, 256, 0, 32);
+		aggs.set(10, 10, 5);
+		Transfer.Local<Integer, Integer> t = new Transfer.Local<Integer, Integer>() {
+			public Integer emptyValue() {return 0;}
+			public Transfer.Specialized<Integer, Integer> specialize(Aggregates<? extends Integer> aggregates) {return this;}
+			public Aggregates<Integer> process(Aggregates<? extends Integer> aggregates, Renderer rend) {return rend.transfer(aggregates, this);}
+			public Integer at(int x, int y, Aggregates<? extends Integer> aggregates) {
+				return x == 200 && y == 200 ? -1 : aggregates.get(x, y);
+			}
+		};
+		
+		Aggregates<Integer> rslt = new ParallelRenderer(new ForkJoinPool(4)).transfer(aggs, t);
+		assertThat(rslt.get(10, 10), is(5));
+		assertThat(rslt.get(200, 200), is(-1));
+		assertThat(rslt.get(100, 100), is(0));
+		assertThat(((SparseAggregates<?>) rslt).touchedTiles(), is(2));
+	}
+	
+	@Test
+	public void skipsUntouchedTiles() {
+		SparseAggregates<Integer> aggs = SparseAggregates.make(0, 0, 256, 256, 0, 32);
+		aggs.set(10, 10, 5);
+		final AtomicInteger calls = new AtomicInteger();
+		Transfer.PositionIndependent<Integer, Integer> t = new Transfer.PositionIndependent<Integer, Integer>() {
+			public Integer emptyValue() {return 0;}
+			public Transfer.Specialized<Integer, Integer> specialize(Aggregates<? extends Integer> aggregates) {return this;}
+			public Aggregates<Integer> process(Aggregates<? extends Integer> aggregates, Renderer rend) {return rend.transfer(aggregates, this);}
+			public Integer at(int x, int y, Aggregates<? extends Integer> aggregates) {
+				calls.incrementAndGet();
+				return aggregates.get(x, y)+1;
+			}
+		};
+		
+		Aggregates<Integer> rslt = new ParallelRenderer(new ForkJoinPool(4)).transfer(aggs, t);
+		assertThat(rslt.get(10, 10), is(6));
+		assertThat(rslt.get(200, 200), is(1));
+		assertThat(((SparseAggregates<?>) rslt).touchedTiles(), is(1));
+		assertThat("Untouched tiles transferred", calls.get(), is(32*32+1));
+	}
+	
+	@Test
+	public void sparseRender() {
+		int width = 512, height = 512;
+		int[][] expected = new int[width][height];
+		GlyphList<Point2D, Object> glyphs = new GlyphList<>();
+		for (int i=0; i<2000; i++) {
+			int x = (i*37)%width;
+			int y = (i*7)%(height/4);
+			glyphs.add(new SimpleGlyph<Point2D, Object>(new Point2D.Double(x, y), i));
+			expected[x][y]++;
+		}
+		glyphs.add(new SimpleGlyph<Point2D, Object>(new Point2D.Double(width-1, height-1), 0));
+		expected[width-1][height-1]++;
+		
+		long ratio = ParallelRenderer.SPARSE_TASK_RATIO;
+		long minBins = ParallelRenderer.SPARSE_MIN_BINS;
+		try {
+			ParallelRenderer.SPARSE_TASK_RATIO = 1;
+			ParallelRenderer.SPARSE_MIN_BINS = 0;
+			ParallelRenderer r = new ParallelRenderer(new ForkJoinPool(4));
+			Aggregates<Integer> aggs = r.aggregate(glyphs, new TouchesPixel.Points(), new Numbers.Count<>(), new AffineTransform(), width, height);
+			
+			assertThat(aggs, instanceOf(SparseAggregates.class));
+			SparseAggregates<?> sparse = (SparseAggregates<?>) aggs;
+			assertTrue("No untouched tiles", sparse.touchedTiles() < sparse.tilesX()*sparse.tilesY());
+			for (int x=0; x<width; x++) {
+				for (int y=0; y<height; y++) {
+					assertThat(String.format("Mismatch at %d,%d", x,y), aggs.get(x,y), is(expected[x][y]));
+				}
+			}
+			
+			Numbers.FixedInterpolate<Integer> t = new Numbers.FixedInterpolate<>(Color.white, Color.red, 0, 10);
+			Aggregates<Color> colors = r.transfer(aggs, t);
+			assertThat(colors, instanceOf(SparseAggregates.class));
+			for (int x=0; x<width; x++) {
+				for (int y=0; y<height; y++) {
+					assertThat(String.format("Mismatch at %d,%d", x,y), colors.get(x,y), is(t.at(x, y, aggs)));
+				}
+			}
+		} finally {
+			ParallelRenderer.SPARSE_TASK_RATIO = ratio;
+			ParallelRenderer.SPARSE_MIN_BINS = minBins;
+		}
+	}
+}
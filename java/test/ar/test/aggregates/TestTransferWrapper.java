@@ -0,0 +1,61 @@
+package ar.test.aggregates;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+import ar.Aggregates;
+import ar.Transfer;
+import ar.aggregates.AggregateUtils;
+import ar.aggregates.wrappers.TransferWrapper;
+import ar.rules.Numbers;
+import ar.test.TestResources;
+
+public class TestTransferWrapper {
+	@Test
+	public void memoizedMatchesEager() {
+		Aggregates<Integer> counts = AggregateUtils.make(-10, 5, 300, 200, 0);
+		for (int x=counts.lowX(); x<counts.highX(); x++) {
+			for (int y=counts.lowY(); y<counts.highY(); y++) {counts.set(x, y, (x*y)%20);}
+		}
+		
+		Transfer.ItemWise<Number, Color> t = new Numbers.FixedInterpolate<>(Color.white, Color.red, 0, 20);
+		Aggregates<Color> eager = TestResources.RENDERER.transfer(counts, t);
+		TransferWrapper.Memoized<Number, Color> lazy = new TransferWrapper.Memoized<>(counts, t, 64);
+		
+		assertThat(lazy.computedTiles(), is(0));
+		assertThat(lazy.get(0, 10), is(eager.get(0, 10)));
+		assertThat(lazy.computedTiles(), is(1));
+		
+		for (int x=counts.lowX(); x<counts.highX(); x++) {
+			for (int y=counts.lowY(); y<counts.highY(); y++) {
+				assertThat(String.format("Mismatch at %d,%d", x,y), lazy.get(x, y), is(eager.get(x, y)));
+			}
+		}
+		assertThat(lazy.computedTiles(), is(5*4));
+	}
+	
+	@Test
+	public void memoizedImage() {
+		Aggregates<Integer> counts = AggregateUtils.make(-10, 5, 300, 200, 0);
+		for (int x=counts.lowX(); x<counts.highX(); x++) {
+			for (int y=counts.lowY(); y<counts.highY(); y++) {counts.set(x, y, (x*y)%20);}
+		}
+		
+		Transfer.ItemWise<Number, Color> t = new Numbers.FixedInterpolate<>(Color.white, Color.red, 0, 20);
+		TransferWrapper.Memoized<Number, Color> lazy = new TransferWrapper.Memoized<>(counts, t, 64);
+		BufferedImage expected = AggregateUtils.asImage(new TransferWrapper<>(counts, t), 100, 50, Color.white);
+		BufferedImage actual = AggregateUtils.asImage(lazy, 100, 50, Color.white);
+		
+		assertThat("Only visible tiles computed", lazy.computedTiles(), is(2*1));
+		for (int x=0; x<100; x++) {
+			for (int y=0; y<50; y++) {
+				assertThat(String.format("Mismatch at %d,%d", x,y), actual.getRGB(x, y), is(expected.getRGB(x, y)));
+			}
+		}
+	}
+}
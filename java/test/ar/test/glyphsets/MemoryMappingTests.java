@@ -2,22 +2,32 @@ package ar.test.glyphsets;
 
 import static org.junit.Assert.*;
 
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
 import java.io.File;
+import java.util.concurrent.ForkJoinPool;
+
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import ar.Aggregates;
+import ar.Aggregator;
 import ar.Glyph;
 import ar.Glyphset;
+import ar.Renderer;
 import ar.glyphsets.GlyphList;
 import ar.glyphsets.MemMapList;
 import ar.glyphsets.implicitgeometry.Indexed;
 import ar.glyphsets.implicitgeometry.IndexedEncoding;
+import ar.renderers.ParallelRenderer;
+import ar.rules.Numbers;
+import ar.selectors.TouchesPixel;
 import ar.util.DelimitedReader;
 import ar.util.memoryMapping.BigFileByteBuffer;
 import ar.util.memoryMapping.MemMapEncoder;
 import ar.util.memoryMapping.MemMapEncoder.TYPE;
+import ar.util.memoryMapping.SharedMappedFile;
 import ar.util.Util;
 
 public class MemoryMappingTests {
@@ -60,6 +70,42 @@ public class MemoryMappingTests {
 		}
 	}
 	
+	@Test
+	public void scanMatchesGet() throws Exception {
+		final Glyph<?,?>[] previous = new Glyph<?,?>[1];
+		final int[] at = new int[]{10};
+		((Glyphset.Scannable<Rectangle2D, Integer>) mm).scan(10, 60, new Glyphset.Visitor<Rectangle2D, Integer>() {
+			public void visit(Glyph<? extends Rectangle2D, ? extends Integer> glyph) {
+				assertEquals("Mismatched shape at " + at[0], mm.get(at[0]).shape(), glyph.shape());
+				assertEquals("Mismatched value at " + at[0], mm.get(at[0]).info(), glyph.info());
+				if (previous[0] != null) {assertSame("Glyph not reused", previous[0], glyph);}
+				previous[0] = glyph;
+				at[0]++;
+			}
+		});
+		assertEquals("Items visited", 60, at[0]);
+		
+		final long[] tail = new long[1];
+		((Glyphset.Scannable<Rectangle2D, Integer>) mm).scan(mm.size()-5, Long.MAX_VALUE, new Glyphset.Visitor<Rectangle2D, Integer>() {
+			public void visit(Glyph<? extends Rectangle2D, ? extends Integer> glyph) {tail[0]++;}
+		});
+		assertEquals("Items visited past the end", 5, tail[0]);
+	}
+
+	@Test
+	public void scannedRender() throws Exception {
+		AffineTransform view = Util.zoomFit(ref.bounds(), 100, 100);
+		Aggregator<Object, Integer> count = new Numbers.Count<>();
+		Renderer r = new ParallelRenderer(new ForkJoinPool(4));
+		Aggregates<Integer> expected = r.aggregate(ref, new TouchesPixel.Rectangles(), count, view, 100, 100);
+		Aggregates<Integer> actual = r.aggregate(mm, new TouchesPixel.Rectangles(), count, view, 100, 100);
+		for (int x=0; x<100; x++) {
+			for (int y=0; y<100; y++) {
+				assertEquals(String.format("Mismatch at %d,%d", x, y), expected.get(x, y), actual.get(x, y));
+			}
+		}
+	}
+	
 	@Test
 	public void bounds() throws Exception {
 		assertEquals(ref.bounds(), mm.bounds());
@@ -89,6 +135,58 @@ public class MemoryMappingTests {
 		
 	}
 	
+	@Test
+	public void typedAccess() throws Exception {
+		BigFileByteBuffer buffer = new BigFileByteBuffer(new File(hbinName), 1000);
+		MemMapEncoder.Header header = MemMapEncoder.Header.from(buffer);
+		IndexedEncoding entry = new IndexedEncoding(header.types, header.dataTableOffset, buffer);
+		for (int i=0; i<20; i++) {
+			entry.at(header.dataTableOffset + i*header.recordLength);
+			assertEquals("Double mismatch at " + i, (Double) entry.get(0), entry.getDouble(0), 0);
+			assertEquals("Int mismatch at " + i, entry.get(2), entry.getInt(2));
+			assertEquals("Long mismatch at " + i, ((Integer) entry.get(2)).longValue(), entry.getLong(2));
+			assertEquals("Valuer mismatch at " + i, entry.getDouble(1), new Indexed.ToDouble(1).doubleValue(entry), 0);
+		}
+		
+		Indexed.Converter converter = new Indexed.Converter(new Object[]{"12", "3.5", "7"}, Indexed.Converter.TYPE.INT, Indexed.Converter.TYPE.DOUBLE, Indexed.Converter.TYPE.LONG);
+		assertEquals(12, converter.getInt(0));
+		assertEquals(3.5, converter.getDouble(1), 0);
+		assertEquals(3, converter.getInt(1));
+		assertEquals(7L, converter.getLong(2));
+		
+		Indexed primitives = new Indexed.ArrayWrapper(new double[]{1.5, 2});
+		Indexed objects = new Indexed.ArrayWrapper(new Object[]{1.5, 2});
+		assertEquals(1.5, primitives.getDouble(0), 0);
+		assertEquals(1, primitives.getInt(0));
+		assertEquals(2L, primitives.getLong(1));
+		assertEquals(-2, new Indexed.ArrayWrapper(new float[]{-2.5f}).getInt(0));
+		assertEquals(7L, new Indexed.ArrayWrapper(new short[]{7}).getLong(0));
+		assertEquals(2, objects.getInt(1));
+		assertEquals((Integer) 2, new Indexed.ToInt(1).value(objects));
+	}
+	
+	@Test
+	public void sharedWindows() throws Exception {
+		BigFileByteBuffer reference = new BigFileByteBuffer(new File(hbinName), 1000);
+		SharedMappedFile small = new SharedMappedFile(new File(hbinName), 20);
+		assertEquals(reference.fileSize(), small.capacity());
+		for (long p=0; p<reference.fileSize()-8; p+=3) {
+			assertEquals("Mismatch at " + p, reference.getLong(p), small.getLong(p));
+		}
+		
+		SharedMappedFile view = small.view(100, 200).view(10, 50);
+		assertEquals(40, view.capacity());
+		assertEquals(reference.getDouble(114), view.getDouble(4), 0);
+		assertEquals(reference.getInt(110), view.getInt());
+		assertEquals(4, view.position());
+		
+		byte[] expected = new byte[37];
+		byte[] actual = new byte[37];
+		reference.get(expected, 115, 37);
+		small.get(actual, 115, 37);
+		assertArrayEquals(expected, actual);
+	}
+	
 	@Test
 	public void subset() throws Exception {
 		Glyphset<Rectangle2D, Integer> glyphs = mm.segment(0, 10);
@@ -105,6 +203,10 @@ public class MemoryMappingTests {
 		Glyphset<Rectangle2D, Integer> glyphs2 = glyphs.segment(0, 5);
 		//assertEquals("Subset-subset segment check", 5, glyphs2.segments());
 		assertEquals("Subset-subset size check", 5, glyphs2.size());
+		
+		Glyphset.RandomAccess<Rectangle2D, Integer> nested = (Glyphset.RandomAccess<Rectangle2D, Integer>) mm.segment(20, 40).segment(5, 10);
+		assertEquals("Nested segment shape", mm.get(25).shape(), nested.get(0).shape());
+		assertEquals("Nested segment value", mm.get(29).info(), nested.get(4).info());
 	}
 	
 }
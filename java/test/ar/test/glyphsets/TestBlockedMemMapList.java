@@ -0,0 +1,178 @@
+package ar.test.glyphsets;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ar.Aggregates;
+import ar.Aggregator;
+import ar.Glyph;
+import ar.Glyphset;
+import ar.Renderer;
+import ar.aggregates.Updater;
+import ar.aggregates.implementations.DoubleAggregates;
+import ar.glyphsets.BlockedMemMapList;
+import ar.glyphsets.MemMapList;
+import ar.glyphsets.implicitgeometry.Indexed;
+import ar.renderers.ParallelRenderer;
+import ar.rules.Numbers;
+import ar.selectors.TouchesPixel;
+import ar.util.memoryMapping.MemMapEncoder;
+
+public class TestBlockedMemMapList {
+	private static String csvName = "../data/circlepoints.csv";
+	private static File rowFile, blockedFile;
+	private static MemMapList<Rectangle2D, Integer> rows;
+	private static BlockedMemMapList<Rectangle2D, Integer> blocked;
+
+	@BeforeClass
+	public static void encode() throws Exception {
+		File csv = new File(csvName);
+		assertTrue("Source file not found: " + csvName, csv.exists());
+		rowFile = File.createTempFile("rows", ".hbin");
+		blockedFile = File.createTempFile("blocked", ".hbin");
+		MemMapEncoder.write(csv, 1, rowFile, "xxddi".toCharArray());
+		MemMapEncoder.writeBlocked(csv, 1, blockedFile, "xxddi".toCharArray(), 100);
+
+		rows = new MemMapList<>(rowFile, new Indexed.ToRect(.1, 0, 1), new Indexed.ToValue<Integer,Integer>(2));
+		blocked = new BlockedMemMapList<>(blockedFile, new Indexed.ToRect(.1, 0, 1), new Indexed.ToValue<Integer,Integer>(2));
+	}
+
+	@AfterClass
+	public static void removeTemps() {
+		rowFile.delete();
+		blockedFile.delete();
+	}
+
+	@Test
+	public void matchesRowFormat() {
+		assertThat(blocked.size(), is(rows.size()));
+		assertThat(blocked.blocks(), is((int) ((rows.size()+99)/100)));
+		long i = 0;
+		for (Glyph<Rectangle2D, Integer> g: blocked) {
+			assertThat("Shape at " + i, g.shape(), is(rows.get(i).shape()));
+			assertThat("Value at " + i, g.info(), is(rows.get(i).info()));
+			i++;
+		}
+		assertThat(i, is(rows.size()));
+		assertThat(blocked.bounds().contains(rows.bounds()), is(true));
+
+		assertThat(MemMapList.open(blockedFile, new Indexed.ToRect(.1, 0, 1), new Indexed.ToValue<Integer,Integer>(2)), instanceOf(BlockedMemMapList.class));
+		assertThat(MemMapList.open(rowFile, new Indexed.ToRect(.1, 0, 1), new Indexed.ToValue<Integer,Integer>(2)), instanceOf(MemMapList.class));
+	}
+
+	@Test
+	public void segments() {
+		Glyphset<Rectangle2D, Integer> segment = blocked.segment(150, 420).segment(30, 80);
+		assertThat(segment.size(), is(50L));
+		Iterator<Glyph<Rectangle2D, Integer>> it = segment.iterator();
+		assertThat(it.next().shape(), is(rows.get(180).shape()));
+
+		final long[] at = new long[]{181};
+		((Glyphset.Scannable<Rectangle2D, Integer>) segment).scan(1, 50, new Glyphset.Visitor<Rectangle2D, Integer>() {
+			public void visit(Glyph<? extends Rectangle2D, ? extends Integer> glyph) {
+				assertThat("Shape at " + at[0], (Rectangle2D) glyph.shape(), is(rows.get(at[0]).shape()));
+				at[0]++;
+			}
+		});
+		assertThat(at[0], is(230L));
+	}
+
+	@Test
+	public void valueFilter() {
+		int low = rows.get(0).info();
+		long expected = 0;
+		for (Glyph<Rectangle2D, Integer> g: rows) {if (g.info() == low) {expected++;}}
+
+		BlockedMemMapList<Rectangle2D, Integer> filtered = blocked.where(2, low, low);
+		assertThat(filtered.size(), is(expected));
+		for (Glyph<Rectangle2D, Integer> g: filtered) {assertThat(g.info(), is(low));}
+		
+		final long[] scanned = new long[1];
+		blocked.where(2, low, low).scan(0, Long.MAX_VALUE, new Glyphset.Visitor<Rectangle2D, Integer>() {
+			public void visit(Glyph<? extends Rectangle2D, ? extends Integer> glyph) {scanned[0]++;}
+		});
+		assertThat("Scan past the end", scanned[0], is(expected));
+		assertThat(blocked.where(2, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY).blocks(), is(0));
+	}
+
+	@Test
+	public void spatialSkipping() {
+		Rectangle2D all = rows.bounds();
+		Rectangle2D corner = new Rectangle2D.Double(all.getMinX(), all.getMinY(), all.getWidth()/4, all.getHeight()/4);
+		assertThat(blocked.within(all).blocks(), is(blocked.blocks()));
+		assertThat(blocked.within(corner).blocks(), is(not(blocked.blocks())));
+
+		//Zoomed into the corner, so most blocks are skipped by the selector
+		AffineTransform view = AffineTransform.getScaleInstance(400/corner.getWidth(), 400/corner.getHeight());
+		view.translate(-corner.getMinX(), -corner.getMinY());
+		Aggregator<Object, Integer> count = new Numbers.Count<>();
+		Renderer r = new ParallelRenderer(new ForkJoinPool(4));
+		Aggregates<Integer> expected = r.aggregate(rows, new TouchesPixel.Rectangles(), count, view, 100, 100);
+		Aggregates<Integer> actual = r.aggregate(blocked, new TouchesPixel.Rectangles(), count, view, 100, 100);
+		for (int x=0; x<100; x++) {
+			for (int y=0; y<100; y++) {
+				assertThat(String.format("Mismatch at %d,%d", x, y), actual.get(x, y), is(expected.get(x, y)));
+			}
+		}
+	}
+
+	@Test
+	public void numericScan() {
+		Indexed.ToPoint shaper = new Indexed.ToPoint(false, 0, 1);
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		Glyphset.NumericScannable<Point2D, Integer>[] sets = new Glyphset.NumericScannable[]{
+				new MemMapList<>(rowFile, shaper, new Indexed.ToInt(2)),
+				new BlockedMemMapList<>(blockedFile, shaper, new Indexed.ToInt(2))};
+		Glyphset<Point2D, Integer> boxed = new MemMapList<>(rowFile, shaper, new Indexed.ToValue<Integer,Integer>(2));
+		assertThat(((Glyphset.NumericScannable<?,?>) boxed).numeric(), is(false));
+
+		Rectangle2D all = rows.bounds();
+		AffineTransform view = AffineTransform.getScaleInstance(99/all.getWidth(), 99/all.getHeight());
+		view.translate(-all.getMinX(), -all.getMinY());
+		Aggregator<Integer, Double> sum = new Numbers.Sum<>();
+		Aggregator<Object, Integer> count = new Numbers.Count<>();
+		Renderer r = new ParallelRenderer(new ForkJoinPool(4));
+		Aggregates<Double> expectedSums = r.aggregate(boxed, new TouchesPixel.Points(), sum, view, 100, 100);
+		Aggregates<Integer> expectedCounts = r.aggregate(boxed, new TouchesPixel.Points(), count, view, 100, 100);
+		
+		for (Glyphset.NumericScannable<Point2D, Integer> glyphs: sets) {
+			assertThat(glyphs.numeric(), is(true));
+			final List<Double> values = new ArrayList<>();
+			glyphs.scanNumbers(0, Long.MAX_VALUE, new Glyphset.NumericVisitor<Point2D>() {
+				public void visit(Point2D shape, double value) {values.add(value);}
+			});
+			assertThat(values.size(), is((int) rows.size()));
+			for (int i=0; i<values.size(); i+=97) {assertThat("Value at " + i, values.get(i), is(rows.get(i).info().doubleValue()));}
+			
+			Aggregates<Double> direct = new TouchesPixel.Points().processSubset(glyphs, view, (Aggregates<Double>) new DoubleAggregates(0, 0, 100, 100, 0), sum);
+			assertThat(Updater.Numeric.make(direct, sum), is(notNullValue()));
+			for (int x=0; x<100; x++) {
+				for (int y=0; y<100; y++) {assertThat(String.format("Direct sum mismatch at %d,%d", x, y), direct.get(x, y), is(expectedSums.get(x, y)));}
+			}
+			
+			for (Renderer rend: new Renderer[]{r, new ParallelRenderer(new ForkJoinPool(4), true)}) {
+				Aggregates<Double> sums = rend.aggregate(glyphs, new TouchesPixel.Points(), sum, view, 100, 100);
+				Aggregates<Integer> counts = rend.aggregate(glyphs, new TouchesPixel.Points(), count, view, 100, 100);
+				for (int x=0; x<100; x++) {
+					for (int y=0; y<100; y++) {
+						assertThat(String.format("Sum mismatch at %d,%d", x, y), sums.get(x, y), is(expectedSums.get(x, y)));
+						assertThat(String.format("Count mismatch at %d,%d", x, y), counts.get(x, y), is(expectedCounts.get(x, y)));
+					}
+				}
+			}
+		}
+	}
+}
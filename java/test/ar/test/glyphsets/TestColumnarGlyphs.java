@@ -0,0 +1,113 @@
+package ar.test.glyphsets;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import ar.Aggregates;
+import ar.Aggregator;
+import ar.Glyph;
+import ar.Glyphset;
+import ar.Renderer;
+import ar.glyphsets.ColumnarGlyphs;
+import ar.glyphsets.GlyphList;
+import ar.glyphsets.SimpleGlyph;
+import ar.glyphsets.WrappedCollection;
+import ar.glyphsets.implicitgeometry.Indexed;
+import ar.renderers.ParallelRenderer;
+import ar.renderers.SerialRenderer;
+import ar.rules.Numbers;
+import ar.selectors.TouchesPixel;
+import ar.util.Util;
+
+public class TestColumnarGlyphs {
+	private static <A> void assertSame(Aggregates<A> expected, Aggregates<A> actual) {
+		for (int x=expected.lowX(); x<expected.highX(); x++) {
+			for (int y=expected.lowY(); y<expected.highY(); y++) {
+				assertThat(String.format("Mismatch at %d,%d", x, y), actual.get(x, y), is(expected.get(x, y)));
+			}
+		}
+	}
+
+	@Test
+	public void pointsMatchGlyphList() {
+		GlyphList<Point2D, Integer> list = new GlyphList<>();
+		ColumnarGlyphs<Point2D, Integer> columns = new ColumnarGlyphs<>();
+		for (int i=0; i<5000; i++) {
+			Glyph<Point2D, Integer> g = new SimpleGlyph<Point2D, Integer>(new Point2D.Double((i*7)%53 - 3.5, (i*11)%47 + .25), i);
+			list.add(g);
+			columns.add(g);
+		}
+		assertThat(columns.values(), is(ColumnarGlyphs.VALUES.INT));
+		assertThat(columns.bounds(), is((Rectangle2D) new Rectangle2D.Double(-3.5, .25, 52, 46)));
+		assertThat(Util.bounds(list).contains(columns.bounds()), is(true));
+		assertThat(columns.get(17).shape(), is(list.get(17).shape()));
+
+		AffineTransform view = new AffineTransform(1.5, .2, 0, 1.25, 4, -2);
+		Aggregator<Object, Integer> count = new Numbers.Count<>();
+		for (Renderer r: new Renderer[]{new SerialRenderer(), new ParallelRenderer(new ForkJoinPool(4))}) {
+			Aggregates<Integer> expected = r.aggregate(list, TouchesPixel.make(list), count, view, 60, 60);
+			Aggregates<Integer> actual = r.aggregate(columns, TouchesPixel.make(columns), count, view, 60, 60);
+			assertSame(expected, actual);
+		}
+	}
+
+	@Test
+	public void rectanglesMatchGlyphList() {
+		ArrayList<Indexed> data = new ArrayList<>();
+		for (int i=0; i<500; i++) {
+			data.add(new Indexed.ArrayWrapper(new Object[]{(i*3)%40, (i*5)%30, "c" + (i%4)}));
+		}
+		Glyphset.RandomAccess<Rectangle2D, Object> list = WrappedCollection.toList(data, new Indexed.ToRect(2.5, 0, 1), new Indexed.ToValue<Object,Object>(2));
+		ColumnarGlyphs<Rectangle2D, Object> columns = WrappedCollection.toColumns(data, new Indexed.ToRect(2.5, 0, 1), new Indexed.ToValue<Object,Object>(2));
+		assertThat(columns.rectangles(), is(true));
+		assertThat(columns.values(), is(ColumnarGlyphs.VALUES.DICTIONARY));
+		assertThat(columns.dictionary().size(), is(4));
+		assertThat(columns.bounds(), is(Util.bounds(list)));
+
+		AffineTransform view = AffineTransform.getScaleInstance(1.3, 1.3);
+		Aggregator<Object, Integer> count = new Numbers.Count<>();
+		for (Renderer r: new Renderer[]{new SerialRenderer(), new ParallelRenderer(new ForkJoinPool(4))}) {
+			assertSame(r.aggregate(list, TouchesPixel.make(list), count, view, 60, 60),
+					r.aggregate(columns, TouchesPixel.make(columns), count, view, 60, 60));
+		}
+	}
+
+	@Test
+	public void valuesSwitchToDictionary() {
+		ColumnarGlyphs<Point2D, Object> columns = new ColumnarGlyphs<>();
+		columns.add(1, 1, (Object) 3);
+		columns.add(2, 2, (Object) 4);
+		assertThat(columns.values(), is(ColumnarGlyphs.VALUES.INT));
+		columns.add(3, 3, (Object) "five");
+		columns.add(4, 4, null);
+		assertThat(columns.values(), is(ColumnarGlyphs.VALUES.DICTIONARY));
+		assertThat(columns.get(0).info(), is((Object) 3));
+		assertThat(columns.get(2).info(), is((Object) "five"));
+		assertThat(columns.get(3).info(), is(nullValue()));
+	}
+
+	@Test
+	public void segments() {
+		ColumnarGlyphs<Point2D, Double> columns = new ColumnarGlyphs<>();
+		for (int i=0; i<100; i++) {columns.add(i, -i, i/2d);}
+		assertThat(columns.values(), is(ColumnarGlyphs.VALUES.DOUBLE));
+
+		Glyphset<Point2D, Double> segment = columns.segment(10, 20);
+		assertThat(segment.size(), is(10L));
+		assertThat(((ColumnarGlyphs<Point2D, Double>) segment).get(0).info(), is(5d));
+		assertThat(segment.bounds(), is((Rectangle2D) new Rectangle2D.Double(10, -19, 9, 9)));
+
+		try {
+			columns.add(new SimpleGlyph<Point2D, Double>(null, 1d));
+			fail("Accepted a glyph without a point.");
+		} catch (IllegalArgumentException e) {}
+	}
+}
@@ -2,10 +2,14 @@ package ar.test.renderers;
 
 import static org.junit.Assert.*;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
 import org.junit.Test;
 
 import ar.Aggregates;
 import ar.Aggregator;
+import ar.aggregates.AggregateUtils;
 import ar.aggregates.implementations.ConstantAggregates;
 import ar.aggregates.implementations.RefFlatAggregates;
 import ar.renderers.AggregationStrategies;
@@ -53,4 +57,38 @@ public class TestAggregationStrategies {
 		Aggregates<Integer> c2 = AggregationStrategies.horizontalRollup(id, ten, red);
 		assertEquals("Error with left-side id", c2,ten);
 	}
+	
+	private static void testTiledRollup(final Aggregates<Integer> left, final Aggregates<Integer> right) {
+		final Aggregator<Object,Integer> red = new Numbers.Count<>();
+		for (int x=0; x<200; x++) {
+			for (int y=0; y<150; y++) {
+				left.set(x, y, x);
+				right.set(x, y, y);
+			}
+		}
+		
+		Aggregates<Integer> rslt = new ForkJoinPool(4).invoke(new RecursiveTask<Aggregates<Integer>>() {
+			private static final long serialVersionUID = 1L;
+			protected Aggregates<Integer> compute() {return AggregationStrategies.horizontalRollup(left, right, red, 100);}
+		});
+		
+		assertEquals(0, rslt.lowX());
+		assertEquals(200, rslt.highX());
+		for (int x=0; x<200; x++) {
+			for (int y=0; y<150; y++) {
+				int expected = (x < left.highX() && y < left.highY() ? x : 0) + (x >= right.lowX() && y >= right.lowY() ? y : 0);
+				assertEquals(String.format("Rollup incorrect at %d, %d",x,y), (Integer) expected, rslt.get(x,y));
+			}
+		}
+	}
+
+	@Test
+	public void tiledRollupIntArrays() {
+		testTiledRollup(AggregateUtils.make(0,0,150,150, 0), AggregateUtils.make(50,10,200,150, 0));
+	}
+
+	@Test
+	public void tiledRollupReferences() {
+		testTiledRollup(new RefFlatAggregates<Integer>(0,0,150,150, 0), new RefFlatAggregates<Integer>(50,10,200,150, 0));
+	}
 }
@@ -0,0 +1,206 @@
+package ar.test.renderers;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import ar.Aggregates;
+import ar.Aggregator;
+import ar.Glyph;
+import ar.Glyphset;
+import ar.Selector;
+import ar.glyphsets.ColumnarGlyphs;
+import ar.glyphsets.GlyphList;
+import ar.glyphsets.SimpleGlyph;
+import ar.aggregates.wrappers.TouchedBoundsWrapper;
+import ar.renderers.AggregateBuffers;
+import ar.renderers.ParallelRenderer;
+import ar.renderers.ProgressReporter;
+import ar.renderers.TaskSizer;
+import ar.renderers.tasks.GlyphParallelAggregation;
+import ar.rules.Categories;
+import ar.rules.Numbers;
+import ar.selectors.TouchesPixel;
+
+public class TestParallelRenderer {
+	@Test
+	public void clipsToViewport() {
+		GlyphList<Rectangle2D, Object> glyphs = new GlyphList<>();
+		for (int i=0; i<100; i++) {
+			glyphs.add(new SimpleGlyph<Rectangle2D, Object>(new Rectangle2D.Double(-1000, -1000, 2000, 2000), i));
+		}
+		
+		Aggregator<Object,Integer> count = new Numbers.Count<>();
+		ParallelRenderer r = new ParallelRenderer(new ForkJoinPool(4));
+		Aggregates<Integer> aggs = r.aggregate(glyphs, new TouchesPixel.Rectangles(), count, new AffineTransform(), 10, 20);
+		
+		assertThat(aggs.lowX(), is(0));
+		assertThat(aggs.lowY(), is(0));
+		assertThat(aggs.highX(), is(10));
+		assertThat(aggs.highY(), is(20));
+		for (int x=0; x<10; x++) {
+			for (int y=0; y<20; y++) {
+				assertThat(String.format("Mismatch at %d,%d", x,y), aggs.get(x,y), is(100));
+			}
+		}
+	}
+	
+	@Test
+	public void culledGlyphset() {
+		GlyphList<Point2D, Object> glyphs = new GlyphList<>();
+		for (int i=0; i<100; i++) {glyphs.add(new SimpleGlyph<Point2D, Object>(new Point2D.Double(100+i, 100), i));}
+		
+		ParallelRenderer r = new ParallelRenderer(new ForkJoinPool(4));
+		Aggregates<Integer> aggs = r.aggregate(glyphs, new TouchesPixel.Points(), new Numbers.Count<>(), new AffineTransform(), 10, 10);
+		assertThat(aggs.get(5, 5), is(0));
+	}
+	
+	@Test
+	public void culledTaskRanges() {
+		ColumnarGlyphs<Point2D, Object> glyphs = new ColumnarGlyphs<>();
+		for (int i=0; i<1000; i++) {glyphs.add(i, 0, i);}
+		
+		final AtomicLong processed = new AtomicLong();
+		Selector<Point2D> selector = new Selector<Point2D>() {
+			final Selector<Point2D> base = new TouchesPixel.Points();
+			public <I,A> Aggregates<A> processSubset(Glyphset<? extends Point2D, ? extends I> subset, AffineTransform view, Aggregates<A> target, Aggregator<I,A> op) {
+				processed.addAndGet(subset.size());
+				return base.processSubset(subset, view, target, op);
+			}
+			public boolean hitsBin(Glyph<? extends Point2D, ?> glyph, AffineTransform view, int x, int y) {return base.hitsBin(glyph, view, x, y);}
+		};
+		
+		GlyphParallelAggregation<Point2D, Object, Integer> task = new GlyphParallelAggregation<>(
+				glyphs, selector, new Numbers.Count<>(), new AffineTransform(), new Rectangle(0,0,10,10), 
+				100, new ProgressReporter.NOP(0), 0, glyphs.size());
+		Aggregates<Integer> aggs = new ForkJoinPool(4).invoke(task);
+		
+		for (int i=0; i<10; i++) {assertThat(String.format("Missing point %d", i), aggs.get(i,0), is(1));}
+		assertThat("Off-screen task ranges processed: " + processed.get(), processed.get() <= 100, is(true));
+	}
+	
+	@Test
+	public void includesMaxEdge() {
+		GlyphList<Point2D, Object> glyphs = new GlyphList<>();
+		for (int i=0; i<10; i++) {glyphs.add(new SimpleGlyph<Point2D, Object>(new Point2D.Double(i, i), i));}
+		
+		ParallelRenderer r = new ParallelRenderer(new ForkJoinPool(4));
+		Aggregates<Integer> aggs = r.aggregate(glyphs, new TouchesPixel.Points(), new Numbers.Count<>(), new AffineTransform(), 20, 20);
+		for (int i=0; i<10; i++) {
+			assertThat(String.format("Missing point %d", i), aggs.get(i,i), is(1));
+		}
+	}
+	
+	@Test
+	public void partiallyVisibleTasks() {
+		GlyphList<Point2D, Object> glyphs = new GlyphList<>();
+		for (int i=0; i<1000; i++) {glyphs.add(new SimpleGlyph<Point2D, Object>(new Point2D.Double(i, i%5), i));}
+		
+		ParallelRenderer r = new ParallelRenderer(new ForkJoinPool(4));
+		Aggregates<Integer> aggs = r.aggregate(glyphs, new TouchesPixel.Points(), new Numbers.Count<>(), new AffineTransform(), 10, 10);
+		for (int i=0; i<10; i++) {
+			assertThat(String.format("Missing point %d", i), aggs.get(i,i%5), is(1));
+		}
+		assertThat(aggs.highX() <= 10, is(true));
+	}
+	
+	@Test
+	public void adaptiveTaskSize() {
+		int[][] expected = new int[40][40];
+		GlyphList<Point2D, Object> glyphs = new GlyphList<>();
+		for (int i=0; i<200000; i++) {
+			glyphs.add(new SimpleGlyph<Point2D, Object>(new Point2D.Double(i%37, i%39), i));
+			expected[i%37][i%39]++;
+		}
+		
+		ParallelRenderer r = new ParallelRenderer(new ForkJoinPool(4));
+		TaskSizer.Adaptive[] sizers = new TaskSizer.Adaptive[2];
+		for (int pass=0; pass<2; pass++) {
+			Aggregates<Integer> aggs = r.aggregate(glyphs, new TouchesPixel.Points(), new Numbers.Count<>(), new AffineTransform(), 40, 40);
+			sizers[pass] = r.taskSizer();
+			for (int x=0; x<40; x++) {
+				for (int y=0; y<40; y++) {
+					assertThat(String.format("Mismatch at %d,%d (pass %d)", x,y, pass), aggs.get(x,y), is(expected[x][y]));
+				}
+			}
+		}
+		
+		TaskSizer.Adaptive sizer = r.taskSizer();
+		assertThat("Sizer shared between renders", sizers[0], is(not(sameInstance(sizers[1]))));
+		assertThat("Overhead not shared between renders", sizers[0].overheadMS(), is(sizers[1].overheadMS()));
+		assertThat(sizer.toString(), Double.isNaN(sizer.segmentsPerMS()), is(false));
+		assertThat(sizer.toString(), r.taskSize(glyphs) >= glyphs.size()/(4*TaskSizer.Adaptive.MAX_TASKS_PER_THREAD), is(true));
+		assertThat(sizer.toString(), r.taskSize(glyphs) <= glyphs.size()/(4*TaskSizer.Adaptive.MIN_TASKS_PER_THREAD), is(true));
+		
+		GlyphList<Point2D, Object> fewer = new GlyphList<>();
+		for (int i=0; i<1000; i++) {fewer.add(glyphs.get(i));}
+		assertThat("Task size not from the given glyphs", r.taskSize(fewer) <= fewer.size()/(4*TaskSizer.Adaptive.MIN_TASKS_PER_THREAD), is(true));
+	}
+	
+	@Test
+	public void memoryBudget() {
+		int[][] expected = new int[40][40];
+		GlyphList<Point2D, Object> glyphs = new GlyphList<>();
+		for (int i=0; i<100000; i++) {
+			glyphs.add(new SimpleGlyph<Point2D, Object>(new Point2D.Double(i%37, i%39), i));
+			expected[i%37][i%39]++;
+		}
+		
+		long budget = ParallelRenderer.AGGREGATE_MEMORY_BUDGET;
+		try {
+			for (long limit: new long[]{1, 3}) {
+				ParallelRenderer.AGGREGATE_MEMORY_BUDGET = limit*40*40*4;
+				ParallelRenderer r = new ParallelRenderer(new ForkJoinPool(4));
+				Aggregates<Integer> aggs = r.aggregate(glyphs, new TouchesPixel.Points(), new Numbers.Count<>(), new AffineTransform(), 40, 40);
+				for (int x=0; x<40; x++) {
+					for (int y=0; y<40; y++) {
+						assertThat(String.format("Mismatch at %d,%d (limit %d)", x,y, limit), aggs.get(x,y), is(expected[x][y]));
+					}
+				}
+			}
+		} finally {
+			ParallelRenderer.AGGREGATE_MEMORY_BUDGET = budget;
+		}
+	}
+	
+	@Test
+	public void bufferReservations() {
+		AggregateBuffers<Integer> buffers = AggregateBuffers.budgeted(new Numbers.Count<>(), 100, 3*100*4);
+		assertThat(buffers.limit(), is(3));
+		assertThat(buffers.reserve(), is(true));
+		assertThat(buffers.reserve(), is(true));
+		assertThat(buffers.reserve(), is(false));
+		
+		Aggregates<Integer> left = buffers.take(new Rectangle(0,0,10,10));
+		Aggregates<Integer> right = buffers.take(new Rectangle(0,0,10,10));
+		left.set(1, 1, 5);
+		right.set(2, 2, 7);
+		buffers.merged(left, right, left);
+		
+		Aggregates<Integer> recycled = buffers.take(new Rectangle(2,2,5,5));
+		assertThat("Containing buffer not reused", ((TouchedBoundsWrapper<Integer>) recycled).base(), is(sameInstance(((TouchedBoundsWrapper<Integer>) right).base())));
+		assertThat(recycled.get(2, 2), is(0));
+		assertThat(recycled.highX() <= recycled.lowX(), is(true));
+		
+		buffers.release(recycled);
+		assertThat("Idle buffer not traded for a reservation", buffers.reserve(), is(true));
+		assertThat("Idle buffer not counted", buffers.reserve(), is(false));
+	}
+
+	@Test
+	public void accumulatorsInBudget() {
+		long refs = ParallelRenderer.REFERENCE_BIN_BYTES;
+		assertThat("Accumulators not counted", 
+				AggregateBuffers.budgeted(new Categories.CountCategories<String>(), 100, 3*100*2*refs).limit(), is(3));
+		assertThat("Dense categories charged for accumulators", 
+				AggregateBuffers.budgeted(new Categories.CountCategories<String>(null, new String[]{"a", "b"}), 100, 3*100*refs).limit(), is(3));
+	}
+}
@@ -0,0 +1,93 @@
+package ar.test.renderers;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.awt.Color;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import ar.Aggregates;
+import ar.Aggregator;
+import ar.Transfer;
+import ar.glyphsets.GlyphList;
+import ar.glyphsets.SimpleGlyph;
+import ar.glyphsets.implicitgeometry.MathValuers;
+import ar.renderers.SerialRenderer;
+import ar.renderers.TileRenderer;
+import ar.rules.General;
+import ar.rules.Numbers;
+import ar.rules.combinators.Seq;
+import ar.selectors.TouchesPixel;
+
+public class TestTileRenderer {
+	@Test
+	public void pointsMatchSerial() {
+		GlyphList<Point2D, Object> glyphs = new GlyphList<>();
+		for (int i=0; i<10000; i++) {glyphs.add(new SimpleGlyph<Point2D, Object>(new Point2D.Double(i%97, i%53), i));}
+		
+		Aggregator<Object,Integer> count = new Numbers.Count<>();
+		AffineTransform vt = AffineTransform.getScaleInstance(.75, .75);
+		Aggregates<Integer> ref = new SerialRenderer().aggregate(glyphs, new TouchesPixel.Points(), count, vt, 60, 50);
+		Aggregates<Integer> tiles = new TileRenderer(new ForkJoinPool(4), 16).aggregate(glyphs, new TouchesPixel.Points(), count, vt, 60, 50);
+		
+		for (int x=0; x<60; x++) {
+			for (int y=0; y<50; y++) {
+				assertThat(String.format("Mismatch at %d,%d", x,y), tiles.get(x,y), is(ref.get(x,y)));
+			}
+		}
+	}
+	
+	@Test
+	public void spanningRectangles() {
+		GlyphList<Rectangle2D, Object> glyphs = new GlyphList<>();
+		for (int i=0; i<50; i++) {glyphs.add(new SimpleGlyph<Rectangle2D, Object>(new Rectangle2D.Double(i, i, 30, 20), i));}
+		
+		Aggregator<Object,Integer> count = new Numbers.Count<>();
+		Aggregates<Integer> ref = new SerialRenderer().aggregate(glyphs, new TouchesPixel.Rectangles(), count, new AffineTransform(), 90, 80);
+		Aggregates<Integer> tiles = new TileRenderer(new ForkJoinPool(4), 7).aggregate(glyphs, new TouchesPixel.Rectangles(), count, new AffineTransform(), 90, 80);
+		
+		for (int x=0; x<90; x++) {
+			for (int y=0; y<80; y++) {
+				assertThat(String.format("Mismatch at %d,%d", x,y), tiles.get(x,y), is(ref.get(x,y)));
+			}
+		}
+	}
+	
+	@Test
+	public void fusedTransfer() {
+		GlyphList<Point2D, Object> glyphs = new GlyphList<>();
+		for (int i=0; i<10000; i++) {glyphs.add(new SimpleGlyph<Point2D, Object>(new Point2D.Double(i%97, i%53), i));}
+		
+		Aggregator<Object,Integer> count = new Numbers.Count<>();
+		Transfer.Local<Number, Color> t = new Numbers.FixedInterpolate<>(Color.white, Color.red, 0, 10);
+		TileRenderer r = new TileRenderer(new ForkJoinPool(4), 16);
+		Aggregates<Color> ref = r.transfer(r.aggregate(glyphs, new TouchesPixel.Points(), count, new AffineTransform(), 120, 60), t);
+		Aggregates<Color> fused = r.render(glyphs, new TouchesPixel.Points(), count, t, new AffineTransform(), 120, 60);
+		
+		for (int x=0; x<120; x++) {
+			for (int y=0; y<60; y++) {
+				assertThat(String.format("Mismatch at %d,%d", x,y), fused.get(x,y), is(ref.get(x,y)));
+			}
+		}
+	}
+	
+	@Test
+	public void fusableTransfers() {
+		Aggregates<Integer> counts = new SerialRenderer().aggregate(new GlyphList<Point2D, Object>(), new TouchesPixel.Points(), new Numbers.Count<>(), new AffineTransform(), 10, 10);
+		Transfer<Integer,Double> log = new General.ValuerTransfer<>(new MathValuers.Log<Integer>(10d), 0d);
+		Transfer<Number,Color> fixed = new Numbers.FixedInterpolate<>(Color.white, Color.red, 0, 10);
+		Transfer<Number,Color> interpolate = new Numbers.Interpolate<>(Color.white, Color.red);
+
+		assertThat(TileRenderer.fusable(0, Arrays.asList(fixed)), is(sameInstance((Object) fixed)));
+		assertThat(TileRenderer.fusable(0, Arrays.asList(log, fixed)), instanceOf(Seq.Fused.class));
+		assertThat("Not local", TileRenderer.fusable(0, Arrays.asList(interpolate)), is(nullValue()));
+		assertThat("Depends on aggregates", TileRenderer.fusable(0, Arrays.asList(interpolate.specialize(counts))), is(nullValue()));
+		assertThat(TileRenderer.fusable(0, Arrays.<Transfer<?,?>>asList()), is(nullValue()));
+	}
+}
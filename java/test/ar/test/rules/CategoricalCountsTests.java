@@ -46,4 +46,29 @@ public class CategoricalCountsTests {
 		assertFalse(c1.equals(c2));
 	}
 	
+	@Test
+	public void testAccumulatorMatchesExtend() {
+		CategoricalCounts<String> initial = new CategoricalCounts<String>().extend("m", 3);
+		CategoricalCounts<String> extended = initial;
+		CategoricalCounts.Accumulator<String> acc = new CategoricalCounts.Accumulator<>(initial);
+
+		String[] keys = {"q", "a", "m", "z", "a", "b", "c", "d", "e", "a"};
+		for (String key: keys) {
+			extended = extended.extend(key, 1);
+			acc.add(key, 1);
+		}
+		
+		CategoricalCounts<String> frozen = acc.freeze();
+		assertThat(frozen, is(extended));
+		assertThat(frozen.fullSize(), is(extended.fullSize()));
+		assertThat(frozen.count("a"), is(3));
+		assertThat(frozen.count("m"), is(4));
+		
+		acc.add("a", 1);
+		assertThat("Frozen counts changed by later updates", frozen.count("a"), is(3));
+		assertThat(initial.fullSize(), is(3));
+		
+		acc.addAll(extended);
+		assertThat(acc.freeze(), is(CategoricalCounts.rollupTwo(extended.extend("a", 1), extended)));
+	}
 }
@@ -5,12 +5,24 @@ import static org.junit.Assert.*;
 import org.junit.Test;
 
 import java.awt.Color;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import ar.Aggregates;
+import ar.Renderer;
+import ar.Transfer;
 import ar.aggregates.implementations.RefFlatAggregates;
+import ar.glyphsets.GlyphList;
+import ar.glyphsets.SimpleGlyph;
 import ar.renderers.AggregationStrategies;
+import ar.renderers.ParallelRenderer;
+import ar.renderers.TileRenderer;
 import ar.rules.CategoricalCounts;
 import ar.rules.Categories;
+import ar.selectors.TouchesPixel;
 import ar.util.Util;
 import static java.lang.String.format;
 
@@ -34,4 +46,67 @@ public class CategoriesTests {
 			}
 		}
 	}
+	
+	@Test
+	public void CountCategoriesInPlace() {
+		GlyphList<Point2D, String> glyphs = new GlyphList<>();
+		String[] labels = {"a", "b", "c"};
+		for (int i=0; i<30000; i++) {
+			glyphs.add(new SimpleGlyph<Point2D, String>(new Point2D.Double(i%7, i%5), labels[i%3]));
+		}
+		
+		Renderer[] renderers = {new ParallelRenderer(new ForkJoinPool(4)), new TileRenderer(new ForkJoinPool(4), 4)};
+		for (Renderer r: renderers) {
+			Aggregates<CategoricalCounts<String>> aggs = r.aggregate(glyphs, new TouchesPixel.Points(), new Categories.CountCategories<String>(), new AffineTransform(), 10, 10);
+			for (int x=0; x<7; x++) {
+				for (int y=0; y<5; y++) {
+					CategoricalCounts<String> expected = new CategoricalCounts<>();
+					for (int i=0; i<30000; i++) {
+						if (i%7 == x && i%5 == y) {expected = expected.extend(labels[i%3], 1);}
+					}
+					assertEquals(format("Mismatch at (%d, %d) with %s", x,y, r.getClass().getSimpleName()), expected, aggs.get(x,y));
+					assertEquals(expected.fullSize(), aggs.get(x,y).fullSize());
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void CountCategoriesDense() {
+		GlyphList<Point2D, String> glyphs = new GlyphList<>();
+		String[] labels = {"c", "a", "b"};
+		for (int i=0; i<30000; i++) {
+			if (i%7 == 3 && labels[i%3].equals("a")) {continue;}	//Some bins without the first category
+			glyphs.add(new SimpleGlyph<Point2D, String>(new Point2D.Double(i%7, i%5), labels[i%3]));
+		}
+		
+		Categories.CountCategories<String> sparse = new Categories.CountCategories<>(null);
+		Categories.CountCategories<String> dense = new Categories.CountCategories<>(null, labels);
+		Renderer r = new ParallelRenderer(new ForkJoinPool(4));
+		Aggregates<CategoricalCounts<String>> expected = r.aggregate(glyphs, new TouchesPixel.Points(), sparse, new AffineTransform(), 10, 10);
+		Aggregates<CategoricalCounts<String>> actual = r.aggregate(glyphs, new TouchesPixel.Points(), dense, new AffineTransform(), 10, 10);
+		Aggregates<CategoricalCounts<String>> tiled = new TileRenderer(new ForkJoinPool(4), 4).aggregate(glyphs, new TouchesPixel.Points(), dense, new AffineTransform(), 10, 10);
+		
+		assertTrue("Dense storage not used", actual instanceof Aggregates.CategoryValued);
+		assertTrue("Dense storage not used", tiled instanceof Aggregates.CategoryValued);
+		List<String> categories = ((Aggregates.CategoryValued<String>) actual).categories();
+		assertSame("Category list rebuilt per call", categories, ((Aggregates.CategoryValued<String>) actual).categories());
+		
+		List<Transfer.ItemWise<CategoricalCounts<String>, ?>> transfers = new ArrayList<>();
+		transfers.add(new Categories.ToCount<String>());
+		transfers.add(new Categories.NumCategories<String>());
+		transfers.add(new Categories.NthItem<String>(-1, 1));
+		transfers.add(new Categories.Select<String>("b"));
+		transfers.add(new Categories.KeyPercent<String>(.3, "a", Color.WHITE, Color.RED, Color.BLUE));
+		
+		for (int x=0; x<10; x++) {
+			for (int y=0; y<10; y++) {
+				assertEquals(format("Mismatch at (%d, %d)", x,y), expected.get(x,y), actual.get(x,y));
+				assertEquals(format("Mismatch at (%d, %d) with tiles", x,y), expected.get(x,y), tiled.get(x,y));
+				for (Transfer.ItemWise<CategoricalCounts<String>, ?> t: transfers) {
+					assertEquals(format("%s mismatch at (%d, %d)", t.getClass().getSimpleName(), x,y), t.at(x, y, expected), t.at(x, y, actual));
+				}
+			}
+		}
+	}
 }
@@ -4,10 +4,12 @@ import static org.junit.Assert.*;
 import static org.hamcrest.CoreMatchers.*;
 
 import java.awt.Color;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
 import ar.Aggregates;
+import ar.Renderer;
 import ar.Transfer;
 import ar.aggregates.AggregateUtils;
 import ar.glyphsets.implicitgeometry.MathValuers;
@@ -122,4 +124,94 @@ public class Combinators {
 		Valuer<Aggregates<? extends Integer>, Boolean> p = new Predicates.All<>(new MathValuers.EQ<Integer>(3d));
 		assertTrue("Bluk test", p.value(rslt));
 	}
+	
+	@Test
+	public void SeqFusion() {
+		Aggregates<Integer> a = AggregateUtils.make(11, 31, 0);
+		for (int x=0; x<11; x++) {
+			for (int y=0; y<31; y++) {a.set(x, y, x*y);}
+		}
+		
+		Transfer<Integer,Double> log = new General.ValuerTransfer<>(new MathValuers.Log<Integer>(10d, false), 0d);
+		Transfer<Double,Double> replace = new General.Replace<>(Double.NEGATIVE_INFINITY, 0d, 0d);
+		Transfer<Double, Color> color = new Numbers.Interpolate<>(Color.white, Color.red);
+		Transfer.Specialized<Integer, Color> t = Seq.start(log).then(replace).then(color).specialize(a);
+		assertThat(t, instanceOf(Seq.Fused.class));
+		
+		Aggregates<Double> logs = TestResources.RENDERER.transfer(a, log.specialize(a));
+		Aggregates<Double> replaced = TestResources.RENDERER.transfer(logs, replace.specialize(logs));
+		Aggregates<Color> ref = TestResources.RENDERER.transfer(replaced, color.specialize(replaced));
+		Aggregates<Color> rslt = TestResources.RENDERER.transfer(a, t);
+		for (int x=0; x<11; x++) {
+			for (int y=0; y<31; y++) {
+				assertThat(String.format("Mismatch at %d,%d", x, y), rslt.get(x, y), is(ref.get(x, y)));
+			}
+		}
+	}
+	
+	/**Item-wise (but not local) transfer that counts how many values it has produced.**/
+	private static class Counting implements Transfer.ItemWise<Integer, Integer> {
+		private static final long serialVersionUID = 1L;
+		final AtomicInteger calls = new AtomicInteger();
+		@Override public Integer emptyValue() {return 0;}
+		@Override public Counting specialize(Aggregates<? extends Integer> aggregates) {return this;}
+		@Override public Aggregates<Integer> process(Aggregates<? extends Integer> aggregates, Renderer rend) {return rend.transfer(aggregates, this);}
+		@Override public Integer at(int x, int y, Aggregates<? extends Integer> aggregates) {
+			calls.incrementAndGet();
+			return aggregates.get(x, y)+1;
+		}
+	}
+	
+	/**Local version of Counting; reads its position twice.**/
+	private static final class LocalCounting extends Counting implements Transfer.Local<Integer, Integer> {
+		private static final long serialVersionUID = 1L;
+		@Override public Integer at(int x, int y, Aggregates<? extends Integer> aggregates) {
+			calls.incrementAndGet();
+			return (aggregates.get(x, y) + aggregates.get(x, y))/2 + 1;
+		}
+	}
+	
+	@Test
+	public void SeqStagesOnce() {
+		Aggregates<Integer> a = AggregateUtils.make(10, 20, 0);
+		Counting[] stages = new Counting[] {new Counting(), new Counting(), new Counting(), new Counting()};
+		Transfer<Integer,Integer> chain = Seq.start(stages[0]).then(stages[1]).then(stages[2]).then(stages[3]);
+		
+		Transfer.Specialized<Integer,Integer> t = chain.specialize(a);
+		for (int i=0; i<stages.length-1; i++) {
+			assertThat("Specialize stage " + i, stages[i].calls.get(), is(200));
+		}
+		assertThat("Specialize last stage", stages[3].calls.get(), is(0));
+		
+		Aggregates<Integer> rslt = TestResources.RENDERER.transfer(a, t);
+		assertThat(rslt.get(5, 5), is(4));
+		for (int i=0; i<stages.length; i++) {
+			assertThat("Stage " + i, stages[i].calls.get(), is(200));
+		}
+		
+		Aggregates<Integer> other = AggregateUtils.make(10, 20, 1);
+		assertThat("Other input", TestResources.RENDERER.transfer(other, t).get(5, 5), is(5));
+		for (int i=0; i<stages.length; i++) {
+			assertThat("Stage " + i + " on other input", stages[i].calls.get(), is(400));
+		}
+	}
+	
+	@Test
+	public void SeqLocalStagesOnce() {
+		Aggregates<Integer> a = AggregateUtils.make(10, 20, 0);
+		Counting[] stages = new Counting[] {new LocalCounting(), new LocalCounting(), new LocalCounting(), new LocalCounting()};
+		Transfer<Integer,Integer> chain = Seq.start(stages[0]).then(stages[1]).then(stages[2]).then(stages[3]);
+		
+		Transfer.Specialized<Integer,Integer> t = chain.specialize(a);
+		assertThat(t, instanceOf(Seq.Fused.class));
+		for (int i=0; i<stages.length; i++) {
+			assertThat("Specialize stage " + i, stages[i].calls.get(), is(0));
+		}
+
+		Aggregates<Integer> rslt = TestResources.RENDERER.transfer(a, t);
+		assertThat(rslt.get(5, 5), is(4));
+		for (int i=0; i<stages.length; i++) {
+			assertThat("Stage " + i, stages[i].calls.get(), is(200));
+		}
+	}
 }